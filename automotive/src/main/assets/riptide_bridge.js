@@ -0,0 +1,100 @@
+// Page side of the Riptide MessagePort bridge (CastMessageBridge.java).
+// The receiver hands every trusted page two ports after it loads:
+//   control - "op:payload" requests, answered in order on the same port
+//   relay   - inbound cast messages, exactly as the sender sent them
+// Usage:
+//   RiptideBridge.ready.then(() => RiptideBridge.status()).then(status => ...);
+//   RiptideBridge.onCastMessage(json => ...);
+(function() {
+    const HANDSHAKE = 'riptide-bridge:';
+    const FRAME_SEND = 0x01;
+    const FRAME_ECHO = 0x02;
+    const encoder = new TextEncoder();
+
+    let controlPort = null;
+    let resolveReady;
+    const ready = new Promise(resolve => { resolveReady = resolve; });
+    // Replies come back in request order, so one FIFO per op is enough to match them up
+    const pending = { status: [], metrics: [], echo: [], binary: [] };
+    const castListeners = [];
+
+    function request(op, payload) {
+        return new Promise(resolve => {
+            pending[op].push(resolve);
+            controlPort.postMessage(payload === undefined ? op : op + ':' + payload);
+        });
+    }
+
+    function onControlMessage(event) {
+        if (typeof event.data !== 'string') {
+            const resolve = pending.binary.shift();
+            if (resolve) {
+                resolve(event.data);
+            }
+            return;
+        }
+        const colon = event.data.indexOf(':');
+        const op = colon < 0 ? event.data : event.data.substring(0, colon);
+        const payload = colon < 0 ? '' : event.data.substring(colon + 1);
+        const resolve = pending[op] && pending[op].shift();
+        if (resolve) {
+            resolve(op === 'echo' ? payload : JSON.parse(payload));
+        }
+    }
+
+    window.addEventListener('message', event => {
+        if (typeof event.data !== 'string' || !event.data.startsWith(HANDSHAKE) || event.ports.length < 2) {
+            return;
+        }
+        controlPort = event.ports[0];
+        const relayPort = event.ports[1];
+        controlPort.onmessage = onControlMessage;
+        relayPort.onmessage = e => castListeners.forEach(listener => listener(e.data));
+        window.RiptideBridge.binary = event.data.substring(HANDSHAKE.length) === 'binary';
+        resolveReady(window.RiptideBridge);
+    });
+
+    window.RiptideBridge = {
+        ready: ready,
+        binary: false,
+        // Fire-and-forget: raw cast message JSON for the sender
+        send(json) {
+            controlPort.postMessage('send:' + json);
+        },
+        // Same as send, as a UTF-8 ArrayBuffer frame (only when binary is true)
+        sendBinary(json) {
+            const body = encoder.encode(json);
+            const frame = new Uint8Array(body.length + 1);
+            frame[0] = FRAME_SEND;
+            frame.set(body, 1);
+            controlPort.postMessage(frame.buffer, [frame.buffer]);
+        },
+        notifyReady() {
+            controlPort.postMessage('ready');
+        },
+        log(message) {
+            controlPort.postMessage('log:' + message);
+        },
+        status() {
+            return request('status');
+        },
+        metrics() {
+            return request('metrics');
+        },
+        echo(payload) {
+            return request('echo', payload);
+        },
+        // Resolves with the echoed ArrayBuffer; byte 0 of the copy sent carries the opcode
+        echoBinary(bytes) {
+            return new Promise(resolve => {
+                pending.binary.push(resolve);
+                const frame = new Uint8Array(bytes);
+                frame[0] = FRAME_ECHO;
+                controlPort.postMessage(frame.buffer, [frame.buffer]);
+            });
+        },
+        onCastMessage(listener) {
+            castListeners.push(listener);
+        }
+    };
+})();
@@ -1,28 +1,94 @@
 package com.adamucf.simpleaacpbrowser;
 
 
-import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.Button;
+import android.widget.FrameLayout;
 import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import android.webkit.CookieManager;
 import android.webkit.WebChromeClient;
 import android.webkit.PermissionRequest;
+import android.webkit.RenderProcessGoneDetail;
+import android.webkit.WebViewRenderProcess;
+import android.webkit.WebViewRenderProcessClient;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.adamucf.simpleaacpbrowser.cast.ChromecastReceiverService;
 import com.adamucf.simpleaacpbrowser.cast.CastReceiverManager;
 import com.adamucf.simpleaacpbrowser.cast.CastJavaScriptInterface;
+import com.adamucf.simpleaacpbrowser.cast.CastMessageBridge;
+import com.adamucf.simpleaacpbrowser.web.AssetCache;
+import com.adamucf.simpleaacpbrowser.web.Prerenderer;
+import com.adamucf.simpleaacpbrowser.web.RendererWatchdog;
+import com.adamucf.simpleaacpbrowser.web.SessionJournal;
+import com.adamucf.simpleaacpbrowser.web.SettingsProfile;
+import com.adamucf.simpleaacpbrowser.web.SettingsProfileManager;
+import com.adamucf.simpleaacpbrowser.web.SubresourceScheduler;
+import com.adamucf.simpleaacpbrowser.web.TabPool;
+import com.adamucf.simpleaacpbrowser.http.HttpFetcher;
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+import com.adamucf.simpleaacpbrowser.metrics.TelemetryPublisher;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
+    private static final String TAG = "MainActivity";
+    private static final long SHELL_CACHE_MAX_BYTES = 32L * 1024 * 1024;
+    // Start cast anyway if the first page never commits (e.g. offline with a cold cache)
+    private static final long CAST_INIT_FALLBACK_MS = 5000;
+    private static final String CAST_STATUS_URL = "file:///android_asset/cast_status.html";
+    private static final String CAST_TEST_SENDER_URL = "file:///android_asset/cast_test_sender.html";
+    // Shell, status page and test sender all stay live
+    private static final int MAX_TABS = 3;
+    // No guessed prerenders for this long after the system asked us to trim memory
+    private static final long SPECULATION_BACKOFF_MS = 60000;
+    // A renderer stuck this long is killed and its tab rebuilt
+    private static final long RENDERER_HANG_TIMEOUT_MS = 10000;
+    // More renderer losses than this within the window and rebuilt tabs stop restoring history
+    private static final int MAX_RENDERER_RESTORES = 3;
+    private static final long RENDERER_RESTORE_WINDOW_MS = 5 * 60 * 1000;
+    // Saved WebView history of the tab on screen, plus its URL under STATE_URL
+    private static final String STATE_ACTIVE_TAB = "riptide.active_tab";
+    private static final String STATE_URL = "riptide.url";
+    private static final String ASSET_URL_PREFIX = "file:///android_asset/";
+    // file:// pages have no origin to match, so ports for bundled pages go to "*"
+    private static final Uri ANY_ORIGIN = Uri.parse("*");
+
+    // The tab on screen; background tabs are kept paused in tabPool
     private WebView webView;
+    private FrameLayout webViewContainer;
+    private TabPool<WebView> tabPool;
+    // Hidden WebView loading the likely next page; not part of tabPool until it is shown
+    private Prerenderer<WebView> prerenderer;
+    private long lastMemoryTrimMillis = 0;
+    // Full / balanced / survival WebView settings, following heat and memory pressure
+    private SettingsProfileManager profileManager;
+    // Renderer crash/hang recovery: last history snapshot per tab, and the state the next created tab restores
+    private final Map<WebView, Bundle> tabSnapshots = new HashMap<>();
+    private final RendererWatchdog<WebView> rendererWatchdog =
+        new RendererWatchdog<>(RENDERER_HANG_TIMEOUT_MS, MAX_RENDERER_RESTORES, RENDERER_RESTORE_WINDOW_MS);
+    private Bundle pendingTabState;
+    // History on screen across tab swaps and process restarts
+    private SessionJournal journal;
+    // Tab whose WebView history is cleared once a journal back-navigation finishes loading
+    private WebView clearHistoryOnFinish;
+    private boolean rendererKilledForHang = false;
     private RelativeLayout rootLayout;
     private LinearLayout popoverMenu;
     private Button btnHome, btnBack, btnForward, btnToggleTopPadding, btnToggleRightPadding, btnCastReceiver, btnCastTest;
@@ -39,16 +105,45 @@ public class MainActivity extends AppCompatActivity {
     
     // Chromecast receiver components
     private CastReceiverManager castReceiverManager;
-    private Intent chromecastServiceIntent;
+    private CastMessageBridge castMessageBridge;
+    private CastJavaScriptInterface castJavaScriptInterface;
+    
+    // Offline-first cache for the default_url app shell
+    private AssetCache shellCache;
+    private ExecutorService shellCacheExecutor;
+    private Uri shellUri;
+    // Holds images and analytics back while the page on screen loads; throttles them on slow links
+    private SubresourceScheduler subresourceScheduler;
+
+    // Live dashboard feed; runs only while cast_status.html is showing
+    private TelemetryPublisher telemetryPublisher;
+    
+    // Staged startup: cast/mDNS initialization waits for the first contentful paint
+    private final Handler startupHandler = new Handler(Looper.getMainLooper());
+    private final Runnable deferredCastInit = this::startChromecastReceiver;
+    private boolean castReceiverStarted = false;
+    private boolean firstPaintSeen = false;
+    private boolean firstLoadFinished = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
+        Trace.beginSection("Riptide.activityCreate");
+        try {
+            super.onCreate(savedInstanceState);
+            createActivity(savedInstanceState);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void createActivity(Bundle savedInstanceState) {
+        Trace.beginSection("Riptide.inflateLayout");
         setContentView(R.layout.activity_main);
         enterImmersiveMode();
+        Trace.endSection();
 
         // Initialize views
-        webView = findViewById(R.id.webview);
+        webViewContainer = findViewById(R.id.webview_container);
         rootLayout = findViewById(R.id.root_layout);
         popoverMenu = findViewById(R.id.popover_menu);
         btnHome = findViewById(R.id.btn_home);
@@ -59,20 +154,43 @@ public class MainActivity extends AppCompatActivity {
         btnCastReceiver = findViewById(R.id.btn_cast_receiver);
         btnCastTest = findViewById(R.id.btn_cast_test);
 
-        // Configure WebView
-        configureWebView();
-        webView.setWebViewClient(new CustomWebViewClient());
-        webView.setWebChromeClient(new CustomWebChromeClient()); // Needed for media and advanced features
-        webView.loadUrl(getString(R.string.default_url));
+        // Serve the app shell from disk first so cold starts don't wait on the network
+        initializeShellCache();
+        subresourceScheduler = new SubresourceScheduler(this);
+        subresourceScheduler.start();
+
+        // The JS bridge objects must exist before the first tab is created and loaded
+        initializeChromecastReceiver();
+        telemetryPublisher = new TelemetryPublisher();
+        profileManager = new SettingsProfileManager(this, this::onProfileChanged);
+        profileManager.start();
+        tabPool = new TabPool<>(webViewTabs, MAX_TABS);
+        prerenderer = new Prerenderer<>(prerenderTabs, MetricsRegistry.getDefault());
+
+        // After a process restart, reopen the page that was on screen with its history;
+        // after an ignition cycle there is no saved state, so the journal says where we were
+        journal = ((RiptideApplication) getApplication()).getSessionJournal();
+        String startUrl = getString(R.string.default_url);
+        Bundle savedTab = savedInstanceState != null ? savedInstanceState.getBundle(STATE_ACTIVE_TAB) : null;
+        if (savedTab != null && savedTab.getString(STATE_URL) != null) {
+            pendingTabState = savedTab;
+            startUrl = savedTab.getString(STATE_URL);
+        } else if (journal.getCurrentUrl() != null) {
+            startUrl = journal.getCurrentUrl();
+        }
+
+        Trace.beginSection("Riptide.loadShell");
+        showTab(startUrl);
+        Trace.endSection();
 
         setupTouchHandling();
         setupPopoverButtons();
         
-        // Initialize and start Chromecast receiver
-        initializeChromecastReceiver();
+        // Cast context, foreground service and mDNS start after first paint (or the fallback timeout)
+        startupHandler.postDelayed(deferredCastInit, CAST_INIT_FALLBACK_MS);
     }
 
-    private void configureWebView() {
+    private void configureWebView(WebView webView) {
         WebSettings settings = webView.getSettings();
         
         // Hardware acceleration must be enabled before other settings
@@ -128,16 +246,293 @@ public class MainActivity extends AppCompatActivity {
         settings.setUserAgentString(settings.getUserAgentString() + " AutomotiveWebView/2.0 Widevine/1.0 ChromecastReceiver/1.0 DistractionOptimized/1.0");
     }
 
-    private void setupTouchHandling() {
-        // Set up touch handling for 3-finger detection on WebView
-        webView.setOnTouchListener(new View.OnTouchListener() {
-            @Override
-            public boolean onTouch(View v, MotionEvent event) {
-                handleMultiTouch(event);
-                return false; // Allow normal touch processing
+    private void initializeShellCache() {
+        shellUri = Uri.parse(getString(R.string.default_url));
+        shellCacheExecutor = Executors.newSingleThreadExecutor();
+        try {
+            shellCache = new AssetCache(new File(getCacheDir(), "shell_cache"), SHELL_CACHE_MAX_BYTES, shellCacheExecutor);
+        } catch (Exception e) {
+            android.util.Log.e(TAG, "Failed to open shell cache", e);
+        }
+    }
+
+    // Same origin as default_url and under its path
+    private boolean isShellUrl(Uri uri) {
+        if (shellUri == null || uri.getScheme() == null || uri.getHost() == null) {
+            return false;
+        }
+        String shellPath = shellUri.getPath() != null ? shellUri.getPath() : "";
+        String path = uri.getPath() != null ? uri.getPath() : "";
+        return uri.getScheme().equalsIgnoreCase(shellUri.getScheme())
+            && uri.getHost().equalsIgnoreCase(shellUri.getHost())
+            && uri.getPort() == shellUri.getPort()
+            && path.startsWith(shellPath);
+    }
+
+    // Only bundled pages and the app shell get the bridge ports
+    private void attachMessageBridge(WebView view, String url) {
+        if (castMessageBridge == null || url == null) {
+            return;
+        }
+        if (url.startsWith(ASSET_URL_PREFIX)) {
+            castMessageBridge.attach(view, ANY_ORIGIN);
+        } else if (isShellUrl(Uri.parse(url))) {
+            castMessageBridge.attach(view, Uri.parse(shellUri.getScheme() + "://" + shellUri.getAuthority()));
+        }
+    }
+
+    // A live tab is swapped in, then a matching prerender, and only then a cold load
+    private void showTab(String url) {
+        if (tabPool.contains(url) || showPrerendered(url) == Prerenderer.Promotion.MISS) {
+            tabPool.show(url);
+        }
+    }
+
+    // Moves the prerender for url on screen, if there is one
+    public Prerenderer.Promotion showPrerendered(String url) {
+        if (prerenderer == null) {
+            return Prerenderer.Promotion.MISS;
+        }
+        boolean ready = prerenderer.isReady();
+        WebView tab = prerenderer.take(url);
+        if (tab == null) {
+            return Prerenderer.Promotion.MISS;
+        }
+        tabPool.adopt(url, tab);
+        android.util.Log.d(TAG, "Prerender hit for " + url + (ready ? "" : " (still loading)"));
+        return ready ? Prerenderer.Promotion.READY : Prerenderer.Promotion.LOADING;
+    }
+
+    // Sender-announced next page (prefetch_url); false if it is already on screen or loading,
+    // or if the device is too hot or short of memory for a second renderer
+    public boolean prefetch(String url) {
+        if (prerenderer == null || profileManager.getProfile() == SettingsProfile.SURVIVAL
+                || (webView != null && url.equals(webView.getUrl()))) {
+            return false;
+        }
+        return prerenderer.speculate(url, true);
+    }
+
+    // Away from a live shell, Home would be a cold load; warm it up once the visible page is done
+    private void speculateHome() {
+        String home = getString(R.string.default_url);
+        // Guesses only when nothing is throttled (never on low-RAM devices)
+        if (profileManager.getProfile() != SettingsProfile.FULL || tabPool.contains(home)
+                || System.currentTimeMillis() - lastMemoryTrimMillis < SPECULATION_BACKOFF_MS) {
+            return;
+        }
+        prerenderer.speculate(home, false);
+    }
+
+    private WebView createTabView() {
+        Trace.beginSection("Riptide.configureWebView");
+        try {
+            WebView view = new WebView(MainActivity.this);
+            configureWebView(view);
+            profileManager.apply(view);
+            view.setWebViewClient(new CustomWebViewClient());
+            view.setWebChromeClient(new CustomWebChromeClient()); // Needed for media and advanced features
+            // The JS bridge must be registered before the first load to be visible to the page
+            if (castJavaScriptInterface != null) {
+                view.addJavascriptInterface(castJavaScriptInterface, "CastReceiver");
             }
-        });
-        
+            view.setWebViewRenderProcessClient(rendererHangClient);
+            view.setOnTouchListener(multiTouchListener);
+            view.setVisibility(View.GONE);
+            webViewContainer.addView(view, new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT));
+            return view;
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    // Creates, swaps and evicts the pooled WebViews
+    private final TabPool.Host<WebView> webViewTabs = new TabPool.Host<WebView>() {
+        @Override
+        public WebView create(String key) {
+            android.util.Log.d(TAG, "Created tab for " + key);
+            return createTabView();
+        }
+
+        @Override
+        public void load(WebView tab, String url) {
+            // A tab rebuilt after a renderer loss or process restart gets its history back
+            Bundle state = pendingTabState;
+            pendingTabState = null;
+            if (state != null && tab.restoreState(state) != null) {
+                return;
+            }
+            tab.loadUrl(url);
+        }
+
+        @Override
+        public void activate(WebView tab) {
+            webView = tab;
+            tab.onResume();
+            tab.setVisibility(View.VISIBLE);
+            tab.requestFocus();
+            // A swapped-in page is already loaded, so no onPageFinished will re-attach these
+            String url = tab.getUrl();
+            if (url != null) {
+                journal.recordVisit(url);
+                attachMessageBridge(tab, url);
+                if (CAST_STATUS_URL.equals(url)) {
+                    telemetryPublisher.start(tab);
+                }
+            }
+        }
+
+        @Override
+        public void deactivate(WebView tab) {
+            telemetryPublisher.stop();
+            if (castMessageBridge != null) {
+                castMessageBridge.detach();
+            }
+            tab.setVisibility(View.GONE);
+            tab.onPause();
+        }
+
+        @Override
+        public void destroy(WebView tab) {
+            tabSnapshots.remove(tab);
+            if (tab == clearHistoryOnFinish) {
+                clearHistoryOnFinish = null;
+            }
+            rendererWatchdog.forget(tab);
+            profileManager.forget(tab);
+            webViewContainer.removeView(tab);
+            tab.destroy();
+            android.util.Log.d(TAG, "Destroyed tab " + tab.getUrl());
+        }
+    };
+
+    private void onProfileChanged(SettingsProfile profile) {
+        for (WebView tab : tabPool.getTabs()) {
+            profileManager.apply(tab);
+        }
+        if (profile == SettingsProfile.SURVIVAL) {
+            // Only the page on screen keeps a renderer
+            prerenderer.cancel();
+            int evicted = tabPool.trimTo(1);
+            android.util.Log.d(TAG, "Survival profile: evicted " + evicted + " background tab(s)");
+        }
+    }
+
+    // WebView history for restoreState, tagged with the URL to fall back on; null if there is none
+    private Bundle saveTabState(WebView view) {
+        Bundle state = new Bundle();
+        if (view.getUrl() == null || view.saveState(state) == null) {
+            return null;
+        }
+        state.putString(STATE_URL, view.getUrl());
+        return state;
+    }
+
+    /**
+     * Called from onRenderProcessGone. WebViews share one renderer, so this runs once per
+     * tab: background tabs and the prerender are dropped (a background tab is recreated
+     * when next shown), and the tab on screen is rebuilt in place with its history.
+     */
+    private void onRendererLost(WebView view, String reason) {
+        MetricsRegistry.getDefault().counter(MetricsRegistry.RENDERER_GONE).inc();
+        boolean active = view == webView;
+        Bundle state = tabSnapshots.get(view);
+        if (active) {
+            // The dead view is destroyed without being deactivated
+            telemetryPublisher.stop();
+            if (castMessageBridge != null) {
+                castMessageBridge.detach();
+            }
+        }
+        if (!tabPool.discard(view)) {
+            prerenderer.onLoadFailed(view);
+            return;
+        }
+        if (!active) {
+            android.util.Log.w(TAG, "Renderer " + reason + "; dropped a background tab");
+            return;
+        }
+
+        if (rendererKilledForHang) {
+            reason = "unresponsive";
+            rendererKilledForHang = false;
+        }
+        String url = state != null ? state.getString(STATE_URL) : null;
+        // A renderer that keeps dying may be killed by the page itself, so start over from home
+        boolean restore = rendererWatchdog.onRendererLost(SystemClock.uptimeMillis()) && state != null;
+        pendingTabState = restore ? state : null;
+        showTab(restore ? url : getString(R.string.default_url));
+        android.util.Log.w(TAG, "Renderer " + reason + "; rebuilt the tab on screen (restored: " + restore + ")");
+
+        if (castReceiverManager != null) {
+            castReceiverManager.onRendererIncident(reason, url, restore);
+        }
+    }
+
+    // Watchdog for hung renderers; killing one hands over to onRenderProcessGone
+    private final WebViewRenderProcessClient rendererHangClient = new WebViewRenderProcessClient() {
+        @Override
+        public void onRenderProcessUnresponsive(WebView view, WebViewRenderProcess renderer) {
+            if (renderer != null && rendererWatchdog.onUnresponsive(view, SystemClock.uptimeMillis())) {
+                MetricsRegistry.getDefault().counter(MetricsRegistry.RENDERER_HANGS).inc();
+                android.util.Log.w(TAG, "Renderer unresponsive for " + RENDERER_HANG_TIMEOUT_MS + "ms; terminating");
+                rendererKilledForHang = true;
+                renderer.terminate();
+            }
+        }
+
+        @Override
+        public void onRenderProcessResponsive(WebView view, WebViewRenderProcess renderer) {
+            rendererWatchdog.onResponsive(view);
+        }
+    };
+
+    // The speculative WebView; the tab pool takes it over on a hit
+    private final Prerenderer.Host<WebView> prerenderTabs = new Prerenderer.Host<WebView>() {
+        @Override
+        public WebView create() {
+            WebView view = createTabView();
+            // Laid out at full size but not drawn, and it doesn't receive touches
+            view.setVisibility(View.INVISIBLE);
+            return view;
+        }
+
+        @Override
+        public void load(WebView tab, String url) {
+            android.util.Log.d(TAG, "Prerendering " + url);
+            tab.loadUrl(url);
+        }
+
+        @Override
+        public void destroy(WebView tab) {
+            profileManager.forget(tab);
+            webViewContainer.removeView(tab);
+            tab.destroy();
+            android.util.Log.d(TAG, "Discarded prerender of " + tab.getUrl());
+        }
+    };
+
+    private WebResourceResponse toWebResourceResponse(AssetCache.Entry entry) throws java.io.IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Access-Control-Allow-Origin", shellUri.getScheme() + "://" + shellUri.getAuthority());
+        if (entry.etag != null) {
+            headers.put("ETag", entry.etag);
+        }
+        String mimeType = entry.mimeType != null ? entry.mimeType : "application/octet-stream";
+        return new WebResourceResponse(mimeType, entry.encoding, 200, "OK", headers, entry.openStream());
+    }
+
+    // 3-finger detection, attached to every tab's WebView
+    private final View.OnTouchListener multiTouchListener = new View.OnTouchListener() {
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            handleMultiTouch(event);
+            return false; // Allow normal touch processing
+        }
+    };
+
+    private void setupTouchHandling() {
         // Set up touch handling for root layout to detect touches outside popover
         rootLayout.setOnTouchListener(new View.OnTouchListener() {
             @Override
@@ -189,7 +584,13 @@ public class MainActivity extends AppCompatActivity {
         btnHome.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                webView.loadUrl(getString(R.string.default_url));
+                String home = getString(R.string.default_url);
+                if (TabPool.keyFor(home).equals(tabPool.getActiveKey())) {
+                    webView.loadUrl(home);
+                } else {
+                    // Swap the live shell back in instead of reloading it
+                    showTab(home);
+                }
                 hidePopoverMenu();
             }
         });
@@ -197,9 +598,7 @@ public class MainActivity extends AppCompatActivity {
         btnBack.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                if (webView.canGoBack()) {
-                    webView.goBack();
-                }
+                navigateBack();
                 hidePopoverMenu();
             }
         });
@@ -233,7 +632,7 @@ public class MainActivity extends AppCompatActivity {
         btnCastReceiver.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                webView.loadUrl("file:///android_asset/cast_status.html");
+                showTab(CAST_STATUS_URL);
                 hidePopoverMenu();
             }
         });
@@ -242,7 +641,7 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onClick(View v) {
                 // Load the test sender page from the project root
-                webView.loadUrl("file:///android_asset/cast_test_sender.html");
+                showTab(CAST_TEST_SENDER_URL);
                 hidePopoverMenu();
             }
         });
@@ -287,9 +686,10 @@ public class MainActivity extends AppCompatActivity {
 
     private void updatePopoverButtonStates() {
         // Update navigation button states
-        btnBack.setEnabled(webView.canGoBack());
+        boolean canGoBack = webView.canGoBack() || journal.getPreviousUrl() != null;
+        btnBack.setEnabled(canGoBack);
         btnForward.setEnabled(webView.canGoForward());
-        btnBack.setAlpha(webView.canGoBack() ? 1.0f : 0.5f);
+        btnBack.setAlpha(canGoBack ? 1.0f : 0.5f);
         btnForward.setAlpha(webView.canGoForward() ? 1.0f : 0.5f);
         
         // Update padding button states visual indication
@@ -315,9 +715,10 @@ public class MainActivity extends AppCompatActivity {
         int topMargin = isTopPaddingEnabled ? dpToPx(100) : 0;
         int rightMargin = isRightPaddingEnabled ? dpToPx(200) : 0;
         
-        RelativeLayout.LayoutParams params = (RelativeLayout.LayoutParams) webView.getLayoutParams();
+        // Margins go on the container so every tab shares them
+        RelativeLayout.LayoutParams params = (RelativeLayout.LayoutParams) webViewContainer.getLayoutParams();
         params.setMargins(0, topMargin, rightMargin, 0);
-        webView.setLayoutParams(params);
+        webViewContainer.setLayoutParams(params);
     }
 
     private int dpToPx(int dp) {
@@ -327,11 +728,29 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     public void onBackPressed() {
+        if (!navigateBack()) {
+            super.onBackPressed();
+        }
+    }
+
+    // The tab's own history first, then pages from before a tab swap or a process restart
+    private boolean navigateBack() {
         if (webView.canGoBack()) {
             webView.goBack();
+            return true;
+        }
+        String previous = journal.getPreviousUrl();
+        if (previous == null) {
+            return false;
+        }
+        if (TabPool.keyFor(previous).equals(tabPool.getActiveKey())) {
+            // Otherwise the WebView's back would return to the page we just left
+            clearHistoryOnFinish = webView;
+            webView.loadUrl(previous);
         } else {
-            super.onBackPressed();
+            showTab(previous);
         }
+        return true;
     }
     
     private void enterImmersiveMode () {
@@ -346,44 +765,164 @@ public class MainActivity extends AppCompatActivity {
         );
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (webView != null && CAST_STATUS_URL.equals(webView.getUrl())) {
+            telemetryPublisher.start(webView);
+        }
+        // Discoverable while on screen; released some time after the screen goes off
+        if (castReceiverManager != null) {
+            castReceiverManager.setForeground(true);
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        Bundle state = webView != null ? saveTabState(webView) : null;
+        if (state != null) {
+            outState.putBundle(STATE_ACTIVE_TAB, state);
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (telemetryPublisher != null) {
+            telemetryPublisher.stop();
+        }
+        if (castReceiverManager != null) {
+            castReceiverManager.setForeground(false);
+        }
+        // The head unit may lose power before the page cache is written back
+        if (journal != null) {
+            journal.sync();
+        }
+    }
+
+    // Background tabs are the cheapest memory to give back; the tab on screen always stays
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (tabPool == null) {
+            return;
+        }
+        profileManager.onTrimMemory(level);
+        if (level != TRIM_MEMORY_UI_HIDDEN) {
+            // A speculative page is the first thing to go, and guesses pause for a while
+            lastMemoryTrimMillis = System.currentTimeMillis();
+            prerenderer.cancel();
+            HttpFetcher.getDefault().evictIdleConnections();
+        }
+        int keep;
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            keep = 1;
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            keep = 2;
+        } else if (level == TRIM_MEMORY_RUNNING_MODERATE) {
+            keep = MAX_TABS - 1;
+        } else {
+            return; // TRIM_MEMORY_UI_HIDDEN: nothing to free yet
+        }
+        int evicted = tabPool.trimTo(keep);
+        android.util.Log.d(TAG, "onTrimMemory(" + level + ") evicted " + evicted + " background tab(s)");
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
         if (hideHandler != null && hideRunnable != null) {
             hideHandler.removeCallbacks(hideRunnable);
         }
+        startupHandler.removeCallbacks(deferredCastInit);
+        
+        if (castMessageBridge != null) {
+            castMessageBridge.detach();
+        }
+        telemetryPublisher.stop();
+        if (profileManager != null) {
+            profileManager.stop();
+        }
+        if (subresourceScheduler != null) {
+            subresourceScheduler.stop();
+        }
+        if (prerenderer != null) {
+            prerenderer.cancel();
+        }
+        if (tabPool != null) {
+            tabPool.destroyAll();
+        }
         
-        // Clean up Chromecast receiver
+        // The receiver outlives the activity; just stop it from calling back into this one
         if (castReceiverManager != null) {
-            castReceiverManager.destroy();
+            castReceiverManager.detachActivity(this);
         }
         
-        // Stop Chromecast service
-        if (chromecastServiceIntent != null) {
-            stopService(chromecastServiceIntent);
+        if (shellCacheExecutor != null) {
+            shellCacheExecutor.shutdown();
         }
     }
     
     private void initializeChromecastReceiver() {
         try {
-            // Start Chromecast receiver service
-            chromecastServiceIntent = new Intent(this, ChromecastReceiverService.class);
-            startForegroundService(chromecastServiceIntent);
-            
-            // Initialize Cast receiver manager
-            castReceiverManager = new CastReceiverManager(this);
+            // The shared receiver; CastContext is attached later in startChromecastReceiver()
+            castReceiverManager = ((RiptideApplication) getApplication()).getCastReceiverManager();
             castReceiverManager.setMainActivity(this);
-            castReceiverManager.initialize();
             
-            // Add JavaScript interface for cast communication
-            CastJavaScriptInterface jsInterface = new CastJavaScriptInterface(this, castReceiverManager);
-            webView.addJavascriptInterface(jsInterface, "CastReceiver");
+            // JavaScript interface for cast communication; added to each tab as it is created
+            castJavaScriptInterface = new CastJavaScriptInterface(this, castReceiverManager);
+            
+            // Asynchronous MessagePort bridge, handed to each trusted page after it loads
+            castMessageBridge = new CastMessageBridge(castReceiverManager);
+            castReceiverManager.setMessageBridge(castMessageBridge);
             
         } catch (Exception e) {
             android.util.Log.e("MainActivity", "Failed to initialize Chromecast receiver", e);
         }
     }
     
+    // Second startup stage: off the first-paint critical path
+    private void startChromecastReceiver() {
+        if (castReceiverStarted || isFinishing()) {
+            return;
+        }
+        castReceiverStarted = true;
+        startupHandler.removeCallbacks(deferredCastInit);
+        
+        Trace.beginSection("Riptide.castInit");
+        try {
+            // Starts the discovery service itself while the receiver is armed
+            if (castReceiverManager != null) {
+                castReceiverManager.initialize();
+            }
+        } catch (Exception e) {
+            android.util.Log.e(TAG, "Failed to start Chromecast receiver", e);
+        } finally {
+            Trace.endSection();
+        }
+    }
+    
+    private void onFirstContentfulPaint() {
+        if (firstPaintSeen) {
+            return;
+        }
+        firstPaintSeen = true;
+        Trace.endAsyncSection(RiptideApplication.TRACE_FIRST_PAINT, RiptideApplication.TRACE_COOKIE);
+        
+        // Post so the cast work lands after the frame that made the page visible
+        startupHandler.removeCallbacks(deferredCastInit);
+        startupHandler.post(deferredCastInit);
+    }
+    
+    private void onFirstPageFinished() {
+        if (firstLoadFinished) {
+            return;
+        }
+        firstLoadFinished = true;
+        Trace.endAsyncSection(RiptideApplication.TRACE_INTERACTIVE, RiptideApplication.TRACE_COOKIE);
+    }
+    
     // Public method to get WebView for cast operations
     public WebView getWebView() {
         return webView;
@@ -396,6 +935,9 @@ public class MainActivity extends AppCompatActivity {
 
     // Custom WebViewClient for local network and DRM support
     private class CustomWebViewClient extends WebViewClient {
+        // Start of the navigation being timed; 0 when none is in progress
+        private long pageLoadStartNanos = 0;
+
         @Override
         public boolean shouldOverrideUrlLoading(WebView view, String url) {
             // Allow all local network URLs
@@ -409,10 +951,128 @@ public class MainActivity extends AppCompatActivity {
             return false; // Let WebView handle all URLs
         }
 
+        @Override
+        public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+            // Called on a WebView background thread, so blocking disk/network I/O is fine here
+            Uri uri = request.getUrl();
+            String url = uri.toString();
+            if (shellCache == null || !"GET".equalsIgnoreCase(request.getMethod())
+                    || !isShellUrl(uri) || !AssetCache.isCacheableUrl(url)) {
+                // Everything else is prioritized; null means the WebView fetches it itself
+                WebResourceResponse scheduled = subresourceScheduler.intercept(request);
+                return scheduled != null ? scheduled : super.shouldInterceptRequest(view, request);
+            }
+
+            try {
+                AssetCache.Entry entry = shellCache.get(url);
+                if (entry != null) {
+                    shellCache.revalidateAsync(url);
+                    return toWebResourceResponse(entry);
+                }
+
+                entry = shellCache.fetch(url, request.getRequestHeaders());
+                if (entry != null) {
+                    return toWebResourceResponse(entry);
+                }
+            } catch (Exception e) {
+                android.util.Log.w(TAG, "Shell cache miss for " + url + ": " + e.getMessage());
+            }
+            return super.shouldInterceptRequest(view, request);
+        }
+
+        @Override
+        public void onPageStarted(WebView view, String url, android.graphics.Bitmap favicon) {
+            super.onPageStarted(view, url, favicon);
+            pageLoadStartNanos = System.nanoTime();
+            tabPool.onTabNavigated(view, url);
+            // Background tabs don't touch the dashboard, bridge or pending cast navigation
+            if (view != webView) {
+                return;
+            }
+            telemetryPublisher.stop();
+            if (castMessageBridge != null) {
+                castMessageBridge.detach();
+            }
+            subresourceScheduler.onDocumentStarted();
+            if (castReceiverManager != null) {
+                castReceiverManager.onPageStarted(url);
+            }
+        }
+
+        @Override
+        public void doUpdateVisitedHistory(WebView view, String url, boolean isReload) {
+            super.doUpdateVisitedHistory(view, url, isReload);
+            // Background tabs and the prerender are journaled when they are swapped in
+            if (view == webView && !isReload) {
+                journal.recordVisit(url);
+            }
+        }
+
+        @Override
+        public void onPageCommitVisible(WebView view, String url) {
+            super.onPageCommitVisible(view, url);
+            onFirstContentfulPaint();
+            // First frame of the new page is up: images may load now
+            if (view == webView) {
+                subresourceScheduler.onDocumentInteractive();
+            }
+        }
+
+        @Override
+        public void onPageFinished(WebView view, String url) {
+            super.onPageFinished(view, url);
+            onFirstPageFinished();
+            if (pageLoadStartNanos != 0) {
+                MetricsRegistry.getDefault().histogram(MetricsRegistry.PAGE_LOAD_US).recordSinceNanos(pageLoadStartNanos);
+                pageLoadStartNanos = 0;
+            }
+            prerenderer.onPageFinished(view);
+            profileManager.onPageFinished(view);
+            if (view == clearHistoryOnFinish) {
+                view.clearHistory();
+                clearHistoryOnFinish = null;
+            }
+            if (view != webView) {
+                return;
+            }
+            subresourceScheduler.onDocumentInteractive();
+            if (CAST_STATUS_URL.equals(url)) {
+                telemetryPublisher.start(view);
+            }
+            attachMessageBridge(view, url);
+            // Snapshot for rebuilding this tab if its renderer dies
+            Bundle state = saveTabState(view);
+            if (state != null) {
+                tabSnapshots.put(view, state);
+            }
+            
+            // Complete any cast load_url waiting on this navigation
+            if (castReceiverManager != null) {
+                castReceiverManager.onPageFinished(url);
+            }
+            speculateHome();
+        }
+
+        // Without this the app process is killed along with the renderer
+        @Override
+        public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail) {
+            onRendererLost(view, detail.didCrash() ? "crashed" : "killed");
+            return true;
+        }
+
         @Override
         public void onReceivedError(WebView view, int errorCode, String description, String failingUrl) {
             // Handle network errors gracefully
             super.onReceivedError(view, errorCode, description, failingUrl);
+            MetricsRegistry.getDefault().counter(MetricsRegistry.PAGE_LOAD_ERRORS).inc();
+            if (view == webView) {
+                subresourceScheduler.onDocumentInteractive();
+            }
+            if (view == webView && castReceiverManager != null) {
+                castReceiverManager.onPageLoadFailed(failingUrl, description);
+            }
+            // Not from inside the failing view's own callback
+            startupHandler.post(() -> prerenderer.onLoadFailed(view));
         }
     }
 
@@ -0,0 +1,119 @@
+package com.adamucf.simpleaacpbrowser;
+
+import android.app.Application;
+import android.net.Uri;
+import android.os.Trace;
+import android.util.Log;
+import android.webkit.WebSettings;
+
+import com.adamucf.simpleaacpbrowser.cast.CastReceiverManager;
+import com.adamucf.simpleaacpbrowser.http.HttpFetcher;
+import com.adamucf.simpleaacpbrowser.web.SessionJournal;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Kicks off the expensive parts of cold start (WebView provider loading, DNS and
+ * TCP/TLS setup for default_url) in parallel with activity creation, and opens the
+ * session journal the app resumes from. Also owns the process-wide cast receiver.
+ */
+public class RiptideApplication extends Application {
+    private static final String TAG = "RiptideApplication";
+    private static final int PRECONNECT_TIMEOUT_MS = 3000;
+    private static final String SESSION_JOURNAL_FILE = "session.journal";
+
+    // Async trace sections spanning process start to the first paint / first interactive page
+    public static final String TRACE_FIRST_PAINT = "Riptide.ignitionToFirstPaint";
+    public static final String TRACE_INTERACTIVE = "Riptide.ignitionToInteractive";
+    public static final int TRACE_COOKIE = 1;
+
+    private ExecutorService startupExecutor;
+    private SessionJournal sessionJournal;
+    private CastReceiverManager castReceiverManager;
+
+    @Override
+    public void onCreate() {
+        Trace.beginAsyncSection(TRACE_FIRST_PAINT, TRACE_COOKIE);
+        Trace.beginAsyncSection(TRACE_INTERACTIVE, TRACE_COOKIE);
+        Trace.beginSection("Riptide.applicationCreate");
+        try {
+            super.onCreate();
+            startupExecutor = Executors.newSingleThreadExecutor();
+            prewarmWebViewProvider();
+            preconnect(getString(R.string.default_url));
+            openSessionJournal();
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    // Shared by the activity and the receiver service, which both run in this process
+    public SessionJournal getSessionJournal() {
+        return sessionJournal;
+    }
+
+    // Created on first use; one receiver (and one session listener) for the whole process
+    public synchronized CastReceiverManager getCastReceiverManager() {
+        if (castReceiverManager == null) {
+            castReceiverManager = new CastReceiverManager(this);
+        }
+        return castReceiverManager;
+    }
+
+    // One mapped read of a few hundred KB; the first activity needs it to pick its start page
+    private void openSessionJournal() {
+        Trace.beginSection("Riptide.openJournal");
+        try {
+            sessionJournal = SessionJournal.open(new File(getFilesDir(), SESSION_JOURNAL_FILE));
+            Log.d(TAG, "Session journal restored " + sessionJournal.getHistory().size() + " history entries");
+        } catch (Exception e) {
+            Log.e(TAG, "Session journal unavailable; keeping the session in memory only", e);
+            sessionJournal = SessionJournal.inMemory();
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    // Loading the WebView provider (native library, Chromium classes) is the single most
+    // expensive part of the first WebView inflation; start it before setContentView needs it
+    private void prewarmWebViewProvider() {
+        startupExecutor.execute(() -> {
+            Trace.beginSection("Riptide.prewarmWebView");
+            try {
+                WebSettings.getDefaultUserAgent(this);
+            } catch (Exception e) {
+                Log.w(TAG, "WebView pre-warm failed", e);
+            } finally {
+                Trace.endSection();
+            }
+        });
+    }
+
+    // Resolve DNS (cached by netd for the WebView too) and open a keep-alive connection
+    // that the shell cache's fetcher can reuse
+    private void preconnect(String url) {
+        startupExecutor.execute(() -> {
+            Trace.beginSection("Riptide.preconnect");
+            try {
+                String host = Uri.parse(url).getHost();
+                if (host == null) {
+                    return;
+                }
+                InetAddress.getAllByName(host);
+
+                // Closing the response hands the connection back to the shared pool
+                try (HttpFetcher.Response response = HttpFetcher.getDefault()
+                        .withTimeouts(PRECONNECT_TIMEOUT_MS, PRECONNECT_TIMEOUT_MS).head(url, null)) {
+                    Log.d(TAG, "Preconnected to " + host + " over " + response.getProtocol());
+                }
+            } catch (Exception e) {
+                Log.d(TAG, "Preconnect skipped: " + e.getMessage());
+            } finally {
+                Trace.endSection();
+            }
+        });
+    }
+}
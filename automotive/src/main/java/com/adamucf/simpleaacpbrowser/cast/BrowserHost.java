@@ -0,0 +1,24 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+/**
+ * The browser cast commands act on: the activity's WebView in the app, an in-memory
+ * page model in JVM tests. Methods are called on the host's UI thread (wherever the
+ * command scheduler's frames run) and complete their reply exactly once, possibly later.
+ */
+public interface BrowserHost {
+    // Replied to when the page has finished loading (or failed to)
+    void loadUrl(String url, CastCommandReply reply);
+
+    // Starts loading a page off screen that a later loadUrl of the same URL can swap in
+    void prefetchUrl(String url, CastCommandReply reply);
+
+    // Replied to with the script's result as JSON
+    void evaluateJavascript(String javascript, CastCommandReply reply);
+
+    void toggleNavigation(CastCommandReply reply);
+
+    // Delivers one remote input event to the page as touch, scroll or key input; returns
+    // false if no page is on screen or the key has no equivalent. The event is reused
+    // once this returns.
+    boolean injectInput(RemoteInput input);
+}
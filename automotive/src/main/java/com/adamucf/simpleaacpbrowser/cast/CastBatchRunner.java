@@ -0,0 +1,212 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import android.util.Log;
+
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastCommandResult;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessage;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessageCodec;
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Executes the sub-commands of one "batch" frame in order on the UI thread. Commands are
+ * issued back to back without waiting for each other, except that a command marked
+ * "after":"page_load" waits for the preceding load_url to finish. When every command
+ * has completed, the listener receives all results at once.
+ */
+public class CastBatchRunner {
+    private static final String TAG = "CastBatchRunner";
+    private static final long BATCH_TIMEOUT_MS = 60000;
+
+    public interface Listener {
+        void onComplete(List<CastCommandResult> results);
+    }
+
+    private final BrowserHost host;
+    private final CastCommandExecutor.Timer timer;
+    private final List<CastMessage> commands;
+    private final boolean stopOnError;
+    private final Listener listener;
+    private final CastCommandResult[] results;
+    private final CastMessageCodec codec = new CastMessageCodec();
+    private final Runnable timeout = this::onTimeout;
+
+    // All state below is only touched on the UI thread
+    private int next = 0;
+    private int outstanding = 0;
+    // Index of the load_url that "after":"page_load" commands wait for, or -1
+    private int pendingNavigation = -1;
+    private boolean stopped = false;
+    private boolean advancing = false;
+    private boolean finished = false;
+
+    CastBatchRunner(BrowserHost host, CastCommandExecutor.Timer timer, List<CastMessage> commands,
+                    boolean stopOnError, Listener listener) {
+        this.host = host;
+        this.timer = timer;
+        this.commands = commands;
+        this.stopOnError = stopOnError;
+        this.listener = listener;
+        this.results = new CastCommandResult[commands.size()];
+    }
+
+    public void start() {
+        timer.postDelayed(timeout, BATCH_TIMEOUT_MS);
+        advance();
+    }
+
+    private void advance() {
+        // Synchronous completions call back into advance(); the outer loop carries on
+        if (advancing || finished) {
+            return;
+        }
+        advancing = true;
+        try {
+            while (next < commands.size() && !stopped) {
+                CastMessage command = commands.get(next);
+                if (command.afterPageLoad && pendingNavigation >= 0) {
+                    return; // Resumed when the load_url's reply arrives
+                }
+                run(next++, command);
+            }
+            if (stopped) {
+                while (next < commands.size()) {
+                    results[next] = CastCommandResult.error(commands.get(next).typeName, "Skipped after an earlier failure");
+                    next++;
+                }
+            }
+        } finally {
+            advancing = false;
+        }
+        maybeFinish();
+    }
+
+    private void run(int index, CastMessage command) {
+        switch (command.type) {
+            case LOAD_URL:
+                if (command.url == null || command.url.trim().isEmpty()) {
+                    record(index, CastCommandResult.error(command.typeName, "URL parameter is required"));
+                    return;
+                }
+                pendingNavigation = index;
+                outstanding++;
+                host.loadUrl(command.url, new ItemReply(index, command.typeName, true));
+                break;
+
+            case PREFETCH_URL:
+                if (command.url == null || command.url.trim().isEmpty()) {
+                    record(index, CastCommandResult.error(command.typeName, "URL parameter is required"));
+                    return;
+                }
+                outstanding++;
+                host.prefetchUrl(command.url, new ItemReply(index, command.typeName, false));
+                break;
+
+            case EXECUTE_JS:
+                if (command.javascript == null || command.javascript.trim().isEmpty()) {
+                    record(index, CastCommandResult.error(command.typeName, "JavaScript parameter is required"));
+                    return;
+                }
+                outstanding++;
+                host.evaluateJavascript(command.javascript, new ItemReply(index, command.typeName, false));
+                break;
+
+            case TOGGLE_NAVIGATION:
+                outstanding++;
+                host.toggleNavigation(new ItemReply(index, command.typeName, false));
+                break;
+
+            case GET_STATUS:
+                record(index, CastCommandResult.success(command.typeName, "Status",
+                    codec.encodeStatus(null, System.currentTimeMillis())));
+                break;
+
+            case GET_METRICS:
+                record(index, CastCommandResult.success(command.typeName, "Metrics",
+                    MetricsRegistry.getDefault().toJson()));
+                break;
+
+            case PING:
+                record(index, CastCommandResult.success(command.typeName, "pong", command.rawData));
+                break;
+
+            default:
+                record(index, CastCommandResult.error(command.typeName, "Unsupported in batch: " + command.typeName));
+                break;
+        }
+    }
+
+    private void record(int index, CastCommandResult result) {
+        results[index] = result;
+        if (!result.success && stopOnError) {
+            stopped = true;
+        }
+    }
+
+    private void maybeFinish() {
+        if (finished || next < commands.size() || outstanding > 0) {
+            return;
+        }
+        finished = true;
+        timer.removeCallbacks(timeout);
+        listener.onComplete(Arrays.asList(results));
+    }
+
+    private void onTimeout() {
+        if (finished) {
+            return;
+        }
+        Log.w(TAG, "Batch timed out with " + outstanding + " command(s) outstanding");
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = CastCommandResult.error(commands.get(i).typeName, "Timed out");
+            }
+        }
+        finished = true;
+        listener.onComplete(Arrays.asList(results));
+    }
+
+    private final class ItemReply implements CastCommandReply {
+        private final int index;
+        private final String type;
+        private final boolean navigation;
+        private boolean done = false;
+
+        ItemReply(int index, String type, boolean navigation) {
+            this.index = index;
+            this.type = type;
+            this.navigation = navigation;
+        }
+
+        @Override
+        public void success(String message) {
+            success(message, null);
+        }
+
+        @Override
+        public void success(String message, String rawResult) {
+            complete(CastCommandResult.success(type, message, rawResult));
+        }
+
+        @Override
+        public void error(String error) {
+            complete(CastCommandResult.error(type, error));
+        }
+
+        private void complete(CastCommandResult result) {
+            if (done || finished) {
+                return;
+            }
+            done = true;
+            record(index, result);
+            outstanding--;
+            // An earlier load_url finishing late doesn't release waiters on a later one
+            if (navigation && pendingNavigation == index) {
+                pendingNavigation = -1;
+            }
+            advance();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import android.util.Log;
+
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastCommandResult;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessage;
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs decoded cast commands against a {@link BrowserHost}: each command goes through
+ * the {@link CastCommandScheduler} lanes (coalescing, rate limits, frame budget) and
+ * reaches the host on its UI thread. Batches run their sub-commands in one pass with a
+ * {@link CastBatchRunner}. Remote input bypasses the lanes and goes through a
+ * {@link CastInputQueue} on the same frames. Nothing here touches Android, so the whole
+ * pipeline runs on a plain JVM with in-memory hosts.
+ */
+public class CastCommandExecutor {
+    private static final String TAG = "CastCommandExecutor";
+
+    // Delayed tasks on the host's UI thread; the app wraps a main-thread Handler
+    public interface Timer {
+        void postDelayed(Runnable task, long delayMillis);
+
+        void removeCallbacks(Runnable task);
+    }
+
+    private final BrowserHost host;
+    private final Timer timer;
+    private final CastCommandScheduler scheduler;
+    private final CastInputQueue input;
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+    public CastCommandExecutor(BrowserHost host, CastCommandScheduler.FrameSource frames, Timer timer) {
+        this.host = host;
+        this.timer = timer;
+        this.scheduler = new CastCommandScheduler(frames);
+        this.input = new CastInputQueue(host, frames);
+    }
+
+    private abstract static class UiCommand implements CastCommandScheduler.Command {
+        private final String description;
+        protected final CastCommandReply reply;
+        private final long submittedNanos = System.nanoTime();
+
+        UiCommand(String description, CastCommandReply reply) {
+            this.description = description;
+            this.reply = reply;
+        }
+
+        // Time spent queued in the scheduler before reaching the UI thread
+        @Override
+        public final void execute() {
+            MetricsRegistry.getDefault().histogram(MetricsRegistry.DISPATCH_DELAY_US).recordSinceNanos(submittedNanos);
+            run();
+        }
+
+        abstract void run();
+
+        @Override
+        public void onDropped(String reason) {
+            Log.d(TAG, "Dropped cast command " + description + ": " + reason);
+            reply.error("Command dropped: " + reason);
+        }
+    }
+
+    // The coalesce keys below are deliberately not per sender: there is one page on screen,
+    // so a newer load_url from any sender makes a queued one pointless, and two toggles
+    // cancel out whoever sent them.
+
+    // A burst of load_urls collapses to the last one; the host replies once the page has loaded
+    public void loadUrl(String url, CastCommandReply reply) {
+        scheduler.submit(CastCommandScheduler.Lane.NAVIGATION, "load_url",
+            CastCommandScheduler.Coalesce.REPLACE, new UiCommand("load_url", reply) {
+                @Override
+                void run() {
+                    host.loadUrl(url, reply);
+                }
+            });
+    }
+
+    // Only the latest announcement is kept
+    public void prefetchUrl(String url, CastCommandReply reply) {
+        scheduler.submit(CastCommandScheduler.Lane.NAVIGATION, "prefetch_url",
+            CastCommandScheduler.Coalesce.REPLACE, new UiCommand("prefetch_url", reply) {
+                @Override
+                void run() {
+                    host.prefetchUrl(url, reply);
+                }
+            });
+    }
+
+    public void executeJavaScript(String javascript, CastCommandReply reply) {
+        scheduler.submit(CastCommandScheduler.Lane.SCRIPT, new UiCommand("execute_js", reply) {
+            @Override
+            void run() {
+                host.evaluateJavascript(javascript, reply);
+            }
+        });
+    }
+
+    // Two pending toggles cancel out; both senders are told their toggle went through
+    public void toggleNavigation(CastCommandReply reply) {
+        scheduler.submit(CastCommandScheduler.Lane.UI, "toggle_navigation",
+            CastCommandScheduler.Coalesce.CANCEL_PAIR, new UiCommand("toggle_navigation", reply) {
+                @Override
+                void run() {
+                    host.toggleNavigation(reply);
+                }
+
+                @Override
+                public void onCancelled() {
+                    reply.success("Navigation toggled successfully");
+                }
+            });
+    }
+
+    // Run a batch's sub-commands in order in one pass on the UI thread
+    public void runBatch(List<CastMessage> commands, boolean stopOnError, CastBatchRunner.Listener listener) {
+        long submittedNanos = System.nanoTime();
+        scheduler.submit(CastCommandScheduler.Lane.BATCH, new CastCommandScheduler.Command() {
+            @Override
+            public void execute() {
+                metrics.histogram(MetricsRegistry.DISPATCH_DELAY_US).recordSinceNanos(submittedNanos);
+                new CastBatchRunner(host, timer, commands, stopOnError, listener).start();
+            }
+
+            @Override
+            public void onDropped(String reason) {
+                Log.d(TAG, "Dropped cast batch: " + reason);
+                List<CastCommandResult> results = new ArrayList<>(commands.size());
+                for (CastMessage command : commands) {
+                    results.add(CastCommandResult.error(command.typeName, "Command dropped: " + reason));
+                }
+                listener.onComplete(results);
+            }
+        });
+    }
+
+    // Pooled input event to fill in and hand to submitInput
+    public RemoteInput obtainInput(RemoteInput.Kind kind, String sessionId, CastCommandReply reply) {
+        return input.obtain(kind, sessionId, reply);
+    }
+
+    // Injected at the next frame, merged with the sender's previous move or scroll if that is still waiting
+    public void submitInput(RemoteInput event) {
+        input.submit(event);
+    }
+
+    public int getPendingCount() {
+        return scheduler.getPendingCount() + input.getPendingCount();
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        input.shutdown();
+    }
+}
@@ -0,0 +1,14 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+/**
+ * Completion handle for one inbound cast command. Exactly one of the methods takes
+ * effect; the reply frame carries the command's correlation id.
+ */
+public interface CastCommandReply {
+    void success(String message);
+
+    // rawResult is already-serialized JSON, e.g. an evaluateJavascript result
+    void success(String message, String rawResult);
+
+    void error(String error);
+}
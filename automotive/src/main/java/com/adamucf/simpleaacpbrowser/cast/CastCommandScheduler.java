@@ -0,0 +1,249 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules cast commands onto the UI thread once per display frame instead of posting
+ * each one with runOnUiThread. Commands go into per-lane queues; redundant ones are
+ * coalesced on submit, each lane is rate limited with a token bucket and capped per
+ * frame, and the whole frame has a small time budget so touch input is never starved.
+ */
+public class CastCommandScheduler {
+    // Time a single frame may spend running cast commands
+    private static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(4);
+
+    public enum Lane {
+        // maxPerFrame, tokens per second, burst, queue capacity
+        NAVIGATION(1, 4, 2, 8),
+        UI(1, 5, 2, 8),
+        BATCH(1, 10, 4, 16),
+        SCRIPT(8, 60, 30, 256);
+
+        final int maxPerFrame;
+        final double tokensPerSecond;
+        final double burst;
+        final int capacity;
+
+        Lane(int maxPerFrame, double tokensPerSecond, double burst, int capacity) {
+            this.maxPerFrame = maxPerFrame;
+            this.tokensPerSecond = tokensPerSecond;
+            this.burst = burst;
+            this.capacity = capacity;
+        }
+    }
+
+    public enum Coalesce {
+        // Always queue
+        NONE,
+        // A newer command with the same key replaces the pending one (e.g. load_url)
+        REPLACE,
+        // Two pending commands with the same key cancel out (e.g. toggle_navigation)
+        CANCEL_PAIR
+    }
+
+    public interface Command {
+        // Runs on the frame thread (the UI thread in the app)
+        void execute();
+
+        // Called instead of execute() when the command was coalesced away or evicted
+        void onDropped(String reason);
+
+        // Called instead of execute() on both commands of a CANCEL_PAIR; together they had
+        // no effect, which is not a failure unless the command says otherwise
+        default void onCancelled() {
+            onDropped("cancelled by a matching command");
+        }
+    }
+
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    // Source of frame callbacks; the app uses Choreographer
+    public interface FrameSource {
+        void postFrameCallback(FrameCallback callback);
+    }
+
+    private static final class Pending {
+        final String key;
+        final Command command;
+
+        Pending(String key, Command command) {
+            this.key = key;
+            this.command = command;
+        }
+    }
+
+    private static final class LaneState {
+        final Lane lane;
+        final ArrayDeque<Pending> queue = new ArrayDeque<>();
+        double tokens;
+        long lastRefillNanos;
+
+        LaneState(Lane lane) {
+            this.lane = lane;
+            this.tokens = lane.burst;
+        }
+    }
+
+    private final FrameSource frameSource;
+    private final FrameCallback frameCallback = this::doFrame;
+    private final LaneState[] lanes;
+    private boolean frameRequested = false;
+    private boolean shutdown = false;
+
+    public CastCommandScheduler(FrameSource frameSource) {
+        this.frameSource = frameSource;
+        Lane[] values = Lane.values();
+        this.lanes = new LaneState[values.length];
+        for (int i = 0; i < values.length; i++) {
+            lanes[i] = new LaneState(values[i]);
+        }
+    }
+
+    public void submit(Lane lane, Command command) {
+        submit(lane, null, Coalesce.NONE, command);
+    }
+
+    // Safe to call from any thread
+    public void submit(Lane lane, String key, Coalesce coalesce, Command command) {
+        Command dropped = null;
+        String dropReason = null;
+        Command cancelled = null;
+        Command pair = null;
+        synchronized (this) {
+            if (shutdown) {
+                dropped = command;
+                dropReason = "scheduler stopped";
+            } else {
+                LaneState state = lanes[lane.ordinal()];
+                Pending existing = coalesce != Coalesce.NONE ? removePending(state, key) : null;
+
+                if (existing != null && coalesce == Coalesce.CANCEL_PAIR) {
+                    pair = existing.command;
+                } else {
+                    if (existing != null) {
+                        cancelled = existing.command;
+                    }
+                    if (state.queue.size() >= lane.capacity) {
+                        Pending oldest = state.queue.pollFirst();
+                        dropped = oldest.command;
+                        dropReason = "lane overflow";
+                    }
+                    state.queue.addLast(new Pending(key, command));
+                    requestFrameLocked();
+                }
+            }
+        }
+        if (pair != null) {
+            pair.onCancelled();
+            command.onCancelled();
+        }
+        if (cancelled != null) {
+            cancelled.onDropped("superseded");
+        }
+        if (dropped != null) {
+            dropped.onDropped(dropReason);
+        }
+    }
+
+    public synchronized int getPendingCount(Lane lane) {
+        return lanes[lane.ordinal()].queue.size();
+    }
+
+    public synchronized int getPendingCount() {
+        int total = 0;
+        for (LaneState state : lanes) {
+            total += state.queue.size();
+        }
+        return total;
+    }
+
+    // Frame callback: run what the lanes' budgets allow, highest-priority lane first
+    public void doFrame(long frameTimeNanos) {
+        long start = System.nanoTime();
+        synchronized (this) {
+            frameRequested = false;
+            for (LaneState state : lanes) {
+                refill(state, frameTimeNanos);
+            }
+        }
+
+        boolean budgetLeft = true;
+        for (LaneState state : lanes) {
+            int ran = 0;
+            while (budgetLeft && ran < state.lane.maxPerFrame) {
+                Command command;
+                synchronized (this) {
+                    if (state.queue.isEmpty() || state.tokens < 1) {
+                        break;
+                    }
+                    state.tokens -= 1;
+                    command = state.queue.pollFirst().command;
+                }
+                command.execute();
+                ran++;
+                budgetLeft = System.nanoTime() - start < FRAME_BUDGET_NANOS;
+            }
+        }
+
+        synchronized (this) {
+            for (LaneState state : lanes) {
+                if (!state.queue.isEmpty()) {
+                    requestFrameLocked();
+                    break;
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        ArrayDeque<Pending> dropped = new ArrayDeque<>();
+        synchronized (this) {
+            shutdown = true;
+            for (LaneState state : lanes) {
+                dropped.addAll(state.queue);
+                state.queue.clear();
+            }
+        }
+        for (Pending pending : dropped) {
+            pending.command.onDropped("scheduler stopped");
+        }
+    }
+
+    private Pending removePending(LaneState state, String key) {
+        if (key == null) {
+            return null;
+        }
+        Iterator<Pending> it = state.queue.iterator();
+        while (it.hasNext()) {
+            Pending pending = it.next();
+            if (key.equals(pending.key)) {
+                it.remove();
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    private void refill(LaneState state, long nowNanos) {
+        if (state.lastRefillNanos == 0) {
+            state.lastRefillNanos = nowNanos;
+            return;
+        }
+        double elapsedSeconds = (nowNanos - state.lastRefillNanos) / 1e9;
+        if (elapsedSeconds > 0) {
+            state.tokens = Math.min(state.lane.burst, state.tokens + elapsedSeconds * state.lane.tokensPerSecond);
+            state.lastRefillNanos = nowNanos;
+        }
+    }
+
+    private void requestFrameLocked() {
+        if (!frameRequested && !shutdown) {
+            frameRequested = true;
+            frameSource.postFrameCallback(frameCallback);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import android.util.Log;
+
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Remote input, delivered to the host once per display frame. Senders may stream
+ * pointer moves and scrolls faster than the display refreshes (a phone touchpad at
+ * 120 Hz against a 60 Hz head unit), so consecutive moves from one sender collapse into
+ * the latest position and consecutive scrolls add up; downs, ups, taps and keys are
+ * never merged or reordered. Unlike commands, input skips the scheduler's lanes and
+ * rate limits: it is cheap to inject and late input is worse than none.
+ */
+public class CastInputQueue {
+    private static final String TAG = "CastInputQueue";
+    // Events waiting for one frame; with moves and scrolls merged only a flood gets here
+    static final int CAPACITY = 128;
+    private static final int POOL_SIZE = 32;
+
+    private final BrowserHost host;
+    private final CastCommandScheduler.FrameSource frameSource;
+    private final CastCommandScheduler.FrameCallback frameCallback = this::doFrame;
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+    // Guarded by this
+    private final ArrayDeque<RemoteInput> free = new ArrayDeque<>(POOL_SIZE);
+    private ArrayList<RemoteInput> pending = new ArrayList<>();
+    private boolean frameRequested = false;
+    private boolean shutdown = false;
+    // Only the frame thread touches this
+    private ArrayList<RemoteInput> injecting = new ArrayList<>();
+
+    public CastInputQueue(BrowserHost host, CastCommandScheduler.FrameSource frameSource) {
+        this.host = host;
+        this.frameSource = frameSource;
+    }
+
+    // A cleared event from the pool, stamped with its arrival time; fill it in and submit it
+    public synchronized RemoteInput obtain(RemoteInput.Kind kind, String sessionId, CastCommandReply reply) {
+        RemoteInput input = free.pollFirst();
+        if (input == null) {
+            input = new RemoteInput();
+        }
+        input.kind = kind;
+        input.sessionId = sessionId;
+        input.reply = reply;
+        input.receivedNanos = System.nanoTime();
+        return input;
+    }
+
+    // Safe to call from any thread; the event belongs to the queue from here on
+    public void submit(RemoteInput input) {
+        CastCommandReply coalesced = null;
+        CastCommandReply refused = null;
+        String refusedReason = null;
+        synchronized (this) {
+            RemoteInput last = pending.isEmpty() ? null : pending.get(pending.size() - 1);
+            if (shutdown) {
+                refused = input.reply;
+                refusedReason = "receiver stopped";
+                recycleLocked(input);
+            } else if (last != null && canMerge(last, input)) {
+                coalesced = merge(last, input);
+                recycleLocked(input);
+            } else if (pending.size() >= CAPACITY) {
+                refused = input.reply;
+                refusedReason = "input queue full";
+                recycleLocked(input);
+            } else {
+                pending.add(input);
+                if (!frameRequested) {
+                    frameRequested = true;
+                    frameSource.postFrameCallback(frameCallback);
+                }
+            }
+        }
+        if (coalesced != null) {
+            coalesced.success("Input coalesced");
+        }
+        if (refusedReason != null) {
+            metrics.counter(MetricsRegistry.INPUT_DROPPED).inc();
+            Log.d(TAG, "Dropped remote input: " + refusedReason);
+            if (refused != null) {
+                refused.error("Input dropped: " + refusedReason);
+            }
+        }
+    }
+
+    // Frame callback: everything that arrived since the last frame goes to the host, in order
+    public void doFrame(long frameTimeNanos) {
+        ArrayList<RemoteInput> batch;
+        synchronized (this) {
+            frameRequested = false;
+            batch = pending;
+            pending = injecting;
+        }
+        injecting = batch;
+
+        for (int i = 0; i < batch.size(); i++) {
+            RemoteInput input = batch.get(i);
+            boolean injected;
+            try {
+                injected = host.injectInput(input);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error injecting remote input", e);
+                injected = false;
+            }
+            if (injected) {
+                metrics.histogram(MetricsRegistry.INPUT_LATENCY_US).recordSinceNanos(input.receivedNanos);
+                metrics.counter(MetricsRegistry.INPUT_EVENTS).inc();
+            } else {
+                metrics.counter(MetricsRegistry.INPUT_DROPPED).inc();
+            }
+            if (input.reply != null) {
+                if (injected) {
+                    input.reply.success("Input injected");
+                } else {
+                    input.reply.error("Input not injected: no page on screen or unsupported key");
+                }
+            }
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < batch.size(); i++) {
+                recycleLocked(batch.get(i));
+            }
+        }
+        batch.clear();
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public void shutdown() {
+        ArrayList<RemoteInput> dropped;
+        synchronized (this) {
+            shutdown = true;
+            dropped = pending;
+            pending = new ArrayList<>();
+        }
+        for (RemoteInput input : dropped) {
+            if (input.reply != null) {
+                input.reply.error("Input dropped: receiver stopped");
+            }
+        }
+    }
+
+    // Only back-to-back moves or scrolls from the same sender merge, so order is kept
+    private static boolean canMerge(RemoteInput last, RemoteInput next) {
+        return last.kind == next.kind
+            && (next.kind == RemoteInput.Kind.POINTER_MOVE || next.kind == RemoteInput.Kind.SCROLL)
+            && last.sessionId != null && last.sessionId.equals(next.sessionId);
+    }
+
+    // Folds next into last; returns the reply of the frame that no longer stands on its own
+    private CastCommandReply merge(RemoteInput last, RemoteInput next) {
+        if (next.kind == RemoteInput.Kind.SCROLL) {
+            last.dx += next.dx;
+            last.dy += next.dy;
+        }
+        if (!Float.isNaN(next.x) && !Float.isNaN(next.y)) {
+            last.x = next.x;
+            last.y = next.y;
+        }
+        last.frames += next.frames;
+        last.receivedNanos = next.receivedNanos;
+        CastCommandReply superseded = last.reply;
+        last.reply = next.reply;
+        metrics.counter(MetricsRegistry.INPUT_COALESCED).inc();
+        return superseded;
+    }
+
+    private void recycleLocked(RemoteInput input) {
+        input.reset();
+        if (free.size() < POOL_SIZE) {
+            free.addFirst(input);
+        }
+    }
+}
@@ -5,13 +5,23 @@ import android.util.Log;
 import android.webkit.JavascriptInterface;
 import android.webkit.WebView;
 
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessageCodec;
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+
 import java.lang.ref.WeakReference;
 
+/**
+ * Legacy synchronous "CastReceiver" bridge. Every call blocks the page's JS thread on a
+ * binder hop, so new pages should use the MessagePort bridge (CastMessageBridge via
+ * riptide_bridge.js); this stays for pages that still call window.CastReceiver.
+ */
 public class CastJavaScriptInterface {
     private static final String TAG = "CastJSInterface";
     
     private Context context;
     private WeakReference<CastReceiverManager> castReceiverManagerRef;
+    // Bridge calls arrive on the WebView's JS binder threads; guarded by synchronizing on it
+    private final CastMessageCodec codec = new CastMessageCodec();
     
     public CastJavaScriptInterface(Context context, CastReceiverManager castReceiverManager) {
         this.context = context;
@@ -25,10 +35,11 @@ public class CastJavaScriptInterface {
         CastReceiverManager manager = castReceiverManagerRef.get();
         if (manager != null) {
             // Notify that the receiver HTML page is loaded and ready
-            manager.sendMessageToCastSender(
-                "urn:x-cast:com.adamucf.riptide", 
-                "{\"type\":\"receiver_page_ready\",\"timestamp\":" + System.currentTimeMillis() + "}"
-            );
+            String ready;
+            synchronized (codec) {
+                ready = codec.encodeEvent("receiver_page_ready", System.currentTimeMillis());
+            }
+            manager.sendMessageToCastSender("urn:x-cast:com.adamucf.riptide", ready);
         }
     }
     
@@ -39,19 +50,38 @@ public class CastJavaScriptInterface {
     
     @JavascriptInterface
     public String getCastStatus() {
-        try {
-            CastReceiverManager manager = castReceiverManagerRef.get();
-            if (manager != null && manager.isInitialized()) {
-                return "{\"status\":\"ready\",\"version\":\"2.0\",\"timestamp\":" + System.currentTimeMillis() + "}";
-            } else {
-                return "{\"status\":\"not_ready\",\"version\":\"2.0\",\"timestamp\":" + System.currentTimeMillis() + "}";
+        synchronized (codec) {
+            try {
+                CastReceiverManager manager = castReceiverManagerRef.get();
+                if (manager != null && manager.isInitialized()) {
+                    return codec.encodeBridgeStatus("ready", null, System.currentTimeMillis());
+                } else {
+                    return codec.encodeBridgeStatus("not_ready", null, System.currentTimeMillis());
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error getting cast status", e);
+                return codec.encodeBridgeStatus("error", String.valueOf(e.getMessage()), System.currentTimeMillis());
             }
+        }
+    }
+    
+    // Same snapshot the get_metrics cast command returns
+    @JavascriptInterface
+    public String getMetrics() {
+        try {
+            return MetricsRegistry.getDefault().toJson();
         } catch (Exception e) {
-            Log.e(TAG, "Error getting cast status", e);
-            return "{\"status\":\"error\",\"error\":\"" + e.getMessage() + "\",\"timestamp\":" + System.currentTimeMillis() + "}";
+            Log.e(TAG, "Error getting metrics", e);
+            return "{}";
         }
     }
     
+    // Round trip for bridge_benchmark.html
+    @JavascriptInterface
+    public String echo(String payload) {
+        return payload;
+    }
+    
     @JavascriptInterface
     public void sendCastMessage(String message) {
         Log.d(TAG, "Sending cast message from JavaScript: " + message);
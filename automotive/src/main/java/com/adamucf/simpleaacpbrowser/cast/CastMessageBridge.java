@@ -0,0 +1,184 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.webkit.WebView;
+
+import androidx.webkit.WebMessageCompat;
+import androidx.webkit.WebMessagePortCompat;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessageCodec;
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Asynchronous page bridge built on HTML MessagePorts, replacing the synchronous
+ * CastReceiver JavascriptInterface for pages that opt in (see riptide_bridge.js).
+ *
+ * Each loaded page gets two ports, handed over in one window message:
+ * - control: requests from the page as "op:payload" strings ("send", "ready", "status",
+ *   "metrics", "log", "echo"), answered in order on the same port. Where supported,
+ *   ArrayBuffer frames are accepted too: first byte 0x01 sends the UTF-8 remainder to
+ *   the cast sender, 0x02 echoes the frame back.
+ * - relay: every inbound cast message, posted verbatim with no re-encoding.
+ *
+ * Only the page on screen holds ports: attaching to another page closes the previous
+ * pair. Attach and detach run on the UI thread; relays may come from any thread.
+ */
+public class CastMessageBridge {
+    private static final String TAG = "CastMessageBridge";
+    private static final String CAST_NAMESPACE = "urn:x-cast:com.adamucf.riptide";
+    // First window message to the page; the suffix tells it whether binary frames work
+    private static final String HANDSHAKE = "riptide-bridge:";
+    private static final byte FRAME_SEND = 0x01;
+    private static final byte FRAME_ECHO = 0x02;
+
+    private final CastReceiverManager castReceiverManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CastMessageCodec codec = new CastMessageCodec();
+    private final boolean binarySupported;
+
+    // Local ends of the current page's channels; only touched on the UI thread
+    private WebMessagePortCompat controlPort;
+    private WebMessagePortCompat relayPort;
+
+    public CastMessageBridge(CastReceiverManager castReceiverManager) {
+        this.castReceiverManager = castReceiverManager;
+        this.binarySupported = WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_ARRAY_BUFFER);
+    }
+
+    public static boolean isSupported() {
+        return WebViewFeature.isFeatureSupported(WebViewFeature.CREATE_WEB_MESSAGE_CHANNEL)
+            && WebViewFeature.isFeatureSupported(WebViewFeature.POST_WEB_MESSAGE)
+            && WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_PORT_SET_MESSAGE_CALLBACK)
+            && WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_PORT_POST_MESSAGE);
+    }
+
+    // Hands fresh ports to the page on screen; targetOrigin limits who may receive them
+    public void attach(WebView webView, Uri targetOrigin) {
+        detach();
+        if (!isSupported()) {
+            Log.d(TAG, "WebMessagePort not supported; pages must use the CastReceiver interface");
+            return;
+        }
+        try {
+            WebMessagePortCompat[] control = WebViewCompat.createWebMessageChannel(webView);
+            WebMessagePortCompat[] relay = WebViewCompat.createWebMessageChannel(webView);
+            controlPort = control[0];
+            relayPort = relay[0];
+            controlPort.setWebMessageCallback(mainHandler, new WebMessagePortCompat.WebMessageCallbackCompat() {
+                @Override
+                public void onMessage(WebMessagePortCompat port, WebMessageCompat message) {
+                    onControlMessage(port, message);
+                }
+            });
+
+            String handshake = HANDSHAKE + (binarySupported ? "binary" : "text");
+            WebViewCompat.postWebMessage(webView,
+                new WebMessageCompat(handshake, new WebMessagePortCompat[] { control[1], relay[1] }),
+                targetOrigin);
+            Log.d(TAG, "Message bridge attached");
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to attach message bridge", e);
+            detach();
+        }
+    }
+
+    public void detach() {
+        if (controlPort != null) {
+            controlPort.close();
+            controlPort = null;
+        }
+        if (relayPort != null) {
+            relayPort.close();
+            relayPort = null;
+        }
+    }
+
+    // Forwards an inbound cast message to the page as-is
+    public void relayCastMessage(String message) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(() -> relayCastMessage(message));
+            return;
+        }
+        WebMessagePortCompat port = relayPort;
+        if (port != null) {
+            try {
+                port.postMessage(new WebMessageCompat(message));
+            } catch (Exception e) {
+                Log.e(TAG, "Error relaying cast message", e);
+            }
+        }
+    }
+
+    private void onControlMessage(WebMessagePortCompat port, WebMessageCompat message) {
+        try {
+            if (message.getType() == WebMessageCompat.TYPE_ARRAY_BUFFER) {
+                onBinaryFrame(port, message.getArrayBuffer());
+                return;
+            }
+            String data = message.getData();
+            if (data == null) {
+                return;
+            }
+            int colon = data.indexOf(':');
+            String op = colon < 0 ? data : data.substring(0, colon);
+            String payload = colon < 0 ? "" : data.substring(colon + 1);
+
+            switch (op) {
+                case "send":
+                    castReceiverManager.sendMessageToCastSender(CAST_NAMESPACE, payload);
+                    break;
+
+                case "ready":
+                    castReceiverManager.sendMessageToCastSender(CAST_NAMESPACE,
+                        codec.encodeEvent("receiver_page_ready", System.currentTimeMillis()));
+                    break;
+
+                case "status":
+                    String status = castReceiverManager.isInitialized() ? "ready" : "not_ready";
+                    port.postMessage(new WebMessageCompat("status:"
+                        + codec.encodeBridgeStatus(status, null, System.currentTimeMillis())));
+                    break;
+
+                case "metrics":
+                    port.postMessage(new WebMessageCompat("metrics:" + MetricsRegistry.getDefault().toJson()));
+                    break;
+
+                case "echo":
+                    // Round trip for bridge_benchmark.html; the original string goes back untouched
+                    port.postMessage(message);
+                    break;
+
+                case "log":
+                    Log.d(TAG, "JavaScript log: " + payload);
+                    break;
+
+                default:
+                    Log.w(TAG, "Unknown bridge op: " + op);
+                    break;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error handling bridge message", e);
+        }
+    }
+
+    private void onBinaryFrame(WebMessagePortCompat port, byte[] frame) {
+        if (frame.length == 0) {
+            return;
+        }
+        if (frame[0] == FRAME_SEND) {
+            String json = new String(frame, 1, frame.length - 1, StandardCharsets.UTF_8);
+            castReceiverManager.sendMessageToCastSender(CAST_NAMESPACE, json);
+        } else if (frame[0] == FRAME_ECHO) {
+            port.postMessage(new WebMessageCompat(frame));
+        } else {
+            Log.w(TAG, "Unknown binary bridge frame: " + frame[0]);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import android.util.Log;
+
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Outbound side of the cast channel. Callers enqueue and return immediately; a single
+ * writer thread drains the queue, bundles consecutive ack/status frames into one
+ * envelope, limits how many sends are in flight, and holds messages (up to their TTL)
+ * while the session is suspended. Messages go out in the order they were enqueued, except
+ * that a failed send is retried after any that were in flight alongside it.
+ */
+public class CastMessageDispatcher {
+    private static final String TAG = "CastMessageDispatcher";
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    public static final int DEFAULT_MAX_BUNDLE = 16;
+    public static final long DEFAULT_TTL_MS = 10000;
+    private static final long IN_FLIGHT_WAIT_MS = 500;
+
+    public enum Result {
+        DELIVERED,
+        FAILED,
+        EXPIRED,
+        QUEUE_FULL,
+        NO_SESSION
+    }
+
+    public interface DeliveryListener {
+        void onResult(Result result);
+    }
+
+    public interface SendCallback {
+        void onComplete(boolean success);
+    }
+
+    // Actual wire send; must call back exactly once
+    public interface Channel {
+        void send(String namespace, String message, SendCallback callback) throws Exception;
+    }
+
+    // A channel that also carries binary frames (the Cast channel is text only)
+    public interface BinaryChannel extends Channel {
+        void sendBinary(String namespace, byte[] message, SendCallback callback) throws Exception;
+    }
+
+    private static final class Outbound {
+        final String namespace;
+        final String payload;
+        // Set instead of payload for a binary frame; those are never bundled
+        final byte[] binary;
+        final boolean coalescable;
+        final long expiresAt;
+        final DeliveryListener listener;
+
+        Outbound(String namespace, String payload, byte[] binary, boolean coalescable, long expiresAt,
+                 DeliveryListener listener) {
+            this.namespace = namespace;
+            this.payload = payload;
+            this.binary = binary;
+            this.coalescable = coalescable && binary == null;
+            this.expiresAt = expiresAt;
+            this.listener = listener;
+        }
+    }
+
+    private final Channel channel;
+    private final int capacity;
+    private final int maxBundle;
+    private final long ttlMs;
+    private final Semaphore inFlight;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private final ArrayDeque<Outbound> queue = new ArrayDeque<>();
+    private final StringBuilder envelope = new StringBuilder(1024);
+    private boolean connected = false;
+    private volatile boolean running = true;
+    private final Thread writer;
+
+    public CastMessageDispatcher(Channel channel) {
+        this(channel, DEFAULT_CAPACITY, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_BUNDLE, DEFAULT_TTL_MS);
+    }
+
+    public CastMessageDispatcher(Channel channel, int capacity, int maxInFlight, int maxBundle, long ttlMs) {
+        this.channel = channel;
+        this.capacity = capacity;
+        this.maxBundle = maxBundle;
+        this.ttlMs = ttlMs;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.writer = new Thread(this::writerLoop, "CastOutbound");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Reports QUEUE_FULL instead of waiting for room, so it is safe from the main thread
+    public boolean enqueue(String namespace, String payload, boolean coalescable, DeliveryListener listener) {
+        return offer(new Outbound(namespace, payload, null, coalescable, System.currentTimeMillis() + ttlMs, listener));
+    }
+
+    // Non-blocking, like enqueue; fails at once unless the channel carries binary frames
+    public boolean enqueueBinary(String namespace, byte[] payload, DeliveryListener listener) {
+        Outbound outbound = new Outbound(namespace, null, payload, false, System.currentTimeMillis() + ttlMs, listener);
+        if (!supportsBinary()) {
+            notify(outbound, Result.FAILED);
+            return false;
+        }
+        return offer(outbound);
+    }
+
+    public boolean supportsBinary() {
+        return channel instanceof BinaryChannel;
+    }
+
+    private boolean offer(Outbound outbound) {
+        lock.lock();
+        try {
+            if (!running || queue.size() >= capacity) {
+                notify(outbound, Result.QUEUE_FULL);
+                return false;
+            }
+            queue.addLast(outbound);
+            ready.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Session connected/resumed (true) or suspended (false); suspended keeps the buffer
+    public void setConnected(boolean connected) {
+        lock.lock();
+        try {
+            this.connected = connected;
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Session ended: nothing queued can be delivered any more
+    public void failPending(Result result) {
+        List<Outbound> dropped;
+        lock.lock();
+        try {
+            dropped = new ArrayList<>(queue);
+            queue.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (Outbound outbound : dropped) {
+            notify(outbound, result);
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        writer.interrupt();
+        failPending(Result.NO_SESSION);
+    }
+
+    private void writerLoop() {
+        List<Outbound> batch = new ArrayList<>(maxBundle);
+        while (running) {
+            try {
+                batch.clear();
+                takeBatch(batch);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                // Backpressure: a slow sender holds permits, so the queue fills and producers see it
+                while (!inFlight.tryAcquire(IN_FLIGHT_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                    if (!running) {
+                        return;
+                    }
+                }
+                send(new ArrayList<>(batch));
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void takeBatch(List<Outbound> batch) throws InterruptedException {
+        List<Outbound> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            while (running) {
+                long nextExpiry = dropExpired(expired);
+                if (!expired.isEmpty()) {
+                    return; // Report expiries now; the writer loop comes straight back
+                }
+                if (connected && !queue.isEmpty()) {
+                    break;
+                }
+                // While suspended, wake up when the oldest buffered message is due to expire
+                long waitMs = queue.isEmpty() ? ttlMs : Math.max(1, nextExpiry - System.currentTimeMillis());
+                ready.await(waitMs, TimeUnit.MILLISECONDS);
+            }
+            if (!running) {
+                return;
+            }
+
+            Outbound head = queue.pollFirst();
+            batch.add(head);
+            if (head.coalescable) {
+                while (batch.size() < maxBundle) {
+                    Outbound next = queue.peekFirst();
+                    if (next == null || !next.coalescable || !next.namespace.equals(head.namespace)) {
+                        break;
+                    }
+                    batch.add(queue.pollFirst());
+                }
+            }
+        } finally {
+            lock.unlock();
+            for (Outbound outbound : expired) {
+                notify(outbound, Result.EXPIRED);
+            }
+        }
+    }
+
+    // Returns the earliest expiry among the messages still queued
+    private long dropExpired(List<Outbound> expired) {
+        long now = System.currentTimeMillis();
+        long nextExpiry = Long.MAX_VALUE;
+        Iterator<Outbound> it = queue.iterator();
+        while (it.hasNext()) {
+            Outbound outbound = it.next();
+            if (outbound.expiresAt <= now) {
+                it.remove();
+                expired.add(outbound);
+            } else if (outbound.expiresAt < nextExpiry) {
+                nextExpiry = outbound.expiresAt;
+            }
+        }
+        return nextExpiry;
+    }
+
+    private void send(final List<Outbound> batch) {
+        Outbound head = batch.get(0);
+        SendCallback callback = success -> {
+            if (success) {
+                inFlight.release();
+                for (Outbound outbound : batch) {
+                    notify(outbound, Result.DELIVERED);
+                }
+            } else {
+                // Requeue before releasing the permit so the writer can't take what was behind it first
+                requeueOrFail(batch);
+                inFlight.release();
+            }
+        };
+        try {
+            if (head.binary != null) {
+                // Only queued when the channel is a BinaryChannel (see enqueueBinary)
+                ((BinaryChannel) channel).sendBinary(head.namespace, head.binary, callback);
+            } else {
+                channel.send(head.namespace, batch.size() == 1 ? head.payload : buildEnvelope(batch), callback);
+            }
+        } catch (Exception e) {
+            requeueOrFail(batch);
+            inFlight.release();
+        }
+    }
+
+    // A send that failed because the session dropped goes back to the front of the buffer.
+    // Sends that were already in flight behind it may still land first, so replies keep
+    // their order only while sends succeed.
+    private void requeueOrFail(List<Outbound> batch) {
+        List<Outbound> failed = new ArrayList<>();
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                Outbound outbound = batch.get(i);
+                if (!connected && running && outbound.expiresAt > now) {
+                    queue.addFirst(outbound);
+                } else {
+                    failed.add(outbound);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Outbound outbound : failed) {
+            notify(outbound, Result.FAILED);
+        }
+    }
+
+    // Only the writer thread builds envelopes, so the buffer can be reused
+    private String buildEnvelope(List<Outbound> batch) {
+        envelope.setLength(0);
+        envelope.append("{\"type\":\"bundle\",\"messages\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                envelope.append(',');
+            }
+            envelope.append(batch.get(i).payload);
+        }
+        envelope.append("]}");
+        return envelope.toString();
+    }
+
+    // Every undelivered frame is counted and logged, whether or not anyone listens for it
+    private static void notify(Outbound outbound, Result result) {
+        if (result != Result.DELIVERED) {
+            MetricsRegistry.getDefault().counter(MetricsRegistry.OUTBOUND_DROPPED).inc();
+            Log.d(TAG, "Outbound cast message not delivered: " + result);
+        }
+        if (outbound.listener != null) {
+            try {
+                outbound.listener.onResult(result);
+            } catch (RuntimeException ignored) {
+                // A misbehaving listener must not kill the writer thread
+            }
+        }
+    }
+}
@@ -1,182 +1,519 @@
 package com.adamucf.simpleaacpbrowser.cast;
 
 import android.util.Log;
-import org.json.JSONException;
-import org.json.JSONObject;
+
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastCborCodec;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessage;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessageCodec;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastProtocolException;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastReplyEncoder;
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+import com.adamucf.simpleaacpbrowser.web.SessionJournal;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class CastMessageHandler {
     private static final String TAG = "CastMessageHandler";
-    
-    private CastReceiverManager castReceiverManager;
-    
-    public CastMessageHandler(CastReceiverManager castReceiverManager) {
-        this.castReceiverManager = castReceiverManager;
-    }
-    
-    public void handleMessage(String namespace, String message) {
-        Log.d(TAG, "Received cast message: " + message);
-        
+    private static final String CAST_NAMESPACE = "urn:x-cast:com.adamucf.riptide";
+    private static final String ENCODING_JSON = "json";
+    private static final String ENCODING_CBOR = "cbor";
+    // receiver_ready for senders that can only take JSON, and for those that may switch to CBOR
+    private static final String RECEIVER_READY = "{\"type\":\"receiver_ready\"}";
+    private static final String RECEIVER_READY_BINARY =
+        "{\"type\":\"receiver_ready\",\"encodings\":[\"" + ENCODING_JSON + "\",\"" + ENCODING_CBOR + "\"]}";
+
+    // Where commands run and where frames come from and replies go: in the app both are
+    // backed by CastReceiverManager, in JVM tests by in-memory implementations
+    private final CastCommandExecutor executor;
+    private final CastTransport transport;
+
+    // Inbound frames are handled one at a time (the transport orders every session's frames
+    // into one stream), but replies complete later on the UI thread, so codec use is
+    // guarded by synchronizing on it; the CBOR codec shares that lock
+    private final CastMessageCodec codec = new CastMessageCodec();
+    private final CastCborCodec cbor = new CastCborCodec();
+    // Sessions that switched their replies to CBOR with set_encoding; the rest get JSON
+    private final Set<String> binarySessions = ConcurrentHashMap.newKeySet();
+    private final CastMessage inbound = new CastMessage();
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    // Commands with an id stay open in the journal until they are answered
+    private final SessionJournal journal;
+
+    public CastMessageHandler(CastCommandExecutor executor, CastTransport transport, SessionJournal journal) {
+        this.executor = executor;
+        this.transport = transport;
+        this.journal = journal;
+        transport.setListener(new CastTransport.Listener() {
+            @Override
+            public void onMessage(String sessionId, String namespace, String message) {
+                handleMessage(sessionId, namespace, message);
+            }
+
+            @Override
+            public void onBinaryMessage(String sessionId, String namespace, byte[] message) {
+                handleBinaryMessage(sessionId, namespace, message);
+            }
+        });
+    }
+
+    /**
+     * Handles one frame from the given session; its replies go back to that session only.
+     * Not reentrant: the transport calls it for one frame at a time, from any thread.
+     */
+    public void handleMessage(String sessionId, String namespace, String message) {
+        // Pointer streams arrive every frame; only build the line when it will be printed
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Received cast message: " + message);
+        }
+        metrics.counter(MetricsRegistry.INBOUND_MESSAGES).inc();
+
+        CastMessage castMessage;
+        try {
+            synchronized (codec) {
+                long parseStart = System.nanoTime();
+                castMessage = codec.decode(message, inbound);
+                metrics.histogram(MetricsRegistry.PARSE_TIME_US).recordSinceNanos(parseStart);
+            }
+        } catch (CastProtocolException | RuntimeException e) {
+            // Unchecked too: a frame that trips the decoder must not take the receiver down
+            Log.e(TAG, "Failed to parse cast message JSON", e);
+            metrics.counter(MetricsRegistry.INVALID_MESSAGES).inc();
+            sendErrorResponse(sessionId, null, "Invalid JSON format");
+            return;
+        }
+        dispatch(sessionId, castMessage);
+    }
+
+    /**
+     * Handles one CBOR frame; same contract as {@link #handleMessage}. Binary frames are
+     * accepted from any session that can send them, but replies use the session's
+     * negotiated encoding.
+     */
+    public void handleBinaryMessage(String sessionId, String namespace, byte[] message) {
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Received binary cast message: " + message.length + " bytes");
+        }
+        metrics.counter(MetricsRegistry.INBOUND_MESSAGES).inc();
+
+        CastMessage castMessage;
         try {
-            JSONObject jsonMessage = new JSONObject(message);
-            String type = jsonMessage.optString("type", "");
-            
-            switch (type) {
-                case "load_url":
-                    handleLoadUrl(jsonMessage);
+            synchronized (codec) {
+                long parseStart = System.nanoTime();
+                castMessage = cbor.decode(message, inbound);
+                metrics.histogram(MetricsRegistry.PARSE_TIME_US).recordSinceNanos(parseStart);
+            }
+        } catch (CastProtocolException | RuntimeException e) {
+            // Unchecked too: a frame that trips the decoder must not take the receiver down
+            Log.e(TAG, "Failed to parse binary cast message", e);
+            metrics.counter(MetricsRegistry.INVALID_MESSAGES).inc();
+            sendErrorResponse(sessionId, null, "Invalid CBOR format");
+            return;
+        }
+        dispatch(sessionId, castMessage);
+    }
+
+    // Everything past decoding is shared by both wire formats
+    private void dispatch(String sessionId, CastMessage castMessage) {
+        if (isInput(castMessage.type)) {
+            handleInput(sessionId, castMessage);
+            return;
+        }
+
+        // Each command completes independently, so many can be in flight at once
+        Reply reply = new Reply(sessionId, castMessage.requestId);
+        if (castMessage.requestId != null && completesLater(castMessage.type)) {
+            journal.recordCommandStarted(sessionId, castMessage.requestId, castMessage.typeName);
+        }
+        try {
+            switch (castMessage.type) {
+                case LOAD_URL:
+                    handleLoadUrl(castMessage, reply);
+                    break;
+
+                case PREFETCH_URL:
+                    handlePrefetchUrl(castMessage, reply);
+                    break;
+
+                case EXECUTE_JS:
+                    handleExecuteJavaScript(castMessage, reply);
+                    break;
+
+                case TOGGLE_NAVIGATION:
+                    handleToggleNavigation(castMessage, reply);
                     break;
-                    
-                case "execute_js":
-                    handleExecuteJavaScript(jsonMessage);
+
+                case GET_STATUS:
+                    handleGetStatus(sessionId, castMessage);
                     break;
-                    
-                case "toggle_navigation":
-                    handleToggleNavigation(jsonMessage);
+
+                case PING:
+                    handlePing(sessionId, castMessage);
                     break;
-                    
-                case "get_status":
-                    handleGetStatus(jsonMessage);
+
+                case GET_METRICS:
+                    handleGetMetrics(sessionId, castMessage);
                     break;
-                    
-                case "ping":
-                    handlePing(jsonMessage);
+
+                case BATCH:
+                    handleBatch(sessionId, castMessage, reply);
                     break;
-                    
+
+                case SET_ENCODING:
+                    handleSetEncoding(sessionId, castMessage, reply);
+                    break;
+
                 default:
-                    Log.w(TAG, "Unknown message type: " + type);
-                    sendErrorResponse("Unknown message type: " + type);
+                    Log.w(TAG, "Unknown message type: " + castMessage.typeName);
+                    reply.error("Unknown message type: " + castMessage.typeName);
                     break;
             }
-            
-        } catch (JSONException e) {
-            Log.e(TAG, "Failed to parse cast message JSON", e);
-            sendErrorResponse("Invalid JSON format");
+
         } catch (Exception e) {
             Log.e(TAG, "Error handling cast message", e);
-            sendErrorResponse("Internal error: " + e.getMessage());
+            reply.error("Internal error: " + e.getMessage());
         }
     }
-    
-    private void handleLoadUrl(JSONObject message) {
-        try {
-            String url = message.getString("url");
-            
-            if (url != null && !url.trim().isEmpty()) {
-                castReceiverManager.loadUrlFromCast(url);
-                sendSuccessResponse("URL loaded successfully");
+
+    // Commands answered after the work is done, rather than within handleMessage
+    private static boolean completesLater(CastMessage.Type type) {
+        switch (type) {
+            case LOAD_URL:
+            case PREFETCH_URL:
+            case EXECUTE_JS:
+            case TOGGLE_NAVIGATION:
+            case BATCH:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isInput(CastMessage.Type type) {
+        switch (type) {
+            case POINTER:
+            case TAP:
+            case SCROLL:
+            case KEY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Input streams are fire-and-forget: only events that carry an id are acked (once
+    // injected), so a 120 Hz stream doesn't double the traffic. Invalid events always get
+    // an error. Nothing here allocates per event unless it carries an id.
+    private void handleInput(String sessionId, CastMessage message) {
+        RemoteInput.Kind kind = inputKind(message);
+        if (kind == null) {
+            sendErrorResponse(sessionId, message.requestId, "Invalid " + message.typeName + " action: " + message.action);
+            return;
+        }
+        boolean positioned = isFraction(message.x) && isFraction(message.y);
+        boolean needsPosition = kind == RemoteInput.Kind.POINTER_DOWN || kind == RemoteInput.Kind.POINTER_MOVE
+            || kind == RemoteInput.Kind.TAP;
+        if (needsPosition && !positioned) {
+            sendErrorResponse(sessionId, message.requestId, "x and y must be numbers from 0 to 1");
+            return;
+        }
+        if (kind == RemoteInput.Kind.SCROLL && (!Double.isFinite(message.dx) || !Double.isFinite(message.dy)
+                || (message.dx == 0 && message.dy == 0))) {
+            sendErrorResponse(sessionId, message.requestId, "Scroll requires a non-zero dx or dy");
+            return;
+        }
+        if (isKey(kind) && (message.key == null || message.key.isEmpty())) {
+            sendErrorResponse(sessionId, message.requestId, "Key parameter is required");
+            return;
+        }
+
+        CastCommandReply reply = message.requestId != null ? new Reply(sessionId, message.requestId) : null;
+        RemoteInput input = executor.obtainInput(kind, sessionId, reply);
+        if (positioned) {
+            input.x = (float) message.x;
+            input.y = (float) message.y;
+        }
+        if (kind == RemoteInput.Kind.SCROLL) {
+            input.dx = (float) message.dx;
+            input.dy = (float) message.dy;
+        } else if (isKey(kind)) {
+            input.key = message.key;
+        }
+        executor.submitInput(input);
+    }
+
+    // Null for an action the type doesn't have
+    private static RemoteInput.Kind inputKind(CastMessage message) {
+        String action = message.action;
+        switch (message.type) {
+            case POINTER:
+                if ("move".equals(action)) {
+                    return RemoteInput.Kind.POINTER_MOVE;
+                } else if ("down".equals(action)) {
+                    return RemoteInput.Kind.POINTER_DOWN;
+                } else if ("up".equals(action)) {
+                    return RemoteInput.Kind.POINTER_UP;
+                } else if ("cancel".equals(action)) {
+                    return RemoteInput.Kind.POINTER_CANCEL;
+                }
+                return null;
+            case TAP:
+                return action == null ? RemoteInput.Kind.TAP : null;
+            case SCROLL:
+                return action == null ? RemoteInput.Kind.SCROLL : null;
+            case KEY:
+                if (action == null || "press".equals(action)) {
+                    return RemoteInput.Kind.KEY_PRESS;
+                } else if ("down".equals(action)) {
+                    return RemoteInput.Kind.KEY_DOWN;
+                } else if ("up".equals(action)) {
+                    return RemoteInput.Kind.KEY_UP;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isKey(RemoteInput.Kind kind) {
+        return kind == RemoteInput.Kind.KEY_PRESS || kind == RemoteInput.Kind.KEY_DOWN || kind == RemoteInput.Kind.KEY_UP;
+    }
+
+    private static boolean isFraction(double value) {
+        return value >= 0 && value <= 1;
+    }
+
+    // Acked once the WebView has finished loading the page
+    private void handleLoadUrl(CastMessage message, CastCommandReply reply) {
+        String url = message.url;
+
+        if (url == null) {
+            reply.error("Missing or invalid URL parameter");
+        } else if (!url.trim().isEmpty()) {
+            executor.loadUrl(url, reply);
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
                 Log.d(TAG, "Handled load_url: " + url);
-            } else {
-                sendErrorResponse("URL parameter is required");
             }
-            
-        } catch (JSONException e) {
-            sendErrorResponse("Missing or invalid URL parameter");
+        } else {
+            reply.error("URL parameter is required");
         }
     }
-    
-    private void handleExecuteJavaScript(JSONObject message) {
-        try {
-            String javascript = message.getString("javascript");
-            
-            if (javascript != null && !javascript.trim().isEmpty()) {
-                castReceiverManager.executeJavaScriptFromCast(javascript);
-                sendSuccessResponse("JavaScript executed successfully");
+
+    // Acked as soon as the page starts loading off screen; a later load_url of the same URL swaps it in
+    private void handlePrefetchUrl(CastMessage message, CastCommandReply reply) {
+        String url = message.url;
+
+        if (url == null) {
+            reply.error("Missing or invalid URL parameter");
+        } else if (!url.trim().isEmpty()) {
+            executor.prefetchUrl(url, reply);
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Handled prefetch_url: " + url);
+            }
+        } else {
+            reply.error("URL parameter is required");
+        }
+    }
+
+    // Acked with the evaluateJavascript result once the script has run
+    private void handleExecuteJavaScript(CastMessage message, CastCommandReply reply) {
+        String javascript = message.javascript;
+
+        if (javascript == null) {
+            reply.error("Missing or invalid JavaScript parameter");
+        } else if (!javascript.trim().isEmpty()) {
+            executor.executeJavaScript(javascript, reply);
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
                 Log.d(TAG, "Handled execute_js: " + javascript);
-            } else {
-                sendErrorResponse("JavaScript parameter is required");
             }
-            
-        } catch (JSONException e) {
-            sendErrorResponse("Missing or invalid JavaScript parameter");
+        } else {
+            reply.error("JavaScript parameter is required");
         }
     }
-    
-    private void handleToggleNavigation(JSONObject message) {
-        castReceiverManager.toggleNavigationFromCast();
-        sendSuccessResponse("Navigation toggled successfully");
-        Log.d(TAG, "Handled toggle_navigation");
+
+    private void handleToggleNavigation(CastMessage message, CastCommandReply reply) {
+        executor.toggleNavigation(reply);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Handled toggle_navigation");
+        }
     }
-    
-    private void handleGetStatus(JSONObject message) {
-        try {
-            JSONObject status = new JSONObject();
-            status.put("type", "status_response");
-            status.put("receiver_ready", true);
-            status.put("version", "2.0");
-            status.put("app_name", "Riptide");
-            status.put("distraction_optimized", true);
-            status.put("immersive_mode", true);
-            status.put("enhanced_navigation", true);
-            status.put("cast_status_page", true);
-            status.put("timestamp", System.currentTimeMillis());
-            
-            castReceiverManager.sendMessageToCastSender(
-                "urn:x-cast:com.adamucf.riptide", 
-                status.toString()
-            );
+
+    private void handleGetStatus(String sessionId, CastMessage message) {
+        Object status;
+        synchronized (codec) {
+            status = encoderFor(sessionId).encodeStatus(message.requestId, System.currentTimeMillis());
+        }
+        sendFrame(sessionId, status, true);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
             Log.d(TAG, "Handled get_status");
-            
-        } catch (JSONException e) {
-            Log.e(TAG, "Failed to create status response", e);
-            sendErrorResponse("Failed to create status response");
         }
     }
-    
-    private void handlePing(JSONObject message) {
-        try {
-            JSONObject pong = new JSONObject();
-            pong.put("type", "pong");
-            pong.put("timestamp", System.currentTimeMillis());
-            
-            // Echo back any additional data from ping
-            if (message.has("data")) {
-                pong.put("data", message.get("data"));
-            }
-            
-            castReceiverManager.sendMessageToCastSender(
-                "urn:x-cast:com.adamucf.riptide", 
-                pong.toString()
-            );
+
+    private void handleGetMetrics(String sessionId, CastMessage message) {
+        String snapshot = metrics.toJson();
+        Object response;
+        synchronized (codec) {
+            response = encoderFor(sessionId).encodeMetrics(message.requestId, snapshot, System.currentTimeMillis());
+        }
+        sendFrame(sessionId, response, true);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Handled get_metrics");
+        }
+    }
+
+    private void handlePing(String sessionId, CastMessage message) {
+        // Echo back any additional data from ping, verbatim
+        Object pong;
+        synchronized (codec) {
+            pong = encoderFor(sessionId).encodePong(message.requestId, message.rawData, System.currentTimeMillis());
+        }
+        sendFrame(sessionId, pong, true);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
             Log.d(TAG, "Handled ping");
-            
-        } catch (JSONException e) {
-            Log.e(TAG, "Failed to create pong response", e);
-            sendErrorResponse("Failed to create pong response");
         }
     }
-    
-    private void sendSuccessResponse(String message) {
-        try {
-            JSONObject response = new JSONObject();
-            response.put("type", "response");
-            response.put("status", "success");
-            response.put("message", message);
-            response.put("timestamp", System.currentTimeMillis());
-            
-            castReceiverManager.sendMessageToCastSender(
-                "urn:x-cast:com.adamucf.riptide", 
-                response.toString()
-            );
-            
-        } catch (JSONException e) {
-            Log.e(TAG, "Failed to create success response", e);
-        }
-    }
-    
-    private void sendErrorResponse(String error) {
-        try {
-            JSONObject response = new JSONObject();
-            response.put("type", "response");
-            response.put("status", "error");
-            response.put("error", error);
-            response.put("timestamp", System.currentTimeMillis());
-            
-            castReceiverManager.sendMessageToCastSender(
-                "urn:x-cast:com.adamucf.riptide", 
-                response.toString()
-            );
-            
-        } catch (JSONException e) {
-            Log.e(TAG, "Failed to create error response", e);
+
+    // One batch_result frame carries every sub-command's outcome, in order
+    private void handleBatch(String sessionId, CastMessage message, CastCommandReply reply) {
+        List<CastMessage> commands = message.commands;
+        if (commands == null || commands.isEmpty()) {
+            reply.error("Batch requires a non-empty commands array");
+            return;
+        }
+
+        // The inbound message is reused by the next decode, so keep only what the batch needs
+        final String requestId = message.requestId;
+        executor.runBatch(commands, message.stopOnError, results -> {
+            Object response;
+            synchronized (codec) {
+                response = encoderFor(sessionId).encodeBatchResult(requestId, results, System.currentTimeMillis());
+            }
+            sendFrame(sessionId, response, false);
+            if (requestId != null) {
+                journal.recordCommandFinished(sessionId, requestId);
+            }
+        });
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Handled batch of " + commands.size() + " commands");
+        }
+    }
+
+    // Switches this session's replies, starting with the ack to this command; only
+    // senders whose channel carries binary frames may pick CBOR
+    private void handleSetEncoding(String sessionId, CastMessage message, CastCommandReply reply) {
+        String encoding = message.encoding;
+        if (ENCODING_JSON.equals(encoding)) {
+            binarySessions.remove(sessionId);
+            reply.success("Encoding set to " + ENCODING_JSON);
+        } else if (ENCODING_CBOR.equals(encoding) && transport.supportsBinary(sessionId)) {
+            binarySessions.add(sessionId);
+            reply.success("Encoding set to " + ENCODING_CBOR);
+        } else if (ENCODING_CBOR.equals(encoding)) {
+            reply.error("This connection cannot carry binary frames");
+        } else {
+            reply.error("Unsupported encoding: " + encoding);
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Handled set_encoding: " + encoding);
+        }
+    }
+
+    // First frame a new session gets; advertises CBOR where the channel could carry it
+    public void sendReceiverReady(String sessionId) {
+        transport.send(sessionId, CAST_NAMESPACE,
+            transport.supportsBinary(sessionId) ? RECEIVER_READY_BINARY : RECEIVER_READY);
+    }
+
+    // The session is gone; a later session with the same id starts out on JSON again
+    public void onSessionEnded(String sessionId) {
+        binarySessions.remove(sessionId);
+    }
+
+    // Unsolicited event: the page on screen lost its renderer and was rebuilt; every sender
+    // sees it, as JSON whatever their reply encoding
+    public void sendRendererIncident(String reason, String url, boolean restored) {
+        String event;
+        synchronized (codec) {
+            event = codec.encodeRendererIncident(reason, url, restored, System.currentTimeMillis());
+        }
+        transport.broadcast(CAST_NAMESPACE, event);
+    }
+
+    // Error reply for a command the previous process accepted but never answered
+    public void sendInterruptedCommand(String sessionId, String requestId, String type) {
+        sendErrorResponse(sessionId, requestId, "Interrupted by a receiver restart before " + type + " completed");
+    }
+
+    private void sendSuccessResponse(String sessionId, String requestId, String message, String rawResult) {
+        Object response;
+        synchronized (codec) {
+            response = encoderFor(sessionId).encodeSuccess(requestId, message, rawResult, System.currentTimeMillis());
+        }
+        sendFrame(sessionId, response, true);
+    }
+
+    private void sendErrorResponse(String sessionId, String requestId, String error) {
+        Object response;
+        synchronized (codec) {
+            response = encoderFor(sessionId).encodeError(requestId, error, System.currentTimeMillis());
+        }
+        sendFrame(sessionId, response, true);
+    }
+
+    // Caller holds the codec lock
+    private CastReplyEncoder<?> encoderFor(String sessionId) {
+        return sessionId != null && binarySessions.contains(sessionId) ? cbor : codec;
+    }
+
+    // A String frame goes out as text (acks may be bundled), a byte[] one as a binary frame
+    private void sendFrame(String sessionId, Object frame, boolean ack) {
+        if (frame instanceof byte[]) {
+            transport.sendBinary(sessionId, CAST_NAMESPACE, (byte[]) frame);
+        } else if (ack) {
+            transport.sendAck(sessionId, CAST_NAMESPACE, (String) frame);
+        } else {
+            transport.send(sessionId, CAST_NAMESPACE, (String) frame);
+        }
+    }
+
+    // Reply bound to one command's session and correlation id; later calls after the first are ignored
+    private final class Reply implements CastCommandReply {
+        private final String sessionId;
+        private final String requestId;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        Reply(String sessionId, String requestId) {
+            this.sessionId = sessionId;
+            this.requestId = requestId;
+        }
+
+        @Override
+        public void success(String message) {
+            success(message, null);
+        }
+
+        @Override
+        public void success(String message, String rawResult) {
+            if (done.compareAndSet(false, true)) {
+                sendSuccessResponse(sessionId, requestId, message, rawResult);
+                finish();
+            }
+        }
+
+        @Override
+        public void error(String error) {
+            if (done.compareAndSet(false, true)) {
+                sendErrorResponse(sessionId, requestId, error);
+                finish();
+            }
+        }
+
+        private void finish() {
+            if (requestId != null) {
+                journal.recordCommandFinished(sessionId, requestId);
+            }
         }
     }
 }
@@ -0,0 +1,71 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decides when the receiver should hold its radio-facing resources (the foreground
+ * service, the multicast lock and the mDNS announcements). They are needed while a
+ * sender is connected, while the receiver is on screen, and during a discovery window:
+ * for a while after the app leaves the screen, after a network comes up (so senders on
+ * it find us at once) and after the last session ends (so a sender that drops can
+ * reconnect without rediscovery). Outside of those, a parked car with the screen off
+ * holds nothing that keeps the Wi-Fi radio waking up for multicast.
+ * Not thread-safe: use it from the UI thread only.
+ */
+public class CastReceiverLifecycle {
+    private final long windowMillis;
+    private final long lingerMillis;
+    private final Set<String> sessions = new HashSet<>();
+    private boolean foreground = false;
+    // End of the current discovery window; 0 when none has been opened
+    private long windowEndMillis = 0;
+
+    public CastReceiverLifecycle(long windowMillis, long lingerMillis) {
+        this.windowMillis = windowMillis;
+        this.lingerMillis = lingerMillis;
+    }
+
+    public void setForeground(boolean foreground, long nowMillis) {
+        if (this.foreground && !foreground) {
+            extendWindow(nowMillis + windowMillis);
+        }
+        this.foreground = foreground;
+    }
+
+    // A network came up or the user asked for the receiver; never shortens an open window
+    public void openWindow(long nowMillis) {
+        extendWindow(nowMillis + windowMillis);
+    }
+
+    // Resumed sessions report again with the same id; that is not a second sender
+    public void onSessionStarted(String sessionId) {
+        sessions.add(sessionId);
+    }
+
+    public void onSessionEnded(String sessionId, long nowMillis) {
+        if (sessions.remove(sessionId) && sessions.isEmpty()) {
+            extendWindow(nowMillis + lingerMillis);
+        }
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public boolean isArmed(long nowMillis) {
+        return foreground || !sessions.isEmpty() || nowMillis < windowEndMillis;
+    }
+
+    // Time until the resources can be released, 0 if they can be now, -1 while something holds them open-ended
+    public long millisUntilIdle(long nowMillis) {
+        if (foreground || !sessions.isEmpty()) {
+            return -1;
+        }
+        return Math.max(0, windowEndMillis - nowMillis);
+    }
+
+    private void extendWindow(long endMillis) {
+        windowEndMillis = Math.max(windowEndMillis, endMillis);
+    }
+}
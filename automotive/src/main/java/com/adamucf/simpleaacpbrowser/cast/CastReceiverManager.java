@@ -1,12 +1,26 @@
 package com.adamucf.simpleaacpbrowser.cast;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.Choreographer;
 import android.webkit.WebView;
+import androidx.core.content.ContextCompat;
 
 import com.adamucf.simpleaacpbrowser.MainActivity;
-import com.google.android.gms.cast.ApplicationMetadata;
+import com.adamucf.simpleaacpbrowser.RiptideApplication;
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+import com.adamucf.simpleaacpbrowser.web.Prerenderer;
+import com.adamucf.simpleaacpbrowser.web.SessionJournal;
 import com.google.android.gms.cast.Cast;
 import com.google.android.gms.cast.CastDevice;
 import com.google.android.gms.cast.framework.CastContext;
@@ -15,24 +29,88 @@ import com.google.android.gms.cast.framework.SessionManager;
 import com.google.android.gms.cast.framework.SessionManagerListener;
 
 import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class CastReceiverManager {
+/**
+ * The process-wide cast receiver, owned by RiptideApplication and shared by the activity
+ * and ChromecastReceiverService. It is the Android side of the cast pipeline: the
+ * {@link CastTransport} for Cast sessions and the {@link BrowserHost} for the activity's
+ * WebView.
+ *
+ * Any number of senders can be connected at once. Their frames are merged into one
+ * ordered command stream, replies go back to the sender that asked, and state changes
+ * are sent to all of them (see {@link CastSessionHub}). The receiver is discoverable
+ * (multicast lock, mDNS) only while {@link CastReceiverLifecycle} says a sender is
+ * connected or may be looking for it.
+ */
+public class CastReceiverManager implements BrowserHost, CastTransport {
     private static final String TAG = "CastReceiverManager";
     private static final String CAST_NAMESPACE = "urn:x-cast:com.adamucf.riptide";
+    private static final long NAVIGATION_TIMEOUT_MS = 30000;
+    private static final long RENDERER_SAMPLE_INTERVAL_MS = 10000;
+    // Discovery stays open this long after leaving the screen or a network coming up
+    private static final long DISCOVERY_WINDOW_MS = 2 * 60 * 1000;
+    // and this long after the last sender disconnects, for a quick reconnect
+    private static final long SESSION_LINGER_MS = 30 * 1000;
+    // performance.memory is Chromium-only; -1 when the page can't report it
+    private static final String JS_HEAP_PROBE =
+        "(window.performance && performance.memory) ? performance.memory.usedJSHeapSize : -1";
     
     private Context context;
     private WeakReference<MainActivity> mainActivityRef;
     private CastContext castContext;
     private SessionManager sessionManager;
     private CastMessageHandler messageHandler;
+    // Connected senders, each with its own outbound queue
+    private final CastSessionHub sessions = new CastSessionHub();
+    // Frames from all sessions pass through the handler one at a time, in arrival order
+    private final Object inboundLock = new Object();
+    private volatile CastTransport.Listener transportListener;
+    private CastCommandExecutor commandExecutor;
+    // load_url reply waiting for onPageFinished; only touched on the UI thread
+    private CastCommandReply pendingNavigationReply;
+    private boolean pendingNavigationStarted = false;
+    private final Handler navigationHandler = new Handler(Looper.getMainLooper());
+    private final Runnable navigationTimeout = () -> completePendingNavigation(false, "Timed out waiting for page load");
     private boolean isInitialized = false;
+    // Page-side MessagePort bridge that mirrors inbound cast traffic; null if not set up
+    private volatile CastMessageBridge messageBridge;
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final AtomicLong rendererJsHeap = metrics.settableGauge(MetricsRegistry.RENDERER_JS_HEAP_BYTES);
+    private final Runnable rendererSampler = this::sampleRendererMemory;
+    private final RemoteInputInjector inputInjector = new RemoteInputInjector();
+    // Session id and unanswered commands, kept across process restarts
+    private final SessionJournal journal;
+    // Only touched on the UI thread
+    private final CastReceiverLifecycle lifecycle = new CastReceiverLifecycle(DISCOVERY_WINDOW_MS, SESSION_LINGER_MS);
+    private boolean receiverStarted = false;
+    private volatile boolean receiverArmed = false;
+    // The running discovery service, or null; it stays started and is armed or parked in place
+    private ChromecastReceiverService receiverService;
+    private boolean serviceRequested = false;
+    private final Runnable idleCheck = this::updateReceiverResources;
+    private ConnectivityManager connectivityManager;
     
     public CastReceiverManager(Context context) {
-        this.context = context;
-        this.messageHandler = new CastMessageHandler(this);
+        this.context = context.getApplicationContext();
+        this.journal = ((RiptideApplication) context.getApplicationContext()).getSessionJournal();
+        this.commandExecutor = new CastCommandExecutor(this, choreographerFrames, mainThreadTimer);
+        this.messageHandler = new CastMessageHandler(commandExecutor, this, journal);
+        metrics.gauge(MetricsRegistry.COMMAND_QUEUE_DEPTH, commandExecutor::getPendingCount);
+        metrics.gauge(MetricsRegistry.OUTBOUND_QUEUE_DEPTH, sessions::getQueueDepth);
+        metrics.gauge(MetricsRegistry.CAST_SESSIONS, sessions::getSessionCount);
+        metrics.gauge(MetricsRegistry.APP_HEAP_BYTES,
+            () -> Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+        metrics.gauge(MetricsRegistry.RECEIVER_ARMED, () -> receiverArmed ? 1 : 0);
     }
     
+    // Safe to call again (e.g. from a recreated activity); UI thread
     public void initialize() {
+        if (receiverStarted) {
+            return;
+        }
+        receiverStarted = true;
         try {
             // Initialize Cast Context
             castContext = CastContext.getSharedInstance(context);
@@ -42,22 +120,58 @@ public class CastReceiverManager {
             sessionManager.addSessionManagerListener(sessionManagerListener, CastSession.class);
             
             isInitialized = true;
+            navigationHandler.postDelayed(rendererSampler, RENDERER_SAMPLE_INTERVAL_MS);
             Log.d(TAG, "Cast receiver manager initialized successfully");
             
         } catch (Exception e) {
             Log.e(TAG, "Failed to initialize cast receiver manager", e);
         }
+        watchNetworks();
+        lifecycle.openWindow(SystemClock.elapsedRealtime());
+        updateReceiverResources();
     }
     
     public void setMainActivity(MainActivity activity) {
         this.mainActivityRef = new WeakReference<>(activity);
     }
     
+    public void setMessageBridge(CastMessageBridge bridge) {
+        this.messageBridge = bridge;
+    }
+    
+    // The activity is going away; the receiver itself lives on with the process
+    public void detachActivity(MainActivity activity) {
+        if (mainActivityRef != null && mainActivityRef.get() == activity) {
+            mainActivityRef = null;
+            messageBridge = null;
+            completePendingNavigation(false, "Receiver activity closed");
+        }
+    }
+    
+    // Receiver on screen (onResume) or not (onPause); UI thread
+    public void setForeground(boolean foreground) {
+        lifecycle.setForeground(foreground, SystemClock.elapsedRealtime());
+        updateReceiverResources();
+    }
+    
     public void destroy() {
         try {
             if (sessionManager != null) {
                 sessionManager.removeSessionManagerListener(sessionManagerListener, CastSession.class);
             }
+            unwatchNetworks();
+            navigationHandler.removeCallbacks(idleCheck);
+            if (receiverService != null || serviceRequested) {
+                context.stopService(new Intent(context, ChromecastReceiverService.class));
+            }
+            receiverService = null;
+            serviceRequested = false;
+            receiverArmed = false;
+            receiverStarted = false;
+            commandExecutor.shutdown();
+            navigationHandler.removeCallbacks(navigationTimeout);
+            navigationHandler.removeCallbacks(rendererSampler);
+            sessions.shutdown();
             isInitialized = false;
             Log.d(TAG, "Cast receiver manager destroyed");
         } catch (Exception e) {
@@ -69,63 +183,432 @@ public class CastReceiverManager {
         return isInitialized;
     }
     
-    // Handle incoming cast messages
-    public void handleCastMessage(String namespace, String message) {
-        if (messageHandler != null) {
-            messageHandler.handleMessage(namespace, message);
+    // Handle an incoming frame from one session; safe from any thread
+    public void handleCastMessage(String sessionId, String namespace, String message) {
+        synchronized (inboundLock) {
+            CastMessageBridge bridge = messageBridge;
+            if (bridge != null) {
+                bridge.relayCastMessage(message);
+            }
+            CastTransport.Listener listener = transportListener;
+            if (listener != null) {
+                listener.onMessage(sessionId, namespace, message);
+            }
         }
     }
     
-    // Send message to cast sender
-    public void sendMessageToCastSender(String namespace, String message) {
-        try {
-            CastSession castSession = sessionManager.getCurrentCastSession();
-            if (castSession != null && castSession.isConnected()) {
-                castSession.sendMessage(namespace, message);
-                Log.d(TAG, "Message sent to cast sender: " + message);
+    // Binary frame from a session that negotiated CBOR; the page bridge only ever sees JSON
+    public void handleCastBinaryMessage(String sessionId, String namespace, byte[] message) {
+        synchronized (inboundLock) {
+            CastTransport.Listener listener = transportListener;
+            if (listener != null) {
+                listener.onBinaryMessage(sessionId, namespace, message);
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to send message to cast sender", e);
         }
     }
     
-    // Load URL in WebView from cast command
-    public void loadUrlFromCast(String url) {
-        MainActivity activity = mainActivityRef != null ? mainActivityRef.get() : null;
-        if (activity != null) {
-            activity.runOnUiThread(() -> {
-                WebView webView = activity.getWebView();
-                if (webView != null) {
-                    webView.loadUrl(url);
-                    Log.d(TAG, "Loaded URL from cast: " + url);
+    @Override
+    public void setListener(CastTransport.Listener listener) {
+        transportListener = listener;
+    }
+    
+    // Frame for every connected sender (page events, state changes); serialized once by the caller
+    public void sendMessageToCastSender(String namespace, String message) {
+        broadcast(namespace, message);
+    }
+    
+    @Override
+    public void broadcast(String namespace, String message) {
+        sessions.broadcast(namespace, message, false);
+    }
+    
+    // Send to one sender (queued; delivered by that session's dispatcher thread)
+    @Override
+    public void send(String sessionId, String namespace, String message) {
+        sessions.send(sessionId, namespace, message, false, null);
+    }
+    
+    // Acks and status frames may be bundled with their neighbours into one envelope
+    @Override
+    public void sendAck(String sessionId, String namespace, String message) {
+        sessions.send(sessionId, namespace, message, true, null);
+    }
+    
+    @Override
+    public boolean supportsBinary(String sessionId) {
+        return sessions.supportsBinary(sessionId);
+    }
+    
+    @Override
+    public void sendBinary(String sessionId, String namespace, byte[] message) {
+        sessions.sendBinary(sessionId, namespace, message, null);
+    }
+    
+    public int getOutboundQueueDepth() {
+        return sessions.getQueueDepth();
+    }
+    
+    public int getSessionCount() {
+        return sessions.getSessionCount();
+    }
+    
+    // Wire send for one Cast session. CastSession is main-thread only, so the dispatcher's
+    // writer thread queues and bundles and the send itself is posted to the main looper.
+    private CastMessageDispatcher.Channel castChannel(CastSession castSession) {
+        return (namespace, message, callback) -> {
+            boolean posted = navigationHandler.post(() -> {
+                try {
+                    if (!castSession.isConnected()) {
+                        callback.onComplete(false);
+                        return;
+                    }
+                    castSession.sendMessage(namespace, message).setResultCallback(status -> {
+                        if (!status.isSuccess()) {
+                            Log.w(TAG, "Cast send failed: " + status.getStatusCode());
+                        }
+                        callback.onComplete(status.isSuccess());
+                    });
+                } catch (Exception e) {
+                    Log.e(TAG, "Error sending cast message", e);
+                    callback.onComplete(false);
                 }
             });
+            if (!posted) {
+                callback.onComplete(false);
+            }
+        };
+    }
+    
+    // Commands run on the UI thread, one batch per Choreographer frame
+    private final CastCommandScheduler.FrameSource choreographerFrames = new CastCommandScheduler.FrameSource() {
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+        
+        @Override
+        public void postFrameCallback(CastCommandScheduler.FrameCallback callback) {
+            // Choreographer is per-looper, so always fetch the main thread's instance on the main thread
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                Choreographer.getInstance().postFrameCallback(callback::doFrame);
+            } else {
+                mainHandler.post(() -> Choreographer.getInstance().postFrameCallback(callback::doFrame));
+            }
+        }
+    };
+    
+    // Batch timeouts and the like, on the same thread as the commands
+    private final CastCommandExecutor.Timer mainThreadTimer = new CastCommandExecutor.Timer() {
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            navigationHandler.postDelayed(task, delayMillis);
         }
+        
+        @Override
+        public void removeCallbacks(Runnable task) {
+            navigationHandler.removeCallbacks(task);
+        }
+    };
+    
+    // The BrowserHost methods are called by the command scheduler on the UI thread.
+    // A load_url is answered from onPageFinished (or onPageLoadFailed / the timeout).
+    @Override
+    public void loadUrl(String url, CastCommandReply reply) {
+        WebView webView = getWebView();
+        if (webView == null) {
+            reply.error("No WebView available");
+            return;
+        }
+        completePendingNavigation(false, "Superseded by a newer navigation");
+        
+        // A prefetched page is swapped in; if it is still loading its onPageFinished acks
+        MainActivity activity = mainActivityRef.get();
+        Prerenderer.Promotion promotion = activity != null
+            ? activity.showPrerendered(url) : Prerenderer.Promotion.MISS;
+        if (promotion == Prerenderer.Promotion.READY) {
+            reply.success("URL loaded successfully");
+            Log.d(TAG, "Showed prerendered URL from cast: " + url);
+            return;
+        }
+        
+        pendingNavigationReply = reply;
+        pendingNavigationStarted = promotion == Prerenderer.Promotion.LOADING;
+        navigationHandler.postDelayed(navigationTimeout, NAVIGATION_TIMEOUT_MS);
+        if (promotion == Prerenderer.Promotion.MISS) {
+            webView.loadUrl(url);
+        }
+        Log.d(TAG, "Loaded URL from cast: " + url);
     }
     
-    // Execute JavaScript in WebView from cast command
-    public void executeJavaScriptFromCast(String javascript) {
+    @Override
+    public void prefetchUrl(String url, CastCommandReply reply) {
         MainActivity activity = mainActivityRef != null ? mainActivityRef.get() : null;
-        if (activity != null) {
-            activity.runOnUiThread(() -> {
-                WebView webView = activity.getWebView();
-                if (webView != null) {
-                    webView.evaluateJavascript(javascript, null);
-                    Log.d(TAG, "Executed JavaScript from cast: " + javascript);
-                }
-            });
+        if (activity == null) {
+            reply.error("Receiver activity not available");
+            return;
         }
+        if (activity.prefetch(url)) {
+            reply.success("Prefetch started");
+        } else {
+            reply.success("Not prefetched: already loaded or loading, or the receiver is saving resources");
+        }
+        Log.d(TAG, "Prefetched URL from cast: " + url);
     }
     
-    // Show/hide navigation menu from cast command
-    public void toggleNavigationFromCast() {
+    @Override
+    public void evaluateJavascript(String javascript, CastCommandReply reply) {
+        WebView webView = getWebView();
+        if (webView == null) {
+            reply.error("No WebView available");
+            return;
+        }
+        long evalStart = System.nanoTime();
+        webView.evaluateJavascript(javascript, result -> {
+            metrics.histogram(MetricsRegistry.JS_EVAL_US).recordSinceNanos(evalStart);
+            reply.success("JavaScript executed successfully", result);
+        });
+        Log.d(TAG, "Executed JavaScript from cast: " + javascript);
+    }
+    
+    @Override
+    public void toggleNavigation(CastCommandReply reply) {
         MainActivity activity = mainActivityRef != null ? mainActivityRef.get() : null;
-        if (activity != null) {
-            activity.runOnUiThread(() -> {
-                activity.togglePopoverMenuFromCast();
-                Log.d(TAG, "Toggled navigation from cast");
-            });
+        if (activity == null) {
+            reply.error("Receiver activity not available");
+            return;
+        }
+        activity.togglePopoverMenuFromCast();
+        reply.success("Navigation toggled successfully");
+        Log.d(TAG, "Toggled navigation from cast");
+    }
+    
+    // Remote input from the input queue, once per frame; see RemoteInputInjector
+    @Override
+    public boolean injectInput(RemoteInput input) {
+        WebView webView = getWebView();
+        return webView != null && inputInjector.inject(webView, input);
+    }
+    
+    // Renderer memory isn't visible to the app process, so ask the page for its JS heap
+    private void sampleRendererMemory() {
+        try {
+            WebView webView = getWebView();
+            if (webView != null) {
+                webView.evaluateJavascript(JS_HEAP_PROBE, result -> {
+                    try {
+                        rendererJsHeap.set(Long.parseLong(result));
+                    } catch (NumberFormatException e) {
+                        rendererJsHeap.set(-1);
+                    }
+                });
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error sampling renderer memory", e);
+        }
+        if (isInitialized) {
+            navigationHandler.postDelayed(rendererSampler, RENDERER_SAMPLE_INTERVAL_MS);
+        }
+    }
+    
+    // Called by the activity's WebViewClient (UI thread)
+    public void onPageStarted(String url) {
+        if (pendingNavigationReply != null) {
+            pendingNavigationStarted = true;
+        }
+    }
+    
+    // Called by the activity's WebViewClient (UI thread)
+    public void onPageFinished(String url) {
+        // Ignore the tail of whatever load was in progress before ours started
+        if (pendingNavigationStarted) {
+            completePendingNavigation(true, null);
+        }
+    }
+    
+    // Called by the activity's WebViewClient for main-frame load errors (UI thread)
+    public void onPageLoadFailed(String url, String description) {
+        completePendingNavigation(false, "Failed to load " + url + ": " + description);
+    }
+    
+    // Called by the activity after rebuilding the tab on screen (UI thread)
+    public void onRendererIncident(String reason, String url, boolean restored) {
+        completePendingNavigation(false, "Renderer " + reason + " while loading");
+        if (messageHandler != null) {
+            messageHandler.sendRendererIncident(reason, url, restored);
+        }
+        Log.d(TAG, "Reported renderer incident: " + reason + " (restored: " + restored + ")");
+    }
+    
+    private void completePendingNavigation(boolean success, String error) {
+        CastCommandReply reply = pendingNavigationReply;
+        if (reply == null) {
+            return;
+        }
+        pendingNavigationReply = null;
+        pendingNavigationStarted = false;
+        navigationHandler.removeCallbacks(navigationTimeout);
+        if (success) {
+            reply.success("URL loaded successfully");
+        } else {
+            reply.error(error);
+        }
+    }
+    
+    /**
+     * Records the connected session. If it was connected when the previous process died,
+     * the commands that process never answered it are failed so the sender can retry
+     * them; other senders' commands stay journaled until they come back or end.
+     */
+    private void recoverInterruptedCommands(String sessionId) {
+        journal.recordSessionConnected(sessionId);
+        Map<String, String> interrupted = journal.takeRecoveredCommands(sessionId);
+        if (interrupted.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, String> command : interrupted.entrySet()) {
+            messageHandler.sendInterruptedCommand(sessionId, command.getKey(), command.getValue());
+        }
+        Log.d(TAG, "Failed " + interrupted.size() + " command(s) interrupted by a receiver restart");
+    }
+
+    /**
+     * A sender connected, over Cast or any other transport, and can be reached through
+     * the channel. A session seen for the first time gets receiver_ready; a resumed one
+     * gets what was queued for it while it was away. Safe from any thread.
+     */
+    public void onSenderConnected(String sessionId, CastMessageDispatcher.Channel channel) {
+        if (sessions.attach(sessionId, channel)) {
+            messageHandler.sendReceiverReady(sessionId);
         }
+        recoverInterruptedCommands(sessionId);
+        navigationHandler.post(() -> onSessionActive(sessionId, true));
+        Log.d(TAG, "Sender connected: " + sessionId + " (" + sessions.getSessionCount() + " connected)");
+    }
+    
+    // Temporarily unreachable (e.g. a suspended Cast session); frames are held for it
+    public void onSenderSuspended(String sessionId) {
+        sessions.suspend(sessionId);
+    }
+    
+    public void onSenderDisconnected(String sessionId) {
+        if (!sessions.detach(sessionId)) {
+            return;
+        }
+        messageHandler.onSessionEnded(sessionId);
+        journal.recordSessionEnded(sessionId);
+        navigationHandler.post(() -> onSessionActive(sessionId, false));
+        Log.d(TAG, "Sender disconnected: " + sessionId + " (" + sessions.getSessionCount() + " connected)");
+    }
+    
+    private void onSessionActive(String sessionId, boolean active) {
+        if (active) {
+            lifecycle.onSessionStarted(sessionId);
+        } else {
+            lifecycle.onSessionEnded(sessionId, SystemClock.elapsedRealtime());
+        }
+        updateReceiverResources();
+    }
+    
+    // The discovery service is up (main thread); it starts parked until armed here
+    void onReceiverServiceCreated(ChromecastReceiverService service) {
+        receiverService = service;
+        serviceRequested = false;
+        updateReceiverResources();
+    }
+    
+    void onReceiverServiceDestroyed(ChromecastReceiverService service) {
+        if (receiverService == service) {
+            receiverService = null;
+            receiverArmed = false;
+        }
+    }
+    
+    /**
+     * Arms or parks the discovery service to match the lifecycle, and schedules the next
+     * check. The service is started once and then left running, parked while idle: network
+     * callbacks fire in the background, where Android 12+ refuses to start a foreground
+     * service, but arming one that already runs needs no start.
+     */
+    private void updateReceiverResources() {
+        if (!receiverStarted) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        boolean armed = lifecycle.isArmed(now);
+        if (armed && receiverService == null && !serviceRequested) {
+            try {
+                ContextCompat.startForegroundService(context, new Intent(context, ChromecastReceiverService.class));
+                serviceRequested = true;
+            } catch (Exception e) {
+                // Only if the system stopped the service while we were in the background;
+                // the next trigger with the receiver on screen starts it again
+                Log.w(TAG, "Could not start the receiver service: " + e.getMessage());
+            }
+        }
+        if (receiverService != null && armed != receiverArmed) {
+            receiverService.setArmed(armed);
+            receiverArmed = armed;
+            Log.d(TAG, armed ? "Receiver discoverable" : "Receiver idle; multicast and mDNS released");
+        }
+        navigationHandler.removeCallbacks(idleCheck);
+        long idleIn = lifecycle.millisUntilIdle(now);
+        if (receiverArmed && idleIn >= 0) {
+            navigationHandler.postDelayed(idleCheck, idleIn);
+        }
+    }
+    
+    // A network (or the head unit's hotspot) coming up opens a discovery window at once
+    private void watchNetworks() {
+        if (connectivityManager != null) {
+            return;
+        }
+        try {
+            connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            NetworkRequest localNetworks = new NetworkRequest.Builder()
+                .removeCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
+                .addTransportType(NetworkCapabilities.TRANSPORT_ETHERNET)
+                .build();
+            connectivityManager.registerNetworkCallback(localNetworks, rearmCallback);
+            ContextCompat.registerReceiver(context, hotspotReceiver,
+                new IntentFilter(ChromecastReceiverService.ACTION_WIFI_AP_STATE_CHANGED),
+                ContextCompat.RECEIVER_NOT_EXPORTED);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to watch networks for re-arming", e);
+        }
+    }
+    
+    private void unwatchNetworks() {
+        try {
+            if (connectivityManager != null) {
+                connectivityManager.unregisterNetworkCallback(rearmCallback);
+                context.unregisterReceiver(hotspotReceiver);
+                connectivityManager = null;
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Network watch was not registered: " + e.getMessage());
+        }
+    }
+    
+    private void openDiscoveryWindow() {
+        lifecycle.openWindow(SystemClock.elapsedRealtime());
+        updateReceiverResources();
+    }
+    
+    private final ConnectivityManager.NetworkCallback rearmCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            navigationHandler.post(CastReceiverManager.this::openDiscoveryWindow);
+        }
+    };
+    
+    private final BroadcastReceiver hotspotReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            openDiscoveryWindow();
+        }
+    };
+    
+    private WebView getWebView() {
+        MainActivity activity = mainActivityRef != null ? mainActivityRef.get() : null;
+        return activity != null ? activity.getWebView() : null;
     }
     
     private final SessionManagerListener<CastSession> sessionManagerListener = 
@@ -134,8 +617,17 @@ public class CastReceiverManager {
             @Override
             public void onSessionStarted(CastSession castSession, String sessionId) {
                 Log.d(TAG, "Cast session started: " + sessionId);
-                
-                // Set up message channel
+                connect(castSession, sessionId);
+            }
+            
+            @Override
+            public void onSessionResumed(CastSession castSession, boolean wasSuspended) {
+                Log.d(TAG, "Cast session resumed, wasSuspended: " + wasSuspended);
+                // After a process restart the resumed session is new to us and needs its channel again
+                connect(castSession, castSession.getSessionId());
+            }
+            
+            private void connect(CastSession castSession, String sessionId) {
                 try {
                     castSession.setMessageReceivedCallbacks(
                         CAST_NAMESPACE,
@@ -144,32 +636,27 @@ public class CastReceiverManager {
                             public void onMessageReceived(CastDevice castDevice, 
                                                          String namespace, 
                                                          String message) {
-                                handleCastMessage(namespace, message);
+                                handleCastMessage(sessionId, namespace, message);
                             }
                         }
                     );
-                    
-                    // Send ready message to sender
-                    sendMessageToCastSender(CAST_NAMESPACE, "{\"type\":\"receiver_ready\"}");
-                    
+                    onSenderConnected(sessionId, castChannel(castSession));
                 } catch (Exception e) {
                     Log.e(TAG, "Failed to set up message channel", e);
                 }
             }
             
-            @Override
-            public void onSessionResumed(CastSession castSession, boolean wasSuspended) {
-                Log.d(TAG, "Cast session resumed, wasSuspended: " + wasSuspended);
-            }
-            
             @Override
             public void onSessionSuspended(CastSession castSession, int reason) {
                 Log.d(TAG, "Cast session suspended, reason: " + reason);
+                // Keep buffering until resumed or the messages' TTL runs out
+                onSenderSuspended(castSession.getSessionId());
             }
             
             @Override
             public void onSessionEnded(CastSession castSession, int error) {
                 Log.d(TAG, "Cast session ended, error: " + error);
+                onSenderDisconnected(castSession.getSessionId());
             }
             
             @Override
@@ -0,0 +1,121 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The connected senders (e.g. the driver's and a passenger's phone) and their outbound
+ * queues. Each session gets its own {@link CastMessageDispatcher}, so one suspended or
+ * slow sender never holds up the others. Replies go to the session the command came
+ * from; state changes are serialized once by the caller and the same frame is queued
+ * for every session. Thread-safe.
+ */
+public class CastSessionHub {
+    private final Map<String, CastMessageDispatcher> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a connected session, or reconnects a known one (a resumed session keeps what
+     * it buffered while suspended). Returns false if the session was already known.
+     */
+    public boolean attach(String sessionId, CastMessageDispatcher.Channel channel) {
+        CastMessageDispatcher existing = sessions.get(sessionId);
+        if (existing != null) {
+            existing.setConnected(true);
+            return false;
+        }
+        CastMessageDispatcher dispatcher = new CastMessageDispatcher(channel);
+        dispatcher.setConnected(true);
+        CastMessageDispatcher raced = sessions.putIfAbsent(sessionId, dispatcher);
+        if (raced != null) {
+            dispatcher.shutdown();
+            raced.setConnected(true);
+            return false;
+        }
+        return true;
+    }
+
+    // Temporarily unreachable: frames are held until it resumes or their TTL runs out
+    public void suspend(String sessionId) {
+        CastMessageDispatcher dispatcher = sessions.get(sessionId);
+        if (dispatcher != null) {
+            dispatcher.setConnected(false);
+        }
+    }
+
+    // Session ended: whatever it still had queued is reported as NO_SESSION
+    public boolean detach(String sessionId) {
+        CastMessageDispatcher dispatcher = sessions.remove(sessionId);
+        if (dispatcher == null) {
+            return false;
+        }
+        dispatcher.shutdown();
+        return true;
+    }
+
+    // Frame for one session; an unknown session is reported as NO_SESSION
+    public boolean send(String sessionId, String namespace, String message, boolean coalescable,
+                        CastMessageDispatcher.DeliveryListener listener) {
+        CastMessageDispatcher dispatcher = sessionId != null ? sessions.get(sessionId) : null;
+        if (dispatcher == null) {
+            if (listener != null) {
+                listener.onResult(CastMessageDispatcher.Result.NO_SESSION);
+            }
+            return false;
+        }
+        return dispatcher.enqueue(namespace, message, coalescable, listener);
+    }
+
+    // Binary frame for one session whose channel carries them (see supportsBinary); others fail
+    public boolean sendBinary(String sessionId, String namespace, byte[] message,
+                              CastMessageDispatcher.DeliveryListener listener) {
+        CastMessageDispatcher dispatcher = sessionId != null ? sessions.get(sessionId) : null;
+        if (dispatcher == null) {
+            if (listener != null) {
+                listener.onResult(CastMessageDispatcher.Result.NO_SESSION);
+            }
+            return false;
+        }
+        return dispatcher.enqueueBinary(namespace, message, listener);
+    }
+
+    public boolean supportsBinary(String sessionId) {
+        CastMessageDispatcher dispatcher = sessionId != null ? sessions.get(sessionId) : null;
+        return dispatcher != null && dispatcher.supportsBinary();
+    }
+
+    // The same frame to every session; returns how many accepted it
+    public int broadcast(String namespace, String message, boolean coalescable) {
+        int queued = 0;
+        for (CastMessageDispatcher dispatcher : sessions.values()) {
+            if (dispatcher.enqueue(namespace, message, coalescable, null)) {
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public List<String> getSessionIds() {
+        return new ArrayList<>(sessions.keySet());
+    }
+
+    // Frames waiting across all sessions
+    public int getQueueDepth() {
+        int depth = 0;
+        for (CastMessageDispatcher dispatcher : sessions.values()) {
+            depth += dispatcher.getQueueDepth();
+        }
+        return depth;
+    }
+
+    public void shutdown() {
+        for (String sessionId : getSessionIds()) {
+            detach(sessionId);
+        }
+    }
+}
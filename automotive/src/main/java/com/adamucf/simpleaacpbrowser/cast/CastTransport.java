@@ -0,0 +1,33 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+/**
+ * How riptide frames reach the receiver and how its replies leave: the Cast sessions
+ * in the app (see CastReceiverManager), an in-memory loopback in JVM tests. Inbound
+ * frames are handed to the listener one at a time, whichever session they came from.
+ * Sends never block; delivery is the transport's business.
+ */
+public interface CastTransport {
+    interface Listener {
+        void onMessage(String sessionId, String namespace, String message);
+
+        // Binary frame from a session that negotiated a binary encoding
+        void onBinaryMessage(String sessionId, String namespace, byte[] message);
+    }
+
+    void setListener(Listener listener);
+
+    // To one session, in order
+    void send(String sessionId, String namespace, String message);
+
+    // To one session; acks and status frames may be bundled with their neighbours
+    void sendAck(String sessionId, String namespace, String message);
+
+    // Whether this session's channel carries binary frames (WebSocket senders do, Cast senders don't)
+    boolean supportsBinary(String sessionId);
+
+    // Binary frame to one session, in order; only valid where supportsBinary(sessionId)
+    void sendBinary(String sessionId, String namespace, byte[] message);
+
+    // The same frame to every connected session
+    void broadcast(String namespace, String message);
+}
@@ -5,16 +5,26 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
 import android.net.wifi.WifiManager;
 import android.os.Build;
 import android.os.IBinder;
 import android.util.Log;
 import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
 
 import com.adamucf.simpleaacpbrowser.MainActivity;
 import com.adamucf.simpleaacpbrowser.R;
+import com.adamucf.simpleaacpbrowser.RiptideApplication;
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
 import com.google.android.gms.cast.ApplicationMetadata;
 import com.google.android.gms.cast.CastDevice;
 import com.google.android.gms.cast.framework.CastContext;
@@ -24,22 +34,44 @@ import com.google.android.gms.cast.framework.SessionProvider;
 import com.google.android.gms.cast.framework.media.CastMediaOptions;
 
 import java.util.List;
+import java.util.Map;
 import javax.jmdns.JmDNS;
 import javax.jmdns.ServiceInfo;
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.NetworkInterface;
-import java.util.Enumeration;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Keeps the receiver discoverable: holds the multicast lock and the mDNS announcements,
+ * as a foreground service so they survive the app leaving the screen. CastReceiverManager
+ * starts it once and then arms it only while a sender is connected or a discovery window
+ * is open; when the receiver goes idle the service stays in the foreground but parked,
+ * holding nothing, so it can be re-armed from the background. Armed, it also runs the
+ * local WebSocket control endpoint ({@link WebSocketControlServer}), advertised next to
+ * the Cast service.
+ */
 public class ChromecastReceiverService extends Service {
     private static final String TAG = "ChromecastReceiver";
     private static final int NOTIFICATION_ID = 1001;
     private static final String CAST_SERVICE_TYPE = "_googlecast._tcp.local.";
+    private static final String CONTROL_SERVICE_TYPE = "_riptide-ws._tcp.local.";
+    private static final String CAST_NAMESPACE = "urn:x-cast:com.adamucf.riptide";
+    // Fixed so tooling can connect without browsing mDNS (or through adb forward)
+    private static final int CONTROL_PORT = 8010;
     
-    private JmDNS jmdns;
+    // Hidden WifiManager action, sent when the head unit's hotspot starts or stops
+    static final String ACTION_WIFI_AP_STATE_CHANGED = "android.net.wifi.WIFI_AP_STATE_CHANGED";
+    
+    private volatile MdnsResponder mdnsResponder;
+    private volatile WebSocketControlServer controlServer;
+    private ConnectivityManager connectivityManager;
+    // Network -> interface name, to know which interface a lost network was on
+    private final Map<Network, String> networkInterfaces = new ConcurrentHashMap<>();
     private WifiManager.MulticastLock multicastLock;
-    private CastReceiverManager castReceiverManager;
     private NotificationManager notificationManager;
+    // Main thread only
+    private boolean armed = false;
     
     @Override
     public void onCreate() {
@@ -49,11 +81,8 @@ public class ChromecastReceiverService extends Service {
         notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
         createNotificationChannel();
         
-        // Initialize Cast Receiver
-        initializeCastReceiver();
-        
-        // Start mDNS service discovery
-        startMdnsDiscovery();
+        // Starts parked; the manager arms it right away if a window is open
+        ((RiptideApplication) getApplication()).getCastReceiverManager().onReceiverServiceCreated(this);
     }
     
     @Override
@@ -63,7 +92,26 @@ public class ChromecastReceiverService extends Service {
         // Start as foreground service
         startForeground(NOTIFICATION_ID, createNotification());
         
-        return START_STICKY; // Restart if killed
+        // Not restarted if killed: CastReceiverManager starts it again when it is needed
+        return START_NOT_STICKY;
+    }
+    
+    // Takes or releases the multicast lock, mDNS and the control endpoint; main thread
+    void setArmed(boolean armed) {
+        if (armed == this.armed) {
+            return;
+        }
+        this.armed = armed;
+        if (armed) {
+            // The control endpoint comes first so its port can be announced
+            startControlServer();
+            // Returns at once; announcing runs in the background
+            startMdnsDiscovery();
+        } else {
+            stopMdnsDiscovery();
+            stopControlServer();
+        }
+        notificationManager.notify(NOTIFICATION_ID, createNotification());
     }
     
     @Override
@@ -76,11 +124,13 @@ public class ChromecastReceiverService extends Service {
         super.onDestroy();
         Log.d(TAG, "ChromecastReceiverService destroyed");
         
-        // Clean up resources
-        stopMdnsDiscovery();
-        if (castReceiverManager != null) {
-            castReceiverManager.destroy();
+        // Clean up resources; no notification update, it goes away with the service
+        if (armed) {
+            armed = false;
+            stopMdnsDiscovery();
+            stopControlServer();
         }
+        ((RiptideApplication) getApplication()).getCastReceiverManager().onReceiverServiceDestroyed(this);
     }
     
     private void createNotificationChannel() {
@@ -104,7 +154,7 @@ public class ChromecastReceiverService extends Service {
         
         return new NotificationCompat.Builder(this, getString(R.string.cast_notification_channel_id))
             .setContentTitle(getString(R.string.cast_receiver_name))
-            .setContentText("Cast receiver is running")
+            .setContentText(armed ? "Cast receiver is running" : "Cast receiver is idle")
             .setSmallIcon(R.mipmap.ic_launcher)
             .setContentIntent(pendingIntent)
             .setOngoing(true)
@@ -112,13 +162,44 @@ public class ChromecastReceiverService extends Service {
             .build();
     }
     
-    private void initializeCastReceiver() {
+    // WebSocket senders are sessions like Cast ones: same handler, same replies and broadcasts
+    private void startControlServer() {
+        CastReceiverManager manager = ((RiptideApplication) getApplication()).getCastReceiverManager();
+        WebSocketControlServer server = new WebSocketControlServer(CONTROL_PORT, new WebSocketControlServer.Listener() {
+            @Override
+            public void onOpen(String sessionId, CastMessageDispatcher.Channel channel) {
+                manager.onSenderConnected(sessionId, channel);
+            }
+            
+            @Override
+            public void onMessage(String sessionId, String message) {
+                manager.handleCastMessage(sessionId, CAST_NAMESPACE, message);
+            }
+            
+            @Override
+            public void onBinaryMessage(String sessionId, byte[] message) {
+                manager.handleCastBinaryMessage(sessionId, CAST_NAMESPACE, message);
+            }
+            
+            @Override
+            public void onClose(String sessionId) {
+                manager.onSenderDisconnected(sessionId);
+            }
+        });
         try {
-            castReceiverManager = new CastReceiverManager(this);
-            castReceiverManager.initialize();
-            Log.d(TAG, "Cast receiver initialized successfully");
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to initialize cast receiver", e);
+            server.start();
+            controlServer = server;
+            MetricsRegistry.getDefault().gauge(MetricsRegistry.CONTROL_CONNECTIONS, server::getConnectionCount);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start the WebSocket control endpoint", e);
+        }
+    }
+    
+    private void stopControlServer() {
+        WebSocketControlServer server = controlServer;
+        if (server != null) {
+            controlServer = null;
+            server.stop();
         }
     }
     
@@ -128,36 +209,83 @@ public class ChromecastReceiverService extends Service {
             multicastLock = wifi.createMulticastLock("chromecast_discovery");
             multicastLock.setReferenceCounted(true);
             multicastLock.acquire();
-            
-            InetAddress localAddress = getLocalIpAddress();
-            if (localAddress != null) {
-                jmdns = JmDNS.create(localAddress, "ChromecastReceiver");
-                
-                // Register our service
-                ServiceInfo serviceInfo = ServiceInfo.create(
-                    CAST_SERVICE_TYPE,
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to acquire multicast lock", e);
+        }
+
+        // Interfaces are enumerated and announced on the responder's own thread
+        MdnsResponder responder = new MdnsResponder(this::publishMdnsService);
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        // 1 while our service is advertised anywhere; shown on cast_status.html
+        metrics.gauge(MetricsRegistry.MDNS_REGISTERED, () -> responder.getInterfaceCount() > 0 ? 1 : 0);
+        metrics.gauge(MetricsRegistry.MDNS_INTERFACES, responder::getInterfaceCount);
+        mdnsResponder = responder;
+        responder.start();
+
+        try {
+            connectivityManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+            // Local networks without internet access (a garage access point) count too
+            NetworkRequest localNetworks = new NetworkRequest.Builder()
+                .removeCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
+                .addTransportType(NetworkCapabilities.TRANSPORT_ETHERNET)
+                .build();
+            connectivityManager.registerNetworkCallback(localNetworks, mdnsNetworkCallback);
+            // The head unit's own hotspot is not a Network, so watch the AP state as well
+            ContextCompat.registerReceiver(this, hotspotReceiver,
+                new IntentFilter(ACTION_WIFI_AP_STATE_CHANGED), ContextCompat.RECEIVER_NOT_EXPORTED);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to watch network changes for mDNS", e);
+        }
+    }
+
+    // Publisher for one interface; the returned handle sends goodbyes and closes the socket
+    private Closeable publishMdnsService(String interfaceName, InetAddress address) throws IOException {
+        JmDNS jmdns = JmDNS.create(address, "ChromecastReceiver");
+        ServiceInfo serviceInfo = ServiceInfo.create(
+            CAST_SERVICE_TYPE,
+            getString(R.string.cast_receiver_name),
+            8009, // Standard Chromecast port
+            "id=" + getString(R.string.cast_app_id) +
+            ",ca=5,st=0,ic=/setup/icon.png,fn=" + getString(R.string.cast_receiver_name)
+        );
+        try {
+            jmdns.registerService(serviceInfo);
+            WebSocketControlServer server = controlServer;
+            if (server != null) {
+                jmdns.registerService(ServiceInfo.create(
+                    CONTROL_SERVICE_TYPE,
                     getString(R.string.cast_receiver_name),
-                    8009, // Standard Chromecast port
-                    "id=" + getString(R.string.cast_app_id) + 
-                    ",ca=5,st=0,ic=/setup/icon.png,fn=" + getString(R.string.cast_receiver_name)
-                );
-                
-                jmdns.registerService(serviceInfo);
-                Log.d(TAG, "mDNS service registered successfully");
+                    server.getPort(),
+                    "ns=" + CAST_NAMESPACE + ",path=/"
+                ));
             }
         } catch (IOException e) {
-            Log.e(TAG, "Failed to start mDNS discovery", e);
+            jmdns.close();
+            throw e;
         }
+        return () -> {
+            jmdns.unregisterAllServices();
+            jmdns.close();
+        };
     }
-    
+
     private void stopMdnsDiscovery() {
         try {
-            if (jmdns != null) {
-                jmdns.unregisterAllServices();
-                jmdns.close();
-                jmdns = null;
+            if (connectivityManager != null) {
+                connectivityManager.unregisterNetworkCallback(mdnsNetworkCallback);
+                unregisterReceiver(hotspotReceiver);
+                connectivityManager = null;
             }
-            
+        } catch (Exception e) {
+            Log.w(TAG, "mDNS network watch was not registered: " + e.getMessage());
+        }
+        try {
+            if (mdnsResponder != null) {
+                mdnsResponder.stop();
+                mdnsResponder = null;
+            }
+
             if (multicastLock != null && multicastLock.isHeld()) {
                 multicastLock.release();
                 multicastLock = null;
@@ -166,23 +294,45 @@ public class ChromecastReceiverService extends Service {
             Log.e(TAG, "Error stopping mDNS discovery", e);
         }
     }
-    
-    private InetAddress getLocalIpAddress() {
-        try {
-            for (Enumeration<NetworkInterface> en = NetworkInterface.getNetworkInterfaces(); en.hasMoreElements();) {
-                NetworkInterface intf = en.nextElement();
-                for (Enumeration<InetAddress> enumIpAddr = intf.getInetAddresses(); enumIpAddr.hasMoreElements();) {
-                    InetAddress inetAddress = enumIpAddr.nextElement();
-                    if (!inetAddress.isLoopbackAddress() && !inetAddress.isLinkLocalAddress()) {
-                        return inetAddress;
-                    }
-                }
+
+    // Re-announces only the interface a network change touched
+    private final ConnectivityManager.NetworkCallback mdnsNetworkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onLinkPropertiesChanged(Network network, LinkProperties linkProperties) {
+            String name = linkProperties.getInterfaceName();
+            String previous = name != null ? networkInterfaces.put(network, name) : networkInterfaces.remove(network);
+            MdnsResponder responder = mdnsResponder;
+            if (responder == null) {
+                return;
+            }
+            if (previous != null && !previous.equals(name)) {
+                responder.onInterfaceChanged(previous);
+            }
+            if (name != null) {
+                responder.onInterfaceChanged(name);
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting local IP address", e);
         }
-        return null;
-    }
+
+        @Override
+        public void onLost(Network network) {
+            String name = networkInterfaces.remove(network);
+            MdnsResponder responder = mdnsResponder;
+            if (name != null && responder != null) {
+                responder.onInterfaceChanged(name);
+            }
+        }
+    };
+
+    private final BroadcastReceiver hotspotReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            MdnsResponder responder = mdnsResponder;
+            if (responder != null) {
+                // The AP interface name varies by vendor; a rescan only touches what changed
+                responder.onInterfaceChanged(null);
+            }
+        }
+    };
     
     // Cast Options Provider for Framework initialization
     public static class CastOptionsProvider implements OptionsProvider {
@@ -0,0 +1,203 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Advertises the receiver on every interface a sender can reach: Wi-Fi as a client,
+ * the head unit's own hotspot and Ethernet, but not cellular, VPN or loopback. Each
+ * interface gets its own publication bound to one address chosen for it (IPv4 first,
+ * which is what Cast senders resolve). The chosen addresses are cached, so a network
+ * change only touches the interface it concerns: unchanged interfaces are left
+ * announced, and a changed one is withdrawn and announced again on its new address.
+ * Enumeration and all publish/withdraw work run on a private thread, never the caller's.
+ */
+public class MdnsResponder {
+    private static final String TAG = "MdnsResponder";
+    // Mobile data, tunnels and virtual links; senders are never on these
+    private static final String[] EXCLUDED_PREFIXES = {
+        "rmnet", "ccmni", "pdp", "v4-", "clat", "tun", "ppp", "ipsec", "dummy", "lo", "veth", "p2p-dev"
+    };
+
+    // Publishes the service on one interface; closing the handle withdraws it
+    public interface Publisher {
+        Closeable publish(String interfaceName, InetAddress address) throws IOException;
+    }
+
+    private final Publisher publisher;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mdns-responder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Interface name -> address it is announced on; written on the executor only
+    private final Map<String, InetAddress> addresses = new ConcurrentHashMap<>();
+    private final Map<String, Closeable> publications = new HashMap<>();
+    private volatile boolean stopped = false;
+
+    public MdnsResponder(Publisher publisher) {
+        this.publisher = publisher;
+    }
+
+    // Announces on every eligible interface; returns at once
+    public void start() {
+        executor.execute(this::rescanAll);
+    }
+
+    // One interface came up, changed address or went away (null: unknown, rescan all)
+    public void onInterfaceChanged(String interfaceName) {
+        if (stopped) {
+            return;
+        }
+        if (interfaceName == null) {
+            executor.execute(this::rescanAll);
+        } else {
+            executor.execute(() -> rescan(interfaceName));
+        }
+    }
+
+    // Withdraws every announcement (goodbye packets) in the background and ends the thread
+    public void stop() {
+        stopped = true;
+        executor.execute(() -> {
+            for (String name : new ArrayList<>(publications.keySet())) {
+                withdraw(name);
+            }
+        });
+        executor.shutdown();
+    }
+
+    public int getInterfaceCount() {
+        return addresses.size();
+    }
+
+    // Snapshot of interface name -> announced address
+    public Map<String, InetAddress> getAddresses() {
+        return Collections.unmodifiableMap(new HashMap<>(addresses));
+    }
+
+    public static boolean isEligibleName(String interfaceName) {
+        String name = interfaceName.toLowerCase(Locale.US);
+        for (String prefix : EXCLUDED_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The address to announce on an interface: a routable IPv4 address if it has one,
+     * else a global IPv6 address, else null. Link-local and loopback addresses are
+     * never chosen.
+     */
+    public static InetAddress pickAddress(List<InetAddress> candidates) {
+        InetAddress ipv6 = null;
+        for (InetAddress address : candidates) {
+            if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isAnyLocalAddress()) {
+                continue;
+            }
+            if (address instanceof Inet4Address) {
+                return address;
+            }
+            if (ipv6 == null) {
+                ipv6 = address;
+            }
+        }
+        return ipv6;
+    }
+
+    private void rescanAll() {
+        Map<String, InetAddress> found = new HashMap<>();
+        try {
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                InetAddress address = eligibleAddress(networkInterface);
+                if (address != null) {
+                    found.put(networkInterface.getName(), address);
+                }
+            }
+        } catch (SocketException | RuntimeException e) {
+            Log.w(TAG, "Interface enumeration failed", e);
+            return;
+        }
+        for (String name : new ArrayList<>(publications.keySet())) {
+            if (!found.containsKey(name)) {
+                withdraw(name);
+            }
+        }
+        for (Map.Entry<String, InetAddress> entry : found.entrySet()) {
+            update(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void rescan(String interfaceName) {
+        InetAddress address = null;
+        try {
+            NetworkInterface networkInterface = NetworkInterface.getByName(interfaceName);
+            address = networkInterface != null ? eligibleAddress(networkInterface) : null;
+        } catch (SocketException | RuntimeException e) {
+            Log.w(TAG, "Could not read interface " + interfaceName, e);
+        }
+        update(interfaceName, address);
+    }
+
+    private static InetAddress eligibleAddress(NetworkInterface networkInterface) throws SocketException {
+        if (!networkInterface.isUp() || networkInterface.isLoopback() || networkInterface.isPointToPoint()
+                || networkInterface.isVirtual() || !networkInterface.supportsMulticast()
+                || !isEligibleName(networkInterface.getName())) {
+            return null;
+        }
+        return pickAddress(Collections.list(networkInterface.getInetAddresses()));
+    }
+
+    // Brings one interface's announcement in line with its current address (null: none)
+    private void update(String interfaceName, InetAddress address) {
+        if (stopped) {
+            return;
+        }
+        InetAddress announced = addresses.get(interfaceName);
+        if (address != null && address.equals(announced)) {
+            return;
+        }
+        withdraw(interfaceName);
+        if (address == null) {
+            return;
+        }
+        try {
+            publications.put(interfaceName, publisher.publish(interfaceName, address));
+            addresses.put(interfaceName, address);
+            Log.d(TAG, "Announced on " + interfaceName + " (" + address.getHostAddress() + ")");
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Could not announce on " + interfaceName, e);
+        }
+    }
+
+    private void withdraw(String interfaceName) {
+        addresses.remove(interfaceName);
+        Closeable publication = publications.remove(interfaceName);
+        if (publication == null) {
+            return;
+        }
+        try {
+            publication.close();
+            Log.d(TAG, "Withdrew announcement on " + interfaceName);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Error withdrawing announcement on " + interfaceName, e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+/**
+ * One remote input event on its way to the page. Instances are pooled by
+ * {@link CastInputQueue} and reused once injected, so a sender streaming pointer moves
+ * at 120 Hz allocates nothing per event; hosts must not keep one after
+ * {@link BrowserHost#injectInput} returns.
+ */
+public final class RemoteInput {
+    public enum Kind {
+        POINTER_DOWN,
+        POINTER_MOVE,
+        POINTER_UP,
+        POINTER_CANCEL,
+        // Down and up at the same spot
+        TAP,
+        SCROLL,
+        KEY_DOWN,
+        KEY_UP,
+        // Down and up
+        KEY_PRESS
+    }
+
+    public Kind kind;
+    public String sessionId;
+    // Fraction of the page's width and height; NaN where the sender left it out
+    public float x;
+    public float y;
+    // SCROLL: pixels, positive scrolls right and down
+    public float dx;
+    public float dy;
+    // KEY_*: DOM key name
+    public String key;
+    // Sender frames folded into this one (more than 1 once moves or scrolls are coalesced)
+    public int frames;
+    // When the newest of those frames reached the receiver
+    long receivedNanos;
+    // Null for fire-and-forget input (no id)
+    CastCommandReply reply;
+
+    RemoteInput() {
+        reset();
+    }
+
+    void reset() {
+        kind = null;
+        sessionId = null;
+        x = Float.NaN;
+        y = Float.NaN;
+        dx = 0;
+        dy = 0;
+        key = null;
+        frames = 1;
+        receivedNanos = 0;
+        reply = null;
+    }
+}
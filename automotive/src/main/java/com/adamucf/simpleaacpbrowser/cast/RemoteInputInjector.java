@@ -0,0 +1,207 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import android.os.SystemClock;
+import android.view.InputDevice;
+import android.view.KeyCharacterMap;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+/**
+ * Turns {@link RemoteInput} into the events a local touch screen, mouse wheel or
+ * keyboard would produce and dispatches them to a view (the WebView on screen).
+ * MotionEvents come from the platform's recycled pool (obtain, then recycle right after
+ * dispatch) and the pointer arrays for scrolls are allocated once, so a pointer stream
+ * creates no garbage per event. UI thread only.
+ */
+final class RemoteInputInjector {
+    private final MotionEvent.PointerProperties[] properties = {new MotionEvent.PointerProperties()};
+    private final MotionEvent.PointerCoords[] coords = {new MotionEvent.PointerCoords()};
+    private KeyCharacterMap characterMap;
+
+    // View the current gesture went to; a different view (e.g. after a tab switch) starts fresh
+    private View target;
+    // A touch gesture is in progress between a down and its up or cancel
+    private boolean pointerDown;
+    private long downTime;
+    private long keyDownTime;
+    // Last position in view pixels, for events that leave it out
+    private float lastX = Float.NaN;
+    private float lastY = Float.NaN;
+
+    // Returns false for an empty view or a key with no Android equivalent
+    boolean inject(View view, RemoteInput input) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        if (width == 0 || height == 0) {
+            return false;
+        }
+        if (view != target) {
+            target = view;
+            pointerDown = false;
+            lastX = width / 2f;
+            lastY = height / 2f;
+        }
+        if (!Float.isNaN(input.x)) {
+            lastX = input.x * (width - 1);
+            lastY = input.y * (height - 1);
+        }
+        long now = SystemClock.uptimeMillis();
+
+        switch (input.kind) {
+            case POINTER_DOWN:
+                // A down while a gesture is open means the sender lost the up; end it first
+                if (pointerDown) {
+                    touch(view, MotionEvent.ACTION_CANCEL, now);
+                }
+                pointerDown = true;
+                downTime = now;
+                touch(view, MotionEvent.ACTION_DOWN, now);
+                return true;
+            case POINTER_MOVE:
+                if (pointerDown) {
+                    touch(view, MotionEvent.ACTION_MOVE, now);
+                } else {
+                    // No button held: a mouse-like hover, so pages see mousemove and :hover
+                    hover(view, now);
+                }
+                return true;
+            case POINTER_UP:
+            case POINTER_CANCEL:
+                if (pointerDown) {
+                    pointerDown = false;
+                    touch(view, input.kind == RemoteInput.Kind.POINTER_UP
+                        ? MotionEvent.ACTION_UP : MotionEvent.ACTION_CANCEL, now);
+                }
+                return true;
+            case TAP:
+                if (pointerDown) {
+                    touch(view, MotionEvent.ACTION_CANCEL, now);
+                    pointerDown = false;
+                }
+                downTime = now;
+                touch(view, MotionEvent.ACTION_DOWN, now);
+                touch(view, MotionEvent.ACTION_UP, now);
+                return true;
+            case SCROLL:
+                scroll(view, input.dx, input.dy, now);
+                return true;
+            case KEY_DOWN:
+                return key(view, input.key, KeyEvent.ACTION_DOWN, now);
+            case KEY_UP:
+                return key(view, input.key, KeyEvent.ACTION_UP, now);
+            case KEY_PRESS:
+                return key(view, input.key, KeyEvent.ACTION_DOWN, now) && key(view, input.key, KeyEvent.ACTION_UP, now);
+            default:
+                return false;
+        }
+    }
+
+    private void touch(View view, int action, long eventTime) {
+        MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, lastX, lastY, 0);
+        event.setSource(InputDevice.SOURCE_TOUCHSCREEN);
+        try {
+            view.dispatchTouchEvent(event);
+        } finally {
+            event.recycle();
+        }
+    }
+
+    private void hover(View view, long eventTime) {
+        MotionEvent event = MotionEvent.obtain(eventTime, eventTime, MotionEvent.ACTION_HOVER_MOVE, lastX, lastY, 0);
+        event.setSource(InputDevice.SOURCE_MOUSE);
+        try {
+            view.dispatchGenericMotionEvent(event);
+        } finally {
+            event.recycle();
+        }
+    }
+
+    // Wheel scroll at the pointer; the axes count detents, so pixels are scaled back by the
+    // same factors the view uses to turn detents into pixels
+    private void scroll(View view, float dx, float dy, long eventTime) {
+        ViewConfiguration config = ViewConfiguration.get(view.getContext());
+        properties[0].clear();
+        properties[0].id = 0;
+        properties[0].toolType = MotionEvent.TOOL_TYPE_MOUSE;
+        coords[0].clear();
+        coords[0].x = lastX;
+        coords[0].y = lastY;
+        // Positive VSCROLL is up and positive HSCROLL is right
+        coords[0].setAxisValue(MotionEvent.AXIS_VSCROLL, -dy / config.getScaledVerticalScrollFactor());
+        coords[0].setAxisValue(MotionEvent.AXIS_HSCROLL, dx / config.getScaledHorizontalScrollFactor());
+        MotionEvent event = MotionEvent.obtain(eventTime, eventTime, MotionEvent.ACTION_SCROLL, 1,
+            properties, coords, 0, 0, 1f, 1f, 0, 0, InputDevice.SOURCE_MOUSE, 0);
+        try {
+            view.dispatchGenericMotionEvent(event);
+        } finally {
+            event.recycle();
+        }
+    }
+
+    private boolean key(View view, String key, int action, long eventTime) {
+        if (action == KeyEvent.ACTION_DOWN) {
+            keyDownTime = eventTime;
+        }
+        int code = keyCode(key);
+        if (code != KeyEvent.KEYCODE_UNKNOWN) {
+            view.dispatchKeyEvent(new KeyEvent(keyDownTime, eventTime, action, code, 0, 0,
+                KeyCharacterMap.VIRTUAL_KEYBOARD, 0, 0, InputDevice.SOURCE_KEYBOARD));
+            return true;
+        }
+        // A printable character: the key strokes that type it (including any shift)
+        if (key.length() != 1) {
+            return false;
+        }
+        if (characterMap == null) {
+            characterMap = KeyCharacterMap.load(KeyCharacterMap.VIRTUAL_KEYBOARD);
+        }
+        KeyEvent[] events = characterMap.getEvents(new char[]{key.charAt(0)});
+        if (events == null) {
+            return false;
+        }
+        for (KeyEvent event : events) {
+            if (event.getAction() == action) {
+                view.dispatchKeyEvent(KeyEvent.changeTimeRepeat(event, eventTime, 0));
+            }
+        }
+        return true;
+    }
+
+    // DOM key names (KeyboardEvent.key) for keys that don't type a character
+    private static int keyCode(String key) {
+        switch (key) {
+            case "Enter":
+                return KeyEvent.KEYCODE_ENTER;
+            case "Tab":
+                return KeyEvent.KEYCODE_TAB;
+            case "Escape":
+                return KeyEvent.KEYCODE_ESCAPE;
+            case "Backspace":
+                return KeyEvent.KEYCODE_DEL;
+            case "Delete":
+                return KeyEvent.KEYCODE_FORWARD_DEL;
+            case "ArrowUp":
+                return KeyEvent.KEYCODE_DPAD_UP;
+            case "ArrowDown":
+                return KeyEvent.KEYCODE_DPAD_DOWN;
+            case "ArrowLeft":
+                return KeyEvent.KEYCODE_DPAD_LEFT;
+            case "ArrowRight":
+                return KeyEvent.KEYCODE_DPAD_RIGHT;
+            case "Home":
+                return KeyEvent.KEYCODE_MOVE_HOME;
+            case "End":
+                return KeyEvent.KEYCODE_MOVE_END;
+            case "PageUp":
+                return KeyEvent.KEYCODE_PAGE_UP;
+            case "PageDown":
+                return KeyEvent.KEYCODE_PAGE_DOWN;
+            case " ":
+                return KeyEvent.KEYCODE_SPACE;
+            default:
+                return KeyEvent.KEYCODE_UNKNOWN;
+        }
+    }
+}
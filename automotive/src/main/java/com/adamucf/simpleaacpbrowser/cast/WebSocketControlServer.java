@@ -0,0 +1,614 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local WebSocket endpoint for the riptide command set, for diagnostic and kiosk tools on
+ * the car's LAN that don't want to go through a Cast session. Each connection is a sender
+ * session like a Cast one: its text (JSON) and binary (CBOR) frames go to the listener,
+ * and the channel handed to {@link Listener#onOpen} writes frames back. Plain NIO: one selector thread accepts,
+ * reads and writes for every connection. Only loopback and LAN interfaces are served,
+ * and handshakes carrying an Origin header are refused, so web pages (including the one
+ * on screen) can't drive the receiver.
+ */
+public class WebSocketControlServer {
+    private static final String TAG = "WebSocketControlServer";
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int MAX_CONNECTIONS = 16;
+    private static final int MAX_HANDSHAKE_BYTES = 8 * 1024;
+    private static final int MAX_MESSAGE_BYTES = 1024 * 1024;
+    // A client this far behind on reading has further sends failed instead of queued
+    private static final int MAX_PENDING_WRITE_BYTES = 1024 * 1024;
+
+    private static final int OP_CONTINUATION = 0x0;
+    private static final int OP_TEXT = 0x1;
+    private static final int OP_BINARY = 0x2;
+    private static final int OP_CLOSE = 0x8;
+    private static final int OP_PING = 0x9;
+    private static final int OP_PONG = 0xA;
+
+    private static final int CLOSE_PROTOCOL_ERROR = 1002;
+    private static final int CLOSE_TOO_BIG = 1009;
+    private static final int CLOSE_INTERNAL_ERROR = 1011;
+
+    // Called on the selector thread
+    public interface Listener {
+        void onOpen(String sessionId, CastMessageDispatcher.Channel channel);
+
+        void onMessage(String sessionId, String message);
+
+        void onBinaryMessage(String sessionId, byte[] message);
+
+        void onClose(String sessionId);
+    }
+
+    private static final class PendingWrite {
+        final ByteBuffer buffer;
+        final CastMessageDispatcher.SendCallback callback;
+
+        PendingWrite(ByteBuffer buffer, CastMessageDispatcher.SendCallback callback) {
+            this.buffer = buffer;
+            this.callback = callback;
+        }
+    }
+
+    private final class Connection implements CastMessageDispatcher.BinaryChannel {
+        final SocketChannel socket;
+        final String sessionId;
+        SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(4096);
+        // Bytes the parser needs buffered before it can make progress
+        int needed;
+        boolean open;
+        // Closing: no more reads, the socket closes once queued writes are out
+        boolean closing;
+        ByteArrayOutputStream fragments;
+        // Opcode of the message being reassembled from fragments
+        int fragmentOpcode;
+        // Guarded by this; filled from any thread, drained on the selector thread
+        final ArrayDeque<PendingWrite> writes = new ArrayDeque<>();
+        int pendingBytes;
+        boolean closed;
+
+        Connection(SocketChannel socket, String sessionId) {
+            this.socket = socket;
+            this.sessionId = sessionId;
+        }
+
+        // Dispatcher writer thread: queue the frame and let the selector write it
+        @Override
+        public void send(String namespace, String message, CastMessageDispatcher.SendCallback callback) {
+            if (!queue(this, frame(OP_TEXT, message.getBytes(StandardCharsets.UTF_8)), callback)) {
+                callback.onComplete(false);
+                return;
+            }
+            writeRequests.add(this);
+            selector.wakeup();
+        }
+
+        @Override
+        public void sendBinary(String namespace, byte[] message, CastMessageDispatcher.SendCallback callback) {
+            if (!queue(this, frame(OP_BINARY, message), callback)) {
+                callback.onComplete(false);
+                return;
+            }
+            writeRequests.add(this);
+            selector.wakeup();
+        }
+    }
+
+    private final int requestedPort;
+    private final Listener listener;
+    private final Queue<Connection> writeRequests = new ConcurrentLinkedQueue<>();
+    // Session ids stay unique across restarts, so the journal never mistakes a new client for an old one
+    private final String sessionPrefix = "ws-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+    private final AtomicInteger sessionCounter = new AtomicInteger();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private volatile Selector selector;
+    private volatile ServerSocketChannel server;
+    private Thread selectorThread;
+    private volatile boolean running;
+    private int socketCount;
+
+    // Port 0 binds an ephemeral port; see getPort()
+    public WebSocketControlServer(int port, Listener listener) {
+        this.requestedPort = port;
+        this.listener = listener;
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        Selector selector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.socket().setReuseAddress(true);
+            server.bind(new InetSocketAddress(requestedPort));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        this.selector = selector;
+        this.server = server;
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "CastWebSocket");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        Log.d(TAG, "WebSocket control endpoint listening on port " + getPort());
+    }
+
+    // Closes every connection (each reported to onClose) and the listening socket
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPort() {
+        ServerSocketChannel server = this.server;
+        return server != null ? server.socket().getLocalPort() : -1;
+    }
+
+    // Connections past the handshake
+    public int getConnectionCount() {
+        return openConnections.get();
+    }
+
+    private void selectLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Connection pending;
+                while ((pending = writeRequests.poll()) != null) {
+                    if (pending.key != null && pending.key.isValid()) {
+                        pending.key.interestOps(pending.key.interestOps() | SelectionKey.OP_WRITE);
+                    }
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                        }
+                    } catch (IOException e) {
+                        Log.d(TAG, "Connection " + connection.sessionId + " failed: " + e.getMessage());
+                        closeNow(connection);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "WebSocket selector loop failed", e);
+        } finally {
+            running = false;
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    closeNow((Connection) key.attachment());
+                }
+            }
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing WebSocket endpoint: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel socket = server.accept();
+        if (socket == null) {
+            return;
+        }
+        Socket raw = socket.socket();
+        if (socketCount >= MAX_CONNECTIONS || !isLocalNetwork(raw.getLocalAddress())) {
+            Log.w(TAG, "Refused WebSocket connection from " + raw.getRemoteSocketAddress());
+            socket.close();
+            return;
+        }
+        socket.configureBlocking(false);
+        raw.setTcpNoDelay(true);
+        Connection connection = new Connection(socket, sessionPrefix + sessionCounter.incrementAndGet());
+        connection.key = socket.register(selector, SelectionKey.OP_READ, connection);
+        socketCount++;
+    }
+
+    // Loopback (adb forward) and LAN interfaces only; never a cellular or VPN address
+    static boolean isLocalNetwork(InetAddress local) {
+        if (local == null) {
+            return false;
+        }
+        if (local.isLoopbackAddress()) {
+            return true;
+        }
+        try {
+            NetworkInterface networkInterface = NetworkInterface.getByInetAddress(local);
+            return networkInterface != null && MdnsResponder.isEligibleName(networkInterface.getName());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.closing) {
+            return;
+        }
+        if (connection.socket.read(connection.in) < 0) {
+            closeNow(connection);
+            return;
+        }
+        ByteBuffer in = connection.in;
+        in.flip();
+        if (!connection.open) {
+            handshake(connection);
+        }
+        if (connection.open) {
+            readFrames(connection);
+        }
+        in.compact();
+        if (connection.needed > in.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(connection.needed);
+            in.flip();
+            larger.put(in);
+            connection.in = larger;
+        }
+    }
+
+    private void handshake(Connection connection) {
+        ByteBuffer in = connection.in;
+        int end = indexOfHeaderEnd(in);
+        if (end < 0) {
+            if (in.remaining() >= MAX_HANDSHAKE_BYTES) {
+                reject(connection, "431 Request Header Fields Too Large");
+            } else {
+                connection.needed = Math.min(MAX_HANDSHAKE_BYTES, in.capacity() * 2);
+            }
+            return;
+        }
+        byte[] head = new byte[end - in.position()];
+        in.get(head);
+        in.position(end + 4);
+        connection.needed = 0;
+
+        String[] lines = new String(head, StandardCharsets.ISO_8859_1).split("\r\n");
+        String key = null;
+        String version = null;
+        boolean upgrade = false;
+        boolean origin = false;
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.US);
+            String value = lines[i].substring(colon + 1).trim();
+            switch (name) {
+                case "upgrade":
+                    upgrade = "websocket".equalsIgnoreCase(value);
+                    break;
+                case "sec-websocket-key":
+                    key = value;
+                    break;
+                case "sec-websocket-version":
+                    version = value;
+                    break;
+                case "origin":
+                    origin = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!lines[0].startsWith("GET ") || !upgrade || key == null || !"13".equals(version)) {
+            reject(connection, "400 Bad Request");
+            return;
+        }
+        if (origin) {
+            reject(connection, "403 Forbidden");
+            return;
+        }
+
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n";
+        queueFromSelector(connection, ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+        connection.open = true;
+        openConnections.incrementAndGet();
+        Log.d(TAG, "WebSocket sender connected: " + connection.sessionId);
+        listener.onOpen(connection.sessionId, connection);
+    }
+
+    private void reject(Connection connection, String status) {
+        Log.w(TAG, "Rejected WebSocket handshake: " + status);
+        String response = "HTTP/1.1 " + status + "\r\nConnection: close\r\nContent-Length: 0\r\n\r\n";
+        queueFromSelector(connection, ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+        connection.closing = true;
+    }
+
+    private static int indexOfHeaderEnd(ByteBuffer in) {
+        for (int i = in.position(); i + 3 < in.limit(); i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Parses every complete client frame in the buffer; a partial one waits for more bytes
+    private void readFrames(Connection connection) {
+        ByteBuffer in = connection.in;
+        while (!connection.closing && in.remaining() >= 2) {
+            int start = in.position();
+            int b0 = in.get(start) & 0xff;
+            int b1 = in.get(start + 1) & 0xff;
+            int opcode = b0 & 0x0f;
+            boolean fin = (b0 & 0x80) != 0;
+            long length = b1 & 0x7f;
+            int header = 2;
+            if (length == 126) {
+                if (in.remaining() < 4) {
+                    return;
+                }
+                length = in.getShort(start + 2) & 0xffff;
+                header = 4;
+            } else if (length == 127) {
+                if (in.remaining() < 10) {
+                    return;
+                }
+                length = in.getLong(start + 2);
+                header = 10;
+            }
+            // Clients must mask, and no extensions were negotiated
+            if ((b1 & 0x80) == 0 || (b0 & 0x70) != 0) {
+                close(connection, CLOSE_PROTOCOL_ERROR);
+                return;
+            }
+            // Control frames are small and never fragmented
+            if (opcode >= OP_CLOSE && (!fin || length > 125)) {
+                close(connection, CLOSE_PROTOCOL_ERROR);
+                return;
+            }
+            if (length < 0 || length > MAX_MESSAGE_BYTES) {
+                close(connection, CLOSE_TOO_BIG);
+                return;
+            }
+            int total = header + 4 + (int) length;
+            if (in.remaining() < total) {
+                connection.needed = total;
+                return;
+            }
+            connection.needed = 0;
+            int maskAt = start + header;
+            byte[] payload = new byte[(int) length];
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] = (byte) (in.get(maskAt + 4 + i) ^ in.get(maskAt + (i & 3)));
+            }
+            in.position(start + total);
+            onFrame(connection, fin, opcode, payload);
+        }
+    }
+
+    private void onFrame(Connection connection, boolean fin, int opcode, byte[] payload) {
+        switch (opcode) {
+            case OP_TEXT:
+            case OP_BINARY:
+                if (connection.fragments != null) {
+                    close(connection, CLOSE_PROTOCOL_ERROR);
+                } else if (fin) {
+                    deliver(connection, opcode, payload);
+                } else {
+                    connection.fragments = new ByteArrayOutputStream(payload.length * 2);
+                    connection.fragments.write(payload, 0, payload.length);
+                    connection.fragmentOpcode = opcode;
+                }
+                break;
+            case OP_CONTINUATION:
+                if (connection.fragments == null) {
+                    close(connection, CLOSE_PROTOCOL_ERROR);
+                    break;
+                }
+                if (connection.fragments.size() + payload.length > MAX_MESSAGE_BYTES) {
+                    close(connection, CLOSE_TOO_BIG);
+                    break;
+                }
+                connection.fragments.write(payload, 0, payload.length);
+                if (fin) {
+                    byte[] message = connection.fragments.toByteArray();
+                    connection.fragments = null;
+                    deliver(connection, connection.fragmentOpcode, message);
+                }
+                break;
+            case OP_PING:
+                queueFromSelector(connection, frame(OP_PONG, payload));
+                break;
+            case OP_PONG:
+                break;
+            case OP_CLOSE:
+                // Echo the client's status code, then hang up
+                queueFromSelector(connection, frame(OP_CLOSE, payload.length >= 2
+                    ? new byte[]{payload[0], payload[1]} : new byte[0]));
+                connection.closing = true;
+                break;
+            default:
+                close(connection, CLOSE_PROTOCOL_ERROR);
+                break;
+        }
+    }
+
+    // A listener failure closes only the connection whose frame caused it, not the endpoint
+    private void deliver(Connection connection, int opcode, byte[] message) {
+        try {
+            if (opcode == OP_BINARY) {
+                listener.onBinaryMessage(connection.sessionId, message);
+            } else {
+                listener.onMessage(connection.sessionId, new String(message, StandardCharsets.UTF_8));
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error handling message from " + connection.sessionId, e);
+            close(connection, CLOSE_INTERNAL_ERROR);
+        }
+    }
+
+    private void close(Connection connection, int code) {
+        queueFromSelector(connection, frame(OP_CLOSE, new byte[]{(byte) (code >> 8), (byte) code}));
+        connection.closing = true;
+    }
+
+    // Unmasked server frame
+    static ByteBuffer frame(int opcode, byte[] payload) {
+        int length = payload.length;
+        int header = length < 126 ? 2 : length <= 0xffff ? 4 : 10;
+        ByteBuffer frame = ByteBuffer.allocate(header + length);
+        frame.put((byte) (0x80 | opcode));
+        if (length < 126) {
+            frame.put((byte) length);
+        } else if (length <= 0xffff) {
+            frame.put((byte) 126).putShort((short) length);
+        } else {
+            frame.put((byte) 127).putLong(length);
+        }
+        frame.put(payload);
+        frame.flip();
+        return frame;
+    }
+
+    private boolean queue(Connection connection, ByteBuffer buffer, CastMessageDispatcher.SendCallback callback) {
+        synchronized (connection) {
+            if (connection.closed || connection.closing
+                || connection.pendingBytes + buffer.remaining() > MAX_PENDING_WRITE_BYTES) {
+                return false;
+            }
+            connection.writes.addLast(new PendingWrite(buffer, callback));
+            connection.pendingBytes += buffer.remaining();
+            return true;
+        }
+    }
+
+    // Handshake responses and control frames; already on the selector thread, so no wakeup
+    private void queueFromSelector(Connection connection, ByteBuffer buffer) {
+        synchronized (connection) {
+            if (connection.closed) {
+                return;
+            }
+            connection.writes.addLast(new PendingWrite(buffer, null));
+            connection.pendingBytes += buffer.remaining();
+        }
+        connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    private void write(Connection connection) throws IOException {
+        List<CastMessageDispatcher.SendCallback> written = new ArrayList<>();
+        boolean drained;
+        synchronized (connection) {
+            PendingWrite head;
+            while ((head = connection.writes.peekFirst()) != null) {
+                int size = head.buffer.remaining();
+                connection.socket.write(head.buffer);
+                if (head.buffer.hasRemaining()) {
+                    connection.pendingBytes -= size - head.buffer.remaining();
+                    break;
+                }
+                connection.writes.pollFirst();
+                connection.pendingBytes -= size;
+                if (head.callback != null) {
+                    written.add(head.callback);
+                }
+            }
+            drained = connection.writes.isEmpty();
+            if (drained) {
+                connection.key.interestOps(connection.closing ? 0 : SelectionKey.OP_READ);
+            }
+        }
+        for (CastMessageDispatcher.SendCallback callback : written) {
+            callback.onComplete(true);
+        }
+        if (drained && connection.closing) {
+            closeNow(connection);
+        }
+    }
+
+    private void closeNow(Connection connection) {
+        List<PendingWrite> unsent;
+        synchronized (connection) {
+            if (connection.closed) {
+                return;
+            }
+            connection.closed = true;
+            unsent = new ArrayList<>(connection.writes);
+            connection.writes.clear();
+            connection.pendingBytes = 0;
+        }
+        connection.key.cancel();
+        socketCount--;
+        try {
+            connection.socket.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing WebSocket connection: " + e.getMessage());
+        }
+        for (PendingWrite write : unsent) {
+            if (write.callback != null) {
+                write.callback.onComplete(false);
+            }
+        }
+        if (connection.open) {
+            openConnections.decrementAndGet();
+            Log.d(TAG, "WebSocket sender disconnected: " + connection.sessionId);
+            listener.onClose(connection.sessionId);
+        }
+    }
+}
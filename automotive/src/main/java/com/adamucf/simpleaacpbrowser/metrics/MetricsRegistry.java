@@ -0,0 +1,286 @@
+package com.adamucf.simpleaacpbrowser.metrics;
+
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessageWriter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide receiver metrics: counters with a one-minute rate, gauges and
+ * log-linear latency histograms. Recording is lock-free so it can sit on the cast
+ * and UI hot paths; only {@link #toJson()} walks the registry.
+ */
+public final class MetricsRegistry {
+    // Metric names shared by the receiver, get_metrics and cast_status.html
+    public static final String INBOUND_MESSAGES = "cast.inbound_messages";
+    public static final String INVALID_MESSAGES = "cast.invalid_messages";
+    public static final String PARSE_TIME_US = "cast.parse_time_us";
+    public static final String COMMAND_QUEUE_DEPTH = "cast.command_queue_depth";
+    public static final String OUTBOUND_QUEUE_DEPTH = "cast.outbound_queue_depth";
+    public static final String OUTBOUND_DROPPED = "cast.outbound_dropped";
+    public static final String DISPATCH_DELAY_US = "cast.dispatch_delay_us";
+    public static final String JS_EVAL_US = "cast.js_eval_us";
+    public static final String INPUT_LATENCY_US = "cast.input_latency_us";
+    public static final String INPUT_EVENTS = "cast.input_events";
+    public static final String INPUT_COALESCED = "cast.input_coalesced";
+    public static final String INPUT_DROPPED = "cast.input_dropped";
+    public static final String PAGE_LOAD_US = "webview.page_load_us";
+    public static final String PAGE_LOAD_ERRORS = "webview.page_load_errors";
+    public static final String RENDERER_JS_HEAP_BYTES = "webview.js_heap_bytes";
+    public static final String APP_HEAP_BYTES = "app.java_heap_bytes";
+    public static final String MDNS_REGISTERED = "mdns.registered";
+    public static final String MDNS_INTERFACES = "mdns.interfaces";
+    public static final String RECEIVER_ARMED = "cast.receiver_armed";
+    public static final String CAST_SESSIONS = "cast.sessions";
+    public static final String CONTROL_CONNECTIONS = "cast.control_connections";
+    public static final String RENDERER_GONE = "webview.renderer_gone";
+    public static final String RENDERER_HANGS = "webview.renderer_hangs";
+    public static final String NET_CONSTRAINED = "net.constrained";
+    public static final String NET_DEFER_US = "net.low_priority_defer_us";
+    public static final String NET_THROTTLED_FETCHES = "net.throttled_fetches";
+    public static final String HTTP_POOL_CONNECTIONS = "net.http_pool_connections";
+    public static final String SETTINGS_PROFILE = "webview.settings_profile";
+    public static final String THERMAL_STATUS = "device.thermal_status";
+    public static final String PRERENDER_STARTED = "webview.prerender_started";
+    public static final String PRERENDER_HITS = "webview.prerender_hits";
+    public static final String PRERENDER_DISCARDED = "webview.prerender_discarded";
+    public static final String PRERENDER_HIT_RATE_PCT = "webview.prerender_hit_rate_pct";
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public interface Gauge {
+        long value();
+    }
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final long startMillis = System.currentTimeMillis();
+
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    // Registering a gauge under an existing name replaces it (e.g. a recreated activity)
+    public void gauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    // Settable gauge for values that are sampled rather than computed on read
+    public AtomicLong settableGauge(String name) {
+        AtomicLong value = new AtomicLong(-1);
+        gauges.put(name, value::get);
+        return value;
+    }
+
+    // Current value of a gauge, or -1 if it isn't registered or can't be read
+    public long gaugeValue(String name) {
+        Gauge gauge = gauges.get(name);
+        if (gauge == null) {
+            return -1;
+        }
+        try {
+            return gauge.value();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    public void reset() {
+        counters.clear();
+        gauges.clear();
+        histograms.clear();
+    }
+
+    public String toJson() {
+        return toJson(new CastMessageWriter());
+    }
+
+    // Names are sorted so consecutive snapshots are easy to diff
+    public String toJson(CastMessageWriter writer) {
+        long now = System.currentTimeMillis();
+        writer.reset().beginObject()
+            .name("uptime_ms").value(now - startMillis);
+
+        writer.name("counters").beginObject();
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            Counter counter = entry.getValue();
+            writer.name(entry.getKey()).beginObject()
+                .name("count").value(counter.count())
+                .name("rate_1m").value(counter.ratePerSecond(now))
+                .endObject();
+        }
+        writer.endObject();
+
+        writer.name("gauges").beginObject();
+        for (Map.Entry<String, Gauge> entry : new TreeMap<>(gauges).entrySet()) {
+            writer.name(entry.getKey()).value(gaugeValue(entry.getKey()));
+        }
+        writer.endObject();
+
+        writer.name("histograms").beginObject();
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            writer.name(entry.getKey()).beginObject()
+                .name("count").value(histogram.count())
+                .name("mean").value(histogram.mean())
+                .name("p50").value(histogram.percentile(50))
+                .name("p90").value(histogram.percentile(90))
+                .name("p99").value(histogram.percentile(99))
+                .name("max").value(histogram.max())
+                .endObject();
+        }
+        writer.endObject();
+
+        return writer.endObject().toString();
+    }
+
+    /**
+     * Monotonic counter. Alongside the total it keeps per-second buckets for the last
+     * minute, so the rate needs no background timer.
+     */
+    public static final class Counter {
+        private static final int WINDOW_SECONDS = 60;
+
+        private final LongAdder total = new LongAdder();
+        private final AtomicLongArray buckets = new AtomicLongArray(WINDOW_SECONDS);
+        private final AtomicLongArray bucketSeconds = new AtomicLongArray(WINDOW_SECONDS);
+
+        public void inc() {
+            add(1);
+        }
+
+        public void add(long n) {
+            total.add(n);
+            long second = System.currentTimeMillis() / 1000;
+            int i = (int) (second % WINDOW_SECONDS);
+            long owner = bucketSeconds.get(i);
+            if (owner != second && bucketSeconds.compareAndSet(i, owner, second)) {
+                // First event of a new second claims the slot; a racing add may be lost, which is fine for a rate
+                buckets.set(i, 0);
+            }
+            buckets.addAndGet(i, n);
+        }
+
+        public long count() {
+            return total.sum();
+        }
+
+        // Events per second over the last full minute
+        public double ratePerSecond(long nowMillis) {
+            long now = nowMillis / 1000;
+            long sum = 0;
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                long second = bucketSeconds.get(i);
+                if (second < now && now - second <= WINDOW_SECONDS) {
+                    sum += buckets.get(i);
+                }
+            }
+            return sum / (double) WINDOW_SECONDS;
+        }
+    }
+
+    /**
+     * HDR-style histogram over non-negative longs: exact below 16, then 16 linear
+     * sub-buckets per power of two (about 6% relative error) up to 2^40.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int MAX_EXPONENT = 40;
+        private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            counts.incrementAndGet(indexFor(value));
+            count.increment();
+            sum.add(value);
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        // Records the time since startNanos, in microseconds
+        public void recordSinceNanos(long startNanos) {
+            record((System.nanoTime() - startNanos) / 1000);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        public double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : sum.sum() / (double) n;
+        }
+
+        // Upper bound of the bucket holding the given percentile, capped at the observed max
+        public long percentile(double percentile) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        static int indexFor(long value) {
+            if (value < SUB_COUNT) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent > MAX_EXPONENT) {
+                return BUCKETS - 1;
+            }
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+            return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+        }
+
+        static long upperBound(int index) {
+            if (index < SUB_COUNT) {
+                return index;
+            }
+            int exponent = index / SUB_COUNT + SUB_BITS - 1;
+            int sub = index % SUB_COUNT;
+            long width = 1L << (exponent - SUB_BITS);
+            return (1L << exponent) + (sub + 1) * width - 1;
+        }
+    }
+}
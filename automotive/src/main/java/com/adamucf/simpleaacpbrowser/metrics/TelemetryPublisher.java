@@ -0,0 +1,112 @@
+package com.adamucf.simpleaacpbrowser.metrics;
+
+import android.util.Log;
+import android.view.Choreographer;
+import android.webkit.WebView;
+
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessageWriter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes live telemetry into cast_status.html. Frame timing comes from Choreographer;
+ * every PUBLISH_INTERVAL all values go to the page as one JSON object in a single
+ * evaluateJavascript call, so the page never polls the JS bridge. Runs on the UI
+ * thread and only while the dashboard is showing.
+ */
+public class TelemetryPublisher implements Choreographer.FrameCallback {
+    private static final String TAG = "TelemetryPublisher";
+    private static final long PUBLISH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    // A frame gap this long means the UI thread was blocked (same threshold as a web long task)
+    private static final long LONG_FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final String CALLBACK = "window.onRiptideTelemetry";
+
+    private WebView webView;
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final CastMessageWriter writer = new CastMessageWriter();
+
+    private boolean running = false;
+    private long lastFrameNanos;
+    private long windowStartNanos;
+    private int framesInWindow;
+    private long longFrames;
+    private long lastInboundCount;
+
+    // Streams into the given page until stop(); a running stream just switches target
+    public void start(WebView target) {
+        webView = target;
+        if (running) {
+            return;
+        }
+        running = true;
+        lastFrameNanos = 0;
+        windowStartNanos = 0;
+        framesInWindow = 0;
+        lastInboundCount = metrics.counter(MetricsRegistry.INBOUND_MESSAGES).count();
+        Choreographer.getInstance().postFrameCallback(this);
+        Log.d(TAG, "Telemetry stream started");
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        webView = null;
+        Choreographer.getInstance().removeFrameCallback(this);
+        Log.d(TAG, "Telemetry stream stopped");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        if (lastFrameNanos != 0 && frameTimeNanos - lastFrameNanos >= LONG_FRAME_NANOS) {
+            longFrames++;
+        }
+        lastFrameNanos = frameTimeNanos;
+        if (windowStartNanos == 0) {
+            // The first frame only opens the window
+            windowStartNanos = frameTimeNanos;
+        } else {
+            framesInWindow++;
+        }
+
+        long elapsed = frameTimeNanos - windowStartNanos;
+        if (elapsed >= PUBLISH_INTERVAL_NANOS) {
+            publish(frameTimeNanos, elapsed);
+            windowStartNanos = frameTimeNanos;
+            framesInWindow = 0;
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void publish(long frameTimeNanos, long elapsedNanos) {
+        try {
+            double seconds = elapsedNanos / 1e9;
+            long inbound = metrics.counter(MetricsRegistry.INBOUND_MESSAGES).count();
+            double messageRate = (inbound - lastInboundCount) / seconds;
+            lastInboundCount = inbound;
+
+            String sample = writer.reset().beginObject()
+                .name("t").value(TimeUnit.NANOSECONDS.toMillis(frameTimeNanos))
+                .name("fps").value(framesInWindow / seconds)
+                .name("long_frames").value(longFrames)
+                .name("js_heap").value(metrics.gaugeValue(MetricsRegistry.RENDERER_JS_HEAP_BYTES))
+                .name("app_heap").value(metrics.gaugeValue(MetricsRegistry.APP_HEAP_BYTES))
+                .name("msg_rate").value(messageRate)
+                .name("command_queue").value(metrics.gaugeValue(MetricsRegistry.COMMAND_QUEUE_DEPTH))
+                .name("outbound_queue").value(metrics.gaugeValue(MetricsRegistry.OUTBOUND_QUEUE_DEPTH))
+                .name("mdns").value(metrics.gaugeValue(MetricsRegistry.MDNS_REGISTERED))
+                .endObject().toString();
+            webView.evaluateJavascript(CALLBACK + "&&" + CALLBACK + "(" + sample + ")", null);
+        } catch (Exception e) {
+            Log.e(TAG, "Error publishing telemetry", e);
+        }
+    }
+}
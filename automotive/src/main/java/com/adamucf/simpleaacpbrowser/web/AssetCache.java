@@ -0,0 +1,461 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import com.adamucf.simpleaacpbrowser.http.HttpFetcher;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Offline-first disk cache for the app shell. Bodies are stored content-addressed
+ * (file name = SHA-256 of the body) so identical assets share one blob, and each URL
+ * gets a small metadata file pointing at its blob. The index is kept in LRU order
+ * and trimmed to {@code maxBytes}; hits are revalidated in the background with
+ * ETag / Last-Modified. Fetches go through the shared {@link HttpFetcher} pool.
+ */
+public class AssetCache {
+    private static final String META_SUFFIX = ".meta";
+    private static final String BLOB_DIR = "blobs";
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 10000;
+    private static final long DEFAULT_REVALIDATE_INTERVAL_MS = 60 * 1000;
+    // Lower case; see forwardable
+    private static final Set<String> STRIPPED_HEADERS = new HashSet<>(Arrays.asList(
+        "range", "if-range", "if-none-match", "if-modified-since", "if-match", "if-unmodified-since"));
+
+    private final File directory;
+    private final File blobDirectory;
+    private final long maxBytes;
+    private final Executor revalidationExecutor;
+    private final HttpFetcher fetcher = HttpFetcher.getDefault().withTimeouts(CONNECT_TIMEOUT_MS, READ_TIMEOUT_MS);
+    private long revalidateIntervalMs = DEFAULT_REVALIDATE_INTERVAL_MS;
+
+    // URL key -> entry, in access order (eldest first)
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(64, 0.75f, true);
+    // Content hash -> number of entries referencing that blob
+    private final Map<String, Integer> blobRefs = new HashMap<>();
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private long totalBytes = 0;
+
+    public AssetCache(File directory, long maxBytes, Executor revalidationExecutor) {
+        this.directory = directory;
+        this.blobDirectory = new File(directory, BLOB_DIR);
+        this.maxBytes = maxBytes;
+        this.revalidationExecutor = revalidationExecutor;
+        blobDirectory.mkdirs();
+        loadIndex();
+    }
+
+    public void setRevalidateIntervalMs(long revalidateIntervalMs) {
+        this.revalidateIntervalMs = revalidateIntervalMs;
+    }
+
+    // Only static shell assets are worth caching; everything else goes straight to the network
+    public static boolean isCacheableUrl(String url) {
+        String path = url;
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        int fragment = path.indexOf('#');
+        if (fragment >= 0) {
+            path = path.substring(0, fragment);
+        }
+        String lower = path.toLowerCase(Locale.US);
+        int lastSlash = lower.lastIndexOf('/');
+        String name = lastSlash >= 0 ? lower.substring(lastSlash + 1) : lower;
+        if (name.isEmpty() || name.indexOf('.') < 0) {
+            return true; // Directory or extensionless route: the HTML document
+        }
+        return name.endsWith(".html") || name.endsWith(".htm")
+            || name.endsWith(".js") || name.endsWith(".mjs")
+            || name.endsWith(".css") || name.endsWith(".json")
+            || name.endsWith(".woff") || name.endsWith(".woff2")
+            || name.endsWith(".ttf") || name.endsWith(".otf")
+            || name.endsWith(".svg") || name.endsWith(".ico");
+    }
+
+    public synchronized Entry get(String url) {
+        Entry entry = index.get(keyFor(url));
+        if (entry != null) {
+            // Persist the access so LRU order survives a restart
+            new File(directory, entry.key + META_SUFFIX).setLastModified(System.currentTimeMillis());
+        }
+        return entry;
+    }
+
+    public synchronized long size() {
+        return totalBytes;
+    }
+
+    public synchronized int entryCount() {
+        return index.size();
+    }
+
+    // Fetch from the network and store; returns null if the response is not cacheable
+    public Entry fetch(String url, Map<String, String> requestHeaders) throws IOException {
+        try (HttpFetcher.Response response = fetcher.get(url, forwardable(requestHeaders))) {
+            if (response.getStatus() != HttpURLConnection.HTTP_OK || !isCacheableResponse(response)) {
+                return null;
+            }
+            return store(url, response);
+        }
+    }
+
+    // Queue a conditional GET for a cached URL unless one ran recently or is already in flight
+    public void revalidateAsync(final String url) {
+        Entry entry = get(url);
+        if (entry == null || System.currentTimeMillis() - entry.validatedAt < revalidateIntervalMs) {
+            return;
+        }
+        if (!revalidating.add(url)) {
+            return;
+        }
+        revalidationExecutor.execute(() -> {
+            try {
+                revalidate(url);
+            } catch (IOException ignored) {
+                // Offline or server error: keep serving the cached copy
+            } finally {
+                revalidating.remove(url);
+            }
+        });
+    }
+
+    // Returns true if the cached body was replaced
+    public boolean revalidate(String url) throws IOException {
+        Entry entry = get(url);
+        if (entry == null) {
+            return fetch(url, null) != null;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        if (entry.etag != null) {
+            headers.put("If-None-Match", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            headers.put("If-Modified-Since", entry.lastModified);
+        }
+
+        // Our own conditional headers, so not filtered like the WebView's
+        try (HttpFetcher.Response response = fetcher.get(url, headers)) {
+            int status = response.getStatus();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                markValidated(entry);
+                return false;
+            }
+            if (status == HttpURLConnection.HTTP_OK) {
+                if (!isCacheableResponse(response)) {
+                    remove(url);
+                    return true;
+                }
+                Entry updated = store(url, response);
+                return updated != null && !updated.contentHash.equals(entry.contentHash);
+            }
+            return false;
+        }
+    }
+
+    public synchronized void remove(String url) {
+        Entry entry = index.remove(keyFor(url));
+        if (entry != null) {
+            dropEntry(entry);
+        }
+    }
+
+    public synchronized void clear() {
+        for (Entry entry : index.values()) {
+            new File(directory, entry.key + META_SUFFIX).delete();
+        }
+        index.clear();
+        for (String hash : blobRefs.keySet()) {
+            new File(blobDirectory, hash).delete();
+        }
+        blobRefs.clear();
+        totalBytes = 0;
+    }
+
+    // The WebView's request headers minus range and conditional ones: a partial body would
+    // corrupt the stored copy, and a 304 would leave nothing to store
+    private static Map<String, String> forwardable(Map<String, String> headers) {
+        Map<String, String> forwarded = new HashMap<>();
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (!STRIPPED_HEADERS.contains(header.getKey().toLowerCase(Locale.US))) {
+                    forwarded.put(header.getKey(), header.getValue());
+                }
+            }
+        }
+        return forwarded;
+    }
+
+    private boolean isCacheableResponse(HttpFetcher.Response response) {
+        String cacheControl = response.getHeader("Cache-Control");
+        if (cacheControl != null && cacheControl.toLowerCase(Locale.US).contains("no-store")) {
+            return false;
+        }
+        long length = response.getContentLength();
+        return length < 0 || length <= maxBytes / 2;
+    }
+
+    private Entry store(String url, HttpFetcher.Response response) throws IOException {
+        File temp = File.createTempFile("asset", ".tmp", blobDirectory);
+        MessageDigest digest = newDigest();
+        long length = 0;
+        try (InputStream in = response.getBody();
+             OutputStream out = new FileOutputStream(temp)) {
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                length += read;
+                if (length > maxBytes / 2) {
+                    temp.delete();
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        String contentType = response.getContentType();
+        Entry entry = new Entry(
+            keyFor(url),
+            url,
+            toHex(digest.digest()),
+            length,
+            parseMimeType(contentType),
+            parseCharset(contentType),
+            response.getHeader("ETag"),
+            response.getHeader("Last-Modified"),
+            System.currentTimeMillis()
+        );
+
+        synchronized (this) {
+            File blob = new File(blobDirectory, entry.contentHash);
+            if (blob.exists()) {
+                temp.delete(); // Same bytes already stored under another URL
+            } else if (!temp.renameTo(blob)) {
+                temp.delete();
+                throw new IOException("Failed to move cached asset into place");
+            }
+
+            // Take the new reference before releasing the old one so an unchanged body keeps its blob
+            Entry previous = index.remove(entry.key);
+            addEntry(entry);
+            if (previous != null) {
+                releaseBlob(previous);
+            }
+            writeMeta(entry);
+            trimToSize();
+        }
+        return entry;
+    }
+
+    private synchronized void markValidated(Entry entry) {
+        entry.validatedAt = System.currentTimeMillis();
+        if (index.containsKey(entry.key)) {
+            try {
+                writeMeta(entry);
+            } catch (IOException ignored) {
+                // The in-memory timestamp is enough until the next restart
+            }
+        }
+    }
+
+    private void addEntry(Entry entry) {
+        index.put(entry.key, entry);
+        Integer refs = blobRefs.get(entry.contentHash);
+        if (refs == null) {
+            blobRefs.put(entry.contentHash, 1);
+            totalBytes += entry.length;
+        } else {
+            blobRefs.put(entry.contentHash, refs + 1);
+        }
+    }
+
+    private void dropEntry(Entry entry) {
+        new File(directory, entry.key + META_SUFFIX).delete();
+        releaseBlob(entry);
+    }
+
+    private void releaseBlob(Entry entry) {
+        Integer refs = blobRefs.get(entry.contentHash);
+        if (refs == null || refs <= 1) {
+            blobRefs.remove(entry.contentHash);
+            new File(blobDirectory, entry.contentHash).delete();
+            totalBytes -= entry.length;
+        } else {
+            blobRefs.put(entry.contentHash, refs - 1);
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Entry> it = index.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            dropEntry(eldest);
+        }
+    }
+
+    private void loadIndex() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Restore LRU order from the metadata files' modification times
+        java.util.Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (!file.getName().endsWith(META_SUFFIX)) {
+                continue;
+            }
+            Entry entry = readMeta(file);
+            if (entry == null || !new File(blobDirectory, entry.contentHash).isFile()) {
+                file.delete();
+                continue;
+            }
+            addEntry(entry);
+        }
+        trimToSize();
+
+        // Remove blobs no entry points at (e.g. from an interrupted write)
+        File[] blobs = blobDirectory.listFiles();
+        if (blobs != null) {
+            for (File blob : blobs) {
+                if (!blobRefs.containsKey(blob.getName())) {
+                    blob.delete();
+                }
+            }
+        }
+    }
+
+    private void writeMeta(Entry entry) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("url", entry.url);
+        props.setProperty("hash", entry.contentHash);
+        props.setProperty("length", Long.toString(entry.length));
+        props.setProperty("validatedAt", Long.toString(entry.validatedAt));
+        if (entry.mimeType != null) props.setProperty("mimeType", entry.mimeType);
+        if (entry.encoding != null) props.setProperty("encoding", entry.encoding);
+        if (entry.etag != null) props.setProperty("etag", entry.etag);
+        if (entry.lastModified != null) props.setProperty("lastModified", entry.lastModified);
+
+        File meta = new File(directory, entry.key + META_SUFFIX);
+        try (OutputStream out = new FileOutputStream(meta)) {
+            props.store(out, null);
+        }
+    }
+
+    private Entry readMeta(File file) {
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+            String name = file.getName();
+            return new Entry(
+                name.substring(0, name.length() - META_SUFFIX.length()),
+                props.getProperty("url"),
+                props.getProperty("hash"),
+                Long.parseLong(props.getProperty("length")),
+                props.getProperty("mimeType"),
+                props.getProperty("encoding"),
+                props.getProperty("etag"),
+                props.getProperty("lastModified"),
+                Long.parseLong(props.getProperty("validatedAt", "0"))
+            );
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static String parseMimeType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int semicolon = contentType.indexOf(';');
+        return (semicolon >= 0 ? contentType.substring(0, semicolon) : contentType).trim();
+    }
+
+    static String parseCharset(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (String part : contentType.split(";")) {
+            String trimmed = part.trim();
+            if (trimmed.toLowerCase(Locale.US).startsWith("charset=")) {
+                return trimmed.substring("charset=".length()).replace("\"", "");
+            }
+        }
+        return null;
+    }
+
+    static String keyFor(String url) {
+        MessageDigest digest = newDigest();
+        return toHex(digest.digest(url.getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    public final class Entry {
+        final String key;
+        public final String url;
+        public final String contentHash;
+        public final long length;
+        public final String mimeType;
+        public final String encoding;
+        public final String etag;
+        public final String lastModified;
+        volatile long validatedAt;
+
+        Entry(String key, String url, String contentHash, long length, String mimeType,
+              String encoding, String etag, String lastModified, long validatedAt) {
+            this.key = key;
+            this.url = url;
+            this.contentHash = contentHash;
+            this.length = length;
+            this.mimeType = mimeType;
+            this.encoding = encoding;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.validatedAt = validatedAt;
+        }
+
+        public InputStream openStream() throws IOException {
+            return new FileInputStream(new File(blobDirectory, contentHash));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+
+/**
+ * Holds at most one hidden tab that is already loading the page we expect to show next,
+ * so a navigation to it becomes a view swap instead of a cold load. A target announced
+ * by the sender outranks one we guessed ourselves. Every speculation ends as a hit
+ * (taken) or as discarded, which gives the hit rate that tells whether the extra
+ * renderer is worth its memory. Not thread-safe: use it from the UI thread only.
+ */
+public class Prerenderer<T> {
+
+    public interface Host<T> {
+        // Off screen, but laid out at full size so the page renders as it will be shown
+        T create();
+
+        void load(T tab, String url);
+
+        void destroy(T tab);
+    }
+
+    // How a navigation was served: cold, or by swapping in a loading or finished prerender
+    public enum Promotion {
+        MISS,
+        LOADING,
+        READY
+    }
+
+    private final Host<T> host;
+    private final MetricsRegistry.Counter started;
+    private final MetricsRegistry.Counter hits;
+    private final MetricsRegistry.Counter discarded;
+    private T tab;
+    private String url;
+    private boolean announced;
+    private boolean ready;
+
+    public Prerenderer(Host<T> host, MetricsRegistry metrics) {
+        this.host = host;
+        this.started = metrics.counter(MetricsRegistry.PRERENDER_STARTED);
+        this.hits = metrics.counter(MetricsRegistry.PRERENDER_HITS);
+        this.discarded = metrics.counter(MetricsRegistry.PRERENDER_DISCARDED);
+        metrics.gauge(MetricsRegistry.PRERENDER_HIT_RATE_PCT, this::getHitRatePercent);
+    }
+
+    /**
+     * Starts loading url off screen, replacing the current speculation. announced is true
+     * for targets a sender named; a guess never replaces one of those. Returns false if
+     * nothing new was started.
+     */
+    public boolean speculate(String url, boolean announced) {
+        if (url.equals(this.url)) {
+            this.announced |= announced;
+            return false;
+        }
+        if (this.url != null && this.announced && !announced) {
+            return false;
+        }
+        cancel();
+        tab = host.create();
+        this.url = url;
+        this.announced = announced;
+        ready = false;
+        started.inc();
+        host.load(tab, url);
+        return true;
+    }
+
+    // Forwarded from the tab's WebViewClient
+    public void onPageFinished(T view) {
+        if (view != null && view == tab) {
+            ready = true;
+        }
+    }
+
+    // The speculative page failed to load, so it is no use to anyone
+    public void onLoadFailed(T view) {
+        if (view != null && view == tab) {
+            cancel();
+        }
+    }
+
+    public boolean matches(String url) {
+        return this.url != null && this.url.equals(url);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public boolean isSpeculating() {
+        return tab != null;
+    }
+
+    /**
+     * Hands over the hidden tab if it was speculating on url; the caller now owns it.
+     * Returns null on a miss, leaving the speculation in place.
+     */
+    public T take(String url) {
+        if (!matches(url)) {
+            return null;
+        }
+        T taken = tab;
+        clear();
+        hits.inc();
+        return taken;
+    }
+
+    // Drops the speculation unused (wrong guess, memory pressure, shutdown)
+    public void cancel() {
+        if (tab == null) {
+            return;
+        }
+        T dropped = tab;
+        clear();
+        discarded.inc();
+        host.destroy(dropped);
+    }
+
+    // Share of finished speculations that were used; -1 until one has finished
+    public long getHitRatePercent() {
+        long used = hits.count();
+        long total = used + discarded.count();
+        return total == 0 ? -1 : used * 100 / total;
+    }
+
+    private void clear() {
+        tab = null;
+        url = null;
+        announced = false;
+        ready = false;
+    }
+}
@@ -0,0 +1,58 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides when a WebView renderer has been stuck long enough to kill, and whether a
+ * rebuilt tab may restore its saved history. Renderers that keep dying right after a
+ * restore are usually being killed by the restored page itself (an OOM on a long drive),
+ * so past a few losses in a short window the tab starts over from a clean load.
+ * Not thread-safe: use it from the UI thread only.
+ */
+public class RendererWatchdog<T> {
+    private final long hangTimeoutMillis;
+    private final int maxRestores;
+    private final long restoreWindowMillis;
+    // When each tab's current unresponsive spell began
+    private final Map<T, Long> unresponsiveSince = new HashMap<>();
+    // Times of recent renderer losses, oldest first
+    private final ArrayDeque<Long> losses = new ArrayDeque<>();
+
+    public RendererWatchdog(long hangTimeoutMillis, int maxRestores, long restoreWindowMillis) {
+        this.hangTimeoutMillis = hangTimeoutMillis;
+        this.maxRestores = maxRestores;
+        this.restoreWindowMillis = restoreWindowMillis;
+    }
+
+    // WebView repeats onRenderProcessUnresponsive while the hang lasts; true once it is time to kill it
+    public boolean onUnresponsive(T tab, long nowMillis) {
+        Long since = unresponsiveSince.get(tab);
+        if (since == null) {
+            unresponsiveSince.put(tab, nowMillis);
+            return false;
+        }
+        return nowMillis - since >= hangTimeoutMillis;
+    }
+
+    public void onResponsive(T tab) {
+        unresponsiveSince.remove(tab);
+    }
+
+    /**
+     * Records a lost renderer. Returns true if the rebuilt tab may restore its saved
+     * state, false if losses are coming too fast and it should load cleanly instead.
+     */
+    public boolean onRendererLost(long nowMillis) {
+        while (!losses.isEmpty() && nowMillis - losses.peekFirst() > restoreWindowMillis) {
+            losses.pollFirst();
+        }
+        losses.addLast(nowMillis);
+        return losses.size() <= maxRestores;
+    }
+
+    public void forget(T tab) {
+        unresponsiveSince.remove(tab);
+    }
+}
@@ -0,0 +1,155 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for WebView subresource requests. Requests are classed by what they
+ * block: the document, scripts, styles and fonts hold up time-to-interactive; images and
+ * analytics beacons don't. Low-priority requests wait until the page on screen is
+ * interactive (or has been loading for maxDeferMillis), and on a constrained link only a
+ * few of them may be in flight at once. Safe to call from any thread; the waiting calls
+ * block, so use them only from WebView's request threads.
+ */
+public class RequestScheduler {
+
+    public enum Priority {
+        CRITICAL,
+        NORMAL,
+        LOW
+    }
+
+    // Fetches of low-priority requests allowed at once on a metered or weak link
+    public static final int CONSTRAINED_LOW_SLOTS = 2;
+
+    private static final String[] CRITICAL_EXTENSIONS = {".js", ".mjs", ".css", ".woff2", ".woff", ".ttf", ".otf"};
+    private static final String[] IMAGE_EXTENSIONS = {".png", ".jpg", ".jpeg", ".gif", ".webp", ".avif", ".svg", ".ico", ".bmp"};
+    // Analytics and ad beacons: nothing on screen waits for them
+    private static final String[] ANALYTICS_HOSTS = {
+        "google-analytics.com", "googletagmanager.com", "doubleclick.net", "googlesyndication.com",
+        "facebook.net", "hotjar.com", "segment.io", "mixpanel.com", "scorecardresearch.com"
+    };
+
+    private final long maxDeferNanos;
+    private boolean interactive = true;
+    private long documentStartedNanos;
+    private boolean constrained = false;
+    private int lowInFlight = 0;
+
+    public RequestScheduler(long maxDeferMillis) {
+        this.maxDeferNanos = TimeUnit.MILLISECONDS.toNanos(maxDeferMillis);
+    }
+
+    public static Priority classify(String url, boolean mainFrame, String accept) {
+        if (mainFrame) {
+            return Priority.CRITICAL;
+        }
+        String host = "";
+        String path = "";
+        try {
+            URI uri = new URI(url);
+            host = uri.getHost() != null ? uri.getHost().toLowerCase(Locale.US) : "";
+            path = uri.getPath() != null ? uri.getPath().toLowerCase(Locale.US) : "";
+        } catch (Exception e) {
+            // Unparseable: classify by the Accept header alone
+        }
+        for (String analytics : ANALYTICS_HOSTS) {
+            if (host.equals(analytics) || host.endsWith("." + analytics)) {
+                return Priority.LOW;
+            }
+        }
+        for (String extension : CRITICAL_EXTENSIONS) {
+            if (path.endsWith(extension)) {
+                return Priority.CRITICAL;
+            }
+        }
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (path.endsWith(extension)) {
+                return Priority.LOW;
+            }
+        }
+        if (accept != null) {
+            if (accept.startsWith("text/css") || accept.startsWith("text/html")) {
+                return Priority.CRITICAL;
+            }
+            if (accept.startsWith("image/")) {
+                return Priority.LOW;
+            }
+        }
+        return Priority.NORMAL;
+    }
+
+    // The page on screen started a new main-frame load: hold low-priority requests back
+    public synchronized void onDocumentStarted() {
+        interactive = false;
+        documentStartedNanos = System.nanoTime();
+    }
+
+    public synchronized void onDocumentInteractive() {
+        interactive = true;
+        notifyAll();
+    }
+
+    public synchronized void setConstrained(boolean constrained) {
+        this.constrained = constrained;
+        notifyAll();
+    }
+
+    public synchronized boolean isConstrained() {
+        return constrained;
+    }
+
+    /**
+     * Blocks a request until its priority may go to the network. Returns the nanoseconds
+     * it was held; non-LOW requests never wait.
+     */
+    public long awaitTurn(Priority priority) throws InterruptedException {
+        if (priority != Priority.LOW) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        synchronized (this) {
+            while (!interactive) {
+                long remaining = documentStartedNanos + maxDeferNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Claims one of the constrained-link slots for a low-priority fetch, waiting up to
+     * timeoutMillis. Returns false on timeout or when the link isn't constrained (the
+     * WebView then fetches it as usual). A true result must be paired with releaseSlot().
+     */
+    public synchronized boolean acquireSlot(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (constrained && lowInFlight >= CONSTRAINED_LOW_SLOTS) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        if (!constrained) {
+            return false;
+        }
+        lowInFlight++;
+        return true;
+    }
+
+    public synchronized void releaseSlot() {
+        if (lowInFlight > 0) {
+            lowInFlight--;
+            notifyAll();
+        }
+    }
+
+    public synchronized int getLowInFlight() {
+        return lowInFlight;
+    }
+}
@@ -0,0 +1,507 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the navigation history on screen, the connected cast sessions
+ * and each session's commands still waiting for a reply, kept in a memory-mapped file so it
+ * survives process death and a restart of the receiver service. Records are fixed-size
+ * slots (a CRC32 header and a UTF-8 payload) written in order; opening the journal
+ * replays them with one sequential pass and stops at the first torn or empty slot.
+ * Once the file is three quarters full, a background thread rewrites the live state as a
+ * short snapshot into a fresh file. Appends keep going to the old file meanwhile and are
+ * copied across just before the new file atomically replaces it. Writes reach the page
+ * cache immediately; sync() flushes them to storage. Thread-safe.
+ */
+public class SessionJournal {
+    static final int RECORD_SIZE = 1024;
+    static final int CAPACITY_RECORDS = 256;
+    // Oldest entries fall off the back of the history beyond this
+    static final int MAX_HISTORY = 50;
+    static final int MAX_OPEN_COMMANDS = 64;
+    static final int MAX_SESSIONS = 16;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int MAX_PAYLOAD = RECORD_SIZE - HEADER_SIZE;
+    private static final long CAPACITY_BYTES = (long) RECORD_SIZE * CAPACITY_RECORDS;
+    // Compaction starts here; the largest snapshot plus what can be appended meanwhile fits
+    private static final long HIGH_WATER_BYTES = CAPACITY_BYTES * 3 / 4;
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "session-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Record types; 0 marks the unwritten end of the log. 2 to 4 were single-sender
+    // session and command records and are skipped on replay.
+    private static final byte VISIT = 1;
+    private static final byte SESSION_CONNECTED = 5;
+    private static final byte SESSION_ENDED = 6;
+    private static final byte COMMAND_STARTED = 7;
+    private static final byte COMMAND_FINISHED = 8;
+
+    private final File file;
+    // Null for a journal that only lives in memory
+    private MappedByteBuffer buffer;
+    private int writePosition = 0;
+    private final CRC32 crc = new CRC32();
+    // Bumped whenever a new file is swapped in; a background snapshot of an older one is dropped
+    private int generation = 0;
+    private boolean compacting = false;
+
+    private final List<String> history = new ArrayList<>();
+    private int current = -1;
+    // Connected cast sessions, oldest first
+    private final LinkedHashSet<String> castSessions = new LinkedHashSet<>();
+    // Session id and request id (see commandKey) -> command type, oldest first; request
+    // ids are only unique within one sender
+    private final LinkedHashMap<String, String> openCommands = new LinkedHashMap<>();
+    // Commands that were still open when the journal was opened, keyed the same way
+    private final LinkedHashMap<String, String> recoveredCommands = new LinkedHashMap<>();
+
+    private SessionJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Maps the journal file (creating it if needed) and replays it. A file past the high-water
+     * mark starts compacting in the background right away.
+     */
+    public static SessionJournal open(File file) throws IOException {
+        SessionJournal journal = new SessionJournal(file);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            journal.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, CAPACITY_BYTES);
+        }
+        synchronized (journal) {
+            journal.replay();
+            journal.recoveredCommands.putAll(journal.openCommands);
+            journal.maybeCompactInBackground();
+        }
+        return journal;
+    }
+
+    // Fallback when the file can't be mapped: same behaviour, nothing survives the process
+    public static SessionJournal inMemory() {
+        return new SessionJournal(null);
+    }
+
+    /**
+     * A page is now on screen (a committed navigation or a tab swapped in). Returning to
+     * the previous or next entry moves through the history; anything else is a new entry
+     * that replaces the forward history. Only http(s) and file URLs are kept.
+     */
+    public synchronized void recordVisit(String url) {
+        if (!isJournaled(url) || (current >= 0 && url.equals(history.get(current)))) {
+            return;
+        }
+        int index = current + 1;
+        if (current > 0 && url.equals(history.get(current - 1))) {
+            index = current - 1;
+        }
+        applyVisit(index, url);
+        append(VISIT, index, url);
+    }
+
+    public synchronized String getCurrentUrl() {
+        return current >= 0 ? history.get(current) : null;
+    }
+
+    // Where back leads once the WebView's own history is exhausted; null at the start
+    public synchronized String getPreviousUrl() {
+        return current > 0 ? history.get(current - 1) : null;
+    }
+
+    public synchronized List<String> getHistory() {
+        return new ArrayList<>(history);
+    }
+
+    public synchronized int getCurrentIndex() {
+        return current;
+    }
+
+    // A sender connected or resumed; one record per session
+    public synchronized void recordSessionConnected(String sessionId) {
+        if (!isKeyPart(sessionId) || castSessions.contains(sessionId)) {
+            return;
+        }
+        applySessionConnected(sessionId);
+        append(SESSION_CONNECTED, 0, sessionId);
+        // A session change is rare and worth keeping across a power cut
+        sync();
+    }
+
+    // The sender is gone for good; its open commands can no longer be answered
+    public synchronized void recordSessionEnded(String sessionId) {
+        if (!castSessions.contains(sessionId)) {
+            return;
+        }
+        applySessionEnded(sessionId);
+        append(SESSION_ENDED, 0, sessionId);
+    }
+
+    public synchronized List<String> getCastSessionIds() {
+        return new ArrayList<>(castSessions);
+    }
+
+    public synchronized void recordCommandStarted(String sessionId, String requestId, String type) {
+        if (!castSessions.contains(sessionId) || !isKeyPart(requestId) || type.indexOf('\n') >= 0) {
+            return;
+        }
+        String key = commandKey(sessionId, requestId);
+        String payload = key + "\n" + type;
+        if (!fits(payload)) {
+            return;
+        }
+        recoveredCommands.remove(key);
+        applyCommandStarted(key, type);
+        append(COMMAND_STARTED, 0, payload);
+    }
+
+    public synchronized void recordCommandFinished(String sessionId, String requestId) {
+        if (sessionId == null || requestId == null) {
+            return;
+        }
+        String key = commandKey(sessionId, requestId);
+        if (openCommands.remove(key) == null) {
+            return;
+        }
+        recoveredCommands.remove(key);
+        append(COMMAND_FINISHED, 0, key);
+    }
+
+    // Request id -> type of the session's commands still waiting for a reply
+    public synchronized Map<String, String> getOpenCommands(String sessionId) {
+        return commandsOf(openCommands, sessionId);
+    }
+
+    /**
+     * Returns the session's commands (request id -> type) that were waiting for a reply
+     * when the previous process died, and closes them. Commands started since, and those
+     * of other sessions, are not included.
+     */
+    public synchronized Map<String, String> takeRecoveredCommands(String sessionId) {
+        Map<String, String> recovered = commandsOf(recoveredCommands, sessionId);
+        for (String requestId : recovered.keySet()) {
+            recordCommandFinished(sessionId, requestId);
+        }
+        return recovered;
+    }
+
+    // Flushes written records to storage (msync); cheap when nothing changed
+    public synchronized void sync() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    synchronized int getRecordCount() {
+        return writePosition / RECORD_SIZE;
+    }
+
+    private static boolean isJournaled(String url) {
+        if (url == null || !fits(url)) {
+            return false;
+        }
+        String lower = url.toLowerCase(Locale.US);
+        return lower.startsWith("http://") || lower.startsWith("https://") || lower.startsWith("file:");
+    }
+
+    // Ids are joined with a newline in command records, so they may not contain one
+    private static boolean isKeyPart(String id) {
+        return id != null && !id.isEmpty() && id.indexOf('\n') < 0;
+    }
+
+    private static String commandKey(String sessionId, String requestId) {
+        return sessionId + "\n" + requestId;
+    }
+
+    private static Map<String, String> commandsOf(Map<String, String> commands, String sessionId) {
+        Map<String, String> result = new LinkedHashMap<>();
+        String prefix = sessionId + "\n";
+        for (Map.Entry<String, String> command : commands.entrySet()) {
+            if (command.getKey().startsWith(prefix)) {
+                result.put(command.getKey().substring(prefix.length()), command.getValue());
+            }
+        }
+        return result;
+    }
+
+    private static boolean fits(String payload) {
+        return payload.getBytes(StandardCharsets.UTF_8).length <= MAX_PAYLOAD;
+    }
+
+    // The same rules run live and on replay, so the replayed state matches exactly
+    private void applyVisit(int index, String url) {
+        index = Math.max(0, Math.min(index, history.size()));
+        if (index < history.size() && history.get(index).equals(url)) {
+            current = index;
+            return;
+        }
+        while (history.size() > index) {
+            history.remove(history.size() - 1);
+        }
+        history.add(url);
+        current = index;
+        if (history.size() > MAX_HISTORY) {
+            history.remove(0);
+            current--;
+        }
+    }
+
+    private void applySessionConnected(String sessionId) {
+        castSessions.add(sessionId);
+        if (castSessions.size() > MAX_SESSIONS) {
+            applySessionEnded(castSessions.iterator().next());
+        }
+    }
+
+    private void applySessionEnded(String sessionId) {
+        castSessions.remove(sessionId);
+        String prefix = sessionId + "\n";
+        openCommands.keySet().removeIf(key -> key.startsWith(prefix));
+        recoveredCommands.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private void applyCommandStarted(String key, String type) {
+        openCommands.remove(key);
+        openCommands.put(key, type);
+        if (openCommands.size() > MAX_OPEN_COMMANDS) {
+            Iterator<String> eldest = openCommands.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private void apply(byte type, int arg, String payload) {
+        switch (type) {
+            case VISIT:
+                applyVisit(arg, payload);
+                break;
+            case SESSION_CONNECTED:
+                applySessionConnected(payload);
+                break;
+            case SESSION_ENDED:
+                applySessionEnded(payload);
+                break;
+            case COMMAND_STARTED: {
+                int newline = payload.lastIndexOf('\n');
+                if (newline > 0) {
+                    applyCommandStarted(payload.substring(0, newline), payload.substring(newline + 1));
+                }
+                break;
+            }
+            case COMMAND_FINISHED:
+                openCommands.remove(payload);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Called after the change is applied: a full file is replaced by a snapshot that includes it
+    private void append(byte type, int arg, String payload) {
+        if (buffer == null) {
+            return;
+        }
+        if (writePosition + RECORD_SIZE > CAPACITY_BYTES) {
+            // Only when appends outran the background compaction
+            try {
+                compact();
+            } catch (IOException e) {
+                // Keep going in memory; the journal on disk stays as it was
+                buffer = null;
+            }
+            return;
+        }
+        write(buffer, writePosition, type, arg, payload, crc);
+        writePosition += RECORD_SIZE;
+        maybeCompactInBackground();
+    }
+
+    private static void write(ByteBuffer target, int position, byte type, int arg, String payload, CRC32 crc) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        target.put(position + 4, type);
+        target.put(position + 5, (byte) 0);
+        target.putShort(position + 6, (short) bytes.length);
+        target.putInt(position + 8, arg);
+        for (int i = 0; i < bytes.length; i++) {
+            target.put(position + HEADER_SIZE + i, bytes[i]);
+        }
+        // The checksum goes in last, so a record torn mid-write never validates
+        target.putInt(position, checksum(target, position, bytes.length, crc));
+    }
+
+    private static int checksum(ByteBuffer source, int position, int length, CRC32 crc) {
+        ByteBuffer covered = source.duplicate();
+        covered.limit(position + HEADER_SIZE + length);
+        covered.position(position + 4);
+        crc.reset();
+        crc.update(covered);
+        return (int) crc.getValue();
+    }
+
+    private void replay() {
+        int position = 0;
+        while (position + RECORD_SIZE <= CAPACITY_BYTES) {
+            byte type = buffer.get(position + 4);
+            int length = buffer.getShort(position + 6);
+            if (type == 0 || length < 0 || length > MAX_PAYLOAD
+                    || buffer.getInt(position) != checksum(buffer, position, length, crc)) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(position + HEADER_SIZE + i);
+            }
+            apply(type, buffer.getInt(position + 8), new String(bytes, StandardCharsets.UTF_8));
+            position += RECORD_SIZE;
+        }
+        writePosition = position;
+    }
+
+    private void maybeCompactInBackground() {
+        if (compacting || writePosition < HIGH_WATER_BYTES) {
+            return;
+        }
+        compacting = true;
+        COMPACTOR.execute(this::compactInBackground);
+    }
+
+    /**
+     * Writes a snapshot into a new file without holding the lock, then copies over the
+     * records appended in the meantime and swaps the file in. The mapping, the write and
+     * the force() all happen off the caller's thread; only the copy and the rename don't.
+     */
+    private void compactInBackground() {
+        Snapshot snapshot;
+        int snapshotPosition;
+        int snapshotGeneration;
+        synchronized (this) {
+            if (buffer == null) {
+                compacting = false;
+                return;
+            }
+            snapshot = snapshot();
+            snapshotPosition = writePosition;
+            snapshotGeneration = generation;
+        }
+        try {
+            File temp = new File(file.getPath() + ".compact");
+            MappedByteBuffer next = mapFresh(temp);
+            int position = writeSnapshot(next, snapshot, new CRC32());
+            next.force();
+            synchronized (this) {
+                int appended = writePosition - snapshotPosition;
+                // A full file was compacted in the foreground meanwhile; that one stands
+                if (buffer == null || generation != snapshotGeneration || position + appended > CAPACITY_BYTES) {
+                    return;
+                }
+                ByteBuffer source = buffer.duplicate();
+                source.limit(writePosition);
+                source.position(snapshotPosition);
+                ByteBuffer target = next.duplicate();
+                target.position(position);
+                target.put(source);
+                swapIn(temp, next, position + appended);
+            }
+        } catch (IOException e) {
+            // The old file stays in use; a full file falls back to compacting in the foreground
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Writes the live state into a new file and swaps it in, holding the lock throughout.
+     * Only used once the file is completely full.
+     */
+    private void compact() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        MappedByteBuffer next = mapFresh(temp);
+        int position = writeSnapshot(next, snapshot(), crc);
+        next.force();
+        swapIn(temp, next, position);
+    }
+
+    private static MappedByteBuffer mapFresh(File temp) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, CAPACITY_BYTES);
+        }
+    }
+
+    private void swapIn(File temp, MappedByteBuffer next, int position) throws IOException {
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        buffer = next;
+        writePosition = position;
+        generation++;
+    }
+
+    private Snapshot snapshot() {
+        return new Snapshot(new ArrayList<>(history), current, new ArrayList<>(castSessions),
+            new LinkedHashMap<>(openCommands));
+    }
+
+    /**
+     * Writes the records that rebuild a snapshot and returns where they end. With
+     * MAX_HISTORY, MAX_SESSIONS and MAX_OPEN_COMMANDS they always fit well below
+     * HIGH_WATER_BYTES.
+     */
+    private static int writeSnapshot(ByteBuffer target, Snapshot snapshot, CRC32 crc) {
+        int position = 0;
+        for (int i = 0; i < snapshot.history.size(); i++) {
+            write(target, position, VISIT, i, snapshot.history.get(i), crc);
+            position += RECORD_SIZE;
+        }
+        if (snapshot.current >= 0 && snapshot.current < snapshot.history.size() - 1) {
+            write(target, position, VISIT, snapshot.current, snapshot.history.get(snapshot.current), crc);
+            position += RECORD_SIZE;
+        }
+        for (String sessionId : snapshot.castSessions) {
+            write(target, position, SESSION_CONNECTED, 0, sessionId, crc);
+            position += RECORD_SIZE;
+        }
+        for (Map.Entry<String, String> command : snapshot.openCommands.entrySet()) {
+            write(target, position, COMMAND_STARTED, 0, command.getKey() + "\n" + command.getValue(), crc);
+            position += RECORD_SIZE;
+        }
+        return position;
+    }
+
+    // Copies of the live state, taken under the lock
+    private static final class Snapshot {
+        final List<String> history;
+        final int current;
+        final List<String> castSessions;
+        final Map<String, String> openCommands;
+
+        Snapshot(List<String> history, int current, List<String> castSessions, Map<String, String> openCommands) {
+            this.history = history;
+            this.current = current;
+            this.castSessions = castSessions;
+            this.openCommands = openCommands;
+        }
+    }
+}
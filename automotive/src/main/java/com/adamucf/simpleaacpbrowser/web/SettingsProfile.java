@@ -0,0 +1,82 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import java.util.Locale;
+
+/**
+ * WebView workload levels. The app steps down from FULL as the head unit heats up or
+ * runs short of memory, trading smoothness of background work for the page on screen.
+ */
+public enum SettingsProfile {
+    // Everything on: prerendering, off-screen raster, unthrottled timers
+    FULL(true, false, 0, 0),
+    // No off-screen raster or speculation; fast setInterval loops slowed down
+    BALANCED(false, false, 50, 0),
+    // Only the page on screen stays live; network images blocked, animation capped at 30 fps
+    SURVIVAL(false, true, 250, 30);
+
+    // Same values as PowerManager.THERMAL_STATUS_MODERATE / _SEVERE
+    public static final int THERMAL_STATUS_MODERATE = 2;
+    public static final int THERMAL_STATUS_SEVERE = 3;
+    // Same values as ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW / _CRITICAL
+    public static final int TRIM_RUNNING_LOW = 10;
+    public static final int TRIM_RUNNING_CRITICAL = 15;
+
+    public final boolean offscreenPreRaster;
+    public final boolean blockNetworkImage;
+    // Floor applied to setInterval delays; 0 leaves them alone
+    public final int minIntervalMs;
+    // requestAnimationFrame cap; 0 means the display rate
+    public final int maxAnimationFps;
+
+    SettingsProfile(boolean offscreenPreRaster, boolean blockNetworkImage, int minIntervalMs, int maxAnimationFps) {
+        this.offscreenPreRaster = offscreenPreRaster;
+        this.blockNetworkImage = blockNetworkImage;
+        this.minIntervalMs = minIntervalMs;
+        this.maxAnimationFps = maxAnimationFps;
+    }
+
+    /**
+     * Picks the profile for the current conditions. trimLevel is the most recent
+     * foreground onTrimMemory level still in effect (0 for none); constrainedDevice is
+     * true on low-RAM devices or small heaps, which never run FULL.
+     */
+    public static SettingsProfile select(int thermalStatus, int trimLevel, boolean constrainedDevice) {
+        if (thermalStatus >= THERMAL_STATUS_SEVERE || trimLevel >= TRIM_RUNNING_CRITICAL) {
+            return SURVIVAL;
+        }
+        if (thermalStatus >= THERMAL_STATUS_MODERATE || trimLevel >= TRIM_RUNNING_LOW || constrainedDevice) {
+            return BALANCED;
+        }
+        return FULL;
+    }
+
+    /**
+     * Script that applies this profile's timer limits to a page. The wrappers are
+     * installed once per document and only read their limits at call time, so running
+     * a newer profile's script just updates the numbers.
+     */
+    public String timerScript() {
+        if (minIntervalMs == 0 && maxAnimationFps == 0) {
+            // Nothing to throttle; only relax a document that was throttled before
+            return "window.__riptideTimers&&(window.__riptideTimers.minInterval=0,window.__riptideTimers.frameMs=0);";
+        }
+        return String.format(Locale.US, TIMER_SCRIPT, minIntervalMs, maxAnimationFps > 0 ? 1000.0 / maxAnimationFps : 0.0);
+    }
+
+    private static final String TIMER_SCRIPT =
+        "(function(minInterval,frameMs){var w=window;"
+        + "if(!w.__riptideTimers){"
+        + "var cfg=w.__riptideTimers={minInterval:0,frameMs:0};"
+        + "var si=w.setInterval,raf=w.requestAnimationFrame.bind(w),caf=w.cancelAnimationFrame.bind(w);"
+        + "w.setInterval=function(fn,delay){var args=Array.prototype.slice.call(arguments);"
+        + "args[1]=Math.max(Number(delay)||0,cfg.minInterval);return si.apply(w,args);};"
+        // Callbacks of one frame share its timestamp, so they all run together
+        + "var last=0,nextId=1,live={};"
+        + "w.requestAnimationFrame=function(cb){var id=nextId++;"
+        + "var tick=function(t){if(cfg.frameMs&&t!==last&&t-last<cfg.frameMs-1){live[id]=raf(tick);return;}"
+        + "delete live[id];last=t;cb(t);};"
+        + "live[id]=raf(tick);return id;};"
+        + "w.cancelAnimationFrame=function(id){if(live[id]!==undefined){caf(live[id]);delete live[id];}};}"
+        + "w.__riptideTimers.minInterval=minInterval;w.__riptideTimers.frameMs=frameMs;"
+        + "})(%d,%.1f);";
+}
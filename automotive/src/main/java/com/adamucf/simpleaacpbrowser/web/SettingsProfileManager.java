@@ -0,0 +1,147 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+
+import androidx.webkit.ScriptHandler;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Tracks thermal status, heap size and onTrimMemory and keeps the WebViews on the
+ * matching {@link SettingsProfile}. Memory pressure counts for PRESSURE_HOLD_MS after
+ * the last trim callback, so the profile doesn't bounce back between two callbacks.
+ * Use from the UI thread only.
+ */
+public class SettingsProfileManager {
+    private static final String TAG = "SettingsProfileManager";
+    private static final long PRESSURE_HOLD_MS = 2 * 60 * 1000;
+    // Heaps below this (MB) never run FULL
+    private static final int SMALL_MEMORY_CLASS_MB = 192;
+    // Timer limits are injected into every document of every origin
+    private static final Set<String> ALL_ORIGINS = Collections.singleton("*");
+
+    public interface Listener {
+        void onProfileChanged(SettingsProfile profile);
+    }
+
+    private final PowerManager powerManager;
+    private final Listener listener;
+    private final boolean constrainedDevice;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable pressureExpired = this::update;
+    // Document-start timer script currently registered on each WebView
+    private final Map<WebView, ScriptHandler> timerScripts = new WeakHashMap<>();
+    private int thermalStatus = PowerManager.THERMAL_STATUS_NONE;
+    private int trimLevel = 0;
+    private long trimLevelSetAt = 0;
+    private SettingsProfile profile = SettingsProfile.FULL;
+
+    private final PowerManager.OnThermalStatusChangedListener thermalListener = status -> {
+        thermalStatus = status;
+        update();
+    };
+
+    public SettingsProfileManager(Context context, Listener listener) {
+        this.listener = listener;
+        this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        this.constrainedDevice = activityManager.isLowRamDevice()
+            || activityManager.getMemoryClass() < SMALL_MEMORY_CLASS_MB;
+        MetricsRegistry.getDefault().gauge(MetricsRegistry.SETTINGS_PROFILE, () -> profile.ordinal());
+        MetricsRegistry.getDefault().gauge(MetricsRegistry.THERMAL_STATUS, () -> thermalStatus);
+    }
+
+    public void start() {
+        thermalStatus = powerManager.getCurrentThermalStatus();
+        powerManager.addThermalStatusListener(thermalListener);
+        profile = SettingsProfile.select(thermalStatus, 0, constrainedDevice);
+        Log.d(TAG, "Starting with profile " + profile + " (thermal " + thermalStatus
+            + ", constrained " + constrainedDevice + ")");
+    }
+
+    public void stop() {
+        powerManager.removeThermalStatusListener(thermalListener);
+        handler.removeCallbacks(pressureExpired);
+    }
+
+    public SettingsProfile getProfile() {
+        return profile;
+    }
+
+    // Forwarded from the activity; only the levels that hit a running app change the profile
+    public void onTrimMemory(int level) {
+        if (level > ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return;
+        }
+        trimLevel = Math.max(level, currentTrimLevel());
+        trimLevelSetAt = SystemClock.uptimeMillis();
+        handler.removeCallbacks(pressureExpired);
+        handler.postDelayed(pressureExpired, PRESSURE_HOLD_MS);
+        update();
+    }
+
+    // Applies the current profile to a WebView; call for new WebViews and on every change
+    public void apply(WebView webView) {
+        WebSettings settings = webView.getSettings();
+        settings.setOffscreenPreRaster(profile.offscreenPreRaster);
+        settings.setBlockNetworkImage(profile.blockNetworkImage);
+
+        String script = profile.timerScript();
+        if (WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)) {
+            ScriptHandler previous = timerScripts.remove(webView);
+            if (previous != null) {
+                previous.remove();
+            }
+            if (profile.minIntervalMs > 0 || profile.maxAnimationFps > 0) {
+                timerScripts.put(webView, WebViewCompat.addDocumentStartJavaScript(webView, script, ALL_ORIGINS));
+            }
+        }
+        // The document already loaded (if any) only picks the limits up this way
+        if (webView.getUrl() != null) {
+            webView.evaluateJavascript(script, null);
+        }
+    }
+
+    // Without document-start scripts every new document has to be throttled after it loads
+    public void onPageFinished(WebView webView) {
+        if (!WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)
+                && (profile.minIntervalMs > 0 || profile.maxAnimationFps > 0)) {
+            webView.evaluateJavascript(profile.timerScript(), null);
+        }
+    }
+
+    public void forget(WebView webView) {
+        timerScripts.remove(webView);
+    }
+
+    private int currentTrimLevel() {
+        return SystemClock.uptimeMillis() - trimLevelSetAt < PRESSURE_HOLD_MS ? trimLevel : 0;
+    }
+
+    private void update() {
+        SettingsProfile next = SettingsProfile.select(thermalStatus, currentTrimLevel(), constrainedDevice);
+        if (next == profile) {
+            return;
+        }
+        Log.d(TAG, "Profile " + profile + " -> " + next + " (thermal " + thermalStatus
+            + ", trim " + currentTrimLevel() + ")");
+        profile = next;
+        listener.onProfileChanged(next);
+    }
+}
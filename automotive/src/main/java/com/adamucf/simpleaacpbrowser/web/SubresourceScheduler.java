@@ -0,0 +1,209 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+import android.webkit.CookieManager;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import com.adamucf.simpleaacpbrowser.http.HttpFetcher;
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Puts WebView subresource requests through a {@link RequestScheduler}. Critical and
+ * normal requests go straight to the WebView's own network stack. Images and analytics
+ * wait until the page on screen is interactive. On a metered or weak cellular link they
+ * are also fetched here through the shared {@link HttpFetcher}, a couple at a time, so
+ * they don't compete with scripts and styles for the link. Called from WebView's
+ * request threads.
+ */
+public class SubresourceScheduler {
+    private static final String TAG = "SubresourceScheduler";
+    // Longest a low-priority request waits for the page to become interactive
+    private static final long MAX_DEFER_MS = 3000;
+    private static final long SLOT_TIMEOUT_MS = 10000;
+    // Cellular links reporting less than this downstream count as weak
+    private static final int WEAK_LINK_KBPS = 3000;
+
+    private final ConnectivityManager connectivityManager;
+    private final RequestScheduler scheduler = new RequestScheduler(MAX_DEFER_MS);
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final HttpFetcher fetcher = HttpFetcher.getDefault();
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            boolean metered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+            int downstreamKbps = capabilities.getLinkDownstreamBandwidthKbps();
+            boolean weak = capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)
+                && downstreamKbps > 0 && downstreamKbps < WEAK_LINK_KBPS;
+            if (scheduler.isConstrained() != (metered || weak)) {
+                Log.d(TAG, "Link constrained: " + (metered || weak) + " (metered " + metered
+                    + ", " + downstreamKbps + " kbps)");
+            }
+            scheduler.setConstrained(metered || weak);
+        }
+
+        @Override
+        public void onLost(Network network) {
+            scheduler.setConstrained(false);
+        }
+    };
+
+    public SubresourceScheduler(Context context) {
+        this.connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        metrics.gauge(MetricsRegistry.NET_CONSTRAINED, () -> scheduler.isConstrained() ? 1 : 0);
+        metrics.gauge(MetricsRegistry.HTTP_POOL_CONNECTIONS, fetcher::getConnectionCount);
+    }
+
+    public void start() {
+        try {
+            connectivityManager.registerDefaultNetworkCallback(networkCallback);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to register network callback", e);
+        }
+    }
+
+    public void stop() {
+        try {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+        } catch (Exception e) {
+            Log.w(TAG, "Network callback was not registered: " + e.getMessage());
+        }
+        // Release anything still held back
+        scheduler.onDocumentInteractive();
+    }
+
+    // Main-frame load of the page on screen started / became interactive (UI thread)
+    public void onDocumentStarted() {
+        scheduler.onDocumentStarted();
+    }
+
+    public void onDocumentInteractive() {
+        scheduler.onDocumentInteractive();
+    }
+
+    /**
+     * Returns a response for requests fetched here, or null to let the WebView fetch it
+     * (possibly after holding the calling thread until the request's turn).
+     */
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        String url = request.getUrl().toString();
+        if (!"GET".equalsIgnoreCase(request.getMethod()) || !url.startsWith("http")) {
+            return null;
+        }
+        RequestScheduler.Priority priority = RequestScheduler.classify(url, request.isForMainFrame(),
+            header(request.getRequestHeaders(), "Accept"));
+        if (priority != RequestScheduler.Priority.LOW) {
+            return null;
+        }
+
+        try {
+            long waitedNanos = scheduler.awaitTurn(priority);
+            metrics.histogram(MetricsRegistry.NET_DEFER_US).record(waitedNanos / 1000);
+            if (!scheduler.acquireSlot(SLOT_TIMEOUT_MS)) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        // The slot is handed to the response body and freed when the WebView closes it
+        try {
+            WebResourceResponse response = fetch(url, request.getRequestHeaders());
+            if (response != null) {
+                metrics.counter(MetricsRegistry.NET_THROTTLED_FETCHES).inc();
+                return response;
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Throttled fetch failed for " + url + ": " + e.getMessage());
+        }
+        scheduler.releaseSlot();
+        return null;
+    }
+
+    private WebResourceResponse fetch(String url, Map<String, String> requestHeaders) throws IOException {
+        Map<String, String> headers = new HashMap<>(requestHeaders);
+        String cookies = CookieManager.getInstance().getCookie(url);
+        if (cookies != null) {
+            headers.put("Cookie", cookies);
+        }
+
+        HttpFetcher.Response response = fetcher.get(url, headers);
+        int status = response.getStatus();
+        if (status < 200 || status >= 300) {
+            // Errors and cross-protocol redirects are left to the WebView
+            response.close();
+            return null;
+        }
+
+        Map<String, String> responseHeaders = new HashMap<>();
+        for (Map.Entry<String, List<String>> field : response.getHeaders().entrySet()) {
+            String name = field.getKey();
+            // Bodies are handed to the WebView decoded, so the encoding and length no longer apply
+            if (name.equalsIgnoreCase("Content-Encoding") || name.equalsIgnoreCase("Content-Length")) {
+                continue;
+            }
+            if (name.equalsIgnoreCase("Set-Cookie")) {
+                for (String cookie : field.getValue()) {
+                    CookieManager.getInstance().setCookie(url, cookie);
+                }
+                continue;
+            }
+            responseHeaders.put(name, String.join(", ", field.getValue()));
+        }
+
+        String contentType = response.getContentType();
+        String mimeType = AssetCache.parseMimeType(contentType);
+        String reason = response.getReason();
+        // Streamed straight from the connection; nothing is buffered here
+        InputStream body = new SlotReleasingStream(response);
+        return new WebResourceResponse(mimeType != null ? mimeType : "application/octet-stream",
+            AssetCache.parseCharset(contentType), status, reason != null && !reason.isEmpty() ? reason : "OK",
+            responseHeaders, body);
+    }
+
+    private static String header(Map<String, String> headers, String name) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    // Frees the link slot once the WebView has read (or abandoned) the body
+    private final class SlotReleasingStream extends FilterInputStream {
+        private final HttpFetcher.Response response;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        SlotReleasingStream(HttpFetcher.Response response) {
+            super(response.getBody());
+            this.response = response;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                response.close();
+                if (released.compareAndSet(false, true)) {
+                    scheduler.releaseSlot();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a small set of live tabs (WebViews in the app) keyed by origin, so switching
+ * between the shell and the bundled pages swaps a view instead of reloading a page.
+ * One tab is active; the others are paused by the host and evicted least recently used
+ * first when the pool overflows or memory is trimmed. Not thread-safe: use it from the
+ * UI thread only.
+ */
+public class TabPool<T> {
+
+    // View-side operations; all called on the pool's thread
+    public interface Host<T> {
+        T create(String key);
+
+        void load(T tab, String url);
+
+        // Brought to the front; resume rendering and timers
+        void activate(T tab);
+
+        // Sent to the background; stays loaded but paused
+        void deactivate(T tab);
+
+        void destroy(T tab);
+    }
+
+    private final Host<T> host;
+    private final int maxTabs;
+    // Access order: iteration starts at the least recently shown tab
+    private final LinkedHashMap<String, T> tabs = new LinkedHashMap<>(8, 0.75f, true);
+    private String activeKey;
+
+    public TabPool(Host<T> host, int maxTabs) {
+        if (maxTabs < 1) {
+            throw new IllegalArgumentException("maxTabs must be at least 1");
+        }
+        this.host = host;
+        this.maxTabs = maxTabs;
+    }
+
+    // Http(s) pages share a tab per origin; anything else (file:// assets) per path
+    public static String keyFor(String url) {
+        try {
+            URI uri = new URI(url);
+            String scheme = uri.getScheme();
+            if (scheme == null) {
+                return url;
+            }
+            if ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) {
+                return scheme.toLowerCase() + "://" + uri.getRawAuthority();
+            }
+            return scheme.toLowerCase() + ":" + uri.getRawSchemeSpecificPart().split("\\?", 2)[0];
+        } catch (Exception e) {
+            return url;
+        }
+    }
+
+    /**
+     * Makes the tab for url active. An existing tab is swapped in as it is; only a newly
+     * created tab loads the url.
+     */
+    public T show(String url) {
+        String key = keyFor(url);
+        // Look the outgoing tab up first so the incoming one ends up most recently used
+        T previous = activeKey != null && !key.equals(activeKey) ? tabs.get(activeKey) : null;
+        T tab = tabs.get(key);
+        boolean created = false;
+        if (tab == null) {
+            tab = host.create(key);
+            tabs.put(key, tab);
+            created = true;
+        }
+
+        if (!key.equals(activeKey)) {
+            if (previous != null) {
+                host.deactivate(previous);
+            }
+            activeKey = key;
+            host.activate(tab);
+        }
+        if (created) {
+            host.load(tab, url);
+        }
+        trimTo(maxTabs);
+        return tab;
+    }
+
+    /**
+     * Makes a tab created elsewhere (a prerender that has already loaded url) the active
+     * one. It takes over url's slot: a tab already holding that key is destroyed.
+     */
+    public T adopt(String url, T tab) {
+        String key = keyFor(url);
+        T previous = activeKey != null ? tabs.get(activeKey) : null;
+        T replaced = tabs.remove(key);
+        tabs.put(key, tab);
+
+        if (previous != null) {
+            host.deactivate(previous);
+        }
+        if (replaced != null) {
+            host.destroy(replaced);
+        }
+        activeKey = key;
+        host.activate(tab);
+        trimTo(maxTabs);
+        return tab;
+    }
+
+    public T getActive() {
+        return activeKey != null ? tabs.get(activeKey) : null;
+    }
+
+    public String getActiveKey() {
+        return activeKey;
+    }
+
+    // A tab navigated elsewhere (e.g. a cast load_url) now answers for its new origin
+    public void onTabNavigated(T tab, String url) {
+        String oldKey = keyOf(tab);
+        String newKey = keyFor(url);
+        if (oldKey == null || oldKey.equals(newKey) || newKey.equals(activeKey)) {
+            return; // Never displace the tab on screen for a background one
+        }
+        T duplicate = tabs.remove(newKey);
+        if (duplicate != null) {
+            host.destroy(duplicate);
+        }
+        tabs.remove(oldKey);
+        tabs.put(newKey, tab);
+        if (oldKey.equals(activeKey)) {
+            activeKey = newKey;
+        }
+    }
+
+    /**
+     * Drops a tab that can't be used any more (its renderer died), even the active one;
+     * the next show() of its url creates a fresh tab. Returns false if it isn't pooled.
+     */
+    public boolean discard(T tab) {
+        String key = keyOf(tab);
+        if (key == null) {
+            return false;
+        }
+        tabs.remove(key);
+        if (key.equals(activeKey)) {
+            activeKey = null;
+        }
+        host.destroy(tab);
+        return true;
+    }
+
+    // Evicts least recently used background tabs until at most keep remain (the active one always stays)
+    public int trimTo(int keep) {
+        int evicted = 0;
+        Iterator<Map.Entry<String, T>> it = tabs.entrySet().iterator();
+        while (tabs.size() > Math.max(1, keep) && it.hasNext()) {
+            Map.Entry<String, T> entry = it.next();
+            if (entry.getKey().equals(activeKey)) {
+                continue;
+            }
+            it.remove();
+            host.destroy(entry.getValue());
+            evicted++;
+        }
+        return evicted;
+    }
+
+    public boolean contains(String url) {
+        return tabs.containsKey(keyFor(url));
+    }
+
+    public int size() {
+        return tabs.size();
+    }
+
+    public int getMaxTabs() {
+        return maxTabs;
+    }
+
+    // Snapshot, least recently shown first
+    public List<T> getTabs() {
+        return new ArrayList<>(tabs.values());
+    }
+
+    public void destroyAll() {
+        List<T> all = getTabs();
+        tabs.clear();
+        activeKey = null;
+        for (T tab : all) {
+            host.destroy(tab);
+        }
+    }
+
+    private String keyOf(T tab) {
+        for (Map.Entry<String, T> entry : tabs.entrySet()) {
+            if (entry.getValue() == tab) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,78 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastCommandResult;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessage;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessageCodec;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives {@link CastBatchRunner} against a host that holds every reply until the test
+ * completes it, so navigations can finish in any order.
+ */
+public class CastBatchRunnerTest {
+    private final InMemoryUiThread ui = new InMemoryUiThread();
+    private final HeldRepliesHost host = new HeldRepliesHost();
+    private List<CastCommandResult> results;
+
+    private void start(String batch) throws Exception {
+        CastMessage message = new CastMessageCodec().decode(batch, new CastMessage());
+        new CastBatchRunner(host, ui, message.commands, false, completed -> results = completed).start();
+    }
+
+    @Test
+    public void scriptWaitsForTheLatestLoadEvenIfAnEarlierOneFinishesFirst() throws Exception {
+        start("{\"type\":\"batch\",\"commands\":["
+            + "{\"type\":\"load_url\",\"url\":\"https://example.com/a\"},"
+            + "{\"type\":\"load_url\",\"url\":\"https://example.com/b\"},"
+            + "{\"type\":\"execute_js\",\"after\":\"page_load\",\"javascript\":\"document.title\"}]}");
+        assertEquals(2, host.loads.size());
+        assertEquals(0, host.scripts);
+
+        host.loads.get(0).error("Navigation superseded");
+        assertEquals(0, host.scripts);
+
+        host.loads.get(1).success("URL loaded successfully");
+        assertEquals(1, host.scripts);
+        assertNotNull(results);
+        assertFalse(results.get(0).success);
+        assertTrue(results.get(1).success);
+        assertTrue(results.get(2).success);
+    }
+
+    private static final class HeldRepliesHost implements BrowserHost {
+        final List<CastCommandReply> loads = new ArrayList<>();
+        int scripts;
+
+        @Override
+        public void loadUrl(String url, CastCommandReply reply) {
+            loads.add(reply);
+        }
+
+        @Override
+        public void prefetchUrl(String url, CastCommandReply reply) {
+            reply.success("Prefetch started");
+        }
+
+        @Override
+        public void evaluateJavascript(String javascript, CastCommandReply reply) {
+            scripts++;
+            reply.success("JavaScript executed successfully", "null");
+        }
+
+        @Override
+        public void toggleNavigation(CastCommandReply reply) {
+            reply.success("Navigation toggled successfully");
+        }
+
+        @Override
+        public boolean injectInput(RemoteInput input) {
+            return false;
+        }
+    }
+}
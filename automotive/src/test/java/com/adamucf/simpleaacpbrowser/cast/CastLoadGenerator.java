@@ -0,0 +1,306 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastCborCodec;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessageWriter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Synthetic cast sender for JVM load tests. It feeds generated frames through the whole
+ * command pipeline ({@link InMemoryCastPipeline}): decode, handler, scheduler lanes and
+ * the in-memory browser, with one UI frame run after each message. It reports
+ * throughput, latency percentiles (receipt to the end of that frame) and bytes
+ * allocated per message. A paced run measures latency from when each message was due,
+ * not from when it was actually sent. A handler that falls behind therefore shows up in
+ * the tail instead of quietly slowing the sender down.
+ */
+final class CastLoadGenerator {
+    // Distinct frames generated up front and sent round robin, so the run measures the handler, not the generator
+    private static final int FRAME_POOL = 1024;
+
+    enum Kind {
+        LOAD_URL, PREFETCH_URL, EXECUTE_JS, TOGGLE_NAVIGATION, GET_STATUS, PING, GET_METRICS, BATCH,
+        // Remote input from a touchpad, acknowledged so every frame gets a reply
+        POINTER_MOVE,
+        // Malformed JSON, answered with an error
+        INVALID
+    }
+
+    static final class Profile {
+        final String name;
+        final Map<Kind, Integer> mix = new EnumMap<>(Kind.class);
+        int messages = 100000;
+        int warmup = 20000;
+        // Average messages per second; 0 sends as fast as the handler takes them
+        double ratePerSecond = 0;
+        // Messages sent back to back at each tick of a paced run
+        int burst = 1;
+        // Size of the variable part of each frame (script, ping data, URL path)
+        int payloadBytes = 64;
+        // Frames are spread round robin over this many sender sessions
+        int sessions = 1;
+        // Each session negotiates CBOR first and every frame goes both ways as binary
+        boolean cbor;
+        long seed = 42;
+
+        Profile(String name) {
+            this.name = name;
+        }
+
+        Profile mix(Kind kind, int weight) {
+            mix.put(kind, weight);
+            return this;
+        }
+
+        Profile messages(int messages) {
+            this.messages = messages;
+            return this;
+        }
+
+        Profile warmup(int warmup) {
+            this.warmup = warmup;
+            return this;
+        }
+
+        Profile rate(double ratePerSecond, int burst) {
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+            return this;
+        }
+
+        Profile payloadBytes(int payloadBytes) {
+            this.payloadBytes = payloadBytes;
+            return this;
+        }
+
+        Profile sessions(int sessions) {
+            this.sessions = sessions;
+            return this;
+        }
+
+        Profile cbor() {
+            this.cbor = true;
+            return this;
+        }
+    }
+
+    static final class Report {
+        final String name;
+        final int messages;
+        final double messagesPerSecond;
+        final double p50Micros;
+        final double p99Micros;
+        final double p999Micros;
+        final double bytesPerMessage;
+        // Frames sent back, how many of them reported an error, and how many of those were
+        // for commands the scheduler coalesced away or dropped on overflow
+        final long replies;
+        final long errors;
+        final long dropped;
+
+        Report(String name, int messages, double messagesPerSecond, long[] sortedNanos,
+               double bytesPerMessage, long replies, long errors, long dropped) {
+            this.name = name;
+            this.messages = messages;
+            this.messagesPerSecond = messagesPerSecond;
+            this.p50Micros = percentile(sortedNanos, 50);
+            this.p99Micros = percentile(sortedNanos, 99);
+            this.p999Micros = percentile(sortedNanos, 99.9);
+            this.bytesPerMessage = bytesPerMessage;
+            this.replies = replies;
+            this.errors = errors;
+            this.dropped = dropped;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-14s %9d msgs %10.0f msg/s  p50 %7.1f us  p99 %7.1f us  p99.9 %8.1f us  %7.0f B/msg  %7d errors",
+                name, messages, messagesPerSecond, p50Micros, p99Micros, p999Micros, bytesPerMessage, errors);
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e3;
+        }
+    }
+
+    private CastLoadGenerator() {
+    }
+
+    static Report run(Profile profile) {
+        InMemoryCastPipeline pipeline = new InMemoryCastPipeline(false);
+        String[] frames = frames(profile);
+        byte[][] binaryFrames = profile.cbor ? toCbor(frames) : null;
+        String[] sessions = new String[profile.sessions];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = "sender-" + i;
+            if (profile.cbor) {
+                pipeline.deliver(sessions[i], "{\"type\":\"set_encoding\",\"encoding\":\"cbor\"}");
+            }
+        }
+
+        // Warm-up: JIT, codec buffers, metric registrations
+        for (int i = 0; i < profile.warmup; i++) {
+            deliver(pipeline, sessions[i % sessions.length], frames, binaryFrames, i);
+            pipeline.ui.runFrame();
+        }
+        pipeline.drain();
+        long repliesBefore = pipeline.transport.frames;
+        long errorsBefore = pipeline.transport.errors;
+        long droppedBefore = pipeline.transport.dropped;
+
+        long[] latencies = new long[profile.messages];
+        long intervalNanos = profile.ratePerSecond > 0
+            ? (long) (TimeUnit.SECONDS.toNanos(1) * profile.burst / profile.ratePerSecond) : 0;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes(threads);
+        long start = System.nanoTime();
+        for (int i = 0; i < profile.messages; i++) {
+            long due = intervalNanos > 0 ? start + (i / profile.burst) * intervalNanos : System.nanoTime();
+            if (intervalNanos > 0) {
+                waitUntil(due);
+            }
+            deliver(pipeline, sessions[i % sessions.length], frames, binaryFrames, i);
+            pipeline.ui.runFrame();
+            latencies[i] = System.nanoTime() - due;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes(threads) - allocatedBefore;
+        // Commands still queued in the scheduler are answered before counting
+        pipeline.drain();
+
+        Arrays.sort(latencies);
+        return new Report(profile.name, profile.messages, profile.messages / (elapsed / 1e9), latencies,
+            allocated >= 0 ? (double) allocated / profile.messages : -1,
+            pipeline.transport.frames - repliesBefore, pipeline.transport.errors - errorsBefore,
+            pipeline.transport.dropped - droppedBefore);
+    }
+
+    private static void deliver(InMemoryCastPipeline pipeline, String sessionId, String[] frames,
+                                byte[][] binaryFrames, int i) {
+        if (binaryFrames != null) {
+            pipeline.deliverBinary(sessionId, binaryFrames[i % binaryFrames.length]);
+        } else {
+            pipeline.deliver(sessionId, frames[i % frames.length]);
+        }
+    }
+
+    // Malformed JSON becomes a CBOR text string, which the receiver rejects just the same
+    private static byte[][] toCbor(String[] frames) {
+        CastCborCodec codec = new CastCborCodec();
+        byte[][] binary = new byte[frames.length][];
+        for (int i = 0; i < frames.length; i++) {
+            binary[i] = codec.fromJson(frames[i]);
+        }
+        return binary;
+    }
+
+    // Bytes allocated by this thread so far, or -1 where the JVM can't tell
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    // Parks for most of the wait and spins the last stretch, so timer slack doesn't skew pacing
+    private static void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            if (remaining > TimeUnit.MICROSECONDS.toNanos(200)) {
+                LockSupport.parkNanos(remaining - TimeUnit.MICROSECONDS.toNanos(100));
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    static String[] frames(Profile profile) {
+        List<Kind> weighted = new ArrayList<>();
+        for (Map.Entry<Kind, Integer> entry : profile.mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                weighted.add(entry.getKey());
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("Profile " + profile.name + " has an empty message mix");
+        }
+        Random random = new Random(profile.seed);
+        CastMessageWriter writer = new CastMessageWriter();
+        String[] frames = new String[FRAME_POOL];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = frame(weighted.get(random.nextInt(weighted.size())), i, profile.payloadBytes, writer);
+        }
+        return frames;
+    }
+
+    private static String frame(Kind kind, int id, int payloadBytes, CastMessageWriter writer) {
+        String filler = filler(id, payloadBytes);
+        if (kind == Kind.INVALID) {
+            return "{\"type\":\"ping\",\"id\":" + id + ",\"data\":{\"probe\":\"" + filler;
+        }
+        writer.reset().beginObject();
+        switch (kind) {
+            case LOAD_URL:
+                writer.name("type").value("load_url").name("id").value(id)
+                    .name("url").value("https://example.com/" + filler);
+                break;
+            case PREFETCH_URL:
+                writer.name("type").value("prefetch_url").name("id").value(id)
+                    .name("url").value("https://example.com/next/" + filler);
+                break;
+            case EXECUTE_JS:
+                writer.name("type").value("execute_js").name("id").value(id)
+                    .name("javascript").value("window.riptide && riptide.set('" + filler + "')");
+                break;
+            case TOGGLE_NAVIGATION:
+                writer.name("type").value("toggle_navigation").name("id").value(id);
+                break;
+            case GET_STATUS:
+                writer.name("type").value("get_status").name("id").value(id);
+                break;
+            case PING:
+                writer.name("type").value("ping").name("id").value(id)
+                    .name("data").beginObject().name("probe").value(filler).endObject();
+                break;
+            case GET_METRICS:
+                writer.name("type").value("get_metrics").name("id").value(id);
+                break;
+            case POINTER_MOVE:
+                writer.name("type").value("pointer").name("id").value(id).name("action").value("move")
+                    .name("x").value((id % 100) / 100.0).name("y").value((id % 37) / 37.0);
+                break;
+            case BATCH:
+            default:
+                writer.name("type").value("batch").name("id").value(id).name("commands").beginArray()
+                    .beginObject().name("type").value("load_url").name("url").value("https://example.com/" + filler).endObject()
+                    .beginObject().name("type").value("execute_js").name("after").value("page_load")
+                    .name("javascript").value("document.title").endObject()
+                    .endArray();
+                break;
+        }
+        return writer.endObject().toString();
+    }
+
+    private static String filler(int id, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        builder.append(id).append('-');
+        while (builder.length() < length) {
+            builder.append((char) ('a' + builder.length() % 26));
+        }
+        builder.setLength(Math.max(0, length));
+        return builder.toString();
+    }
+}
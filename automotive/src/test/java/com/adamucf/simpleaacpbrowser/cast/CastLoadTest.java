@@ -0,0 +1,91 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Load runs of the cast command pipeline on a plain JVM (see {@link CastLoadGenerator}).
+ * Each run checks its throughput and latency figures and that every frame was
+ * answered; a failing check shows the run's report line. A sender this fast outruns the navigation and UI lanes, so some commands
+ * are superseded; those are the only errors allowed. Longer runs: ./gradlew :automotive:testDebugUnitTest -PcastLoadMessages=1000000
+ */
+public class CastLoadTest {
+    private static final int MESSAGES = Integer.getInteger("castLoadMessages", 50000);
+
+    private static CastLoadGenerator.Profile typicalMix(String name) {
+        return new CastLoadGenerator.Profile(name)
+            .mix(CastLoadGenerator.Kind.EXECUTE_JS, 40)
+            .mix(CastLoadGenerator.Kind.PING, 20)
+            .mix(CastLoadGenerator.Kind.GET_STATUS, 10)
+            .mix(CastLoadGenerator.Kind.LOAD_URL, 10)
+            .mix(CastLoadGenerator.Kind.PREFETCH_URL, 5)
+            .mix(CastLoadGenerator.Kind.TOGGLE_NAVIGATION, 5)
+            .mix(CastLoadGenerator.Kind.BATCH, 9)
+            .mix(CastLoadGenerator.Kind.GET_METRICS, 1)
+            .messages(MESSAGES)
+            .warmup(Math.min(MESSAGES, 20000));
+    }
+
+    private static CastLoadGenerator.Report run(CastLoadGenerator.Profile profile) {
+        CastLoadGenerator.Report report = CastLoadGenerator.run(profile);
+        String line = report.toString();
+        assertTrue(line, report.messagesPerSecond > 0);
+        assertTrue(line, report.p50Micros > 0 && report.p50Micros <= report.p99Micros);
+        assertTrue(line, report.p99Micros <= report.p999Micros && !Double.isInfinite(report.p999Micros));
+        assertTrue(line, report.bytesPerMessage >= 0);
+        return report;
+    }
+
+    @Test
+    public void saturatedTypicalMix() {
+        CastLoadGenerator.Report report = run(typicalMix("saturated"));
+
+        // Every command in the mix is answered exactly once, and none fails outright
+        assertEquals(report.toString(), report.messages, report.replies);
+        assertEquals(report.toString(), report.dropped, report.errors);
+    }
+
+    @Test
+    public void saturatedTypicalMixOverCbor() {
+        CastLoadGenerator.Report report = run(typicalMix("saturated-cbor").cbor());
+
+        assertEquals(report.toString(), report.messages, report.replies);
+        assertEquals(report.toString(), report.dropped, report.errors);
+    }
+
+    @Test
+    public void burstyLargePayloadsFromTwoSenders() {
+        CastLoadGenerator.Report report = run(typicalMix("bursts-4k")
+            .payloadBytes(4096)
+            .sessions(2)
+            .rate(20000, 64)
+            .messages(Math.min(MESSAGES, 20000)));
+
+        assertEquals(report.toString(), report.messages, report.replies);
+        assertEquals(report.toString(), report.dropped, report.errors);
+    }
+
+    @Test
+    public void pointerStreamIsCoalescedPerFrame() {
+        CastLoadGenerator.Report report = run(new CastLoadGenerator.Profile("touchpad")
+            .mix(CastLoadGenerator.Kind.POINTER_MOVE, 1)
+            .messages(Math.min(MESSAGES, 50000)));
+
+        // Moves merge instead of queueing, so none is dropped however fast they come
+        assertEquals(report.toString(), report.messages, report.replies);
+        assertEquals(report.toString(), 0, report.errors);
+    }
+
+    @Test
+    public void malformedFramesAreAnsweredWithErrors() {
+        CastLoadGenerator.Report report = run(new CastLoadGenerator.Profile("invalid")
+            .mix(CastLoadGenerator.Kind.INVALID, 1)
+            .messages(Math.min(MESSAGES, 10000))
+            .warmup(1000));
+
+        assertEquals(report.toString(), report.messages, report.replies);
+        assertEquals(report.toString(), report.messages, report.errors);
+        assertEquals(report.toString(), 0, report.dropped);
+    }
+}
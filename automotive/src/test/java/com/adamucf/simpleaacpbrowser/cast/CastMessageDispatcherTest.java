@@ -0,0 +1,105 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link CastMessageDispatcher} bundling, buffering while suspended and retries
+ * against a channel that records what reaches the wire.
+ */
+public class CastMessageDispatcherTest {
+    private static final String NS = "urn:x-cast:com.adamucf.riptide";
+
+    private final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+    private CastMessageDispatcher dispatcher;
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    private final CastMessageDispatcher.Channel recording = (namespace, message, callback) -> {
+        sent.add(message);
+        callback.onComplete(true);
+    };
+
+    @Test
+    public void coalescableFramesQueuedTogetherGoOutAsOneBundle() throws Exception {
+        dispatcher = new CastMessageDispatcher(recording, 16, 4, 16, 10000);
+        dispatcher.enqueue(NS, "{\"a\":1}", true, null);
+        dispatcher.enqueue(NS, "{\"b\":2}", true, null);
+        dispatcher.enqueue(NS, "{\"c\":3}", false, null);
+
+        dispatcher.setConnected(true);
+
+        assertEquals("{\"type\":\"bundle\",\"messages\":[{\"a\":1},{\"b\":2}]}", sent.poll(2, TimeUnit.SECONDS));
+        assertEquals("{\"c\":3}", sent.poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void framesBufferedWhileSuspendedExpireAfterTheirTtl() throws Exception {
+        dispatcher = new CastMessageDispatcher(recording, 16, 4, 16, 50);
+        BlockingQueue<CastMessageDispatcher.Result> results = new LinkedBlockingQueue<>();
+        assertTrue(dispatcher.enqueue(NS, "{}", false, results::add));
+
+        assertEquals(CastMessageDispatcher.Result.EXPIRED, results.poll(2, TimeUnit.SECONDS));
+        assertEquals(0, dispatcher.getQueueDepth());
+        dispatcher.setConnected(true);
+        assertNull(sent.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void fullQueueRefusesWithoutWaiting() {
+        dispatcher = new CastMessageDispatcher(recording, 2, 4, 16, 10000);
+        BlockingQueue<CastMessageDispatcher.Result> results = new LinkedBlockingQueue<>();
+        assertTrue(dispatcher.enqueue(NS, "{\"n\":1}", false, results::add));
+        assertTrue(dispatcher.enqueue(NS, "{\"n\":2}", false, results::add));
+
+        assertFalse(dispatcher.enqueue(NS, "{\"n\":3}", false, results::add));
+        assertEquals(CastMessageDispatcher.Result.QUEUE_FULL, results.poll());
+        assertEquals(2, dispatcher.getQueueDepth());
+    }
+
+    @Test
+    public void failedSendIsRetriedAheadOfLaterFrames() throws Exception {
+        BlockingQueue<CastMessageDispatcher.Result> results = new LinkedBlockingQueue<>();
+        // The session drops during the first send, so that send fails and is held
+        CastMessageDispatcher.Channel dropsOnce = new CastMessageDispatcher.Channel() {
+            private boolean dropped;
+
+            @Override
+            public void send(String namespace, String message, CastMessageDispatcher.SendCallback callback) {
+                sent.add(message);
+                if (!dropped) {
+                    dropped = true;
+                    dispatcher.setConnected(false);
+                    callback.onComplete(false);
+                } else {
+                    callback.onComplete(true);
+                }
+            }
+        };
+        dispatcher = new CastMessageDispatcher(dropsOnce, 16, 4, 16, 10000);
+        dispatcher.enqueue(NS, "{\"n\":1}", false, results::add);
+        dispatcher.enqueue(NS, "{\"n\":2}", false, results::add);
+        dispatcher.setConnected(true);
+
+        assertEquals("{\"n\":1}", sent.poll(2, TimeUnit.SECONDS));
+        assertNull(sent.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(2, dispatcher.getQueueDepth());
+
+        dispatcher.setConnected(true);
+        assertEquals("{\"n\":1}", sent.poll(2, TimeUnit.SECONDS));
+        assertEquals("{\"n\":2}", sent.poll(2, TimeUnit.SECONDS));
+        assertEquals(CastMessageDispatcher.Result.DELIVERED, results.poll(2, TimeUnit.SECONDS));
+        assertEquals(CastMessageDispatcher.Result.DELIVERED, results.poll(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,229 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastCborCodec;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastProtocolException;
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs cast commands end to end through {@link InMemoryCastPipeline}: from the inbound
+ * frame through the scheduler to the browser host and back to the sender.
+ */
+public class CastPipelineTest {
+    private final InMemoryCastPipeline pipeline = new InMemoryCastPipeline(true);
+
+    @Test
+    public void loadUrlIsAnsweredOnceItsFrameHasRun() {
+        pipeline.deliver("driver", "{\"type\":\"load_url\",\"id\":\"a1\",\"url\":\"https://example.com/\"}");
+        assertTrue(pipeline.transport.sentTo("driver").isEmpty());
+
+        pipeline.ui.runFrame();
+
+        assertEquals("https://example.com/", pipeline.host.currentUrl);
+        List<String> replies = pipeline.transport.sentTo("driver");
+        assertEquals(1, replies.size());
+        assertTrue(replies.get(0).contains("\"a1\""));
+        assertTrue(replies.get(0).contains("\"status\":\"success\""));
+    }
+
+    @Test
+    public void malformedEscapeIsAnsweredInsteadOfThrown() {
+        MetricsRegistry.Counter invalid = MetricsRegistry.getDefault().counter(MetricsRegistry.INVALID_MESSAGES);
+        long before = invalid.count();
+        pipeline.deliver("driver", "{\"type\":\"load_url\",\"url\":\"\\uZZZZ\"}");
+
+        assertEquals(before + 1, invalid.count());
+        assertEquals(0, pipeline.host.loads);
+        List<String> replies = pipeline.transport.sentTo("driver");
+        assertEquals(1, replies.size());
+        assertTrue(replies.get(0).contains("Invalid JSON format"));
+    }
+
+    @Test
+    public void newerLoadUrlSupersedesOneStillQueued() {
+        pipeline.deliver("driver", "{\"type\":\"load_url\",\"id\":\"a1\",\"url\":\"https://example.com/old\"}");
+        pipeline.deliver("driver", "{\"type\":\"load_url\",\"id\":\"a2\",\"url\":\"https://example.com/new\"}");
+        pipeline.drain();
+
+        assertEquals(1, pipeline.host.loads);
+        assertEquals("https://example.com/new", pipeline.host.currentUrl);
+        List<String> replies = pipeline.transport.sentTo("driver");
+        assertEquals(2, replies.size());
+        assertTrue(replies.get(0).contains("\"a1\"") && replies.get(0).contains("superseded"));
+        assertTrue(replies.get(1).contains("\"a2\"") && replies.get(1).contains("\"status\":\"success\""));
+    }
+
+    @Test
+    public void batchWaitsForThePageBeforeItsScript() {
+        pipeline.deliver("driver", "{\"type\":\"batch\",\"id\":\"b1\",\"commands\":["
+            + "{\"type\":\"load_url\",\"url\":\"https://example.com/\"},"
+            + "{\"type\":\"execute_js\",\"after\":\"page_load\",\"javascript\":\"document.title\"}]}");
+        pipeline.drain();
+
+        assertEquals(1, pipeline.host.loads);
+        assertEquals(1, pipeline.host.scripts);
+        List<String> replies = pipeline.transport.sentTo("driver");
+        assertEquals(1, replies.size());
+        assertTrue(replies.get(0).contains("batch_result"));
+        assertFalse(replies.get(0).contains("\"status\":\"error\""));
+    }
+
+    @Test
+    public void queuedTogglesFromTwoSendersCancelOutAndBothSucceed() {
+        pipeline.deliver("driver", "{\"type\":\"toggle_navigation\",\"id\":\"t1\"}");
+        pipeline.deliver("passenger", "{\"type\":\"toggle_navigation\",\"id\":\"t2\"}");
+        pipeline.drain();
+
+        assertFalse(pipeline.host.navigationVisible);
+        List<String> driver = pipeline.transport.sentTo("driver");
+        List<String> passenger = pipeline.transport.sentTo("passenger");
+        assertEquals(1, driver.size());
+        assertTrue(driver.get(0).contains("\"t1\"") && driver.get(0).contains("\"status\":\"success\""));
+        assertEquals(1, passenger.size());
+        assertTrue(passenger.get(0).contains("\"t2\"") && passenger.get(0).contains("\"status\":\"success\""));
+    }
+
+    @Test
+    public void repliesGoBackToTheSenderThatAsked() {
+        pipeline.deliver("driver", "{\"type\":\"ping\",\"id\":\"p1\"}");
+        pipeline.deliver("passenger", "{\"type\":\"toggle_navigation\",\"id\":\"t1\"}");
+        pipeline.drain();
+
+        assertTrue(pipeline.host.navigationVisible);
+        List<String> driver = pipeline.transport.sentTo("driver");
+        List<String> passenger = pipeline.transport.sentTo("passenger");
+        assertEquals(1, driver.size());
+        assertTrue(driver.get(0).contains("pong"));
+        assertEquals(1, passenger.size());
+        assertTrue(passenger.get(0).contains("\"t1\""));
+    }
+
+    @Test
+    public void journalKeepsEachSendersOpenCommandsApart() {
+        pipeline.journal.recordSessionConnected("phone");
+        pipeline.journal.recordSessionConnected("tablet");
+        pipeline.deliver("tablet", "{\"type\":\"load_url\",\"id\":1,\"url\":\"https://example.com/\"}");
+        // Same id from another sender, answered at once
+        pipeline.deliver("phone", "{\"type\":\"execute_js\",\"id\":1,\"javascript\":\"\"}");
+
+        assertTrue(pipeline.journal.getOpenCommands("phone").isEmpty());
+        assertEquals("load_url", pipeline.journal.getOpenCommands("tablet").get("1"));
+
+        pipeline.drain();
+        assertTrue(pipeline.journal.getOpenCommands("tablet").isEmpty());
+    }
+
+    @Test
+    public void negotiatedCborRepliesCarryTheSameContent() throws CastProtocolException {
+        CastCborCodec cbor = new CastCborCodec();
+        pipeline.handler.sendReceiverReady("tool");
+        assertTrue(pipeline.transport.sentTo("tool").get(0).contains("\"cbor\""));
+
+        pipeline.deliver("tool", "{\"type\":\"set_encoding\",\"id\":\"e1\",\"encoding\":\"cbor\"}");
+        pipeline.deliverBinary("tool", cbor.fromJson("{\"type\":\"load_url\",\"id\":\"a1\",\"url\":\"https://example.com/\"}"));
+        pipeline.drain();
+
+        assertEquals("https://example.com/", pipeline.host.currentUrl);
+        List<byte[]> replies = pipeline.transport.binarySentTo("tool");
+        assertEquals(2, replies.size());
+        assertTrue(cbor.toJson(replies.get(0)).contains("\"e1\""));
+        String loaded = cbor.toJson(replies.get(1));
+        assertTrue(loaded.contains("\"a1\"") && loaded.contains("\"status\":\"success\""));
+
+        // Switching back applies from the ack on
+        pipeline.deliver("tool", "{\"type\":\"set_encoding\",\"id\":\"e2\",\"encoding\":\"json\"}");
+        assertEquals(2, pipeline.transport.binarySentTo("tool").size());
+        assertTrue(pipeline.transport.sentTo("tool").get(1).contains("\"e2\""));
+    }
+
+    @Test
+    public void cborIsRefusedWhereTheChannelIsTextOnly() {
+        pipeline.transport.binaryCapable = false;
+        pipeline.handler.sendReceiverReady("driver");
+        pipeline.deliver("driver", "{\"type\":\"set_encoding\",\"id\":\"e1\",\"encoding\":\"cbor\"}");
+        pipeline.deliver("driver", "{\"type\":\"ping\",\"id\":\"p1\"}");
+
+        List<String> replies = pipeline.transport.sentTo("driver");
+        assertEquals("{\"type\":\"receiver_ready\"}", replies.get(0));
+        assertTrue(replies.get(1).contains("\"status\":\"error\""));
+        assertTrue(replies.get(2).contains("pong"));
+        assertTrue(pipeline.transport.binarySentTo("driver").isEmpty());
+    }
+
+    @Test
+    public void pointerMovesWithinOneFrameAreInjectedOnce() {
+        pipeline.deliver("phone", "{\"type\":\"pointer\",\"id\":\"m1\",\"action\":\"move\",\"x\":0.1,\"y\":0.2}");
+        pipeline.deliver("phone", "{\"type\":\"pointer\",\"id\":\"m2\",\"action\":\"move\",\"x\":0.3,\"y\":0.4}");
+        pipeline.deliver("phone", "{\"type\":\"pointer\",\"id\":\"m3\",\"action\":\"move\",\"x\":0.5,\"y\":0.6}");
+        pipeline.ui.runFrame();
+
+        assertEquals(1, pipeline.host.inputs);
+        assertEquals(3, pipeline.host.inputFrames);
+        assertEquals(0.5f, pipeline.host.lastX, 0f);
+        assertEquals(0.6f, pipeline.host.lastY, 0f);
+        List<String> replies = pipeline.transport.sentTo("phone");
+        assertEquals(3, replies.size());
+        assertTrue(replies.get(0).contains("\"m1\"") && replies.get(0).contains("Input coalesced"));
+        assertTrue(replies.get(1).contains("\"m2\"") && replies.get(1).contains("Input coalesced"));
+        assertTrue(replies.get(2).contains("\"m3\"") && replies.get(2).contains("Input injected"));
+    }
+
+    @Test
+    public void scrollsAddUpButTapsAndKeysKeepTheirPlace() {
+        pipeline.deliver("phone", "{\"type\":\"scroll\",\"dy\":40}");
+        pipeline.deliver("phone", "{\"type\":\"scroll\",\"dy\":25.5}");
+        pipeline.deliver("phone", "{\"type\":\"tap\",\"x\":0.5,\"y\":0.5}");
+        pipeline.deliver("phone", "{\"type\":\"scroll\",\"dx\":-10}");
+        pipeline.deliver("phone", "{\"type\":\"key\",\"key\":\"Enter\"}");
+        pipeline.ui.runFrame();
+
+        assertEquals(4, pipeline.host.inputs);
+        assertEquals(-10f, pipeline.host.scrolledX, 0f);
+        assertEquals(65.5f, pipeline.host.scrolledY, 0f);
+        assertEquals(RemoteInput.Kind.KEY_PRESS, pipeline.host.lastInput);
+        assertEquals("Enter", pipeline.host.lastKey);
+        // No ids, so nothing is acknowledged
+        assertTrue(pipeline.transport.sentTo("phone").isEmpty());
+    }
+
+    @Test
+    public void movesFromDifferentSendersAreNotMerged() {
+        pipeline.deliver("phone", "{\"type\":\"pointer\",\"action\":\"move\",\"x\":0.1,\"y\":0.1}");
+        pipeline.deliver("tablet", "{\"type\":\"pointer\",\"action\":\"move\",\"x\":0.9,\"y\":0.9}");
+        pipeline.ui.runFrame();
+
+        assertEquals(2, pipeline.host.inputs);
+        assertEquals(0.9f, pipeline.host.lastX, 0f);
+    }
+
+    @Test
+    public void invalidInputIsRefusedWithoutReachingTheHost() {
+        pipeline.deliver("phone", "{\"type\":\"tap\",\"id\":\"t1\",\"x\":1.5,\"y\":0.5}");
+        pipeline.deliver("phone", "{\"type\":\"pointer\",\"id\":\"p1\",\"action\":\"wiggle\",\"x\":0.5,\"y\":0.5}");
+        pipeline.deliver("phone", "{\"type\":\"key\",\"id\":\"k1\"}");
+        pipeline.ui.runFrame();
+
+        assertEquals(0, pipeline.host.inputs);
+        List<String> replies = pipeline.transport.sentTo("phone");
+        assertEquals(3, replies.size());
+        for (String reply : replies) {
+            assertTrue(reply.contains("\"status\":\"error\""));
+        }
+    }
+
+    @Test
+    public void inputWithNoPageOnScreenIsReportedAsNotInjected() {
+        pipeline.host.acceptsInput = false;
+        pipeline.deliver("phone", "{\"type\":\"key\",\"id\":\"k1\",\"key\":\"a\"}");
+        pipeline.ui.runFrame();
+
+        List<String> replies = pipeline.transport.sentTo("phone");
+        assertEquals(1, replies.size());
+        assertTrue(replies.get(0).contains("\"status\":\"error\"") && replies.get(0).contains("not injected"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks when {@link CastReceiverLifecycle} holds and releases the receiver's resources.
+ */
+public class CastReceiverLifecycleTest {
+
+    @Test
+    public void idleUntilSomethingOpensAWindow() {
+        CastReceiverLifecycle lifecycle = new CastReceiverLifecycle(120000, 30000);
+
+        assertFalse(lifecycle.isArmed(0));
+        assertEquals(0, lifecycle.millisUntilIdle(0));
+
+        lifecycle.openWindow(1000);
+        assertTrue(lifecycle.isArmed(1000));
+        assertEquals(120000, lifecycle.millisUntilIdle(1000));
+        assertFalse(lifecycle.isArmed(121000));
+    }
+
+    @Test
+    public void leavingTheScreenKeepsDiscoveryOpenForAWindow() {
+        CastReceiverLifecycle lifecycle = new CastReceiverLifecycle(120000, 30000);
+
+        lifecycle.setForeground(true, 0);
+        assertTrue(lifecycle.isArmed(10000000));
+        assertEquals(-1, lifecycle.millisUntilIdle(10000000));
+
+        lifecycle.setForeground(false, 10000000);
+        assertTrue(lifecycle.isArmed(10100000));
+        assertFalse(lifecycle.isArmed(10120000));
+    }
+
+    @Test
+    public void sessionsHoldTheReceiverAndLingerAfterTheLastOneEnds() {
+        CastReceiverLifecycle lifecycle = new CastReceiverLifecycle(120000, 30000);
+
+        lifecycle.onSessionStarted("driver");
+        lifecycle.onSessionStarted("driver"); // Resumed, not a second sender
+        lifecycle.onSessionStarted("passenger");
+        assertEquals(2, lifecycle.getSessionCount());
+        assertEquals(-1, lifecycle.millisUntilIdle(500000));
+
+        lifecycle.onSessionEnded("driver", 500000);
+        assertEquals(-1, lifecycle.millisUntilIdle(500000));
+
+        lifecycle.onSessionEnded("passenger", 600000);
+        assertEquals(30000, lifecycle.millisUntilIdle(600000));
+        assertFalse(lifecycle.isArmed(630000));
+    }
+
+    @Test
+    public void windowsNeverShrink() {
+        CastReceiverLifecycle lifecycle = new CastReceiverLifecycle(120000, 30000);
+
+        lifecycle.openWindow(0);
+        lifecycle.onSessionStarted("driver");
+        lifecycle.onSessionEnded("driver", 10000);
+
+        assertEquals(110000, lifecycle.millisUntilIdle(10000));
+    }
+}
@@ -0,0 +1,103 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link CastSessionHub} routes replies to one sender and fans state out to all.
+ */
+public class CastSessionHubTest {
+    private static final String NS = "urn:x-cast:com.adamucf.riptide";
+
+    private final CastSessionHub hub = new CastSessionHub();
+
+    @After
+    public void tearDown() {
+        hub.shutdown();
+    }
+
+    // Records every frame sent to one session and reports it delivered
+    private static CastMessageDispatcher.Channel recordingChannel(BlockingQueue<String> sent) {
+        return (namespace, message, callback) -> {
+            sent.add(message);
+            callback.onComplete(true);
+        };
+    }
+
+    @Test
+    public void repliesOnlyReachTheirOwnSession() throws Exception {
+        BlockingQueue<String> driver = new LinkedBlockingQueue<>();
+        BlockingQueue<String> passenger = new LinkedBlockingQueue<>();
+        assertTrue(hub.attach("driver", recordingChannel(driver)));
+        assertTrue(hub.attach("passenger", recordingChannel(passenger)));
+
+        assertTrue(hub.send("passenger", NS, "{\"type\":\"pong\"}", false, null));
+
+        assertEquals("{\"type\":\"pong\"}", passenger.poll(2, TimeUnit.SECONDS));
+        assertNull(driver.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void broadcastQueuesTheSameFrameForEverySession() throws Exception {
+        BlockingQueue<String> driver = new LinkedBlockingQueue<>();
+        BlockingQueue<String> passenger = new LinkedBlockingQueue<>();
+        hub.attach("driver", recordingChannel(driver));
+        hub.attach("passenger", recordingChannel(passenger));
+        String event = "{\"type\":\"renderer_incident\"}";
+
+        assertEquals(2, hub.broadcast(NS, event, false));
+
+        assertSame(event, driver.poll(2, TimeUnit.SECONDS));
+        assertSame(event, passenger.poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void unknownAndEndedSessionsReportNoSession() {
+        BlockingQueue<CastMessageDispatcher.Result> results = new LinkedBlockingQueue<>();
+        hub.attach("driver", recordingChannel(new LinkedBlockingQueue<>()));
+        assertTrue(hub.detach("driver"));
+
+        assertFalse(hub.send("driver", NS, "{}", true, results::add));
+        assertFalse(hub.send(null, NS, "{}", true, results::add));
+
+        assertEquals(CastMessageDispatcher.Result.NO_SESSION, results.poll());
+        assertEquals(CastMessageDispatcher.Result.NO_SESSION, results.poll());
+        assertEquals(0, hub.getSessionCount());
+    }
+
+    @Test
+    public void binaryFramesFailOnTextOnlyChannels() {
+        BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+        BlockingQueue<CastMessageDispatcher.Result> results = new LinkedBlockingQueue<>();
+        hub.attach("driver", recordingChannel(sent));
+
+        assertFalse(hub.supportsBinary("driver"));
+        assertFalse(hub.sendBinary("driver", NS, new byte[]{(byte) 0xa0}, results::add));
+
+        assertEquals(CastMessageDispatcher.Result.FAILED, results.poll());
+        assertEquals(0, hub.getQueueDepth());
+    }
+
+    @Test
+    public void resumedSessionKeepsWhatItBufferedWhileSuspended() throws Exception {
+        BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+        hub.attach("driver", recordingChannel(sent));
+        hub.suspend("driver");
+
+        hub.send("driver", NS, "{\"type\":\"batch_result\"}", false, null);
+        assertNull(sent.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, hub.getQueueDepth());
+
+        assertFalse(hub.attach("driver", recordingChannel(sent)));
+        assertEquals("{\"type\":\"batch_result\"}", sent.poll(2, TimeUnit.SECONDS));
+        List<String> ids = hub.getSessionIds();
+        assertEquals(1, ids.size());
+    }
+}
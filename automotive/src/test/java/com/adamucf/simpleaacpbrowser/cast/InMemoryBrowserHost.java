@@ -0,0 +1,69 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+/**
+ * {@link BrowserHost} without a WebView: every command completes at once and only its
+ * effect on a minimal page model (current URL, prefetched URL, menu state, remote
+ * input) is kept.
+ */
+final class InMemoryBrowserHost implements BrowserHost {
+    String currentUrl;
+    String prefetchedUrl;
+    boolean navigationVisible;
+    int loads;
+    int scripts;
+    // Remote input, copied out because events are pooled
+    boolean acceptsInput = true;
+    int inputs;
+    int inputFrames;
+    RemoteInput.Kind lastInput;
+    float lastX = Float.NaN;
+    float lastY = Float.NaN;
+    float scrolledX;
+    float scrolledY;
+    String lastKey;
+
+    @Override
+    public void loadUrl(String url, CastCommandReply reply) {
+        currentUrl = url;
+        loads++;
+        reply.success("URL loaded successfully");
+    }
+
+    @Override
+    public void prefetchUrl(String url, CastCommandReply reply) {
+        prefetchedUrl = url;
+        reply.success("Prefetch started");
+    }
+
+    @Override
+    public void evaluateJavascript(String javascript, CastCommandReply reply) {
+        scripts++;
+        reply.success("JavaScript executed successfully", "null");
+    }
+
+    @Override
+    public void toggleNavigation(CastCommandReply reply) {
+        navigationVisible = !navigationVisible;
+        reply.success("Navigation toggled successfully");
+    }
+
+    @Override
+    public boolean injectInput(RemoteInput input) {
+        if (!acceptsInput) {
+            return false;
+        }
+        inputs++;
+        inputFrames += input.frames;
+        lastInput = input.kind;
+        if (!Float.isNaN(input.x)) {
+            lastX = input.x;
+            lastY = input.y;
+        }
+        scrolledX += input.dx;
+        scrolledY += input.dy;
+        if (input.key != null) {
+            lastKey = input.key;
+        }
+        return true;
+    }
+}
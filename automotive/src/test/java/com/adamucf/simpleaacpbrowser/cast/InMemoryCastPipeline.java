@@ -0,0 +1,38 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import com.adamucf.simpleaacpbrowser.web.SessionJournal;
+
+/**
+ * The receiver's command pipeline (codec, handler, scheduler, batch runner) wired to
+ * in-memory implementations of everything Android provides. Single-threaded: frames are
+ * handled on the calling thread and commands run when the test runs a UI frame.
+ */
+final class InMemoryCastPipeline {
+    static final String NS = "urn:x-cast:com.adamucf.riptide";
+
+    final InMemoryUiThread ui = new InMemoryUiThread();
+    final InMemoryBrowserHost host = new InMemoryBrowserHost();
+    final InMemoryCastTransport transport;
+    final CastCommandExecutor executor;
+    final CastMessageHandler handler;
+    final SessionJournal journal = SessionJournal.inMemory();
+
+    InMemoryCastPipeline(boolean retainFrames) {
+        transport = new InMemoryCastTransport(retainFrames);
+        executor = new CastCommandExecutor(host, ui, ui);
+        handler = new CastMessageHandler(executor, transport, journal);
+    }
+
+    void deliver(String sessionId, String message) {
+        transport.deliver(sessionId, NS, message);
+    }
+
+    void deliverBinary(String sessionId, byte[] message) {
+        transport.deliverBinary(sessionId, NS, message);
+    }
+
+    // Runs UI frames until every queued command has run and been answered
+    void drain() {
+        ui.runUntilIdle(Integer.MAX_VALUE);
+    }
+}
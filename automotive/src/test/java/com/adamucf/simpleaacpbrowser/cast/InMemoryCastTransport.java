@@ -0,0 +1,142 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loopback {@link CastTransport} for JVM tests: {@link #deliver} plays a sender, and
+ * every outbound frame is counted (and kept, if asked to) instead of going on the wire.
+ * Single-threaded, like the rest of the in-memory pipeline.
+ */
+final class InMemoryCastTransport implements CastTransport {
+    // "status":"error" and "Command dropped" as they appear in a CBOR reply
+    private static final byte[] CBOR_ERROR = {0x66, 's', 't', 'a', 't', 'u', 's', 0x65, 'e', 'r', 'r', 'o', 'r'};
+    private static final byte[] CBOR_DROPPED = "Command dropped".getBytes(StandardCharsets.UTF_8);
+
+    // A broadcast frame is recorded once, with a null session; binary frames have a null message
+    static final class Sent {
+        final String sessionId;
+        final String message;
+        final byte[] binary;
+
+        Sent(String sessionId, String message, byte[] binary) {
+            this.sessionId = sessionId;
+            this.message = message;
+            this.binary = binary;
+        }
+    }
+
+    private final boolean retain;
+    private final List<Sent> sent = new ArrayList<>();
+    private Listener listener;
+    // Whether sessions can negotiate CBOR, as WebSocket ones can; Cast ones can't
+    boolean binaryCapable = true;
+    long frames;
+    long errors;
+    // Errors for commands the scheduler coalesced away or dropped, rather than ones that failed
+    long dropped;
+
+    // Load runs only count frames; functional tests keep them to inspect
+    InMemoryCastTransport(boolean retain) {
+        this.retain = retain;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // A frame arriving from the given session
+    void deliver(String sessionId, String namespace, String message) {
+        listener.onMessage(sessionId, namespace, message);
+    }
+
+    void deliverBinary(String sessionId, String namespace, byte[] message) {
+        listener.onBinaryMessage(sessionId, namespace, message);
+    }
+
+    @Override
+    public void send(String sessionId, String namespace, String message) {
+        record(sessionId, message);
+    }
+
+    @Override
+    public void sendAck(String sessionId, String namespace, String message) {
+        record(sessionId, message);
+    }
+
+    @Override
+    public boolean supportsBinary(String sessionId) {
+        return binaryCapable;
+    }
+
+    @Override
+    public void sendBinary(String sessionId, String namespace, byte[] message) {
+        frames++;
+        if (indexOf(message, CBOR_ERROR) >= 0) {
+            errors++;
+            if (indexOf(message, CBOR_DROPPED) >= 0) {
+                dropped++;
+            }
+        }
+        if (retain) {
+            sent.add(new Sent(sessionId, null, message));
+        }
+    }
+
+    @Override
+    public void broadcast(String namespace, String message) {
+        record(null, message);
+    }
+
+    List<Sent> sent() {
+        return sent;
+    }
+
+    List<String> sentTo(String sessionId) {
+        List<String> messages = new ArrayList<>();
+        for (Sent frame : sent) {
+            if (sessionId.equals(frame.sessionId) && frame.message != null) {
+                messages.add(frame.message);
+            }
+        }
+        return messages;
+    }
+
+    private void record(String sessionId, String message) {
+        frames++;
+        if (message.contains("\"status\":\"error\"")) {
+            errors++;
+            if (message.contains("Command dropped")) {
+                dropped++;
+            }
+        }
+        if (retain) {
+            sent.add(new Sent(sessionId, message, null));
+        }
+    }
+
+    List<byte[]> binarySentTo(String sessionId) {
+        List<byte[]> messages = new ArrayList<>();
+        for (Sent frame : sent) {
+            if (sessionId.equals(frame.sessionId) && frame.binary != null) {
+                messages.add(frame.binary);
+            }
+        }
+        return messages;
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        outer:
+        for (int i = 0; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,80 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands in for the main looper and Choreographer in JVM tests. Nothing runs until the
+ * test calls {@link #runFrame}, which advances a virtual clock by one 60 Hz frame, runs
+ * the posted frame callbacks and then any timers that came due. Rate limits and
+ * timeouts therefore see display time, however fast the test runs.
+ */
+final class InMemoryUiThread implements CastCommandScheduler.FrameSource, CastCommandExecutor.Timer {
+    static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    private List<CastCommandScheduler.FrameCallback> frameCallbacks = new ArrayList<>();
+    private List<CastCommandScheduler.FrameCallback> running = new ArrayList<>();
+    // Task -> due time; insertion order keeps same-time timers in posting order
+    private final Map<Runnable, Long> timers = new LinkedHashMap<>();
+    private long nowNanos = FRAME_NANOS;
+
+    @Override
+    public void postFrameCallback(CastCommandScheduler.FrameCallback callback) {
+        frameCallbacks.add(callback);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+        timers.put(task, nowNanos + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        timers.remove(task);
+    }
+
+    void runFrame() {
+        nowNanos += FRAME_NANOS;
+        // Callbacks posted while this frame runs belong to the next one
+        List<CastCommandScheduler.FrameCallback> due = frameCallbacks;
+        frameCallbacks = running;
+        running = due;
+        for (CastCommandScheduler.FrameCallback callback : due) {
+            callback.doFrame(nowNanos);
+        }
+        due.clear();
+        runDueTimers();
+    }
+
+    // Runs frames until nothing is scheduled; returns how many it took
+    int runUntilIdle(int maxFrames) {
+        int frames = 0;
+        while ((!frameCallbacks.isEmpty() || !timers.isEmpty()) && frames < maxFrames) {
+            runFrame();
+            frames++;
+        }
+        return frames;
+    }
+
+    private void runDueTimers() {
+        if (timers.isEmpty()) {
+            return;
+        }
+        List<Runnable> due = new ArrayList<>();
+        Iterator<Map.Entry<Runnable, Long>> it = timers.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Runnable, Long> timer = it.next();
+            if (timer.getValue() <= nowNanos) {
+                due.add(timer.getKey());
+                it.remove();
+            }
+        }
+        for (Runnable task : due) {
+            task.run();
+        }
+    }
+}
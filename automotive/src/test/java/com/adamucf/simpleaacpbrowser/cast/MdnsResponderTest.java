@@ -0,0 +1,37 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which interfaces and addresses {@link MdnsResponder} announces on.
+ */
+public class MdnsResponderTest {
+
+    @Test
+    public void wifiHotspotAndEthernetAreEligible() {
+        assertTrue(MdnsResponder.isEligibleName("wlan0"));
+        assertTrue(MdnsResponder.isEligibleName("ap0"));
+        assertTrue(MdnsResponder.isEligibleName("eth0"));
+        assertFalse(MdnsResponder.isEligibleName("rmnet_data0"));
+        assertFalse(MdnsResponder.isEligibleName("tun0"));
+        assertFalse(MdnsResponder.isEligibleName("lo"));
+    }
+
+    @Test
+    public void routableIpv4IsPreferred() throws Exception {
+        InetAddress linkLocal6 = InetAddress.getByName("fe80::1");
+        InetAddress global6 = InetAddress.getByName("2001:db8::5");
+        InetAddress lan4 = InetAddress.getByName("192.168.43.1");
+
+        assertEquals(lan4, MdnsResponder.pickAddress(Arrays.asList(linkLocal6, global6, lan4)));
+        assertEquals(global6, MdnsResponder.pickAddress(Arrays.asList(linkLocal6, global6)));
+        assertNull(MdnsResponder.pickAddress(Arrays.asList(linkLocal6, InetAddress.getByName("169.254.3.4"))));
+        assertNull(MdnsResponder.pickAddress(Collections.emptyList()));
+    }
+}
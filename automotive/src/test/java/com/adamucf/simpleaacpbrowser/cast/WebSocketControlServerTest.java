@@ -0,0 +1,221 @@
+package com.adamucf.simpleaacpbrowser.cast;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives {@link WebSocketControlServer} over loopback with a hand-rolled client.
+ */
+public class WebSocketControlServerTest {
+    private static final String NS = "urn:x-cast:com.adamucf.riptide";
+    // Example key and accept value from RFC 6455
+    private static final String KEY = "dGhlIHNhbXBsZSBub25jZQ==";
+
+    private final BlockingQueue<CastMessageDispatcher.Channel> opened = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private final BlockingQueue<byte[]> receivedBinary = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> closed = new LinkedBlockingQueue<>();
+    private WebSocketControlServer server;
+    private Socket client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new WebSocketControlServer(0, new WebSocketControlServer.Listener() {
+            @Override
+            public void onOpen(String sessionId, CastMessageDispatcher.Channel channel) {
+                opened.add(channel);
+            }
+
+            @Override
+            public void onMessage(String sessionId, String message) {
+                if (message.equals("crash")) {
+                    throw new IllegalStateException("listener failed");
+                }
+                received.add(message);
+            }
+
+            @Override
+            public void onBinaryMessage(String sessionId, byte[] message) {
+                receivedBinary.add(message);
+            }
+
+            @Override
+            public void onClose(String sessionId) {
+                closed.add(sessionId);
+            }
+        });
+        server.start();
+        client = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        client.setSoTimeout(2000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void acceptKeyMatchesTheRfcExample() {
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", WebSocketControlServer.acceptKey(KEY));
+    }
+
+    @Test
+    public void textFramesReachTheListenerAndRepliesComeBack() throws Exception {
+        assertTrue(handshake(null).startsWith("HTTP/1.1 101"));
+        CastMessageDispatcher.Channel channel = opened.poll(2, TimeUnit.SECONDS);
+        assertNotNull(channel);
+
+        sendFrame(0x81, "{\"type\":\"ping\",\"id\":\"p1\"}".getBytes(StandardCharsets.UTF_8));
+        assertEquals("{\"type\":\"ping\",\"id\":\"p1\"}", received.poll(2, TimeUnit.SECONDS));
+
+        BlockingQueue<Boolean> sent = new LinkedBlockingQueue<>();
+        String reply = "{\"type\":\"pong\",\"id\":\"p1\",\"data\":\"" + "x".repeat(300) + "\"}";
+        channel.send(NS, reply, sent::add);
+        assertEquals(0x81, readByte());
+        assertEquals(reply, new String(readPayload(), StandardCharsets.UTF_8));
+        assertEquals(Boolean.TRUE, sent.poll(2, TimeUnit.SECONDS));
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void binaryFramesReachTheListenerAndRepliesComeBack() throws Exception {
+        handshake(null);
+        CastMessageDispatcher.Channel open = opened.poll(2, TimeUnit.SECONDS);
+        assertTrue(open instanceof CastMessageDispatcher.BinaryChannel);
+        CastMessageDispatcher.BinaryChannel channel = (CastMessageDispatcher.BinaryChannel) open;
+
+        sendFrame(0x02, new byte[]{(byte) 0xbf, 0x00});
+        sendFrame(0x80, new byte[]{(byte) 0xff});
+        assertArrayEquals(new byte[]{(byte) 0xbf, 0x00, (byte) 0xff}, receivedBinary.poll(2, TimeUnit.SECONDS));
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+
+        BlockingQueue<Boolean> sent = new LinkedBlockingQueue<>();
+        channel.sendBinary(NS, new byte[]{(byte) 0xa0}, sent::add);
+        assertEquals(0x82, readByte());
+        assertArrayEquals(new byte[]{(byte) 0xa0}, readPayload());
+        assertEquals(Boolean.TRUE, sent.poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void fragmentedMessageIsReassembled() throws Exception {
+        handshake(null);
+        sendFrame(0x01, "{\"type\":".getBytes(StandardCharsets.UTF_8));
+        // A ping may arrive between fragments
+        sendFrame(0x89, new byte[0]);
+        sendFrame(0x80, "\"get_status\"}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("{\"type\":\"get_status\"}", received.poll(2, TimeUnit.SECONDS));
+        assertEquals(0x8A, readByte());
+    }
+
+    @Test
+    public void closeEndsTheSession() throws Exception {
+        handshake(null);
+        assertNotNull(opened.poll(2, TimeUnit.SECONDS));
+
+        sendFrame(0x88, new byte[]{0x03, (byte) 0xe8});
+
+        assertEquals(0x88, readByte());
+        assertArrayEquals(new byte[]{0x03, (byte) 0xe8}, readPayload());
+        assertNotNull(closed.poll(2, TimeUnit.SECONDS));
+        assertEquals(0, server.getConnectionCount());
+    }
+
+    @Test
+    public void listenerFailureClosesOnlyThatConnection() throws Exception {
+        handshake(null);
+        sendFrame(0x81, "crash".getBytes(StandardCharsets.UTF_8));
+        assertEquals(0x88, readByte());
+        assertArrayEquals(new byte[]{0x03, (byte) 0xf3}, readPayload());
+
+        // The endpoint keeps serving other clients
+        client.close();
+        client = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        client.setSoTimeout(2000);
+        assertTrue(handshake(null).startsWith("HTTP/1.1 101"));
+        sendFrame(0x81, "{\"type\":\"ping\"}".getBytes(StandardCharsets.UTF_8));
+        assertEquals("{\"type\":\"ping\"}", received.poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void browserPagesAreRefused() throws Exception {
+        assertTrue(handshake("http://example.com").startsWith("HTTP/1.1 403"));
+        assertNull(opened.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    // Returns the status line and headers of the response
+    private String handshake(String origin) throws IOException {
+        String request = "GET / HTTP/1.1\r\n"
+            + "Host: localhost\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Key: " + KEY + "\r\n"
+            + "Sec-WebSocket-Version: 13\r\n"
+            + (origin != null ? "Origin: " + origin + "\r\n" : "")
+            + "\r\n";
+        client.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        while (!head.toString(StandardCharsets.ISO_8859_1).endsWith("\r\n\r\n")) {
+            int b = client.getInputStream().read();
+            if (b < 0) {
+                break;
+            }
+            head.write(b);
+        }
+        return head.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    // Clients always mask their frames
+    private void sendFrame(int firstByte, byte[] payload) throws IOException {
+        byte[] mask = {0x11, 0x22, 0x33, 0x44};
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(firstByte);
+        if (payload.length < 126) {
+            frame.write(0x80 | payload.length);
+        } else {
+            frame.write(0x80 | 126);
+            frame.write(payload.length >> 8);
+            frame.write(payload.length);
+        }
+        frame.write(mask);
+        for (int i = 0; i < payload.length; i++) {
+            frame.write(payload[i] ^ mask[i & 3]);
+        }
+        OutputStream out = client.getOutputStream();
+        out.write(frame.toByteArray());
+        out.flush();
+    }
+
+    private int readByte() throws IOException {
+        return client.getInputStream().read();
+    }
+
+    // Length and payload of an unmasked server frame whose first byte was already read
+    private byte[] readPayload() throws IOException {
+        DataInputStream in = new DataInputStream(client.getInputStream());
+        int length = in.readUnsignedByte();
+        if (length == 126) {
+            length = in.readUnsignedShort();
+        } else if (length == 127) {
+            length = (int) in.readLong();
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+}
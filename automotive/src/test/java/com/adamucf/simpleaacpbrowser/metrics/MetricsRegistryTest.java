@@ -0,0 +1,82 @@
+package com.adamucf.simpleaacpbrowser.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link MetricsRegistry} bucketing and the JSON snapshot.
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void bucketsAreContiguousAndBoundsContainTheirValues() {
+        int previous = -1;
+        for (long value = 0; value < 1 << 16; value++) {
+            int index = MetricsRegistry.Histogram.indexFor(value);
+            assertTrue("index went backwards at " + value, index >= previous);
+            assertTrue("bucket too small for " + value, MetricsRegistry.Histogram.upperBound(index) >= value);
+            previous = index;
+        }
+    }
+
+    @Test
+    public void percentilesStayWithinRelativeError() {
+        MetricsRegistry.Histogram histogram = new MetricsRegistry.Histogram();
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(10000, histogram.count());
+        assertEquals(10000, histogram.max());
+        assertEquals(5000.5, histogram.mean(), 0.001);
+        assertEquals(5000, histogram.percentile(50), 5000 * 0.07);
+        assertEquals(9900, histogram.percentile(99), 9900 * 0.07);
+        assertEquals(10000, histogram.percentile(100));
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        MetricsRegistry.Histogram histogram = new MetricsRegistry.Histogram();
+        assertEquals(0, histogram.percentile(99));
+        assertEquals(0.0, histogram.mean(), 0.0);
+    }
+
+    @Test
+    public void countersAccumulateAcrossThreads() throws InterruptedException {
+        MetricsRegistry registry = new MetricsRegistry();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    registry.counter("events").inc();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, registry.counter("events").count());
+    }
+
+    @Test
+    public void snapshotListsEverySection() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("b.count").add(3);
+        registry.histogram("a.latency_us").record(42);
+        AtomicLong depth = registry.settableGauge("queue_depth");
+        depth.set(7);
+        registry.gauge("broken", () -> {
+            throw new IllegalStateException("gone");
+        });
+
+        String json = registry.toJson();
+        assertTrue(json, json.startsWith("{\"uptime_ms\":"));
+        assertTrue(json, json.contains("\"counters\":{\"b.count\":{\"count\":3,"));
+        assertTrue(json, json.contains("\"gauges\":{\"broken\":-1,\"queue_depth\":7}"));
+        assertTrue(json, json.contains("\"a.latency_us\":{\"count\":1,"));
+        assertTrue(json, json.contains("\"p99\":42"));
+    }
+}
@@ -0,0 +1,261 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises {@link AssetCache} against a local stub HTTP server.
+ */
+public class AssetCacheTest {
+    private HttpServer server;
+    private File cacheDir;
+    private String baseUrl;
+    private final Map<String, String> bodies = new ConcurrentHashMap<>();
+    private final Map<String, String> etags = new ConcurrentHashMap<>();
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = Files.createTempDirectory("asset-cache-test").toFile();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::serve);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        deleteRecursively(cacheDir);
+    }
+
+    @Test
+    public void missFetchesAndStoresThenHitServesFromDisk() throws IOException {
+        bodies.put("/riptide/app.js", "console.log('shell');");
+
+        AssetCache cache = newCache(1024 * 1024);
+        assertNull(cache.get(baseUrl + "/riptide/app.js"));
+
+        AssetCache.Entry fetched = cache.fetch(baseUrl + "/riptide/app.js", null);
+        assertNotNull(fetched);
+        assertEquals("application/javascript", fetched.mimeType);
+        assertEquals("utf-8", fetched.encoding);
+
+        server.stop(0); // Offline: the cached copy must still be served
+        AssetCache.Entry hit = cache.get(baseUrl + "/riptide/app.js");
+        assertNotNull(hit);
+        assertEquals("console.log('shell');", read(hit));
+    }
+
+    @Test
+    public void indexSurvivesRestart() throws IOException {
+        bodies.put("/riptide/", "<html>shell</html>");
+        newCache(1024 * 1024).fetch(baseUrl + "/riptide/", null);
+
+        AssetCache reopened = newCache(1024 * 1024);
+        AssetCache.Entry hit = reopened.get(baseUrl + "/riptide/");
+        assertNotNull(hit);
+        assertEquals("<html>shell</html>", read(hit));
+        assertEquals("\"v1\"", hit.etag);
+    }
+
+    @Test
+    public void identicalBodiesShareOneBlob() throws IOException {
+        bodies.put("/a.css", "body{margin:0}");
+        bodies.put("/b.css", "body{margin:0}");
+
+        AssetCache cache = newCache(1024 * 1024);
+        AssetCache.Entry a = cache.fetch(baseUrl + "/a.css", null);
+        AssetCache.Entry b = cache.fetch(baseUrl + "/b.css", null);
+
+        assertEquals(a.contentHash, b.contentHash);
+        assertEquals(2, cache.entryCount());
+        assertEquals(a.length, cache.size());
+
+        cache.remove(baseUrl + "/a.css");
+        assertEquals("body{margin:0}", read(cache.get(baseUrl + "/b.css")));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvictedFirst() throws IOException {
+        bodies.put("/one.js", repeat('1', 400));
+        bodies.put("/two.js", repeat('2', 400));
+        bodies.put("/three.js", repeat('3', 400));
+
+        AssetCache cache = newCache(1000);
+        cache.fetch(baseUrl + "/one.js", null);
+        cache.fetch(baseUrl + "/two.js", null);
+        cache.get(baseUrl + "/one.js"); // Touch so two.js becomes eldest
+        cache.fetch(baseUrl + "/three.js", null);
+
+        assertNotNull(cache.get(baseUrl + "/one.js"));
+        assertNull(cache.get(baseUrl + "/two.js"));
+        assertNotNull(cache.get(baseUrl + "/three.js"));
+        assertTrue(cache.size() <= 1000);
+    }
+
+    @Test
+    public void revalidationUsesEtagAndKeepsUnchangedBody() throws IOException {
+        bodies.put("/riptide/index.html", "<html>v1</html>");
+        AssetCache cache = newCache(1024 * 1024);
+        cache.fetch(baseUrl + "/riptide/index.html", null);
+
+        assertFalse(cache.revalidate(baseUrl + "/riptide/index.html"));
+        assertEquals(1, notModifiedResponses.get());
+        assertEquals("<html>v1</html>", read(cache.get(baseUrl + "/riptide/index.html")));
+    }
+
+    @Test
+    public void webViewConditionalHeadersAreNotForwarded() throws IOException {
+        bodies.put("/riptide/app.js", "console.log('shell');");
+        Map<String, String> headers = new HashMap<>();
+        headers.put("If-None-Match", "\"v1\"");
+        headers.put("If-Modified-Since", "Thu, 01 Jan 2026 00:00:00 GMT");
+        headers.put("Range", "bytes=0-3");
+
+        AssetCache cache = newCache(1024 * 1024);
+        AssetCache.Entry fetched = cache.fetch(baseUrl + "/riptide/app.js", headers);
+
+        assertNotNull(fetched);
+        assertEquals(0, notModifiedResponses.get());
+        assertEquals("console.log('shell');", read(fetched));
+    }
+
+    @Test
+    public void revalidationReplacesChangedBody() throws IOException {
+        bodies.put("/riptide/index.html", "<html>v1</html>");
+        AssetCache cache = newCache(1024 * 1024);
+        cache.fetch(baseUrl + "/riptide/index.html", null);
+
+        bodies.put("/riptide/index.html", "<html>v2</html>");
+        etags.put("/riptide/index.html", "\"v2\"");
+
+        assertTrue(cache.revalidate(baseUrl + "/riptide/index.html"));
+        AssetCache.Entry entry = cache.get(baseUrl + "/riptide/index.html");
+        assertEquals("<html>v2</html>", read(entry));
+        assertEquals("\"v2\"", entry.etag);
+        assertEquals(entry.length, cache.size());
+    }
+
+    @Test
+    public void asyncRevalidationRunsOnExecutorAndIsThrottled() throws IOException {
+        bodies.put("/riptide/app.css", "a{}");
+        AssetCache cache = newCache(1024 * 1024);
+        cache.fetch(baseUrl + "/riptide/app.css", null);
+
+        cache.revalidateAsync(baseUrl + "/riptide/app.css");
+        assertEquals("fresh entries are not revalidated", 0, notModifiedResponses.get());
+
+        cache.setRevalidateIntervalMs(0);
+        cache.revalidateAsync(baseUrl + "/riptide/app.css");
+        assertEquals(1, notModifiedResponses.get());
+    }
+
+    @Test
+    public void noStoreResponsesAreNotCached() throws IOException {
+        bodies.put("/no-store/config.json", "{}");
+        AssetCache cache = newCache(1024 * 1024);
+
+        assertNull(cache.fetch(baseUrl + "/no-store/config.json", null));
+        assertEquals(0, cache.entryCount());
+    }
+
+    @Test
+    public void cacheableUrlFilter() {
+        assertTrue(AssetCache.isCacheableUrl("https://example.com/riptide/"));
+        assertTrue(AssetCache.isCacheableUrl("https://example.com/riptide"));
+        assertTrue(AssetCache.isCacheableUrl("https://example.com/assets/index-abc.js?v=2"));
+        assertTrue(AssetCache.isCacheableUrl("https://example.com/fonts/inter.woff2"));
+        assertFalse(AssetCache.isCacheableUrl("https://example.com/video/stream.mp4"));
+        assertFalse(AssetCache.isCacheableUrl("https://example.com/img/photo.jpg"));
+    }
+
+    private AssetCache newCache(long maxBytes) {
+        // Run revalidation inline so the tests are deterministic
+        return new AssetCache(cacheDir, maxBytes, Runnable::run);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String body = bodies.get(path);
+        if (body == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        String etag = etags.getOrDefault(path, "\"v1\"");
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModifiedResponses.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        fullResponses.incrementAndGet();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String contentType = path.endsWith(".js") ? "application/javascript; charset=utf-8"
+            : path.endsWith(".css") ? "text/css"
+            : path.endsWith(".json") ? "application/json"
+            : "text/html; charset=utf-8";
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (path.startsWith("/no-store/")) {
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        }
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String read(AssetCache.Entry entry) throws IOException {
+        try (InputStream in = entry.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,97 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import com.adamucf.simpleaacpbrowser.metrics.MetricsRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link Prerenderer} speculation priority and hit-rate accounting.
+ */
+public class PrerendererTest {
+    private static final String HOME = "https://jdmills-edu.github.io/riptide/";
+    private static final String DASHBOARD = "http://192.168.1.4:8080/dashboard";
+
+    private final List<String> events = new ArrayList<>();
+    private MetricsRegistry metrics;
+    private Prerenderer<String> prerenderer;
+    private final List<String> created = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        metrics = new MetricsRegistry();
+        prerenderer = new Prerenderer<>(new Prerenderer.Host<String>() {
+            @Override
+            public String create() {
+                String tab = "tab" + (created.size() + 1);
+                created.add(tab);
+                return tab;
+            }
+
+            @Override
+            public void load(String tab, String url) {
+                events.add("load " + tab + " " + url);
+            }
+
+            @Override
+            public void destroy(String tab) {
+                events.add("destroy " + tab);
+            }
+        }, metrics);
+    }
+
+    @Test
+    public void takeHandsOverTheLoadedTab() {
+        assertTrue(prerenderer.speculate(HOME, false));
+        prerenderer.onPageFinished(created.get(0));
+        assertTrue(prerenderer.isReady());
+
+        assertNull(prerenderer.take(DASHBOARD));
+        assertEquals("tab1", prerenderer.take(HOME));
+
+        assertFalse(prerenderer.isSpeculating());
+        assertEquals(Arrays.asList("load tab1 " + HOME), events);
+        assertEquals(100, prerenderer.getHitRatePercent());
+    }
+
+    @Test
+    public void guessNeverReplacesAnAnnouncedTarget() {
+        prerenderer.speculate(DASHBOARD, true);
+
+        assertFalse(prerenderer.speculate(HOME, false));
+        assertTrue(prerenderer.matches(DASHBOARD));
+
+        // A newer announcement does replace it
+        assertTrue(prerenderer.speculate(HOME, true));
+        assertEquals(Arrays.asList("load tab1 " + DASHBOARD, "destroy tab1", "load tab2 " + HOME), events);
+    }
+
+    @Test
+    public void repeatedSpeculationIsANoOp() {
+        prerenderer.speculate(HOME, false);
+        assertFalse(prerenderer.speculate(HOME, false));
+        assertEquals(1, metrics.counter(MetricsRegistry.PRERENDER_STARTED).count());
+    }
+
+    @Test
+    public void hitRateCountsDiscardedSpeculations() {
+        assertEquals(-1, metrics.gaugeValue(MetricsRegistry.PRERENDER_HIT_RATE_PCT));
+
+        prerenderer.speculate(HOME, false);
+        prerenderer.take(HOME);
+        prerenderer.speculate(DASHBOARD, false);
+        prerenderer.speculate(HOME, false);
+        prerenderer.cancel();
+        prerenderer.cancel();
+
+        assertEquals(1, metrics.counter(MetricsRegistry.PRERENDER_HITS).count());
+        assertEquals(2, metrics.counter(MetricsRegistry.PRERENDER_DISCARDED).count());
+        assertEquals(33, metrics.gaugeValue(MetricsRegistry.PRERENDER_HIT_RATE_PCT));
+    }
+}
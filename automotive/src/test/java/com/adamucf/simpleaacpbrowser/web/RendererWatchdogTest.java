@@ -0,0 +1,43 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link RendererWatchdog} hang timing and the crash-loop guard.
+ */
+public class RendererWatchdogTest {
+
+    @Test
+    public void killsOnlyAfterTheHangOutlastsTheTimeout() {
+        RendererWatchdog<String> watchdog = new RendererWatchdog<>(10000, 3, 60000);
+
+        assertFalse(watchdog.onUnresponsive("shell", 1000));
+        assertFalse(watchdog.onUnresponsive("shell", 6000));
+        assertTrue(watchdog.onUnresponsive("shell", 11000));
+    }
+
+    @Test
+    public void recoveringResetsTheHangClock() {
+        RendererWatchdog<String> watchdog = new RendererWatchdog<>(10000, 3, 60000);
+
+        watchdog.onUnresponsive("shell", 0);
+        watchdog.onResponsive("shell");
+
+        assertFalse(watchdog.onUnresponsive("shell", 20000));
+        assertFalse(watchdog.onUnresponsive("shell", 25000));
+    }
+
+    @Test
+    public void rapidLossesStopRestoringState() {
+        RendererWatchdog<String> watchdog = new RendererWatchdog<>(10000, 2, 60000);
+
+        assertTrue(watchdog.onRendererLost(0));
+        assertTrue(watchdog.onRendererLost(10000));
+        assertFalse(watchdog.onRendererLost(20000));
+
+        // Once the window has passed, restores are trusted again
+        assertTrue(watchdog.onRendererLost(90000));
+    }
+}
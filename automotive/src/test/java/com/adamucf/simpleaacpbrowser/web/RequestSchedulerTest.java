@@ -0,0 +1,76 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link RequestScheduler} classification, deferral and slot limits.
+ */
+public class RequestSchedulerTest {
+
+    @Test
+    public void classifiesByWhatTheRequestBlocks() {
+        assertEquals(RequestScheduler.Priority.CRITICAL, RequestScheduler.classify("https://a.example/x.png", true, null));
+        assertEquals(RequestScheduler.Priority.CRITICAL, RequestScheduler.classify("https://a.example/app.js?v=3", false, "*/*"));
+        assertEquals(RequestScheduler.Priority.CRITICAL, RequestScheduler.classify("https://a.example/style", false, "text/css,*/*;q=0.1"));
+        assertEquals(RequestScheduler.Priority.LOW, RequestScheduler.classify("https://a.example/hero.JPG", false, null));
+        assertEquals(RequestScheduler.Priority.LOW, RequestScheduler.classify("https://a.example/img", false, "image/avif,image/webp,*/*"));
+        assertEquals(RequestScheduler.Priority.LOW, RequestScheduler.classify("https://www.google-analytics.com/g/collect", false, "*/*"));
+        assertEquals(RequestScheduler.Priority.NORMAL, RequestScheduler.classify("https://a.example/api/stations", false, "application/json"));
+    }
+
+    @Test
+    public void lowPriorityWaitsForInteractive() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(5000);
+        scheduler.onDocumentStarted();
+
+        assertEquals(0, scheduler.awaitTurn(RequestScheduler.Priority.CRITICAL));
+        Thread opener = new Thread(() -> {
+            sleep(100);
+            scheduler.onDocumentInteractive();
+        });
+        opener.start();
+        long waited = scheduler.awaitTurn(RequestScheduler.Priority.LOW);
+        opener.join();
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(waited) >= 50);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(waited) < 4000);
+    }
+
+    @Test
+    public void deferralIsCappedForPagesThatNeverSignal() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(100);
+        scheduler.onDocumentStarted();
+
+        long waited = scheduler.awaitTurn(RequestScheduler.Priority.LOW);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(waited) >= 90);
+    }
+
+    @Test
+    public void slotsAreLimitedOnlyOnConstrainedLinks() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(100);
+        assertFalse(scheduler.acquireSlot(10));
+
+        scheduler.setConstrained(true);
+        for (int i = 0; i < RequestScheduler.CONSTRAINED_LOW_SLOTS; i++) {
+            assertTrue(scheduler.acquireSlot(10));
+        }
+        assertFalse(scheduler.acquireSlot(20));
+
+        scheduler.releaseSlot();
+        assertTrue(scheduler.acquireSlot(10));
+        assertEquals(RequestScheduler.CONSTRAINED_LOW_SLOTS, scheduler.getLowInFlight());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link SessionJournal} history rules, recovery after a reopen, torn records
+ * and compaction.
+ */
+public class SessionJournalTest {
+    private File directory;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("session-journal-test").toFile();
+        file = new File(directory, "session.journal");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void backAndForwardMoveWithoutDroppingHistory() throws IOException {
+        SessionJournal journal = SessionJournal.open(file);
+        journal.recordVisit("https://a.example/");
+        journal.recordVisit("https://a.example/b");
+        journal.recordVisit("https://a.example/c");
+        journal.recordVisit("https://a.example/b");
+        assertEquals("https://a.example/", journal.getPreviousUrl());
+        journal.recordVisit("https://a.example/c");
+        assertEquals(2, journal.getCurrentIndex());
+
+        journal.recordVisit("https://a.example/b");
+        journal.recordVisit("file:///android_asset/cast_status.html");
+        journal.recordVisit("about:blank");
+        assertEquals(Arrays.asList("https://a.example/", "https://a.example/b",
+            "file:///android_asset/cast_status.html"), journal.getHistory());
+    }
+
+    @Test
+    public void reopenRestoresHistorySessionAndOpenCommands() throws IOException {
+        SessionJournal journal = SessionJournal.open(file);
+        journal.recordVisit("https://a.example/");
+        journal.recordVisit("https://a.example/b");
+        journal.recordVisit("https://a.example/");
+        journal.recordSessionConnected("session-1");
+        journal.recordCommandStarted("session-1", "17", "load_url");
+        journal.recordCommandStarted("session-1", "18", "execute_js");
+        journal.recordCommandFinished("session-1", "17");
+
+        SessionJournal reopened = SessionJournal.open(file);
+        assertEquals(journal.getHistory(), reopened.getHistory());
+        assertEquals(0, reopened.getCurrentIndex());
+        assertEquals(Collections.singletonList("session-1"), reopened.getCastSessionIds());
+
+        reopened.recordCommandStarted("session-1", "19", "batch");
+        Map<String, String> recovered = reopened.takeRecoveredCommands("session-1");
+        assertEquals(Collections.singletonMap("18", "execute_js"), recovered);
+        assertTrue(reopened.takeRecoveredCommands("session-1").isEmpty());
+        assertEquals(Collections.singletonMap("19", "batch"), reopened.getOpenCommands("session-1"));
+    }
+
+    @Test
+    public void sendersWithOverlappingIdsKeepTheirOwnCommands() throws IOException {
+        SessionJournal journal = SessionJournal.open(file);
+        journal.recordSessionConnected("phone");
+        journal.recordSessionConnected("tablet");
+        journal.recordCommandStarted("phone", "1", "load_url");
+        journal.recordCommandStarted("tablet", "1", "execute_js");
+        journal.recordCommandStarted("tablet", "2", "batch");
+        // The phone's reply must not close the tablet's command with the same id
+        journal.recordCommandFinished("phone", "1");
+        assertTrue(journal.getOpenCommands("phone").isEmpty());
+        assertEquals("execute_js", journal.getOpenCommands("tablet").get("1"));
+
+        SessionJournal reopened = SessionJournal.open(file);
+        assertEquals(Arrays.asList("phone", "tablet"), reopened.getCastSessionIds());
+        // The first sender back only takes its own commands
+        reopened.recordSessionConnected("phone");
+        assertTrue(reopened.takeRecoveredCommands("phone").isEmpty());
+        Map<String, String> tablet = reopened.takeRecoveredCommands("tablet");
+        assertEquals(Arrays.asList("1", "2"), Arrays.asList(tablet.keySet().toArray()));
+        assertEquals("execute_js", tablet.get("1"));
+    }
+
+    @Test
+    public void endedSessionTakesItsOpenCommandsWithIt() throws IOException {
+        SessionJournal journal = SessionJournal.open(file);
+        journal.recordSessionConnected("phone");
+        journal.recordSessionConnected("tablet");
+        journal.recordCommandStarted("phone", "1", "load_url");
+        journal.recordCommandStarted("tablet", "1", "load_url");
+        journal.recordSessionEnded("phone");
+        // Not journaled: the session is gone
+        journal.recordCommandStarted("phone", "2", "load_url");
+
+        SessionJournal reopened = SessionJournal.open(file);
+        assertEquals(Collections.singletonList("tablet"), reopened.getCastSessionIds());
+        assertTrue(reopened.getOpenCommands("phone").isEmpty());
+        assertEquals(Collections.singletonMap("1", "load_url"), reopened.takeRecoveredCommands("tablet"));
+    }
+
+    @Test
+    public void tornRecordEndsTheReplay() throws IOException {
+        SessionJournal journal = SessionJournal.open(file);
+        journal.recordVisit("https://a.example/");
+        journal.recordVisit("https://a.example/b");
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            // Flip a payload byte of the second record, as if power was lost mid-write
+            raw.seek(SessionJournal.RECORD_SIZE + 20);
+            raw.write('X');
+        }
+
+        SessionJournal reopened = SessionJournal.open(file);
+        assertEquals(Collections.singletonList("https://a.example/"), reopened.getHistory());
+        reopened.recordVisit("https://a.example/d");
+        assertEquals("https://a.example/d", SessionJournal.open(file).getCurrentUrl());
+    }
+
+    @Test
+    public void fullJournalIsCompactedIntoASnapshot() throws IOException {
+        SessionJournal journal = SessionJournal.open(file);
+        for (int i = 0; i < SessionJournal.CAPACITY_RECORDS * 3; i++) {
+            journal.recordVisit("https://a.example/" + (i % 2 == 0 ? "x" : "y") + i);
+        }
+        journal.recordVisit("https://a.example/x" + (SessionJournal.CAPACITY_RECORDS * 3 - 2));
+        journal.recordSessionConnected("session-2");
+        journal.recordCommandStarted("session-2", "7", "load_url");
+
+        assertTrue(journal.getRecordCount() < SessionJournal.CAPACITY_RECORDS);
+        assertEquals((long) SessionJournal.RECORD_SIZE * SessionJournal.CAPACITY_RECORDS, file.length());
+        SessionJournal reopened = SessionJournal.open(file);
+        assertEquals(SessionJournal.MAX_HISTORY, reopened.getHistory().size());
+        assertEquals(journal.getHistory(), reopened.getHistory());
+        assertEquals(SessionJournal.MAX_HISTORY - 2, reopened.getCurrentIndex());
+        assertEquals(Collections.singletonList("session-2"), reopened.getCastSessionIds());
+        assertEquals(Collections.singletonMap("7", "load_url"), reopened.getOpenCommands("session-2"));
+    }
+
+    @Test
+    public void journalPastTheHighWaterMarkIsCompactedInTheBackground() throws Exception {
+        SessionJournal journal = SessionJournal.open(file);
+        int highWater = SessionJournal.CAPACITY_RECORDS * 3 / 4;
+        for (int i = 0; i < highWater; i++) {
+            journal.recordVisit("https://a.example/" + i);
+        }
+        journal.recordSessionConnected("session-3");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (journal.getRecordCount() > highWater && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(journal.getRecordCount() <= SessionJournal.MAX_HISTORY + 1);
+        journal.recordCommandStarted("session-3", "9", "execute_js");
+        SessionJournal reopened = SessionJournal.open(file);
+        assertEquals(journal.getHistory(), reopened.getHistory());
+        assertEquals(Collections.singletonList("session-3"), reopened.getCastSessionIds());
+        assertEquals(Collections.singletonMap("9", "execute_js"), reopened.getOpenCommands("session-3"));
+    }
+}
@@ -0,0 +1,38 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link SettingsProfile} selection and the injected timer script.
+ */
+public class SettingsProfileTest {
+
+    @Test
+    public void coolIdleDeviceRunsFull() {
+        assertEquals(SettingsProfile.FULL, SettingsProfile.select(0, 0, false));
+        assertEquals(SettingsProfile.FULL, SettingsProfile.select(1, 5, false));
+    }
+
+    @Test
+    public void moderateHeatOrMemoryPressureIsBalanced() {
+        assertEquals(SettingsProfile.BALANCED, SettingsProfile.select(SettingsProfile.THERMAL_STATUS_MODERATE, 0, false));
+        assertEquals(SettingsProfile.BALANCED, SettingsProfile.select(0, SettingsProfile.TRIM_RUNNING_LOW, false));
+        assertEquals(SettingsProfile.BALANCED, SettingsProfile.select(0, 0, true));
+    }
+
+    @Test
+    public void severeHeatOrCriticalMemoryIsSurvival() {
+        assertEquals(SettingsProfile.SURVIVAL, SettingsProfile.select(SettingsProfile.THERMAL_STATUS_SEVERE, 0, false));
+        assertEquals(SettingsProfile.SURVIVAL, SettingsProfile.select(6, 0, true));
+        assertEquals(SettingsProfile.SURVIVAL, SettingsProfile.select(0, SettingsProfile.TRIM_RUNNING_CRITICAL, false));
+    }
+
+    @Test
+    public void timerScriptCarriesTheProfileLimits() {
+        assertTrue(SettingsProfile.SURVIVAL.timerScript().endsWith("})(250,33.3);"));
+        assertTrue(SettingsProfile.BALANCED.timerScript().endsWith("})(50,0.0);"));
+        assertFalse(SettingsProfile.FULL.timerScript().contains("setInterval"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.adamucf.simpleaacpbrowser.web;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises {@link TabPool} swapping and eviction with a recording host.
+ */
+public class TabPoolTest {
+    private static final String SHELL = "https://jdmills-edu.github.io/riptide/";
+    private static final String STATUS = "file:///android_asset/cast_status.html";
+    private static final String SENDER = "file:///android_asset/cast_test_sender.html";
+
+    private final List<String> events = new ArrayList<>();
+    private TabPool<String> pool;
+
+    @Before
+    public void setUp() {
+        pool = new TabPool<>(new TabPool.Host<String>() {
+            @Override
+            public String create(String key) {
+                events.add("create " + key);
+                return key;
+            }
+
+            @Override
+            public void load(String tab, String url) {
+                events.add("load " + url);
+            }
+
+            @Override
+            public void activate(String tab) {
+                events.add("activate " + tab);
+            }
+
+            @Override
+            public void deactivate(String tab) {
+                events.add("deactivate " + tab);
+            }
+
+            @Override
+            public void destroy(String tab) {
+                events.add("destroy " + tab);
+            }
+        }, 2);
+    }
+
+    @Test
+    public void keysHttpByOriginAndFilesByPath() {
+        assertEquals("https://jdmills-edu.github.io", TabPool.keyFor(SHELL + "#/station/3"));
+        assertEquals("http://192.168.1.4:8080", TabPool.keyFor("http://192.168.1.4:8080/a?b=c"));
+        assertEquals("file:///android_asset/cast_status.html", TabPool.keyFor(STATUS + "?x=1"));
+    }
+
+    @Test
+    public void returningToATabSwapsWithoutReloading() {
+        pool.show(SHELL);
+        pool.show(STATUS);
+        events.clear();
+
+        String tab = pool.show(SHELL + "#/home");
+
+        assertEquals(TabPool.keyFor(SHELL), tab);
+        assertEquals(Arrays.asList("deactivate " + STATUS, "activate " + TabPool.keyFor(SHELL)), events);
+    }
+
+    @Test
+    public void overflowEvictsLeastRecentlyUsedBackgroundTab() {
+        pool.show(SHELL);
+        pool.show(STATUS);
+        pool.show(SHELL);
+        events.clear();
+
+        pool.show(SENDER);
+
+        assertTrue(events.contains("destroy " + STATUS));
+        assertEquals(2, pool.size());
+        assertTrue(pool.contains(SHELL));
+        assertEquals(SENDER, pool.getActive());
+    }
+
+    @Test
+    public void trimNeverEvictsTheActiveTab() {
+        pool.show(SHELL);
+        pool.show(STATUS);
+
+        assertEquals(1, pool.trimTo(0));
+        assertEquals(1, pool.size());
+        assertEquals(STATUS, pool.getActive());
+    }
+
+    @Test
+    public void adoptedTabTakesOverItsSlot() {
+        pool.show(SHELL);
+        pool.show(STATUS);
+        events.clear();
+
+        pool.adopt(SHELL, "prerendered");
+
+        assertEquals(Arrays.asList("deactivate " + STATUS, "destroy " + TabPool.keyFor(SHELL),
+            "activate prerendered"), events);
+        assertEquals("prerendered", pool.getActive());
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void discardingTheActiveTabLetsShowRebuildIt() {
+        String shell = pool.show(SHELL);
+        events.clear();
+
+        assertTrue(pool.discard(shell));
+        assertNull(pool.getActive());
+        pool.show(SHELL);
+
+        assertEquals(Arrays.asList("destroy " + shell, "create " + shell, "activate " + shell, "load " + SHELL), events);
+    }
+
+    @Test
+    public void navigationRekeysTheTab() {
+        String shell = pool.show(SHELL);
+        pool.show(STATUS);
+        pool.show(SHELL);
+
+        // A cast load_url took the shell tab to the status page's key: the stale duplicate goes
+        pool.onTabNavigated(shell, STATUS);
+
+        assertEquals(1, pool.size());
+        assertEquals(TabPool.keyFor(STATUS), pool.getActiveKey());
+        assertTrue(events.contains("destroy " + STATUS));
+    }
+}
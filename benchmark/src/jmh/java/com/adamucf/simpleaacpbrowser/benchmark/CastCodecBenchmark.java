@@ -0,0 +1,125 @@
+package com.adamucf.simpleaacpbrowser.benchmark;
+
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessage;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessageCodec;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastProtocolException;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode-and-reply cost per inbound riptide frame: the org.json path CastMessageHandler
+ * used to take versus the streaming CastMessageCodec. Run with the gc profiler
+ * (configured in build.gradle) to compare gc.alloc.rate.norm, i.e. bytes per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CastCodecBenchmark {
+    private static final int FRAME_COUNT = 1024;
+
+    private String[] frames;
+    private int cursor;
+    private final CastMessageCodec codec = new CastMessageCodec();
+    private final CastMessage message = new CastMessage();
+
+    @Setup
+    public void setUp() {
+        // Mix observed from the remote-control tooling: mostly execute_js and pings
+        Random random = new Random(42);
+        List<String> mix = new ArrayList<>(FRAME_COUNT);
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            int roll = random.nextInt(100);
+            if (roll < 55) {
+                mix.add("{\"type\":\"execute_js\",\"javascript\":\"document.querySelector('#track-" + i
+                    + "').classList.toggle(\\\"active\\\");window.scrollTo(0," + (i * 17) + ");\"}");
+            } else if (roll < 75) {
+                mix.add("{\"type\":\"ping\",\"data\":{\"timestamp\":" + (1700000000000L + i)
+                    + ",\"message\":\"Hello from sender\",\"seq\":" + i + "}}");
+            } else if (roll < 87) {
+                mix.add("{\"type\":\"load_url\",\"url\":\"https://jdmills-edu.github.io/riptide/#/station/" + i + "\"}");
+            } else if (roll < 95) {
+                mix.add("{\"type\":\"get_status\"}");
+            } else {
+                mix.add("{\"type\":\"toggle_navigation\"}");
+            }
+        }
+        frames = mix.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public String orgJson() throws JSONException {
+        String frame = frames[cursor++ & (FRAME_COUNT - 1)];
+        JSONObject json = new JSONObject(frame);
+        String type = json.optString("type", "");
+        JSONObject response = new JSONObject();
+        switch (type) {
+            case "load_url":
+                json.getString("url");
+                response.put("type", "response");
+                response.put("status", "success");
+                response.put("message", "URL loaded successfully");
+                break;
+            case "execute_js":
+                json.getString("javascript");
+                response.put("type", "response");
+                response.put("status", "success");
+                response.put("message", "JavaScript executed successfully");
+                break;
+            case "ping":
+                response.put("type", "pong");
+                if (json.has("data")) {
+                    response.put("data", json.get("data"));
+                }
+                break;
+            case "get_status":
+                response.put("type", "status_response");
+                response.put("receiver_ready", true);
+                response.put("version", "2.0");
+                response.put("app_name", "Riptide");
+                response.put("distraction_optimized", true);
+                response.put("immersive_mode", true);
+                response.put("enhanced_navigation", true);
+                response.put("cast_status_page", true);
+                break;
+            default:
+                response.put("type", "response");
+                response.put("status", "success");
+                response.put("message", "Navigation toggled successfully");
+                break;
+        }
+        response.put("timestamp", 1700000000000L);
+        return response.toString();
+    }
+
+    @Benchmark
+    public String streaming() throws CastProtocolException {
+        String frame = frames[cursor++ & (FRAME_COUNT - 1)];
+        CastMessage decoded = codec.decode(frame, message);
+        long timestamp = 1700000000000L;
+        switch (decoded.type) {
+            case LOAD_URL:
+                return codec.encodeSuccess(decoded.requestId, "URL loaded successfully", timestamp);
+            case EXECUTE_JS:
+                return codec.encodeSuccess(decoded.requestId, "JavaScript executed successfully", timestamp);
+            case PING:
+                return codec.encodePong(decoded.requestId, decoded.rawData, timestamp);
+            case GET_STATUS:
+                return codec.encodeStatus(decoded.requestId, timestamp);
+            default:
+                return codec.encodeSuccess(decoded.requestId, "Navigation toggled successfully", timestamp);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.adamucf.simpleaacpbrowser.benchmark;
+
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastCborCodec;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessage;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastMessageCodec;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastProtocolException;
+import com.adamucf.simpleaacpbrowser.cast.protocol.CastReplyEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON text frames versus negotiated CBOR binary frames for the same riptide traffic:
+ * decode cost, decode-and-reply cost, and (printed once per fork, from setup) average
+ * bytes on the wire in each direction. Both codecs fill the same CastMessage and share
+ * the reply path through CastReplyEncoder, so only the wire format differs. Run with the
+ * gc profiler (configured in build.gradle) for bytes allocated per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CastWireFormatBenchmark {
+    private static final int FRAME_COUNT = 1024;
+    private static final long TIMESTAMP = 1700000000000L;
+
+    private String[] jsonFrames;
+    private byte[][] cborFrames;
+    private int cursor;
+    private final CastMessageCodec json = new CastMessageCodec();
+    private final CastCborCodec cbor = new CastCborCodec();
+    private final CastMessage message = new CastMessage();
+
+    @Setup
+    public void setUp() throws CastProtocolException {
+        // Same mix as CastCodecBenchmark, with correlation ids as senders send them
+        Random random = new Random(42);
+        jsonFrames = new String[FRAME_COUNT];
+        cborFrames = new byte[FRAME_COUNT][];
+        long jsonIn = 0;
+        long cborIn = 0;
+        long jsonOut = 0;
+        long cborOut = 0;
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            int roll = random.nextInt(100);
+            String frame;
+            if (roll < 55) {
+                frame = "{\"type\":\"execute_js\",\"id\":" + i + ",\"javascript\":\"document.querySelector('#track-" + i
+                    + "').classList.toggle(\\\"active\\\");window.scrollTo(0," + (i * 17) + ");\"}";
+            } else if (roll < 75) {
+                frame = "{\"type\":\"ping\",\"id\":" + i + ",\"data\":{\"timestamp\":" + (TIMESTAMP + i)
+                    + ",\"message\":\"Hello from sender\",\"seq\":" + i + "}}";
+            } else if (roll < 87) {
+                frame = "{\"type\":\"load_url\",\"id\":" + i + ",\"url\":\"https://jdmills-edu.github.io/riptide/#/station/" + i + "\"}";
+            } else if (roll < 95) {
+                frame = "{\"type\":\"get_status\",\"id\":" + i + "}";
+            } else {
+                frame = "{\"type\":\"toggle_navigation\",\"id\":" + i + "}";
+            }
+            jsonFrames[i] = frame;
+            cborFrames[i] = cbor.fromJson(frame);
+            jsonIn += frame.getBytes(StandardCharsets.UTF_8).length;
+            cborIn += cborFrames[i].length;
+            jsonOut += reply(json, json.decode(frame, message)).getBytes(StandardCharsets.UTF_8).length;
+            cborOut += reply(cbor, cbor.decode(cborFrames[i], message)).length;
+        }
+        System.out.printf("Wire bytes per frame: inbound json %.1f cbor %.1f, replies json %.1f cbor %.1f%n",
+            (double) jsonIn / FRAME_COUNT, (double) cborIn / FRAME_COUNT,
+            (double) jsonOut / FRAME_COUNT, (double) cborOut / FRAME_COUNT);
+    }
+
+    @Benchmark
+    public CastMessage decodeJson() throws CastProtocolException {
+        return json.decode(jsonFrames[cursor++ & (FRAME_COUNT - 1)], message);
+    }
+
+    @Benchmark
+    public CastMessage decodeCbor() throws CastProtocolException {
+        return cbor.decode(cborFrames[cursor++ & (FRAME_COUNT - 1)], message);
+    }
+
+    @Benchmark
+    public String roundTripJson() throws CastProtocolException {
+        return reply(json, json.decode(jsonFrames[cursor++ & (FRAME_COUNT - 1)], message));
+    }
+
+    @Benchmark
+    public byte[] roundTripCbor() throws CastProtocolException {
+        return reply(cbor, cbor.decode(cborFrames[cursor++ & (FRAME_COUNT - 1)], message));
+    }
+
+    // The reply CastMessageHandler would send, in either format
+    private static <F> F reply(CastReplyEncoder<F> encoder, CastMessage decoded) {
+        switch (decoded.type) {
+            case LOAD_URL:
+                return encoder.encodeSuccess(decoded.requestId, "URL loaded successfully", null, TIMESTAMP);
+            case EXECUTE_JS:
+                return encoder.encodeSuccess(decoded.requestId, "JavaScript executed successfully", "\"active\"", TIMESTAMP);
+            case PING:
+                return encoder.encodePong(decoded.requestId, decoded.rawData, TIMESTAMP);
+            case GET_STATUS:
+                return encoder.encodeStatus(decoded.requestId, TIMESTAMP);
+            default:
+                return encoder.encodeSuccess(decoded.requestId, "Navigation toggled successfully", null, TIMESTAMP);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.adamucf.simpleaacpbrowser.benchmark;
+
+import com.adamucf.simpleaacpbrowser.http.HttpFetcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpServer;
+
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Stand-alone load test for the page-asset fetch path: local servers serve many small
+ * assets and each client fetches all of them from a pool of threads, reporting
+ * requests/sec and p50/p99/p99.9 latency. Compares a fresh HttpURLConnection per request
+ * (what AssetCache and SubresourceScheduler used before) with the shared
+ * {@link HttpFetcher} over HTTP/1.1 keep-alive and over multiplexed HTTP/2 (cleartext,
+ * prior knowledge, since the local servers have no TLS). HTTP/1.1 is served by the JDK
+ * server and h2c by MockWebServer.
+ * Run with: ./gradlew :benchmark:httpHarness [-Pargs="assets concurrency bytes rounds"]
+ */
+public class HttpLoadHarness {
+
+    private interface Client {
+        // Fetches a URL and reads the body to the end
+        void fetch(String url) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int assets = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int assetBytes = args.length > 2 ? Integer.parseInt(args[2]) : 2048;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        // MockWebServer logs every request, which would dominate the timings
+        Logger.getLogger(MockWebServer.class.getName()).setLevel(Level.WARNING);
+        // Without TCP_NODELAY the JDK server's separate header and body writes hit delayed ACKs
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        System.out.printf("%d assets of %d bytes, %d threads, %d rounds (after one warm-up round)%n",
+            assets, assetBytes, concurrency, rounds);
+        System.out.printf("%-16s %10s %10s %10s %10s%n", "client", "req/s", "p50 ms", "p99 ms", "p99.9 ms");
+
+        byte[] body = new byte[assetBytes];
+        Arrays.fill(body, (byte) 'x');
+        HttpServer http1 = startHttp1Server(body, concurrency);
+        MockWebServer h2c = startH2cServer(body);
+        String http1Base = "http://127.0.0.1:" + http1.getAddress().getPort();
+        String h2cBase = h2c.url("/").toString();
+        try {
+            run("urlconnection", HttpLoadHarness::fetchWithUrlConnection, http1Base, assets, concurrency, rounds);
+            HttpFetcher pooled = HttpFetcher.getDefault();
+            run("pooled http/1.1", url -> drain(pooled, url), http1Base, assets, concurrency, rounds);
+            HttpFetcher multiplexed = HttpFetcher.cleartextHttp2();
+            run("pooled h2c", url -> drain(multiplexed, url), h2cBase, assets, concurrency, rounds);
+        } finally {
+            http1.stop(0);
+            h2c.shutdown();
+        }
+        System.exit(0);
+    }
+
+    private static HttpServer startHttp1Server(byte[] body, int threads) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        server.createContext("/", exchange -> {
+            try (InputStream request = exchange.getRequestBody()) {
+                drain(request);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/javascript");
+            exchange.getResponseHeaders().set("Cache-Control", "max-age=3600");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(threads));
+        server.start();
+        return server;
+    }
+
+    private static MockWebServer startH2cServer(byte[] body) throws IOException {
+        MockWebServer server = new MockWebServer();
+        server.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                    .setHeader("Content-Type", "application/javascript")
+                    .setHeader("Cache-Control", "max-age=3600")
+                    .setBody(new Buffer().write(body));
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static void run(String name, Client client, String baseUrl, int assets,
+                            int concurrency, int rounds) throws Exception {
+        List<String> urls = new ArrayList<>(assets);
+        for (int i = 0; i < assets; i++) {
+            urls.add(baseUrl.replaceAll("/$", "") + "/assets/chunk-" + i + ".js");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            round(client, urls, executor); // Warm-up: connections, JIT
+            long[] latencies = new long[assets * rounds];
+            int recorded = 0;
+            long startNanos = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                long[] roundLatencies = round(client, urls, executor);
+                System.arraycopy(roundLatencies, 0, latencies, recorded, roundLatencies.length);
+                recorded += roundLatencies.length;
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+
+            Arrays.sort(latencies);
+            System.out.printf("%-16s %10.0f %10.2f %10.2f %10.2f%n", name,
+                recorded / (elapsedNanos / 1e9),
+                percentile(latencies, 50), percentile(latencies, 99), percentile(latencies, 99.9));
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    // Fetches every URL once across the pool; returns each request's latency in nanoseconds
+    private static long[] round(Client client, List<String> urls, ExecutorService executor) throws Exception {
+        List<Future<Long>> results = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            results.add(executor.submit(() -> {
+                long start = System.nanoTime();
+                client.fetch(url);
+                return System.nanoTime() - start;
+            }));
+        }
+        long[] latencies = new long[results.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = results.get(i).get();
+        }
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private static void drain(HttpFetcher fetcher, String url) throws IOException {
+        try (HttpFetcher.Response response = fetcher.get(url, null)) {
+            if (response.getStatus() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + response.getStatus() + " for " + url);
+            }
+            drain(response.getBody());
+        }
+    }
+
+    private static void fetchWithUrlConnection(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + connection.getResponseCode() + " for " + url);
+            }
+            drain(connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (InputStream body = in) {
+            while (body.read(buffer) != -1) {
+                // Discard
+            }
+        }
+    }
+}
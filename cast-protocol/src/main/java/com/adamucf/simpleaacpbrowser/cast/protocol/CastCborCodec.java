@@ -0,0 +1,217 @@
+package com.adamucf.simpleaacpbrowser.cast.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CBOR codec for senders that negotiated binary frames ({@code set_encoding} "cbor").
+ * Frames carry the same members as {@link CastMessageCodec}'s JSON and decode into the
+ * same {@link CastMessage}, so everything past the codec is format-agnostic. Members
+ * that are free-form JSON in the model (id, data, results) are transcoded at the edge.
+ * Not thread-safe: give each calling thread its own codec.
+ */
+public final class CastCborCodec implements CastReplyEncoder<byte[]> {
+    // Constant part of status_response, encoded once
+    private static final byte[] STATUS_MEMBERS = new CborWriter()
+        .name("type").value("status_response")
+        .name("receiver_ready").value(true)
+        .name("version").value(CastMessageCodec.PROTOCOL_VERSION)
+        .name("app_name").value("Riptide")
+        .name("distraction_optimized").value(true)
+        .name("immersive_mode").value(true)
+        .name("enhanced_navigation").value(true)
+        .name("cast_status_page").value(true)
+        .toByteArray();
+
+    private final CborReader reader = new CborReader();
+    private final CborWriter writer = new CborWriter();
+
+    public CastMessage decode(byte[] cbor, CastMessage into) throws CastProtocolException {
+        reader.reset(cbor);
+        if (!reader.peekMap()) {
+            throw new CastProtocolException("Frame must be a CBOR map");
+        }
+        decodeMap(into, true);
+        reader.expectEnd();
+        return into;
+    }
+
+    private void decodeMap(CastMessage into, boolean topLevel) throws CastProtocolException {
+        into.reset();
+        reader.beginMap();
+        while (reader.nextMember()) {
+            if (reader.nameEquals("type")) {
+                if (reader.peekString()) {
+                    into.typeName = reader.readString();
+                    into.type = CastMessageCodec.typeFor(into.typeName);
+                } else {
+                    reader.skipValue();
+                }
+            } else if (reader.nameEquals("id")) {
+                into.requestId = reader.readAsJson();
+            } else if (reader.nameEquals("url")) {
+                into.url = readOptionalString();
+            } else if (reader.nameEquals("javascript")) {
+                into.javascript = readOptionalString();
+            } else if (reader.nameEquals("data")) {
+                into.rawData = reader.readAsJson();
+            } else if (topLevel && reader.nameEquals("commands") && reader.peekArray()) {
+                into.commands = decodeCommands();
+            } else if (topLevel && reader.nameEquals("x")) {
+                into.x = reader.readDouble();
+            } else if (topLevel && reader.nameEquals("y")) {
+                into.y = reader.readDouble();
+            } else if (topLevel && reader.nameEquals("dx")) {
+                into.dx = reader.readDouble();
+            } else if (topLevel && reader.nameEquals("dy")) {
+                into.dy = reader.readDouble();
+            } else if (topLevel && reader.nameEquals("action")) {
+                into.action = readOptionalString();
+            } else if (topLevel && reader.nameEquals("key")) {
+                into.key = readOptionalString();
+            } else if (topLevel && reader.nameEquals("encoding")) {
+                into.encoding = readOptionalString();
+            } else if (topLevel && reader.nameEquals("stop_on_error")) {
+                into.stopOnError = reader.readBoolean();
+            } else if (!topLevel && reader.nameEquals("after")) {
+                into.afterPageLoad = "page_load".equals(readOptionalString());
+            } else {
+                reader.skipValue();
+            }
+        }
+    }
+
+    private List<CastMessage> decodeCommands() throws CastProtocolException {
+        List<CastMessage> commands = new ArrayList<>();
+        reader.beginArray();
+        while (reader.nextElement()) {
+            if (commands.size() >= CastMessageCodec.MAX_BATCH_COMMANDS) {
+                throw new CastProtocolException("Batch exceeds " + CastMessageCodec.MAX_BATCH_COMMANDS + " commands");
+            }
+            if (!reader.peekMap()) {
+                throw new CastProtocolException("Batch commands must be maps");
+            }
+            CastMessage command = new CastMessage();
+            decodeMap(command, false);
+            commands.add(command);
+        }
+        return commands;
+    }
+
+    @Override
+    public byte[] encodeSuccess(String requestId, String message, String rawResult, long timestamp) {
+        writer.reset().beginMap()
+            .name("type").value("response");
+        appendId(requestId);
+        writer.name("status").value("success")
+            .name("message").value(message);
+        if (rawResult != null) {
+            writer.name("result").json(rawResult);
+        }
+        return writer.name("timestamp").value(timestamp)
+            .endMap().toByteArray();
+    }
+
+    @Override
+    public byte[] encodeError(String requestId, String error, long timestamp) {
+        writer.reset().beginMap()
+            .name("type").value("response");
+        appendId(requestId);
+        return writer.name("status").value("error")
+            .name("error").value(error)
+            .name("timestamp").value(timestamp)
+            .endMap().toByteArray();
+    }
+
+    @Override
+    public byte[] encodePong(String requestId, String rawData, long timestamp) {
+        writer.reset().beginMap()
+            .name("type").value("pong");
+        appendId(requestId);
+        writer.name("timestamp").value(timestamp);
+        if (rawData != null) {
+            writer.name("data").json(rawData);
+        }
+        return writer.endMap().toByteArray();
+    }
+
+    @Override
+    public byte[] encodeStatus(String requestId, long timestamp) {
+        writer.reset().beginMap()
+            .raw(STATUS_MEMBERS);
+        appendId(requestId);
+        return writer.name("timestamp").value(timestamp)
+            .endMap().toByteArray();
+    }
+
+    @Override
+    public byte[] encodeMetrics(String requestId, String rawMetrics, long timestamp) {
+        writer.reset().beginMap()
+            .name("type").value("metrics_response");
+        appendId(requestId);
+        return writer.name("metrics").json(rawMetrics)
+            .name("timestamp").value(timestamp)
+            .endMap().toByteArray();
+    }
+
+    @Override
+    public byte[] encodeBatchResult(String requestId, List<CastCommandResult> results, long timestamp) {
+        boolean allOk = true;
+        boolean anyOk = false;
+        for (CastCommandResult result : results) {
+            allOk &= result.success;
+            anyOk |= result.success;
+        }
+        writer.reset().beginMap()
+            .name("type").value("batch_result");
+        appendId(requestId);
+        writer.name("status").value(allOk ? "success" : anyOk ? "partial" : "error")
+            .name("results").beginArray();
+        for (int i = 0; i < results.size(); i++) {
+            CastCommandResult result = results.get(i);
+            writer.beginMap()
+                .name("index").value(i)
+                .name("type").value(result.type)
+                .name("status").value(result.success ? "success" : "error");
+            if (result.success) {
+                writer.name("message").value(result.message);
+                if (result.rawResult != null) {
+                    writer.name("result").json(result.rawResult);
+                }
+            } else {
+                writer.name("error").value(result.message);
+            }
+            writer.endMap();
+        }
+        return writer.endArray()
+            .name("timestamp").value(timestamp)
+            .endMap().toByteArray();
+    }
+
+    // Transcodes one JSON document to CBOR (tests, benchmarks and tooling)
+    public byte[] fromJson(String json) {
+        return writer.reset().json(json).toByteArray();
+    }
+
+    // Transcodes one CBOR item to JSON (tests, benchmarks and tooling)
+    public String toJson(byte[] cbor) throws CastProtocolException {
+        reader.reset(cbor);
+        String json = reader.readAsJson();
+        reader.expectEnd();
+        return json;
+    }
+
+    private void appendId(String requestId) {
+        if (requestId != null) {
+            writer.name("id").json(requestId);
+        }
+    }
+
+    private String readOptionalString() throws CastProtocolException {
+        if (reader.peekString()) {
+            return reader.readString();
+        }
+        reader.skipValue();
+        return null;
+    }
+}
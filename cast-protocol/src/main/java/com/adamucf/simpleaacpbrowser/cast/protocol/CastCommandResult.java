@@ -0,0 +1,28 @@
+package com.adamucf.simpleaacpbrowser.cast.protocol;
+
+/**
+ * Outcome of one command, used where several results are reported together (batch).
+ */
+public final class CastCommandResult {
+    public final String type;
+    public final boolean success;
+    // Success message, or the error text when !success
+    public final String message;
+    // Optional already-serialized JSON value
+    public final String rawResult;
+
+    private CastCommandResult(String type, boolean success, String message, String rawResult) {
+        this.type = type;
+        this.success = success;
+        this.message = message;
+        this.rawResult = rawResult;
+    }
+
+    public static CastCommandResult success(String type, String message, String rawResult) {
+        return new CastCommandResult(type, true, message, rawResult);
+    }
+
+    public static CastCommandResult error(String type, String error) {
+        return new CastCommandResult(type, false, error, null);
+    }
+}
@@ -0,0 +1,80 @@
+package com.adamucf.simpleaacpbrowser.cast.protocol;
+
+import java.util.List;
+
+/**
+ * Typed inbound riptide message. Instances are reusable: {@link CastMessageCodec#decode}
+ * resets and refills the one it is given, so the hot path allocates only the string
+ * fields it actually needs.
+ */
+public final class CastMessage {
+    public enum Type {
+        LOAD_URL("load_url"),
+        PREFETCH_URL("prefetch_url"),
+        EXECUTE_JS("execute_js"),
+        TOGGLE_NAVIGATION("toggle_navigation"),
+        GET_STATUS("get_status"),
+        PING("ping"),
+        GET_METRICS("get_metrics"),
+        BATCH("batch"),
+        SET_ENCODING("set_encoding"),
+        POINTER("pointer"),
+        TAP("tap"),
+        SCROLL("scroll"),
+        KEY("key"),
+        UNKNOWN("");
+
+        public final String wireName;
+
+        Type(String wireName) {
+            this.wireName = wireName;
+        }
+    }
+
+    public Type type = Type.UNKNOWN;
+    // Raw "type" value, kept for error messages about unknown types
+    public String typeName = "";
+    // Sender-chosen correlation id as raw JSON (string or number), echoed on the reply
+    public String requestId;
+    public String url;
+    public String javascript;
+    // "data" member as undecoded JSON text (echoed back verbatim by ping)
+    public String rawData;
+    // batch: ordered sub-commands (null for other types)
+    public List<CastMessage> commands;
+    // batch: stop at the first failed sub-command
+    public boolean stopOnError;
+    // Sub-command of a batch: wait for the preceding load_url to finish ("after":"page_load")
+    public boolean afterPageLoad;
+    // set_encoding: requested reply encoding ("json" or "cbor")
+    public String encoding;
+    // Input: position as a fraction of the page's width and height (NaN when absent)
+    public double x = Double.NaN;
+    public double y = Double.NaN;
+    // scroll: distance in pixels, positive scrolls right and down
+    public double dx;
+    public double dy;
+    // pointer: "down", "move", "up" or "cancel"; key: "down", "up" or absent for a press
+    public String action;
+    // key: DOM key name ("Enter", "ArrowDown", "a")
+    public String key;
+
+    public void reset() {
+        type = Type.UNKNOWN;
+        typeName = "";
+        requestId = null;
+        url = null;
+        javascript = null;
+        rawData = null;
+        commands = null;
+        stopOnError = false;
+        afterPageLoad = false;
+        encoding = null;
+        x = Double.NaN;
+        y = Double.NaN;
+        dx = 0;
+        dy = 0;
+        action = null;
+        key = null;
+    }
+}
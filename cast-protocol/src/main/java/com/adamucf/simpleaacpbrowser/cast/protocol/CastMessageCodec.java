@@ -0,0 +1,260 @@
+package com.adamucf.simpleaacpbrowser.cast.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming JSON codec for the urn:x-cast:com.adamucf.riptide protocol. Decoding makes
+ * a single pass that only materializes the members the message type needs; encoding
+ * reuses one writer buffer and splices in pre-serialized constant fragments.
+ * Not thread-safe: give each calling thread its own codec.
+ */
+public final class CastMessageCodec implements CastReplyEncoder<String> {
+    public static final String PROTOCOL_VERSION = "2.0";
+
+    // Constant part of status_response, serialized once
+    private static final String STATUS_MEMBERS = new CastMessageWriter().reset()
+        .name("type").value("status_response")
+        .name("receiver_ready").value(true)
+        .name("version").value(PROTOCOL_VERSION)
+        .name("app_name").value("Riptide")
+        .name("distraction_optimized").value(true)
+        .name("immersive_mode").value(true)
+        .name("enhanced_navigation").value(true)
+        .name("cast_status_page").value(true)
+        .toString();
+
+    private static final CastMessage.Type[] TYPES = CastMessage.Type.values();
+
+    private final JsonScanner scanner = new JsonScanner();
+    private final CastMessageWriter writer = new CastMessageWriter();
+
+    // Upper bound on batch size, so one frame cannot queue unbounded work
+    public static final int MAX_BATCH_COMMANDS = 64;
+
+    public CastMessage decode(String json, CastMessage into) throws CastProtocolException {
+        scanner.reset(json);
+        decodeObject(into, true);
+        scanner.expectEnd();
+        return into;
+    }
+
+    private void decodeObject(CastMessage into, boolean topLevel) throws CastProtocolException {
+        into.reset();
+        scanner.beginObject();
+        boolean first = true;
+        while (scanner.nextMember(first)) {
+            first = false;
+            if (scanner.nameEquals("type")) {
+                if (scanner.peekString()) {
+                    into.typeName = scanner.readString();
+                    into.type = typeFor(into.typeName);
+                } else {
+                    scanner.skipValue();
+                }
+            } else if (scanner.nameEquals("id")) {
+                into.requestId = scanner.readRaw();
+            } else if (scanner.nameEquals("url")) {
+                into.url = readOptionalString();
+            } else if (scanner.nameEquals("javascript")) {
+                into.javascript = readOptionalString();
+            } else if (scanner.nameEquals("data")) {
+                into.rawData = scanner.readRaw();
+            } else if (topLevel && scanner.nameEquals("commands") && scanner.peekArray()) {
+                into.commands = decodeCommands();
+            } else if (topLevel && scanner.nameEquals("x")) {
+                into.x = scanner.readDouble();
+            } else if (topLevel && scanner.nameEquals("y")) {
+                into.y = scanner.readDouble();
+            } else if (topLevel && scanner.nameEquals("dx")) {
+                into.dx = scanner.readDouble();
+            } else if (topLevel && scanner.nameEquals("dy")) {
+                into.dy = scanner.readDouble();
+            } else if (topLevel && scanner.nameEquals("action")) {
+                into.action = readOptionalString();
+            } else if (topLevel && scanner.nameEquals("key")) {
+                into.key = readOptionalString();
+            } else if (topLevel && scanner.nameEquals("encoding")) {
+                into.encoding = readOptionalString();
+            } else if (topLevel && scanner.nameEquals("stop_on_error")) {
+                into.stopOnError = scanner.readBoolean();
+            } else if (!topLevel && scanner.nameEquals("after")) {
+                into.afterPageLoad = "page_load".equals(readOptionalString());
+            } else {
+                scanner.skipValue();
+            }
+        }
+    }
+
+    private List<CastMessage> decodeCommands() throws CastProtocolException {
+        List<CastMessage> commands = new ArrayList<>();
+        scanner.beginArray();
+        boolean first = true;
+        while (scanner.nextElement(first)) {
+            first = false;
+            if (commands.size() >= MAX_BATCH_COMMANDS) {
+                throw new CastProtocolException("Batch exceeds " + MAX_BATCH_COMMANDS + " commands");
+            }
+            if (!scanner.peekObject()) {
+                throw new CastProtocolException("Batch commands must be objects");
+            }
+            CastMessage command = new CastMessage();
+            decodeObject(command, false);
+            commands.add(command);
+        }
+        return commands;
+    }
+
+    public String encodeSuccess(String requestId, String message, long timestamp) {
+        return encodeSuccess(requestId, message, null, timestamp);
+    }
+
+    // rawResult is already-serialized JSON (e.g. the value returned by evaluateJavascript)
+    @Override
+    public String encodeSuccess(String requestId, String message, String rawResult, long timestamp) {
+        writer.reset().beginObject()
+            .name("type").value("response");
+        appendId(requestId);
+        writer.name("status").value("success")
+            .name("message").value(message);
+        if (rawResult != null) {
+            writer.name("result").rawValue(rawResult);
+        }
+        return writer.name("timestamp").value(timestamp)
+            .endObject().toString();
+    }
+
+    @Override
+    public String encodeError(String requestId, String error, long timestamp) {
+        writer.reset().beginObject()
+            .name("type").value("response");
+        appendId(requestId);
+        return writer.name("status").value("error")
+            .name("error").value(error)
+            .name("timestamp").value(timestamp)
+            .endObject().toString();
+    }
+
+    @Override
+    public String encodePong(String requestId, String rawData, long timestamp) {
+        writer.reset().beginObject()
+            .name("type").value("pong");
+        appendId(requestId);
+        writer.name("timestamp").value(timestamp);
+        if (rawData != null) {
+            writer.name("data").rawValue(rawData);
+        }
+        return writer.endObject().toString();
+    }
+
+    @Override
+    public String encodeStatus(String requestId, long timestamp) {
+        writer.reset().beginObject()
+            .rawMembers(STATUS_MEMBERS);
+        appendId(requestId);
+        return writer.name("timestamp").value(timestamp)
+            .endObject().toString();
+    }
+
+    // rawMetrics is the receiver's metrics snapshot, already serialized
+    @Override
+    public String encodeMetrics(String requestId, String rawMetrics, long timestamp) {
+        writer.reset().beginObject()
+            .name("type").value("metrics_response");
+        appendId(requestId);
+        return writer.name("metrics").rawValue(rawMetrics)
+            .name("timestamp").value(timestamp)
+            .endObject().toString();
+    }
+
+    // Simple {"type":...,"timestamp":...} event frames such as receiver_ready
+    public String encodeEvent(String type, long timestamp) {
+        return writer.reset().beginObject()
+            .name("type").value(type)
+            .name("timestamp").value(timestamp)
+            .endObject().toString();
+    }
+
+    // Unsolicited: the WebView renderer was lost (reason "crashed", "killed" or "unresponsive")
+    public String encodeRendererIncident(String reason, String url, boolean restored, long timestamp) {
+        writer.reset().beginObject()
+            .name("type").value("renderer_incident")
+            .name("reason").value(reason);
+        if (url != null) {
+            writer.name("url").value(url);
+        }
+        return writer.name("restored").value(restored)
+            .name("timestamp").value(timestamp)
+            .endObject().toString();
+    }
+
+    // Local status for the JS bridge (cast_status.html)
+    public String encodeBridgeStatus(String status, String error, long timestamp) {
+        writer.reset().beginObject()
+            .name("status").value(status);
+        if (error != null) {
+            writer.name("error").value(error);
+        } else {
+            writer.name("version").value(PROTOCOL_VERSION);
+        }
+        return writer.name("timestamp").value(timestamp).endObject().toString();
+    }
+
+    // Single aggregated reply for a batch
+    @Override
+    public String encodeBatchResult(String requestId, List<CastCommandResult> results, long timestamp) {
+        boolean allOk = true;
+        boolean anyOk = false;
+        for (CastCommandResult result : results) {
+            allOk &= result.success;
+            anyOk |= result.success;
+        }
+        writer.reset().beginObject()
+            .name("type").value("batch_result");
+        appendId(requestId);
+        writer.name("status").value(allOk ? "success" : anyOk ? "partial" : "error")
+            .name("results").beginArray();
+        for (int i = 0; i < results.size(); i++) {
+            CastCommandResult result = results.get(i);
+            writer.beginObject()
+                .name("index").value(i)
+                .name("type").value(result.type)
+                .name("status").value(result.success ? "success" : "error");
+            if (result.success) {
+                writer.name("message").value(result.message);
+                if (result.rawResult != null) {
+                    writer.name("result").rawValue(result.rawResult);
+                }
+            } else {
+                writer.name("error").value(result.message);
+            }
+            writer.endObject();
+        }
+        return writer.endArray()
+            .name("timestamp").value(timestamp)
+            .endObject().toString();
+    }
+
+    private void appendId(String requestId) {
+        if (requestId != null) {
+            writer.name("id").rawValue(requestId);
+        }
+    }
+
+    private String readOptionalString() throws CastProtocolException {
+        if (scanner.peekString()) {
+            return scanner.readString();
+        }
+        scanner.skipValue();
+        return null;
+    }
+
+    static CastMessage.Type typeFor(String name) {
+        for (CastMessage.Type type : TYPES) {
+            if (type.wireName.equals(name)) {
+                return type;
+            }
+        }
+        return CastMessage.Type.UNKNOWN;
+    }
+}
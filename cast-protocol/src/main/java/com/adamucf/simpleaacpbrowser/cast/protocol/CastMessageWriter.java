@@ -0,0 +1,142 @@
+package com.adamucf.simpleaacpbrowser.cast.protocol;
+
+/**
+ * Append-only JSON object writer over a reusable buffer. Not thread-safe; each owner
+ * keeps its own instance and calls {@link #reset()} per message.
+ */
+public final class CastMessageWriter {
+    private final StringBuilder out = new StringBuilder(256);
+    private boolean needsComma;
+
+    public CastMessageWriter reset() {
+        out.setLength(0);
+        needsComma = false;
+        return this;
+    }
+
+    public CastMessageWriter beginObject() {
+        separator();
+        out.append('{');
+        needsComma = false;
+        return this;
+    }
+
+    public CastMessageWriter endObject() {
+        out.append('}');
+        needsComma = true;
+        return this;
+    }
+
+    public CastMessageWriter beginArray() {
+        separator();
+        out.append('[');
+        needsComma = false;
+        return this;
+    }
+
+    public CastMessageWriter endArray() {
+        out.append(']');
+        needsComma = true;
+        return this;
+    }
+
+    public CastMessageWriter name(String name) {
+        separator();
+        appendQuoted(name);
+        out.append(':');
+        needsComma = false;
+        return this;
+    }
+
+    public CastMessageWriter value(String value) {
+        separator();
+        if (value == null) {
+            out.append("null");
+        } else {
+            appendQuoted(value);
+        }
+        needsComma = true;
+        return this;
+    }
+
+    public CastMessageWriter value(long value) {
+        separator();
+        out.append(value);
+        needsComma = true;
+        return this;
+    }
+
+    public CastMessageWriter value(double value) {
+        separator();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append("null");
+        } else {
+            out.append(value);
+        }
+        needsComma = true;
+        return this;
+    }
+
+    public CastMessageWriter value(boolean value) {
+        separator();
+        out.append(value);
+        needsComma = true;
+        return this;
+    }
+
+    // Appends already-serialized JSON (e.g. an echoed "data" member or a constant fragment)
+    public CastMessageWriter rawValue(String json) {
+        separator();
+        out.append(json);
+        needsComma = true;
+        return this;
+    }
+
+    // Appends a pre-serialized run of members ("\"a\":1,\"b\":2") inside the current object
+    public CastMessageWriter rawMembers(String members) {
+        separator();
+        out.append(members);
+        needsComma = true;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void separator() {
+        if (needsComma) {
+            out.append(',');
+            needsComma = false;
+        }
+    }
+
+    private void appendQuoted(String value) {
+        out.append('"');
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                case '\b': out.append("\\b"); break;
+                case '\f': out.append("\\f"); break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        out.append("\\u");
+                        String hex = Integer.toHexString(c);
+                        for (int pad = hex.length(); pad < 4; pad++) {
+                            out.append('0');
+                        }
+                        out.append(hex);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,7 @@
+package com.adamucf.simpleaacpbrowser.cast.protocol;
+
+public class CastProtocolException extends Exception {
+    public CastProtocolException(String message) {
+        super(message);
+    }
+}
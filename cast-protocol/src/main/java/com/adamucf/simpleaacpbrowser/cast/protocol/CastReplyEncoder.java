@@ -0,0 +1,22 @@
+package com.adamucf.simpleaacpbrowser.cast.protocol;
+
+import java.util.List;
+
+/**
+ * Encodes replies to one sender in its negotiated wire format: JSON text frames
+ * ({@link CastMessageCodec}) or binary CBOR frames ({@link CastCborCodec}). Raw
+ * arguments are always already-serialized JSON, whichever format the frame ends up in.
+ */
+public interface CastReplyEncoder<F> {
+    F encodeSuccess(String requestId, String message, String rawResult, long timestamp);
+
+    F encodeError(String requestId, String error, long timestamp);
+
+    F encodePong(String requestId, String rawData, long timestamp);
+
+    F encodeStatus(String requestId, long timestamp);
+
+    F encodeMetrics(String requestId, String rawMetrics, long timestamp);
+
+    F encodeBatchResult(String requestId, List<CastCommandResult> results, long timestamp);
+}
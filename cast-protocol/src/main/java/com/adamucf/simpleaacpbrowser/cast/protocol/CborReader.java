@@ -0,0 +1,393 @@
+package com.adamucf.simpleaacpbrowser.cast.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pull reader over one CBOR (RFC 8949) item, the binary counterpart of
+ * {@link JsonScanner}. Map keys must be text and are matched in place; maps and arrays
+ * may have definite or indefinite length. Values the caller does not ask for are
+ * skipped without being decoded. Every length is checked against the input, so a
+ * truncated or hostile frame fails with {@link CastProtocolException}.
+ */
+final class CborReader {
+    // Deepest container nesting accepted, in either format
+    static final int MAX_DEPTH = 64;
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+    private static final int MAJOR_SIMPLE = 7;
+    private static final int BREAK = 0xff;
+    // Item count of an indefinite-length container
+    private static final long INDEFINITE = -1;
+
+    private byte[] in;
+    private int pos;
+    private int end;
+    // Items (or pairs) left in each open container, innermost last
+    private final long[] remaining = new long[MAX_DEPTH + 1];
+    private int depth;
+    private int nameStart;
+    private int nameLength;
+    private final CastMessageWriter json = new CastMessageWriter();
+
+    void reset(byte[] cbor) {
+        in = cbor;
+        pos = 0;
+        end = cbor.length;
+        depth = 0;
+    }
+
+    boolean peekMap() throws CastProtocolException {
+        return majorType() == MAJOR_MAP;
+    }
+
+    boolean peekArray() throws CastProtocolException {
+        return majorType() == MAJOR_ARRAY;
+    }
+
+    boolean peekString() throws CastProtocolException {
+        return majorType() == MAJOR_TEXT;
+    }
+
+    void beginMap() throws CastProtocolException {
+        beginContainer(MAJOR_MAP);
+    }
+
+    void beginArray() throws CastProtocolException {
+        beginContainer(MAJOR_ARRAY);
+    }
+
+    // Advances to the next key of the innermost map; returns false once it is exhausted
+    boolean nextMember() throws CastProtocolException {
+        if (!hasNext()) {
+            return false;
+        }
+        if (majorType() != MAJOR_TEXT) {
+            throw new CastProtocolException("Map keys must be text at " + pos);
+        }
+        nameLength = textLength();
+        nameStart = pos;
+        pos += nameLength;
+        return true;
+    }
+
+    // Advances to the next element of the innermost array; returns false once it is exhausted
+    boolean nextElement() throws CastProtocolException {
+        return hasNext();
+    }
+
+    // Names are ASCII, so they compare byte for byte against the UTF-8 key
+    boolean nameEquals(String name) {
+        if (nameLength != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < nameLength; i++) {
+            if (in[nameStart + i] != (byte) name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String readString() throws CastProtocolException {
+        if (majorType() != MAJOR_TEXT) {
+            throw new CastProtocolException("Expected text at " + pos);
+        }
+        int length = textLength();
+        String value = new String(in, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    // Booleans only; any other value reads as false
+    boolean readBoolean() throws CastProtocolException {
+        int initial = peekByte();
+        if (initial == 0xf5) {
+            pos++;
+            return true;
+        }
+        skipValue();
+        return false;
+    }
+
+    // Integers and floats; any other value reads as NaN
+    double readDouble() throws CastProtocolException {
+        int initial = peekByte();
+        int major = initial >>> 5;
+        if (major == MAJOR_UNSIGNED) {
+            return readHeader();
+        }
+        if (major == MAJOR_NEGATIVE) {
+            return -1 - readHeader();
+        }
+        switch (initial) {
+            case 0xf9:
+                pos++;
+                return halfToDouble((int) readBytes(2));
+            case 0xfa:
+                pos++;
+                return Float.intBitsToFloat((int) readBytes(4));
+            case 0xfb:
+                pos++;
+                return Double.longBitsToDouble(readBytes(8));
+            default:
+                skipValue();
+                return Double.NaN;
+        }
+    }
+
+    // Returns the next item re-serialized as JSON, the form the rest of the receiver
+    // keeps ids, data and results in
+    String readAsJson() throws CastProtocolException {
+        json.reset();
+        toJson(0);
+        return json.toString();
+    }
+
+    void skipValue() throws CastProtocolException {
+        skip(0);
+    }
+
+    void expectEnd() throws CastProtocolException {
+        if (pos != end) {
+            throw new CastProtocolException("Trailing data at " + pos);
+        }
+    }
+
+    private void skip(int level) throws CastProtocolException {
+        if (level > MAX_DEPTH) {
+            throw new CastProtocolException("CBOR nested too deeply");
+        }
+        int major = majorType();
+        long argument = readHeader();
+        switch (major) {
+            case MAJOR_BYTES:
+            case MAJOR_TEXT:
+                pos += checkedLength(argument);
+                return;
+            case MAJOR_ARRAY:
+            case MAJOR_MAP:
+                long items = major == MAJOR_MAP && argument != INDEFINITE ? argument * 2 : argument;
+                if (items == INDEFINITE) {
+                    while (peekByte() != BREAK) {
+                        skip(level + 1);
+                    }
+                    pos++;
+                } else {
+                    for (long i = 0; i < items; i++) {
+                        skip(level + 1);
+                    }
+                }
+                return;
+            case MAJOR_TAG:
+                skip(level + 1);
+                return;
+            default:
+                // Integers and simple values are entirely in the header
+        }
+    }
+
+    private void toJson(int level) throws CastProtocolException {
+        if (level > MAX_DEPTH) {
+            throw new CastProtocolException("CBOR nested too deeply");
+        }
+        int major = majorType();
+        int initial = peekByte();
+        if (major == MAJOR_SIMPLE) {
+            pos++;
+            simpleToJson(initial & 0x1f);
+            return;
+        }
+        long argument = readHeader();
+        switch (major) {
+            case MAJOR_UNSIGNED:
+                json.value(argument);
+                return;
+            case MAJOR_NEGATIVE:
+                json.value(-1 - argument);
+                return;
+            case MAJOR_TEXT: {
+                int length = checkedLength(argument);
+                json.value(new String(in, pos, length, StandardCharsets.UTF_8));
+                pos += length;
+                return;
+            }
+            case MAJOR_ARRAY:
+                json.beginArray();
+                for (long i = 0; argument == INDEFINITE ? peekByte() != BREAK : i < argument; i++) {
+                    toJson(level + 1);
+                }
+                if (argument == INDEFINITE) {
+                    pos++;
+                }
+                json.endArray();
+                return;
+            case MAJOR_MAP:
+                json.beginObject();
+                for (long i = 0; argument == INDEFINITE ? peekByte() != BREAK : i < argument; i++) {
+                    if (majorType() != MAJOR_TEXT) {
+                        throw new CastProtocolException("Map keys must be text at " + pos);
+                    }
+                    json.name(readString());
+                    toJson(level + 1);
+                }
+                if (argument == INDEFINITE) {
+                    pos++;
+                }
+                json.endObject();
+                return;
+            case MAJOR_TAG:
+                // Tags (dates, bignums, ...) carry no meaning here; the tagged item stands alone
+                toJson(level + 1);
+                return;
+            default:
+                throw new CastProtocolException("Byte strings have no JSON form at " + pos);
+        }
+    }
+
+    private void simpleToJson(int info) throws CastProtocolException {
+        switch (info) {
+            case 20:
+                json.value(false);
+                return;
+            case 21:
+                json.value(true);
+                return;
+            case 22:
+            case 23:
+                json.rawValue("null");
+                return;
+            case 25:
+                json.value(halfToDouble((int) readBytes(2)));
+                return;
+            case 26:
+                json.value((double) Float.intBitsToFloat((int) readBytes(4)));
+                return;
+            case 27:
+                json.value(Double.longBitsToDouble(readBytes(8)));
+                return;
+            default:
+                throw new CastProtocolException("Unsupported simple value " + info + " at " + pos);
+        }
+    }
+
+    private static double halfToDouble(int bits) {
+        int exponent = (bits >> 10) & 0x1f;
+        int mantissa = bits & 0x3ff;
+        double value;
+        if (exponent == 0) {
+            value = Math.scalb((double) mantissa, -24);
+        } else if (exponent == 31) {
+            value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        } else {
+            value = Math.scalb((double) (mantissa + 1024), exponent - 25);
+        }
+        return (bits & 0x8000) != 0 ? -value : value;
+    }
+
+    private void beginContainer(int major) throws CastProtocolException {
+        if (majorType() != major) {
+            throw new CastProtocolException((major == MAJOR_MAP ? "Expected map at " : "Expected array at ") + pos);
+        }
+        if (depth >= MAX_DEPTH) {
+            throw new CastProtocolException("CBOR nested too deeply");
+        }
+        remaining[depth++] = readHeader();
+    }
+
+    private boolean hasNext() throws CastProtocolException {
+        long left = remaining[depth - 1];
+        if (left == INDEFINITE) {
+            if (peekByte() == BREAK) {
+                pos++;
+                depth--;
+                return false;
+            }
+            return true;
+        }
+        if (left == 0) {
+            depth--;
+            return false;
+        }
+        remaining[depth - 1] = left - 1;
+        return true;
+    }
+
+    private int textLength() throws CastProtocolException {
+        long length = readHeader();
+        if (length == INDEFINITE) {
+            throw new CastProtocolException("Indefinite-length strings are not supported");
+        }
+        return checkedLength(length);
+    }
+
+    private int checkedLength(long length) throws CastProtocolException {
+        if (length < 0 || length > end - pos) {
+            throw new CastProtocolException("Length exceeds input at " + pos);
+        }
+        return (int) length;
+    }
+
+    private int majorType() throws CastProtocolException {
+        return peekByte() >>> 5;
+    }
+
+    // Reads an item header; returns its argument, or INDEFINITE for a streamed container
+    private long readHeader() throws CastProtocolException {
+        int initial = peekByte();
+        pos++;
+        int info = initial & 0x1f;
+        if (info < 24) {
+            return info;
+        }
+        switch (info) {
+            case 24:
+                return readBytes(1);
+            case 25:
+                return readBytes(2);
+            case 26:
+                return readBytes(4);
+            case 27:
+                long argument = readBytes(8);
+                // Float bit patterns may use the sign bit; counts and integers may not
+                if (argument < 0 && initial >>> 5 != MAJOR_SIMPLE) {
+                    throw new CastProtocolException("Integer out of range at " + (pos - 9));
+                }
+                return argument;
+            case 31:
+                int major = initial >>> 5;
+                if (major == MAJOR_ARRAY || major == MAJOR_MAP) {
+                    return INDEFINITE;
+                }
+                if (major == MAJOR_BYTES || major == MAJOR_TEXT) {
+                    throw new CastProtocolException("Indefinite-length strings are not supported");
+                }
+                throw new CastProtocolException("Unexpected break at " + (pos - 1));
+            default:
+                throw new CastProtocolException("Reserved additional information at " + (pos - 1));
+        }
+    }
+
+    private long readBytes(int count) throws CastProtocolException {
+        if (count > end - pos) {
+            throw new CastProtocolException("Unexpected end of input");
+        }
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value = (value << 8) | (in[pos++] & 0xff);
+        }
+        return value;
+    }
+
+    private int peekByte() throws CastProtocolException {
+        if (pos >= end) {
+            throw new CastProtocolException("Unexpected end of input");
+        }
+        return in[pos] & 0xff;
+    }
+}
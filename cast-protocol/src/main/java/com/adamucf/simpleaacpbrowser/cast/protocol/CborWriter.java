@@ -0,0 +1,227 @@
+package com.adamucf.simpleaacpbrowser.cast.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only CBOR (RFC 8949) writer over a reusable buffer, the binary counterpart of
+ * {@link CastMessageWriter}. Maps and arrays are written with indefinite length so
+ * members can be streamed without counting them first. Not thread-safe.
+ */
+final class CborWriter {
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_TEXT = 3;
+
+    private byte[] out = new byte[256];
+    private int length;
+    private final JsonScanner scanner = new JsonScanner();
+
+    CborWriter reset() {
+        length = 0;
+        return this;
+    }
+
+    CborWriter beginMap() {
+        append(0xbf);
+        return this;
+    }
+
+    CborWriter endMap() {
+        append(0xff);
+        return this;
+    }
+
+    CborWriter beginArray() {
+        append(0x9f);
+        return this;
+    }
+
+    CborWriter endArray() {
+        append(0xff);
+        return this;
+    }
+
+    CborWriter name(String name) {
+        text(name);
+        return this;
+    }
+
+    CborWriter value(String value) {
+        if (value == null) {
+            append(0xf6);
+        } else {
+            text(value);
+        }
+        return this;
+    }
+
+    CborWriter value(long value) {
+        if (value >= 0) {
+            header(MAJOR_UNSIGNED, value);
+        } else {
+            header(MAJOR_NEGATIVE, -1 - value);
+        }
+        return this;
+    }
+
+    CborWriter value(double value) {
+        ensure(9);
+        out[length++] = (byte) 0xfb;
+        long bits = Double.doubleToLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out[length++] = (byte) (bits >>> shift);
+        }
+        return this;
+    }
+
+    CborWriter value(boolean value) {
+        append(value ? 0xf5 : 0xf4);
+        return this;
+    }
+
+    // Appends pre-encoded items, e.g. a run of constant map members
+    CborWriter raw(byte[] encoded) {
+        ensure(encoded.length);
+        System.arraycopy(encoded, 0, out, length, encoded.length);
+        length += encoded.length;
+        return this;
+    }
+
+    // Transcodes one already-serialized JSON value (an echoed id, a script result);
+    // anything that isn't valid JSON is kept as a text string
+    CborWriter json(String json) {
+        int mark = length;
+        try {
+            scanner.reset(json);
+            transcode(0);
+            scanner.expectEnd();
+        } catch (CastProtocolException e) {
+            length = mark;
+            text(json);
+        }
+        return this;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(out, length);
+    }
+
+    private void transcode(int depth) throws CastProtocolException {
+        if (depth > CborReader.MAX_DEPTH) {
+            throw new CastProtocolException("JSON nested too deeply");
+        }
+        if (scanner.peekObject()) {
+            beginMap();
+            scanner.beginObject();
+            boolean first = true;
+            while (scanner.nextMember(first)) {
+                first = false;
+                text(scanner.name());
+                transcode(depth + 1);
+            }
+            endMap();
+        } else if (scanner.peekArray()) {
+            beginArray();
+            scanner.beginArray();
+            boolean first = true;
+            while (scanner.nextElement(first)) {
+                first = false;
+                transcode(depth + 1);
+            }
+            endArray();
+        } else if (scanner.peekString()) {
+            text(scanner.readString());
+        } else {
+            literal(scanner.readRaw());
+        }
+    }
+
+    private void literal(String token) throws CastProtocolException {
+        switch (token) {
+            case "true":
+                value(true);
+                return;
+            case "false":
+                value(false);
+                return;
+            case "null":
+                append(0xf6);
+                return;
+            default:
+                break;
+        }
+        try {
+            boolean integral = token.indexOf('.') < 0 && token.indexOf('e') < 0 && token.indexOf('E') < 0;
+            if (integral) {
+                try {
+                    value(Long.parseLong(token));
+                    return;
+                } catch (NumberFormatException tooBig) {
+                    // Falls through to a double
+                }
+            }
+            value(Double.parseDouble(token));
+        } catch (NumberFormatException e) {
+            throw new CastProtocolException("Invalid JSON literal: " + token);
+        }
+    }
+
+    private void text(String value) {
+        int n = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < n; i++) {
+            if (value.charAt(i) >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+        if (!ascii) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            header(MAJOR_TEXT, utf8.length);
+            raw(utf8);
+            return;
+        }
+        header(MAJOR_TEXT, n);
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            out[length++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void header(int major, long value) {
+        int type = major << 5;
+        ensure(9);
+        if (value < 24) {
+            out[length++] = (byte) (type | value);
+        } else if (value <= 0xff) {
+            out[length++] = (byte) (type | 24);
+            out[length++] = (byte) value;
+        } else if (value <= 0xffff) {
+            out[length++] = (byte) (type | 25);
+            out[length++] = (byte) (value >>> 8);
+            out[length++] = (byte) value;
+        } else if (value <= 0xffffffffL) {
+            out[length++] = (byte) (type | 26);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                out[length++] = (byte) (value >>> shift);
+            }
+        } else {
+            out[length++] = (byte) (type | 27);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out[length++] = (byte) (value >>> shift);
+            }
+        }
+    }
+
+    private void append(int b) {
+        ensure(1);
+        out[length++] = (byte) b;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > out.length) {
+            out = Arrays.copyOf(out, Math.max(out.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.adamucf.simpleaacpbrowser.cast.protocol;
+
+/**
+ * Minimal pull scanner over a JSON string. Object member names are matched in place
+ * (no String is created for them) and values the caller does not ask for are skipped
+ * without being decoded, but still checked against the JSON grammar so that
+ * {@link #readRaw} never hands back invalid text.
+ */
+final class JsonScanner {
+    // Deepest nesting skipValue follows, so a hostile frame cannot overflow the stack
+    private static final int MAX_DEPTH = 64;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private String in;
+    private int pos;
+    private int end;
+    private int nameStart;
+    private int nameEnd;
+    private boolean nameEscaped;
+
+    void reset(String json) {
+        in = json;
+        pos = 0;
+        end = json.length();
+    }
+
+    void beginObject() throws CastProtocolException {
+        expect('{');
+    }
+
+    // Advances to the next member name; returns false at the closing brace
+    boolean nextMember(boolean first) throws CastProtocolException {
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return false;
+        }
+        if (!first) {
+            expect(',');
+            skipWhitespace();
+        }
+        expect('"');
+        nameStart = pos;
+        nameEscaped = skipStringBody();
+        nameEnd = pos - 1;
+        skipWhitespace();
+        expect(':');
+        skipWhitespace();
+        return true;
+    }
+
+    boolean nameEquals(String name) {
+        if (nameEscaped) {
+            return name.equals(decodeString(nameStart, nameEnd));
+        }
+        return nameEnd - nameStart == name.length() && in.regionMatches(nameStart, name, 0, name.length());
+    }
+
+    // Current member name as a String, for callers that copy members they don't know
+    String name() {
+        return nameEscaped ? decodeString(nameStart, nameEnd) : in.substring(nameStart, nameEnd);
+    }
+
+    boolean peekString() throws CastProtocolException {
+        skipWhitespace();
+        return peek() == '"';
+    }
+
+    boolean peekArray() throws CastProtocolException {
+        skipWhitespace();
+        return peek() == '[';
+    }
+
+    boolean peekObject() throws CastProtocolException {
+        skipWhitespace();
+        return peek() == '{';
+    }
+
+    void beginArray() throws CastProtocolException {
+        expect('[');
+    }
+
+    // Advances to the next array element; returns false at the closing bracket
+    boolean nextElement(boolean first) throws CastProtocolException {
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return false;
+        }
+        if (!first) {
+            expect(',');
+            skipWhitespace();
+        }
+        return true;
+    }
+
+    // Booleans only; any other value reads as false
+    boolean readBoolean() throws CastProtocolException {
+        skipWhitespace();
+        boolean value = in.startsWith("true", pos);
+        skipValue();
+        return value;
+    }
+
+    // Numbers only; any other value reads as NaN. Plain decimals, the common case for
+    // input coordinates, are parsed in place without creating a String.
+    double readDouble() throws CastProtocolException {
+        skipWhitespace();
+        char c = peek();
+        if (c != '-' && (c < '0' || c > '9')) {
+            skipValue();
+            return Double.NaN;
+        }
+        int start = pos;
+        boolean negative = c == '-';
+        int i = negative ? pos + 1 : pos;
+        long digits = 0;
+        int scale = 0;
+        int count = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char d = in.charAt(i);
+            if (d >= '0' && d <= '9') {
+                digits = digits * 10 + (d - '0');
+                count++;
+                if (fraction) {
+                    scale++;
+                }
+            } else if (d == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        skipValue();
+        // Exponents and numbers with more digits than a long holds exactly take the slow path
+        if (pos != i || count == 0 || count > 15) {
+            try {
+                return Double.parseDouble(in.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw new CastProtocolException("Invalid number at " + start);
+            }
+        }
+        double value = scale == 0 ? digits : digits / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    String readString() throws CastProtocolException {
+        expect('"');
+        int start = pos;
+        boolean escaped = skipStringBody();
+        int stop = pos - 1;
+        return escaped ? decodeString(start, stop) : in.substring(start, stop);
+    }
+
+    // Returns the next value as undecoded JSON text
+    String readRaw() throws CastProtocolException {
+        skipWhitespace();
+        int start = pos;
+        skipValue();
+        return in.substring(start, pos);
+    }
+
+    void skipValue() throws CastProtocolException {
+        skipValue(0);
+    }
+
+    void expectEnd() throws CastProtocolException {
+        skipWhitespace();
+        if (pos != end) {
+            throw new CastProtocolException("Trailing data at " + pos);
+        }
+    }
+
+    private void skipValue(int depth) throws CastProtocolException {
+        skipWhitespace();
+        char c = peek();
+        switch (c) {
+            case '"':
+                pos++;
+                skipStringBody();
+                return;
+            case '{':
+            case '[':
+                skipContainer(depth);
+                return;
+            case 't':
+                skipLiteral("true");
+                return;
+            case 'f':
+                skipLiteral("false");
+                return;
+            case 'n':
+                skipLiteral("null");
+                return;
+            default:
+                skipNumber();
+        }
+    }
+
+    private void skipContainer(int depth) throws CastProtocolException {
+        if (depth >= MAX_DEPTH) {
+            throw new CastProtocolException("Nesting too deep at " + pos);
+        }
+        boolean object = next() == '{';
+        char close = object ? '}' : ']';
+        skipWhitespace();
+        if (peek() == close) {
+            pos++;
+            return;
+        }
+        while (true) {
+            if (object) {
+                expect('"');
+                skipStringBody();
+                expect(':');
+            }
+            skipValue(depth + 1);
+            skipWhitespace();
+            char c = next();
+            if (c == close) {
+                return;
+            }
+            if (c != ',') {
+                throw new CastProtocolException("Expected ',' or '" + close + "' at " + (pos - 1));
+            }
+        }
+    }
+
+    // Past the closing quote (the opening one is already consumed); returns whether it had escapes
+    private boolean skipStringBody() throws CastProtocolException {
+        boolean escaped = false;
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return escaped;
+            }
+            if (c == '\\') {
+                escaped = true;
+                skipEscape();
+            }
+        }
+    }
+
+    // Checked here so decodeString only ever sees valid escapes
+    private void skipEscape() throws CastProtocolException {
+        char e = next();
+        switch (e) {
+            case '"':
+            case '\\':
+            case '/':
+            case 'b':
+            case 'f':
+            case 'n':
+            case 'r':
+            case 't':
+                return;
+            case 'u':
+                for (int i = 0; i < 4; i++) {
+                    if (!isHexDigit(next())) {
+                        throw new CastProtocolException("Invalid \\u escape at " + (pos - 1));
+                    }
+                }
+                return;
+            default:
+                throw new CastProtocolException("Invalid escape at " + (pos - 1));
+        }
+    }
+
+    private void skipLiteral(String literal) throws CastProtocolException {
+        if (!in.startsWith(literal, pos)) {
+            throw new CastProtocolException("Unexpected character at " + pos);
+        }
+        pos += literal.length();
+        expectDelimiter();
+    }
+
+    // -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+    private void skipNumber() throws CastProtocolException {
+        int start = pos;
+        if (pos < end && in.charAt(pos) == '-') {
+            pos++;
+        }
+        if (pos < end && in.charAt(pos) == '0') {
+            pos++;
+        } else if (skipDigits() == 0) {
+            throw new CastProtocolException("Unexpected character at " + start);
+        }
+        if (pos < end && in.charAt(pos) == '.') {
+            pos++;
+            if (skipDigits() == 0) {
+                throw new CastProtocolException("Invalid number at " + start);
+            }
+        }
+        if (pos < end && (in.charAt(pos) == 'e' || in.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < end && (in.charAt(pos) == '+' || in.charAt(pos) == '-')) {
+                pos++;
+            }
+            if (skipDigits() == 0) {
+                throw new CastProtocolException("Invalid number at " + start);
+            }
+        }
+        expectDelimiter();
+    }
+
+    private int skipDigits() {
+        int start = pos;
+        while (pos < end && in.charAt(pos) >= '0' && in.charAt(pos) <= '9') {
+            pos++;
+        }
+        return pos - start;
+    }
+
+    // A bare value must end where the input, its container or its member does
+    private void expectDelimiter() throws CastProtocolException {
+        if (pos < end) {
+            char c = in.charAt(pos);
+            if (c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+                throw new CastProtocolException("Unexpected character at " + pos);
+            }
+        }
+    }
+
+    private String decodeString(int start, int stop) {
+        StringBuilder sb = new StringBuilder(stop - start);
+        for (int i = start; i < stop; i++) {
+            char c = in.charAt(i);
+            if (c != '\\' || i + 1 >= stop) {
+                sb.append(c);
+                continue;
+            }
+            char e = in.charAt(++i);
+            switch (e) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (i + 4 < stop) {
+                        sb.append((char) Integer.parseInt(in.substring(i + 1, i + 5), 16));
+                        i += 4;
+                    }
+                    break;
+                default: sb.append(e); break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && isWhitespace(in.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private char peek() throws CastProtocolException {
+        if (pos >= end) {
+            throw new CastProtocolException("Unexpected end of input");
+        }
+        return in.charAt(pos);
+    }
+
+    private char next() throws CastProtocolException {
+        if (pos >= end) {
+            throw new CastProtocolException("Unexpected end of input");
+        }
+        return in.charAt(pos++);
+    }
+
+    private void expect(char c) throws CastProtocolException {
+        skipWhitespace();
+        if (next() != c) {
+            throw new CastProtocolException("Expected '" + c + "' at " + (pos - 1));
+        }
+    }
+}
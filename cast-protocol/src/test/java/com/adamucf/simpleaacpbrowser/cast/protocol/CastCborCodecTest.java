@@ -0,0 +1,115 @@
+package com.adamucf.simpleaacpbrowser.cast.protocol;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CastCborCodecTest {
+    private final CastCborCodec cbor = new CastCborCodec();
+    private final CastMessageCodec json = new CastMessageCodec();
+    private final CastMessage fromCbor = new CastMessage();
+    private final CastMessage fromJson = new CastMessage();
+
+    @Test
+    public void decodesTheSameModelAsJson() throws CastProtocolException {
+        String frame = "{\"type\":\"batch\",\"id\":\"b-1\",\"stop_on_error\":true,\"extra\":[1,{\"x\":null}],"
+            + "\"commands\":[{\"type\":\"load_url\",\"url\":\"https://example.com/\u00e9\"},"
+            + "{\"type\":\"execute_js\",\"after\":\"page_load\",\"javascript\":\"document.title\"}]}";
+        json.decode(frame, fromJson);
+        cbor.decode(cbor.fromJson(frame), fromCbor);
+
+        assertEquals(CastMessage.Type.BATCH, fromCbor.type);
+        assertEquals(fromJson.requestId, fromCbor.requestId);
+        assertTrue(fromCbor.stopOnError);
+        assertEquals(2, fromCbor.commands.size());
+        assertEquals("https://example.com/\u00e9", fromCbor.commands.get(0).url);
+        assertTrue(fromCbor.commands.get(1).afterPageLoad);
+        assertEquals(fromJson.commands.get(1).javascript, fromCbor.commands.get(1).javascript);
+    }
+
+    @Test
+    public void keepsIdsAndDataAsJson() throws CastProtocolException {
+        cbor.decode(cbor.fromJson("{\"type\":\"ping\",\"id\":7,\"data\":{\"n\":[1,-2,2.5,true,\"s\"]}}"), fromCbor);
+        assertEquals(CastMessage.Type.PING, fromCbor.type);
+        assertEquals("7", fromCbor.requestId);
+        assertEquals("{\"n\":[1,-2,2.5,true,\"s\"]}", fromCbor.rawData);
+
+        cbor.decode(cbor.fromJson("{\"type\":\"set_encoding\",\"encoding\":\"cbor\"}"), fromCbor);
+        assertEquals(CastMessage.Type.SET_ENCODING, fromCbor.type);
+        assertEquals("cbor", fromCbor.encoding);
+        assertNull(fromCbor.requestId);
+    }
+
+    @Test
+    public void readsInputCoordinatesOfAnyNumberWidth() throws CastProtocolException {
+        cbor.decode(cbor.fromJson("{\"type\":\"pointer\",\"action\":\"down\",\"x\":0.125,\"y\":1}"), fromCbor);
+        assertEquals(CastMessage.Type.POINTER, fromCbor.type);
+        assertEquals("down", fromCbor.action);
+        assertEquals(0.125, fromCbor.x, 0);
+        assertEquals(1.0, fromCbor.y, 0);
+
+        // {"type":"scroll","dx":0.25 as a half float,"dy":-3}
+        byte[] frame = {(byte) 0xa3, 0x64, 't', 'y', 'p', 'e', 0x66, 's', 'c', 'r', 'o', 'l', 'l',
+            0x62, 'd', 'x', (byte) 0xf9, 0x34, 0x00, 0x62, 'd', 'y', 0x22};
+        cbor.decode(frame, fromCbor);
+        assertEquals(CastMessage.Type.SCROLL, fromCbor.type);
+        assertEquals(0.25, fromCbor.dx, 0);
+        assertEquals(-3.0, fromCbor.dy, 0);
+    }
+
+    @Test
+    public void acceptsDefiniteLengthMaps() throws CastProtocolException {
+        // {"type":"get_status","id":1} as an encoder that counts its members would write it
+        byte[] frame = {(byte) 0xa2, 0x64, 't', 'y', 'p', 'e', 0x6a, 'g', 'e', 't', '_', 's', 't', 'a', 't', 'u', 's',
+            0x62, 'i', 'd', 0x01};
+        cbor.decode(frame, fromCbor);
+        assertEquals(CastMessage.Type.GET_STATUS, fromCbor.type);
+        assertEquals("1", fromCbor.requestId);
+    }
+
+    @Test
+    public void repliesMatchTheirJsonForm() throws CastProtocolException {
+        List<CastCommandResult> results = Arrays.asList(
+            CastCommandResult.success("execute_js", "ok", "{\"a\":[1,2]}"),
+            CastCommandResult.error("load_url", "bad"));
+        assertEquals(json.encodeSuccess("\"r1\"", "done", "\"title\"", 5),
+            cbor.toJson(cbor.encodeSuccess("\"r1\"", "done", "\"title\"", 5)));
+        assertEquals(json.encodeError(null, "bad \"url\"", 6), cbor.toJson(cbor.encodeError(null, "bad \"url\"", 6)));
+        assertEquals(json.encodePong("3", "{\"m\":\"hi\"}", 7), cbor.toJson(cbor.encodePong("3", "{\"m\":\"hi\"}", 7)));
+        assertEquals(json.encodeStatus("4", 8), cbor.toJson(cbor.encodeStatus("4", 8)));
+        assertEquals(json.encodeMetrics(null, "{\"c\":{\"x\":1}}", 9),
+            cbor.toJson(cbor.encodeMetrics(null, "{\"c\":{\"x\":1}}", 9)));
+        assertEquals(json.encodeBatchResult("5", results, 10), cbor.toJson(cbor.encodeBatchResult("5", results, 10)));
+    }
+
+    @Test
+    public void repliesAreSmallerThanJson() {
+        assertTrue(cbor.encodeStatus("4", 1700000000000L).length < json.encodeStatus("4", 1700000000000L).length());
+    }
+
+    @Test(expected = CastProtocolException.class)
+    public void rejectsTruncatedInput() throws CastProtocolException {
+        byte[] frame = cbor.fromJson("{\"type\":\"load_url\",\"url\":\"https://example.com/\"}");
+        cbor.decode(Arrays.copyOf(frame, frame.length - 4), fromCbor);
+    }
+
+    @Test(expected = CastProtocolException.class)
+    public void rejectsTrailingData() throws CastProtocolException {
+        byte[] frame = cbor.fromJson("{\"type\":\"ping\"}");
+        cbor.decode(Arrays.copyOf(frame, frame.length + 1), fromCbor);
+    }
+
+    @Test(expected = CastProtocolException.class)
+    public void rejectsNonMap() throws CastProtocolException {
+        cbor.decode(cbor.fromJson("[\"ping\"]"), fromCbor);
+    }
+
+    @Test(expected = CastProtocolException.class)
+    public void rejectsLengthsBeyondTheFrame() throws CastProtocolException {
+        // A text key claiming 4 GiB
+        cbor.decode(new byte[]{(byte) 0xbf, 0x7a, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x00}, fromCbor);
+    }
+}
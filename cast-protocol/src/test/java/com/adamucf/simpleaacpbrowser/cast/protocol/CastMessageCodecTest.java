@@ -0,0 +1,196 @@
+package com.adamucf.simpleaacpbrowser.cast.protocol;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CastMessageCodecTest {
+    private final CastMessageCodec codec = new CastMessageCodec();
+    private final CastMessage message = new CastMessage();
+
+    @Test
+    public void decodesKnownTypesAndFields() throws CastProtocolException {
+        codec.decode("{\"type\":\"load_url\",\"url\":\"https://example.com/?q=\\\"x\\\"\"}", message);
+        assertEquals(CastMessage.Type.LOAD_URL, message.type);
+        assertEquals("https://example.com/?q=\"x\"", message.url);
+
+        codec.decode(" { \"javascript\" : \"alert('\\u00e9')\", \"type\" : \"execute_js\" } ", message);
+        assertEquals(CastMessage.Type.EXECUTE_JS, message.type);
+        assertEquals("alert('\u00e9')", message.javascript);
+        assertNull("fields are reset between messages", message.url);
+    }
+
+    @Test
+    public void skipsUnknownMembersAndKeepsRawData() throws CastProtocolException {
+        codec.decode("{\"extra\":{\"a\":[1,2,{\"b\":\"}\"}]},\"type\":\"ping\",\"data\":{\"message\":\"hi\",\"n\":[1,2]}}", message);
+        assertEquals(CastMessage.Type.PING, message.type);
+        assertEquals("{\"message\":\"hi\",\"n\":[1,2]}", message.rawData);
+    }
+
+    @Test
+    public void unknownTypeKeepsRawName() throws CastProtocolException {
+        codec.decode("{\"type\":\"reboot\"}", message);
+        assertEquals(CastMessage.Type.UNKNOWN, message.type);
+        assertEquals("reboot", message.typeName);
+    }
+
+    @Test
+    public void nonStringFieldIsTreatedAsMissing() throws CastProtocolException {
+        codec.decode("{\"type\":\"load_url\",\"url\":42}", message);
+        assertNull(message.url);
+    }
+
+    @Test
+    public void decodesInputCoordinates() throws CastProtocolException {
+        codec.decode("{\"type\":\"pointer\",\"action\":\"move\",\"x\":0.25,\"y\":1}", message);
+        assertEquals(CastMessage.Type.POINTER, message.type);
+        assertEquals("move", message.action);
+        assertEquals(0.25, message.x, 0);
+        assertEquals(1.0, message.y, 0);
+
+        codec.decode("{\"type\":\"scroll\",\"dx\":-1.5e2,\"dy\":\"down\"}", message);
+        assertEquals(-150.0, message.dx, 0);
+        assertTrue("non-numbers read as NaN", Double.isNaN(message.dy));
+        assertTrue("coordinates are reset between messages", Double.isNaN(message.x));
+    }
+
+    @Test(expected = CastProtocolException.class)
+    public void rejectsTruncatedInput() throws CastProtocolException {
+        codec.decode("{\"type\":\"ping\"", message);
+    }
+
+    @Test
+    public void rejectsMalformedValues() {
+        String[] frames = {
+            "{\"type\":\"load_url\",\"url\":\"\\uZZZZ\"}",
+            "{\"type\":\"ping\",\"data\":\"\\x\"}",
+            "{\"type\":\"ping\",\"data\":[}}",
+            "{\"type\":\"ping\",\"data\":{\"a\":1]}",
+            "{\"type\":\"ping\",\"data\":[1 2]}",
+            "{\"type\":\"ping\",\"data\":{\"a\"}}",
+            "{\"type\":\"ping\",\"id\":abc\"d}",
+            "{\"type\":\"ping\",\"id\":truex}",
+            "{\"type\":\"ping\",\"id\":01}",
+            "{\"type\":\"ping\",\"id\":1.}",
+            "{\"type\":\"ping\",\"id\":-}",
+            "{\"type\":\"ping\",\"stop_on_error\":tru}",
+        };
+        for (String frame : frames) {
+            try {
+                codec.decode(frame, message);
+                fail("accepted " + frame);
+            } catch (CastProtocolException expected) {
+                // rejected as it should be
+            }
+        }
+    }
+
+    @Test
+    public void acceptsEveryJsonValueKind() throws CastProtocolException {
+        codec.decode("{\"type\":\"ping\",\"id\":-1.5e+3,\"data\":{\"a\":[true,false,null,0,\"\\u00e9\\n\"],\"b\":{}}}", message);
+        assertEquals("-1.5e+3", message.requestId);
+        assertEquals("{\"a\":[true,false,null,0,\"\\u00e9\\n\"],\"b\":{}}", message.rawData);
+    }
+
+    @Test(expected = CastProtocolException.class)
+    public void rejectsNonObject() throws CastProtocolException {
+        codec.decode("[\"ping\"]", message);
+    }
+
+    @Test
+    public void encodesResponses() {
+        assertEquals("{\"type\":\"response\",\"status\":\"success\",\"message\":\"ok\",\"timestamp\":5}",
+            codec.encodeSuccess(null, "ok", 5));
+        assertEquals("{\"type\":\"response\",\"status\":\"error\",\"error\":\"bad \\\"url\\\"\\n\",\"timestamp\":6}",
+            codec.encodeError(null, "bad \"url\"\n", 6));
+        assertEquals("{\"type\":\"pong\",\"timestamp\":7,\"data\":{\"a\":1}}", codec.encodePong(null, "{\"a\":1}", 7));
+        assertEquals("{\"type\":\"pong\",\"timestamp\":8}", codec.encodePong(null, null, 8));
+    }
+
+    @Test
+    public void echoesRequestIdVerbatim() throws CastProtocolException {
+        codec.decode("{\"type\":\"execute_js\",\"id\":\"req-7\",\"javascript\":\"1+1\"}", message);
+        assertEquals("\"req-7\"", message.requestId);
+        assertEquals("{\"type\":\"response\",\"id\":\"req-7\",\"status\":\"success\",\"message\":\"done\","
+                + "\"result\":2,\"timestamp\":1}",
+            codec.encodeSuccess(message.requestId, "done", "2", 1));
+
+        codec.decode("{\"id\":42,\"type\":\"ping\"}", message);
+        assertEquals("{\"type\":\"pong\",\"id\":42,\"timestamp\":2}", codec.encodePong(message.requestId, null, 2));
+    }
+
+    @Test
+    public void decodesBatchWithDependencies() throws CastProtocolException {
+        codec.decode("{\"type\":\"batch\",\"id\":\"b1\",\"stop_on_error\":true,\"commands\":["
+            + "{\"type\":\"load_url\",\"url\":\"https://example.com\"},"
+            + "{\"type\":\"execute_js\",\"after\":\"page_load\",\"javascript\":\"document.title\"},"
+            + "{\"type\":\"get_status\"}]}", message);
+
+        assertEquals(CastMessage.Type.BATCH, message.type);
+        assertTrue(message.stopOnError);
+        assertEquals(3, message.commands.size());
+        assertEquals("https://example.com", message.commands.get(0).url);
+        assertFalse(message.commands.get(0).afterPageLoad);
+        assertTrue(message.commands.get(1).afterPageLoad);
+        assertEquals(CastMessage.Type.GET_STATUS, message.commands.get(2).type);
+        assertNull("batches do not nest", message.commands.get(2).commands);
+    }
+
+    @Test(expected = CastProtocolException.class)
+    public void rejectsOversizedBatch() throws CastProtocolException {
+        StringBuilder json = new StringBuilder("{\"type\":\"batch\",\"commands\":[");
+        for (int i = 0; i <= CastMessageCodec.MAX_BATCH_COMMANDS; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"type\":\"ping\"}");
+        }
+        codec.decode(json.append("]}").toString(), message);
+    }
+
+    @Test
+    public void encodesBatchResult() {
+        String encoded = codec.encodeBatchResult("\"b1\"", Arrays.asList(
+            CastCommandResult.success("load_url", "URL loaded successfully", null),
+            CastCommandResult.success("execute_js", "JavaScript executed successfully", "\"Riptide\""),
+            CastCommandResult.error("toggle_navigation", "Command dropped")), 3);
+        assertEquals("{\"type\":\"batch_result\",\"id\":\"b1\",\"status\":\"partial\",\"results\":["
+                + "{\"index\":0,\"type\":\"load_url\",\"status\":\"success\",\"message\":\"URL loaded successfully\"},"
+                + "{\"index\":1,\"type\":\"execute_js\",\"status\":\"success\","
+                + "\"message\":\"JavaScript executed successfully\",\"result\":\"Riptide\"},"
+                + "{\"index\":2,\"type\":\"toggle_navigation\",\"status\":\"error\",\"error\":\"Command dropped\"}"
+                + "],\"timestamp\":3}",
+            encoded);
+    }
+
+    @Test
+    public void encodesStatusWithConstantPrefix() {
+        assertEquals("{\"type\":\"status_response\",\"receiver_ready\":true,\"version\":\"2.0\","
+                + "\"app_name\":\"Riptide\",\"distraction_optimized\":true,\"immersive_mode\":true,"
+                + "\"enhanced_navigation\":true,\"cast_status_page\":true,\"timestamp\":9}",
+            codec.encodeStatus(null, 9));
+    }
+
+    @Test
+    public void decodesGetMetricsAndEmbedsSnapshot() throws CastProtocolException {
+        CastMessage message = codec.decode("{\"type\":\"get_metrics\",\"id\":3}", new CastMessage());
+        assertEquals(CastMessage.Type.GET_METRICS, message.type);
+        assertEquals("{\"type\":\"metrics_response\",\"id\":3,\"metrics\":{\"uptime_ms\":5},\"timestamp\":9}",
+            codec.encodeMetrics(message.requestId, "{\"uptime_ms\":5}", 9));
+    }
+
+    @Test
+    public void encodesRendererIncident() {
+        assertEquals("{\"type\":\"renderer_incident\",\"reason\":\"crashed\",\"url\":\"https://example.com/\","
+            + "\"restored\":true,\"timestamp\":4}",
+            codec.encodeRendererIncident("crashed", "https://example.com/", true, 4));
+        assertEquals("{\"type\":\"renderer_incident\",\"reason\":\"unresponsive\",\"restored\":false,\"timestamp\":4}",
+            codec.encodeRendererIncident("unresponsive", null, false, 4));
+    }
+
+    @Test
+    public void decodesPrefetchUrl() throws CastProtocolException {
+        CastMessage message = codec.decode("{\"type\":\"prefetch_url\",\"url\":\"https://example.com/next\"}", new CastMessage());
+        assertEquals(CastMessage.Type.PREFETCH_URL, message.type);
+        assertEquals("https://example.com/next", message.url);
+    }
+}
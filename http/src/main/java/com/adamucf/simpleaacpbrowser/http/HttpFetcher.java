@@ -0,0 +1,174 @@
+package com.adamucf.simpleaacpbrowser.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okhttp3.brotli.BrotliInterceptor;
+
+/**
+ * GETs for requests the app fetches itself rather than leaving to the WebView (the
+ * shell cache, throttled subresources). All fetchers share one connection pool, so
+ * connections are kept alive between requests and HTTPS origins that offer HTTP/2 are
+ * multiplexed over a single connection. Brotli and gzip bodies are decoded on the fly
+ * and handed out as a stream, never buffered whole. Thread-safe.
+ */
+public final class HttpFetcher {
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+
+    private static volatile HttpFetcher defaultFetcher;
+
+    private final OkHttpClient client;
+
+    private HttpFetcher(OkHttpClient client) {
+        this.client = client;
+    }
+
+    public static HttpFetcher getDefault() {
+        HttpFetcher fetcher = defaultFetcher;
+        if (fetcher == null) {
+            synchronized (HttpFetcher.class) {
+                fetcher = defaultFetcher;
+                if (fetcher == null) {
+                    fetcher = new HttpFetcher(newClientBuilder().build());
+                    defaultFetcher = fetcher;
+                }
+            }
+        }
+        return fetcher;
+    }
+
+    /**
+     * A fetcher with its own pool that speaks cleartext HTTP/2 without negotiation
+     * (h2c prior knowledge). Only for local servers known to support it, such as the
+     * load harness; over TLS the shared fetcher negotiates HTTP/2 through ALPN.
+     */
+    public static HttpFetcher cleartextHttp2() {
+        return new HttpFetcher(newClientBuilder()
+            .protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE))
+            .build());
+    }
+
+    private static OkHttpClient.Builder newClientBuilder() {
+        return new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .readTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            // Cross-protocol redirects are left to the WebView, as HttpURLConnection did
+            .followSslRedirects(false)
+            // Asks for br and gzip and decodes them; strips Content-Encoding and Content-Length
+            .addInterceptor(BrotliInterceptor.INSTANCE);
+    }
+
+    // Same pool and protocols, different timeouts
+    public HttpFetcher withTimeouts(int connectTimeoutMs, int readTimeoutMs) {
+        return new HttpFetcher(client.newBuilder()
+            .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+            .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+            .build());
+    }
+
+    /**
+     * Sends a GET and returns once the response headers are in. The caller must close
+     * the response (or its body stream) to hand the connection back to the pool.
+     */
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        return execute("GET", url, headers);
+    }
+
+    // Also opens a pooled connection ahead of the first GET to the origin
+    public Response head(String url, Map<String, String> headers) throws IOException {
+        return execute("HEAD", url, headers);
+    }
+
+    private Response execute(String method, String url, Map<String, String> headers) throws IOException {
+        Request.Builder request = new Request.Builder().url(url).method(method, null);
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                // The decoder picks the encodings; bodies always come back decoded
+                if (!header.getKey().equalsIgnoreCase("Accept-Encoding")) {
+                    request.header(header.getKey(), header.getValue());
+                }
+            }
+        }
+        return new Response(client.newCall(request.build()).execute());
+    }
+
+    public int getConnectionCount() {
+        return client.connectionPool().connectionCount();
+    }
+
+    public int getIdleConnectionCount() {
+        return client.connectionPool().idleConnectionCount();
+    }
+
+    // Drops idle connections, e.g. under memory pressure
+    public void evictIdleConnections() {
+        client.connectionPool().evictAll();
+    }
+
+    public static final class Response implements Closeable {
+        private final okhttp3.Response response;
+
+        Response(okhttp3.Response response) {
+            this.response = response;
+        }
+
+        public int getStatus() {
+            return response.code();
+        }
+
+        public String getReason() {
+            return response.message();
+        }
+
+        // "http/1.1" or "h2"
+        public String getProtocol() {
+            return response.protocol().toString();
+        }
+
+        public String getHeader(String name) {
+            return response.header(name);
+        }
+
+        public Map<String, List<String>> getHeaders() {
+            return response.headers().toMultimap();
+        }
+
+        public String getContentType() {
+            return response.header("Content-Type");
+        }
+
+        // Decoded length, or -1 when unknown (always for compressed bodies)
+        public long getContentLength() {
+            ResponseBody body = response.body();
+            return body != null ? body.contentLength() : -1;
+        }
+
+        // Streams the decoded body; closing the stream releases the connection
+        public InputStream getBody() {
+            ResponseBody body = response.body();
+            return body != null ? body.byteStream() : new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.adamucf.simpleaacpbrowser.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link HttpFetcher} decoding and connection reuse against a local server.
+ */
+public class HttpFetcherTest {
+    private final MockWebServer server = new MockWebServer();
+    private final HttpFetcher fetcher = HttpFetcher.getDefault();
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void gzipBodiesComeBackDecoded() throws Exception {
+        server.enqueue(new MockResponse()
+            .setHeader("Content-Encoding", "gzip")
+            .setHeader("Content-Type", "text/css; charset=utf-8")
+            .setBody(new Buffer().write(gzip("body { color: red }"))));
+
+        // The caller's Accept-Encoding is replaced by the encodings the fetcher can decode
+        try (HttpFetcher.Response response = fetcher.get(server.url("/app.css").toString(),
+                Collections.singletonMap("Accept-Encoding", "identity"))) {
+            assertEquals(200, response.getStatus());
+            assertNull(response.getHeader("Content-Encoding"));
+            assertEquals("text/css; charset=utf-8", response.getContentType());
+            assertEquals("body { color: red }", read(response.getBody()));
+        }
+        assertEquals("br,gzip", server.takeRequest().getHeader("Accept-Encoding"));
+    }
+
+    @Test
+    public void connectionsAreReused() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setBody("asset " + i));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            try (HttpFetcher.Response response = fetcher.get(server.url("/a" + i + ".js").toString(), null)) {
+                assertEquals("asset " + i, read(response.getBody()));
+            }
+        }
+
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+        RecordedRequest second = server.takeRequest();
+        RecordedRequest third = server.takeRequest();
+        assertEquals("second request rides the first connection", 1, second.getSequenceNumber());
+        assertEquals(2, third.getSequenceNumber());
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}